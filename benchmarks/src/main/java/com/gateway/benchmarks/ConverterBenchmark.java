@@ -0,0 +1,54 @@
+package com.gateway.benchmarks;
+
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import com.gateway.service.Iso8583Converter;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON model to ISO 8583 and back through {@link Iso8583Converter}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConverterBenchmark {
+
+    private Iso8583Converter converter;
+    private TransactionRequest request;
+    private ISOMsg response;
+
+    @Setup
+    public void setUp() throws ISOException {
+        CustomPackager packager = Fixtures.packager();
+        converter = Fixtures.converter(packager);
+        request = Fixtures.debitRequest();
+        response = Fixtures.approvedResponse(packager);
+    }
+
+    @Benchmark
+    public ISOMsg requestToIso() throws ISOException {
+        return converter.requestToIso(request);
+    }
+
+    @Benchmark
+    public TransactionResponse isoToResponse() throws ISOException {
+        return converter.isoToResponse(response);
+    }
+}
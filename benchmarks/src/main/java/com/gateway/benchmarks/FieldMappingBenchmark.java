@@ -0,0 +1,141 @@
+package com.gateway.benchmarks;
+
+import com.gateway.mapping.FieldMapping;
+import com.gateway.mapping.MappingContext;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import com.gateway.util.Iso8583Util;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field population only: the compiled default mapping against the hand-written {@code isoMsg.set}
+ * sequence it replaced. STAN, RRN and processing code are fixed so neither side pays for them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FieldMappingBenchmark {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMdd");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HHmmss");
+    private static final String STAN = "000042";
+    private static final String RRN = "604709000042";
+    private static final String PROCESSING_CODE = "000000";
+
+    private FieldMapping mapping;
+    private Iso8583Util iso8583Util;
+    private TransactionRequest request;
+    private ISOMsg response;
+
+    @Setup
+    public void setUp() throws ISOException {
+        mapping = Fixtures.fieldMapper().getMapping();
+        iso8583Util = new Iso8583Util();
+        request = Fixtures.debitRequest();
+        response = Fixtures.approvedResponse(Fixtures.packager());
+    }
+
+    @Benchmark
+    public ISOMsg requestMapped() {
+        ISOMsg isoMsg = new ISOMsg();
+        mapping.applyRequest(new MappingContext(request, LocalDateTime.now(), STAN, RRN, PROCESSING_CODE), isoMsg);
+        return isoMsg;
+    }
+
+    @Benchmark
+    public ISOMsg requestHandCoded() {
+        ISOMsg isoMsg = new ISOMsg();
+        LocalDateTime now = LocalDateTime.now();
+        isoMsg.set(2, request.getCardNumber());
+        isoMsg.set(3, PROCESSING_CODE);
+        isoMsg.set(4, iso8583Util.formatAmount(request.getAmount(), request.getCurrencyCode()));
+        isoMsg.set(7, iso8583Util.formatDateTime(now));
+        isoMsg.set(11, STAN);
+        isoMsg.set(12, now.format(TIME_FORMAT));
+        isoMsg.set(13, now.format(DATE_FORMAT));
+        if (request.getCardExpiryDate() != null) {
+            isoMsg.set(14, request.getCardExpiryDate());
+        }
+        if (request.getMerchantCategoryCode() != null) {
+            isoMsg.set(18, request.getMerchantCategoryCode());
+        }
+        isoMsg.set(22, request.getPosEntryMode());
+        isoMsg.set(25, "00");
+        isoMsg.set(26, "12");
+        isoMsg.set(32, "123456");
+        if (request.getCardExpiryDate() != null) {
+            isoMsg.set(35, request.getCardNumber() + "=" + request.getCardExpiryDate());
+        }
+        isoMsg.set(37, RRN);
+        isoMsg.set(41, request.getTerminalId());
+        isoMsg.set(42, request.getMerchantId());
+        String name = request.getMerchantName() != null ? request.getMerchantName() : "";
+        isoMsg.set(43, name.length() > 40 ? name.substring(0, 40) : String.format("%-40s", name));
+        isoMsg.set(49, request.getCurrencyCode());
+        if (request.getInvoiceNumber() != null) {
+            isoMsg.set(60, "INV" + request.getInvoiceNumber());
+        }
+        if (request.getDescription() != null && !request.getDescription().isEmpty()) {
+            isoMsg.set(62, request.getDescription());
+        }
+        if (request.getFromAccount() != null) {
+            isoMsg.set(102, request.getFromAccount());
+        }
+        if (request.getToAccount() != null) {
+            isoMsg.set(103, request.getToAccount());
+        }
+        return isoMsg;
+    }
+
+    @Benchmark
+    public TransactionResponse responseMapped() {
+        TransactionResponse mapped = new TransactionResponse();
+        mapping.applyResponse(response, mapped);
+        return mapped;
+    }
+
+    @Benchmark
+    public TransactionResponse responseHandCoded() {
+        TransactionResponse mapped = new TransactionResponse();
+        mapped.setRrn(response.getString(37));
+        mapped.setStan(response.getString(11));
+        mapped.setMaskedCardNumber(mask(response.getString(2)));
+        String amount = response.getString(4);
+        if (amount != null) {
+            mapped.setAmount(iso8583Util.parseAmount(amount, response.getString(49)));
+        }
+        mapped.setTerminalId(response.getString(41));
+        mapped.setMerchantId(response.getString(42));
+        mapped.setCurrencyCode(response.getString(49));
+        return mapped;
+    }
+
+    private static String mask(String pan) {
+        if (pan == null || pan.length() < 10) {
+            return pan;
+        }
+        char[] masked = pan.toCharArray();
+        for (int i = 6; i < masked.length - 4; i++) {
+            masked[i] = '*';
+        }
+        return new String(masked);
+    }
+}
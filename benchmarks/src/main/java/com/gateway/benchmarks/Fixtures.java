@@ -0,0 +1,109 @@
+package com.gateway.benchmarks;
+
+import com.gateway.bin.BinConfig;
+import com.gateway.bin.BinRangeRepository;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.util.Iso8583Util;
+import com.gateway.util.TransactionIdGenerator;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds gateway components and realistic messages without a Spring context.
+ */
+final class Fixtures {
+
+    static final String KEY_STORE_PASSWORD = "changeit";
+
+    private Fixtures() {
+    }
+
+    /**
+     * A throwaway PKCS12 store with a self-signed certificate for localhost, made with the JDK's
+     * keytool. The same file serves as the host's key store and the client's trust store.
+     */
+    static Path selfSignedKeyStore() throws IOException {
+        Path directory = Files.createTempDirectory("gateway-bench-tls");
+        Path store = directory.resolve("localhost.p12");
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "2",
+                "-storetype", "PKCS12", "-keystore", store.toString(),
+                "-storepass", KEY_STORE_PASSWORD, "-keypass", KEY_STORE_PASSWORD)
+                .inheritIO()
+                .start();
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool exited with " + process.exitValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for keytool", e);
+        }
+        store.toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+        return store;
+    }
+
+    static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "custom",
+                "classpath:iso8583/iso-packager.xml");
+        packager.init();
+        return packager;
+    }
+
+    static Iso8583Converter converter(CustomPackager packager) {
+        return new Iso8583Converter(packager, new Iso8583Util(), new TransactionIdGenerator(),
+                new BinRangeRepository(new BinConfig()), fieldMapper());
+    }
+
+    static FieldMapper fieldMapper() {
+        FieldMapper mapper = new FieldMapper(new DefaultResourceLoader(), "classpath:iso8583/field-mapping.txt");
+        mapper.init();
+        return mapper;
+    }
+
+    static TransactionRequest debitRequest() {
+        return TransactionRequest.builder()
+                .cardNumber("4111111111111111")
+                .transactionType("DEBIT")
+                .amount(new BigDecimal("125.40"))
+                .currencyCode("840")
+                .terminalId("TERM0001")
+                .merchantId("MERCHANT0000001")
+                .merchantName("Benchmark Coffee Shop")
+                .posEntryMode("05")
+                .merchantCategoryCode("5812")
+                .cardExpiryDate("2812")
+                .invoiceNumber("000123")
+                .build();
+    }
+
+    static ISOMsg approvedResponse(CustomPackager packager) throws ISOException {
+        ISOMsg msg = packager.createMessage("0210");
+        msg.set(2, "4111111111111111");
+        msg.set(3, "000000");
+        msg.set(4, "000000012540");
+        msg.set(7, "1019093015");
+        msg.set(11, "123456");
+        msg.set(12, "093015");
+        msg.set(13, "1019");
+        msg.set(37, "000123456789");
+        msg.set(39, "00");
+        msg.set(41, "TERM0001");
+        msg.set(42, "MERCHANT0000001");
+        msg.set(49, "840");
+        return msg;
+    }
+}
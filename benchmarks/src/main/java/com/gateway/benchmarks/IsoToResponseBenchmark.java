@@ -0,0 +1,97 @@
+package com.gateway.benchmarks;
+
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.model.TransactionResponse;
+import com.gateway.model.enums.ResponseCode;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.util.Iso8583Util;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response mapping cost. {@code legacy} reproduces the previous builder/UUID/linear-scan mapping so
+ * the two can be compared side by side; run with {@code -prof gc} to see allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class IsoToResponseBenchmark {
+
+    private Iso8583Converter converter;
+    private Iso8583Util iso8583Util;
+    private ISOMsg response;
+
+    @Setup
+    public void setUp() throws ISOException {
+        CustomPackager packager = Fixtures.packager();
+        converter = Fixtures.converter(packager);
+        iso8583Util = new Iso8583Util();
+        response = Fixtures.approvedResponse(packager);
+    }
+
+    @Benchmark
+    public TransactionResponse lean() throws ISOException {
+        return converter.isoToResponse(response);
+    }
+
+    @Benchmark
+    public TransactionResponse legacy() throws ISOException {
+        ISOMsg isoMsg = response;
+        String responseCode = isoMsg.hasField(39) ? isoMsg.getString(39) : "96";
+        ResponseCode rc = ResponseCode.SYSTEM_ERROR;
+        for (ResponseCode candidate : ResponseCode.values()) {
+            if (candidate.getCode().equals(responseCode)) {
+                rc = candidate;
+                break;
+            }
+        }
+
+        TransactionResponse mapped = TransactionResponse.builder()
+                .transactionId(UUID.randomUUID().toString())
+                .rrn(isoMsg.hasField(37) ? isoMsg.getString(37) : null)
+                .stan(isoMsg.hasField(11) ? isoMsg.getString(11) : null)
+                .authCode(isoMsg.hasField(38) ? isoMsg.getString(38)
+                        : String.format("%06d", new Random().nextInt(999999)))
+                .responseCode(responseCode)
+                .responseMessage(rc.getMessage())
+                .approved("00".equals(responseCode))
+                .status("00".equals(responseCode) ? "SUCCESS" : "FAILED")
+                .processingTime(System.currentTimeMillis())
+                .hostResponseCode(responseCode)
+                .build();
+
+        if (isoMsg.hasField(2)) {
+            mapped.setCardNumber(isoMsg.getString(2));
+        }
+        if (isoMsg.hasField(4)) {
+            mapped.setAmount(iso8583Util.parseAmount(isoMsg.getString(4), isoMsg.getString(49)));
+        }
+        if (isoMsg.hasField(41)) {
+            mapped.setTerminalId(isoMsg.getString(41));
+        }
+        if (isoMsg.hasField(42)) {
+            mapped.setMerchantId(isoMsg.getString(42));
+        }
+        if (isoMsg.hasField(49)) {
+            mapped.setCurrencyCode(isoMsg.getString(49));
+        }
+        return mapped;
+    }
+}
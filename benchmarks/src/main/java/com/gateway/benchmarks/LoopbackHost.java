@@ -0,0 +1,88 @@
+package com.gateway.benchmarks;
+
+import com.gateway.iso8583.CustomPackager;
+import org.jpos.iso.ISOMsg;
+
+import javax.net.ssl.SSLContext;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal in-process host: one thread per connection, 2-byte length framing, approves everything.
+ * Optionally speaks TLS with the server side of the given context.
+ */
+final class LoopbackHost implements AutoCloseable {
+
+    private final CustomPackager packager;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "loopback-host");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    LoopbackHost(CustomPackager packager) throws IOException {
+        this(packager, null);
+    }
+
+    LoopbackHost(CustomPackager packager, SSLContext tls) throws IOException {
+        this.packager = packager;
+        this.serverSocket = tls != null
+                ? tls.getServerSocketFactory().createServerSocket(0, 128, InetAddress.getLoopbackAddress())
+                : new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(s.getInputStream());
+             DataOutputStream out = new DataOutputStream(s.getOutputStream())) {
+            while (true) {
+                byte[] request = new byte[in.readUnsignedShort()];
+                in.readFully(request);
+
+                ISOMsg msg = packager.unpack(request);
+                msg.setResponseMTI();
+                msg.set(39, "00");
+                byte[] response = packager.pack(msg);
+
+                byte[] frame = new byte[2 + response.length];
+                frame[0] = (byte) (response.length >> 8);
+                frame[1] = (byte) response.length;
+                System.arraycopy(response, 0, frame, 2, response.length);
+                out.write(frame);
+                out.flush();
+            }
+        } catch (Exception e) {
+            // connection closed by the client
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,52 @@
+package com.gateway.benchmarks;
+
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.service.Iso8583Converter;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CustomPackager} pack of a converter-built 0200 and unpack of a 0210.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PackagerBenchmark {
+
+    private CustomPackager packager;
+    private ISOMsg request;
+    private byte[] packedResponse;
+
+    @Setup
+    public void setUp() throws ISOException {
+        packager = Fixtures.packager();
+        Iso8583Converter converter = Fixtures.converter(packager);
+        request = converter.requestToIso(Fixtures.debitRequest());
+        packedResponse = packager.pack(Fixtures.approvedResponse(packager));
+    }
+
+    @Benchmark
+    public byte[] pack0200() throws ISOException {
+        return packager.pack(request);
+    }
+
+    @Benchmark
+    public ISOMsg unpack0210() throws ISOException {
+        return packager.unpack(packedResponse);
+    }
+}
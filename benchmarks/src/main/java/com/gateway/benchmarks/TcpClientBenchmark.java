@@ -0,0 +1,100 @@
+package com.gateway.benchmarks;
+
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.tcp.IsoTcpClient;
+import com.gateway.util.Iso8583Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IsoTcpClient#sendRequest} against {@link LoopbackHost} at several concurrency levels.
+ * Throughput and sampled latency are reported together; the pool is sized for the widest level.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TcpClientBenchmark {
+
+    private LoopbackHost host;
+    private IsoTcpClient client;
+    private Iso8583Converter converter;
+
+    // ISOMsg.pack recalculates the bitmap in place, so each thread needs its own message
+    @State(Scope.Thread)
+    public static class ThreadRequest {
+        ISOMsg request;
+
+        @Setup(Level.Trial)
+        public void setUp(TcpClientBenchmark benchmark) throws ISOException {
+            request = benchmark.converter.requestToIso(Fixtures.debitRequest());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ISOException {
+        CustomPackager packager = Fixtures.packager();
+        host = new LoopbackHost(packager);
+
+        TcpConfig tcpConfig = new TcpConfig();
+        tcpConfig.setHost("127.0.0.1");
+        tcpConfig.setPort(host.getPort());
+        tcpConfig.setMinConnections(16);
+        tcpConfig.setMaxConnections(16);
+        tcpConfig.setRetryAttempts(1);
+
+        client = new IsoTcpClient(tcpConfig, packager, new Iso8583Util(),
+                new GatewayMetrics(new SimpleMeterRegistry()), new MacService(new MacConfig(), packager));
+        client.init();
+
+        converter = Fixtures.converter(packager);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.shutdown();
+        host.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ISOMsg sendRequest_1(ThreadRequest state) throws IOException, ISOException {
+        return client.sendRequest(state.request);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ISOMsg sendRequest_4(ThreadRequest state) throws IOException, ISOException {
+        return client.sendRequest(state.request);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public ISOMsg sendRequest_16(ThreadRequest state) throws IOException, ISOException {
+        return client.sendRequest(state.request);
+    }
+}
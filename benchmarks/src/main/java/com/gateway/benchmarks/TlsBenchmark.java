@@ -0,0 +1,176 @@
+package com.gateway.benchmarks;
+
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.tcp.IsoTcpClient;
+import com.gateway.tcp.TlsConnector;
+import com.gateway.util.Iso8583Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TLS cost on the host link against a local TLS {@link LoopbackHost}: one request/response over a
+ * pooled plaintext socket versus a pooled TLS socket (record overhead), and opening a connection
+ * plus its first exchange with a full handshake versus a resumed one (what a pool refill pays).
+ * The exchange is part of the handshake benchmarks because TLS 1.3 tickets arrive after the
+ * handshake and are only read in with the first response; each ticket is used once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TlsBenchmark {
+
+    private Path keyStore;
+    private LoopbackHost plainHost;
+    private LoopbackHost tlsHost;
+    private IsoTcpClient plainClient;
+    private IsoTcpClient tlsClient;
+    private TcpConfig tlsConfig;
+    private TlsConnector resumingConnector;
+    private InetSocketAddress tlsAddress;
+    private ISOMsg plainRequest;
+    private ISOMsg tlsRequest;
+    private byte[] framedRequest;
+
+    // a connector with an empty session cache, so every handshake is a full one
+    @State(Scope.Thread)
+    public static class FreshConnector {
+        TlsConnector connector;
+
+        @Setup(Level.Invocation)
+        public void setUp(TlsBenchmark benchmark) throws IOException {
+            connector = TlsConnector.create(benchmark.tlsConfig);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, GeneralSecurityException, ISOException {
+        CustomPackager packager = Fixtures.packager();
+        keyStore = Fixtures.selfSignedKeyStore();
+        plainHost = new LoopbackHost(packager);
+        tlsHost = new LoopbackHost(packager, serverContext(keyStore));
+
+        tlsConfig = config(tlsHost.getPort());
+        tlsConfig.setTlsEnabled(true);
+        tlsConfig.setTlsTrustStore(keyStore.toString());
+        tlsConfig.setTlsTrustStorePassword(Fixtures.KEY_STORE_PASSWORD);
+        tlsAddress = new InetSocketAddress("localhost", tlsHost.getPort());
+
+        plainClient = client(config(plainHost.getPort()), packager);
+        tlsClient = client(tlsConfig, packager);
+        plainRequest = Fixtures.converter(packager).requestToIso(Fixtures.debitRequest());
+        tlsRequest = Fixtures.converter(packager).requestToIso(Fixtures.debitRequest());
+        byte[] packed = packager.pack(Fixtures.converter(packager).requestToIso(Fixtures.debitRequest()));
+        framedRequest = new byte[2 + packed.length];
+        framedRequest[0] = (byte) (packed.length >> 8);
+        framedRequest[1] = (byte) packed.length;
+        System.arraycopy(packed, 0, framedRequest, 2, packed.length);
+
+        resumingConnector = TlsConnector.create(tlsConfig);
+        connectAndExchange(resumingConnector);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        plainClient.shutdown();
+        tlsClient.shutdown();
+        plainHost.close();
+        tlsHost.close();
+        Files.deleteIfExists(keyStore);
+    }
+
+    @Benchmark
+    public ISOMsg exchangePlain() throws IOException, ISOException {
+        return plainClient.sendRequest(plainRequest);
+    }
+
+    @Benchmark
+    public ISOMsg exchangeTls() throws IOException, ISOException {
+        return tlsClient.sendRequest(tlsRequest);
+    }
+
+    @Benchmark
+    public int connectFullHandshake(FreshConnector fresh) throws IOException {
+        return connectAndExchange(fresh.connector);
+    }
+
+    @Benchmark
+    public int connectResumedHandshake() throws IOException {
+        return connectAndExchange(resumingConnector);
+    }
+
+    private int connectAndExchange(TlsConnector connector) throws IOException {
+        Socket plain = new Socket();
+        plain.setTcpNoDelay(true);
+        plain.connect(tlsAddress, 5000);
+        try (Socket socket = connector.handshake(plain, tlsAddress, 5000)) {
+            socket.getOutputStream().write(framedRequest);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] response = new byte[in.readUnsignedShort()];
+            in.readFully(response);
+            return response.length;
+        }
+    }
+
+    private static TcpConfig config(int port) {
+        TcpConfig config = new TcpConfig();
+        config.setHost("localhost");
+        config.setPort(port);
+        config.setMinConnections(1);
+        config.setMaxConnections(1);
+        config.setRetryAttempts(1);
+        return config;
+    }
+
+    private static IsoTcpClient client(TcpConfig config, CustomPackager packager) {
+        IsoTcpClient client = new IsoTcpClient(config, packager, new Iso8583Util(),
+                new GatewayMetrics(new SimpleMeterRegistry()), new MacService(new MacConfig(), packager));
+        client.init();
+        return client;
+    }
+
+    private static SSLContext serverContext(Path keyStore) throws IOException, GeneralSecurityException {
+        char[] password = Fixtures.KEY_STORE_PASSWORD.toCharArray();
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStore)) {
+            store.load(in, password);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(store, password);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+}
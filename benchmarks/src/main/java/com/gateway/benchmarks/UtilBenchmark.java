@@ -0,0 +1,45 @@
+package com.gateway.benchmarks;
+
+import com.gateway.util.Iso8583Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field formatting and numbering helpers called for every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class UtilBenchmark {
+
+    private final Iso8583Util iso8583Util = new Iso8583Util();
+    private final BigDecimal amount = new BigDecimal("125.40");
+
+    @Benchmark
+    public String formatAmount() {
+        return iso8583Util.formatAmount(amount, "USD");
+    }
+
+    @Benchmark
+    public String generateStan() {
+        return iso8583Util.generateStan();
+    }
+
+    @Benchmark
+    public String generateRRN() {
+        return iso8583Util.generateRRN();
+    }
+}
@@ -1,49 +1,176 @@
 package com.gateway.util;
 
+import com.gateway.cluster.ClusterConfig;
 import lombok.extern.log4j.Log4j2;
 import org.jpos.iso.ISOException;
 import org.jpos.iso.ISOMsg;
 import org.jpos.iso.ISOUtil;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.Currency;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 @Log4j2
 public class Iso8583Util {
     
     private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("MMddHHmmss");
-    private final Random random = new Random();
+    private static final int MAX_STAN = 999999;
+    // ISO 4217 minor unit digits indexed by numeric code, -1 where unknown
+    private static final int[] DIGITS_BY_NUMBER = new int[1000];
+
+    static {
+        Arrays.fill(DIGITS_BY_NUMBER, -1);
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int number = currency.getNumericCode();
+            if (number > 0 && number < DIGITS_BY_NUMBER.length) {
+                DIGITS_BY_NUMBER[number] = currency.getDefaultFractionDigits();
+            }
+        }
+    }
+
+    // STANs are 1 + nodeId + nodeCount * n, so every node draws from its own residue class
+    private final int nodeId;
+    private final int nodeCount;
+    private final int slots;
+    private final AtomicLong stanSequence;
+
+    public Iso8583Util() {
+        this(0, 1);
+    }
+
+    @Autowired
+    public Iso8583Util(ClusterConfig clusterConfig) {
+        this(clusterConfig.isEnabled() ? clusterConfig.getNodeId() : 0,
+                clusterConfig.isEnabled() ? clusterConfig.getNodeCount() : 1);
+    }
+
+    Iso8583Util(int nodeId, int nodeCount) {
+        if (nodeCount < 1 || nodeId < 0 || nodeId >= nodeCount) {
+            throw new IllegalArgumentException("Node id must be in [0, " + nodeCount + ")");
+        }
+        this.nodeId = nodeId;
+        this.nodeCount = nodeCount;
+        this.slots = MAX_STAN / nodeCount;
+        // random start so a restarted node does not reissue the STANs it used just before
+        this.stanSequence = new AtomicLong(ThreadLocalRandom.current().nextInt(slots));
+    }
     
     public String generateStan() {
-        return String.format("%06d", random.nextInt(999999));
+        int slot = (int) Math.floorMod(stanSequence.getAndIncrement(), (long) slots);
+        return zeroPad(1 + nodeId + nodeCount * slot, 6);
     }
     
     public String generateRRN() {
-        long timestamp = System.currentTimeMillis() % 1000000000000L;
-        return String.format("%012d", timestamp);
+        return generateRRN(generateStan());
+    }
+
+    /**
+     * RRN as YDDDhh followed by the STAN, so it carries its owner and is unique for as long as the
+     * STANs do not wrap within the hour. The nodes share 999,999 STANs, so that holds up to about
+     * 277 STANs a second across the cluster (each transaction, reversal and advice takes one);
+     * above that an RRN repeats within the hour and {@link com.gateway.service.PendingReversalStore}
+     * refuses to take the second transaction for reversal.
+     */
+    public String generateRRN(String stan) {
+        LocalDateTime now = LocalDateTime.now();
+        return new StringBuilder(12)
+                .append(now.getYear() % 10)
+                .append(zeroPad(now.getDayOfYear(), 3))
+                .append(zeroPad(now.getHour(), 2))
+                .append(stan)
+                .toString();
+    }
+
+    /**
+     * @return the node that issued a STAN or an RRN built by {@link #generateRRN(String)}
+     */
+    public int ownerOf(String stanOrRrn) {
+        int length = stanOrRrn.length();
+        int stan = 0;
+        for (int i = Math.max(0, length - 6); i < length; i++) {
+            char c = stanOrRrn.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            stan = stan * 10 + (c - '0');
+        }
+        return stan == 0 ? -1 : (stan - 1) % nodeCount;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    private static String zeroPad(int value, int width) {
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
     }
     
     public String generateRequestId() {
         return UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
     }
     
-    public String formatAmount(BigDecimal amount) {
+    /**
+     * Formats an amount as 12 digits in the minor units of its currency, as field 4 and the amounts
+     * of field 54 carry it.
+     *
+     * @throws ArithmeticException if the amount has more decimals than the currency
+     */
+    public String formatAmount(BigDecimal amount, String currencyCode) {
         if (amount == null) {
             return "000000000000";
         }
-        String amountStr = amount.multiply(new BigDecimal("100"))
-            .setScale(0).toString();
-        return String.format("%012d", Long.parseLong(amountStr));
+        long minor = amount.movePointRight(minorUnitDigits(currencyCode)).setScale(0).longValueExact();
+        return String.format("%012d", minor);
+    }
+
+    /**
+     * Converts an amount to the minor units of its currency: cents for USD, yen for JPY, fils for
+     * BHD. Codes that are not ISO 4217 currencies, or have no minor unit defined, use two decimals.
+     * Alphabetic (USD) and numeric (840) codes are both accepted.
+     */
+    public static long toMinorUnits(BigDecimal amount, String currencyCode) {
+        return amount.movePointRight(minorUnitDigits(currencyCode)).longValue();
+    }
+
+    public static int minorUnitDigits(String currencyCode) {
+        if (currencyCode == null) {
+            return 2;
+        }
+        if (currencyCode.length() == 3 && Character.isDigit(currencyCode.charAt(0))) {
+            try {
+                int digits = DIGITS_BY_NUMBER[Integer.parseInt(currencyCode)];
+                return digits >= 0 ? digits : 2;
+            } catch (NumberFormatException e) {
+                return 2;
+            }
+        }
+        try {
+            int digits = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+            return digits >= 0 ? digits : 2;
+        } catch (IllegalArgumentException e) {
+            return 2;
+        }
     }
     
-    public BigDecimal parseAmount(String amountStr) {
+    /**
+     * The inverse of {@link #formatAmount}: minor units of the currency back to an amount.
+     */
+    public BigDecimal parseAmount(String amountStr, String currencyCode) {
         try {
-            return new BigDecimal(amountStr).divide(new BigDecimal("100"));
+            return BigDecimal.valueOf(Long.parseLong(amountStr), minorUnitDigits(currencyCode));
         } catch (Exception e) {
             return BigDecimal.ZERO;
         }
@@ -54,6 +181,9 @@ public class Iso8583Util {
     }
     
     public void logISOMsg(ISOMsg isoMsg) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
         try {
             StringBuilder sb = new StringBuilder();
             sb.append("\n=== ISO8583 Message ===\n");
@@ -0,0 +1,44 @@
+package com.gateway.util;
+
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transaction id source for the response path.
+ * Ids are 32 hex characters: a per-instance prefix (start time plus a random salt, drawn once)
+ * followed by a monotonically increasing counter, so they never repeat within an instance and
+ * collide across instances only if two start in the same millisecond with the same salt.
+ */
+@Component
+public class TransactionIdGenerator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long prefix;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public TransactionIdGenerator() {
+        this(System.currentTimeMillis(), new SecureRandom().nextInt() & 0xFFFF);
+    }
+
+    TransactionIdGenerator(long startMillis, int salt) {
+        this.prefix = (startMillis << 16) | (salt & 0xFFFF);
+    }
+
+    public String nextId() {
+        long seq = sequence.incrementAndGet();
+        char[] buf = new char[32];
+        writeHex(buf, 0, prefix);
+        writeHex(buf, 16, seq);
+        return new String(buf);
+    }
+
+    private static void writeHex(char[] buf, int offset, long value) {
+        for (int i = offset + 15; i >= offset; i--) {
+            buf[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.gateway.acquirer;
+
+import com.gateway.config.TcpConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.acquirer")
+@SuppressWarnings("unused")
+public class AcquirerConfig {
+    // Additional acquirers; gateway.tcp, gateway.iso.packager and gateway.iso.mapping are always
+    // the "default" profile, which takes whatever no route claims
+    private List<Profile> profiles = new ArrayList<>();
+
+    public List<Profile> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(List<Profile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public static class Profile {
+        private String name;
+        private String packager = "classpath:iso8583/iso-packager.xml";
+        private String mapping = "classpath:iso8583/field-mapping.txt";
+        // Host, pool, framing and TLS; unset keys take the TcpConfig defaults, not gateway.tcp
+        private TcpConfig tcp = new TcpConfig();
+        // Exact merchant ids and currency codes routed here; BIN ranges are routed by the route
+        // column of the BIN file naming this profile
+        private List<String> merchants = new ArrayList<>();
+        private List<String> currencies = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPackager() {
+            return packager;
+        }
+
+        public void setPackager(String packager) {
+            this.packager = packager;
+        }
+
+        public String getMapping() {
+            return mapping;
+        }
+
+        public void setMapping(String mapping) {
+            this.mapping = mapping;
+        }
+
+        public TcpConfig getTcp() {
+            return tcp;
+        }
+
+        public void setTcp(TcpConfig tcp) {
+            this.tcp = tcp;
+        }
+
+        public List<String> getMerchants() {
+            return merchants;
+        }
+
+        public void setMerchants(List<String> merchants) {
+            this.merchants = merchants;
+        }
+
+        public List<String> getCurrencies() {
+            return currencies;
+        }
+
+        public void setCurrencies(List<String> currencies) {
+            this.currencies = currencies;
+        }
+    }
+}
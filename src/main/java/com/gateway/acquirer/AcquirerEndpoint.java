@@ -0,0 +1,41 @@
+package com.gateway.acquirer;
+
+import com.gateway.tcp.IsoTcpClient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-acquirer pool state and routed request counts at {@code /actuator/acquirers}. The default
+ * profile's pool is tuned through {@code /actuator/tcp}.
+ */
+@Component
+@Endpoint(id = "acquirers")
+@RequiredArgsConstructor
+public class AcquirerEndpoint {
+
+    private final AcquirerRegistry acquirers;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (AcquirerProfile profile : acquirers.getProfiles()) {
+            IsoTcpClient client = profile.getClient();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("host", String.valueOf(client.getHostAddress()));
+            entry.put("routed", profile.getRoutedCount());
+            entry.put("inFlight", client.getInFlightCount());
+            entry.put("openConnections", client.getTotalConnections());
+            entry.put("idleConnections", client.getIdleConnections());
+            entry.put("maxConnections", client.getMaxConnections());
+            entry.put("lateResponsesPending", client.getLateResponsesPending());
+            entry.put("tls", client.getTlsConnector() != null);
+            status.put(profile.getName(), entry);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,57 @@
+package com.gateway.acquirer;
+
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mapping.FieldMapping;
+import com.gateway.tcp.IsoTcpClient;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything needed to talk to one acquirer: its packager, field mapping and connection pool.
+ * Built once at startup and shared by every request routed to it.
+ */
+public final class AcquirerProfile {
+
+    private final String name;
+    private final CustomPackager packager;
+    private final FieldMapping mapping;
+    private final IsoTcpClient client;
+    private final LongAdder routed = new LongAdder();
+
+    AcquirerProfile(String name, CustomPackager packager, FieldMapping mapping, IsoTcpClient client) {
+        this.name = name;
+        this.packager = packager;
+        this.mapping = mapping;
+        this.client = client;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CustomPackager getPackager() {
+        return packager;
+    }
+
+    public FieldMapping getMapping() {
+        return mapping;
+    }
+
+    public IsoTcpClient getClient() {
+        return client;
+    }
+
+    public long getRoutedCount() {
+        return routed.sum();
+    }
+
+    AcquirerProfile countRouted() {
+        routed.increment();
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,199 @@
+package com.gateway.acquirer;
+
+import com.gateway.bin.BinRangeRepository;
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacService;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.mapping.FieldMapping;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.tcp.IsoTcpClient;
+import com.gateway.util.Iso8583Util;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOMsg;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The acquirers this gateway talks to and the routing between them. The gateway's own
+ * {@link IsoTcpClient}, packager and mapping form the {@value #DEFAULT} profile; each configured
+ * profile gets its own packager, mapping and connection pool, all built here once at startup.
+ * Profiles naming the same packager or mapping file share one compiled instance.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class AcquirerRegistry {
+
+    public static final String DEFAULT = "default";
+
+    private final AcquirerConfig acquirerConfig;
+    private final IsoTcpClient defaultClient;
+    private final CustomPackager defaultPackager;
+    private final FieldMapper fieldMapper;
+    private final BinRangeRepository binRangeRepository;
+    private final ResourceLoader resourceLoader;
+    private final Iso8583Util iso8583Util;
+    private final GatewayMetrics gatewayMetrics;
+    private final MacService macService;
+
+    private AcquirerProfile defaultProfile;
+    private List<AcquirerProfile> profiles = Collections.emptyList();
+    // null while the default profile is the only one
+    private RoutingTable routes;
+
+    @PostConstruct
+    public void init() {
+        defaultProfile = new AcquirerProfile(DEFAULT, defaultPackager, fieldMapper.getMapping(), defaultClient);
+        List<AcquirerProfile> all = new ArrayList<>();
+        all.add(defaultProfile);
+        if (acquirerConfig.getProfiles().isEmpty()) {
+            profiles = Collections.unmodifiableList(all);
+            return;
+        }
+
+        RoutingTable table = new RoutingTable(defaultProfile);
+        Map<String, CustomPackager> packagers = new HashMap<>();
+        Map<String, FieldMapping> mappings = new HashMap<>();
+        // profiles on the gateway's own files share its instances, fallback included
+        packagers.put(defaultPackager.getPackagerConfig(), defaultPackager);
+        mappings.put(fieldMapper.getLocation(), fieldMapper.getMapping());
+        try {
+            for (AcquirerConfig.Profile config : acquirerConfig.getProfiles()) {
+                AcquirerProfile profile = build(config, packagers, mappings);
+                all.add(profile);
+                table.addProfile(profile);
+                config.getMerchants().forEach(merchant -> table.addMerchant(merchant, profile));
+                config.getCurrencies().forEach(currency -> table.addCurrency(currency, profile));
+                log.info("Acquirer {} at {}:{}: {} merchants, {} currencies, packager {}, mapping {}",
+                        profile, config.getTcp().getHost(), config.getTcp().getPort(), config.getMerchants().size(),
+                        config.getCurrencies().size(), config.getPackager(), config.getMapping());
+            }
+        } catch (RuntimeException e) {
+            // close the pools opened so far before refusing to start
+            all.stream().filter(p -> p != defaultProfile).forEach(p -> p.getClient().shutdown());
+            throw e instanceof IllegalStateException ? e : new IllegalStateException(e.getMessage(), e);
+        }
+        profiles = Collections.unmodifiableList(all);
+        routes = table;
+    }
+
+    private AcquirerProfile build(AcquirerConfig.Profile config, Map<String, CustomPackager> packagers,
+                                  Map<String, FieldMapping> mappings) {
+        String name = config.getName();
+        if (name == null || name.isEmpty()) {
+            throw new IllegalStateException("Every acquirer profile needs a name");
+        }
+        CustomPackager packager = packagers.computeIfAbsent(config.getPackager(), location -> {
+            CustomPackager loaded = new CustomPackager(resourceLoader, "custom", location);
+            loaded.init();
+            if (loaded.getFallbackReason() != null) {
+                // a silent fallback would put the wrong layout on this acquirer's wire
+                throw new IllegalStateException("Acquirer " + name + ": cannot load packager " + location
+                        + ": " + loaded.getFallbackReason());
+            }
+            return loaded;
+        });
+        FieldMapping mapping = mappings.computeIfAbsent(config.getMapping(),
+                location -> FieldMapper.load(resourceLoader, location));
+        TcpConfig tcp = config.getTcp();
+        IsoTcpClient client = new IsoTcpClient(tcp, packager, iso8583Util, gatewayMetrics, macService);
+        client.init();
+        return new AcquirerProfile(name, packager, mapping, client);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // the default client is a bean of its own and closes itself
+        for (AcquirerProfile profile : profiles) {
+            if (profile != defaultProfile) {
+                profile.getClient().shutdown();
+            }
+        }
+    }
+
+    public AcquirerProfile route(TransactionRequest request) {
+        RoutingTable table = routes;
+        if (table == null) {
+            return defaultProfile.countRouted();
+        }
+        return table.route(request.getMerchantId(), request.getCardNumber(), request.getCurrencyCode(),
+                binRangeRepository.current()).countRouted();
+    }
+
+    /**
+     * Routes an already built message by its fields 42, 2 and 49, e.g. a queued advice.
+     */
+    public AcquirerProfile route(ISOMsg msg) {
+        RoutingTable table = routes;
+        if (table == null) {
+            return defaultProfile;
+        }
+        return table.route(msg.getString(42), msg.getString(2), msg.getString(49), binRangeRepository.current());
+    }
+
+    /**
+     * @return the named profile, or the default one if there is no such profile
+     */
+    public AcquirerProfile getProfile(String name) {
+        RoutingTable table = routes;
+        AcquirerProfile profile = table != null && name != null ? table.byName(name) : null;
+        return profile != null ? profile : defaultProfile;
+    }
+
+    public AcquirerProfile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    /**
+     * @return every profile, the default one first
+     */
+    public List<AcquirerProfile> getProfiles() {
+        return profiles;
+    }
+
+    public int getMaxConnections() {
+        int total = 0;
+        for (AcquirerProfile profile : profiles) {
+            total += profile.getClient().getMaxConnections();
+        }
+        return total;
+    }
+
+    public int getInFlightCount() {
+        int total = 0;
+        for (AcquirerProfile profile : profiles) {
+            total += profile.getClient().getInFlightCount();
+        }
+        return total;
+    }
+
+    /**
+     * @return {@code true} if no exchange with any acquirer was left before the deadline
+     */
+    public boolean awaitInFlight(long deadlineNanos) throws InterruptedException {
+        boolean done = true;
+        for (AcquirerProfile profile : profiles) {
+            done &= profile.getClient().awaitInFlight(deadlineNanos);
+        }
+        return done;
+    }
+
+    public int abortInFlight() {
+        int aborted = 0;
+        for (AcquirerProfile profile : profiles) {
+            aborted += profile.getClient().abortInFlight();
+        }
+        return aborted;
+    }
+}
@@ -0,0 +1,68 @@
+package com.gateway.acquirer;
+
+import com.gateway.bin.BinTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precomputed acquirer selection: merchant id first, then the route of the card's BIN range, then
+ * currency, then the default. Each step is a single hash lookup (the BIN step adds the table's
+ * binary search), and nothing is allocated per call.
+ */
+final class RoutingTable {
+
+    private final AcquirerProfile fallback;
+    private final Map<String, AcquirerProfile> byMerchant = new HashMap<>();
+    private final Map<String, AcquirerProfile> byRoute = new HashMap<>();
+    private final Map<String, AcquirerProfile> byCurrency = new HashMap<>();
+
+    RoutingTable(AcquirerProfile fallback) {
+        this.fallback = fallback;
+        byRoute.put(fallback.getName(), fallback);
+    }
+
+    void addProfile(AcquirerProfile profile) {
+        claim(byRoute, profile.getName(), profile, "Acquirer name");
+    }
+
+    void addMerchant(String merchantId, AcquirerProfile profile) {
+        claim(byMerchant, merchantId, profile, "Merchant");
+    }
+
+    void addCurrency(String currencyCode, AcquirerProfile profile) {
+        claim(byCurrency, currencyCode, profile, "Currency");
+    }
+
+    AcquirerProfile route(String merchantId, CharSequence pan, String currencyCode, BinTable bins) {
+        AcquirerProfile profile;
+        if (merchantId != null && (profile = byMerchant.get(merchantId)) != null) {
+            return profile;
+        }
+        int bin = bins.find(pan);
+        if (bin >= 0) {
+            String route = bins.route(bin);
+            if (route != null && (profile = byRoute.get(route)) != null) {
+                return profile;
+            }
+        }
+        if (currencyCode != null && (profile = byCurrency.get(currencyCode)) != null) {
+            return profile;
+        }
+        return fallback;
+    }
+
+    AcquirerProfile byName(String name) {
+        return byRoute.get(name);
+    }
+
+    private static void claim(Map<String, AcquirerProfile> routes, String key, AcquirerProfile profile, String what) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException(what + " routed to " + profile + " is empty");
+        }
+        AcquirerProfile previous = routes.putIfAbsent(key, profile);
+        if (previous != null) {
+            throw new IllegalArgumentException(what + " " + key + " is claimed by both " + previous + " and " + profile);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.gateway.admission;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.admission")
+@SuppressWarnings("unused")
+public class AdmissionConfig {
+    private boolean enabled = true;
+    // 0 means "use gateway.tcp.max-connections"
+    private int maxConcurrent = 0;
+    private int targetDelay = 50;
+    private int interval = 500;
+    private int maxQueueTime = 1000;
+    private int retryAfter = 1000;
+    private int defaultClientTimeout = 30000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getTargetDelay() {
+        return targetDelay;
+    }
+
+    public void setTargetDelay(int targetDelay) {
+        this.targetDelay = targetDelay;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    public int getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    public void setMaxQueueTime(int maxQueueTime) {
+        this.maxQueueTime = maxQueueTime;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public int getDefaultClientTimeout() {
+        return defaultClientTimeout;
+    }
+
+    public void setDefaultClientTimeout(int defaultClientTimeout) {
+        this.defaultClientTimeout = defaultClientTimeout;
+    }
+}
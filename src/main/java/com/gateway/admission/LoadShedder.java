@@ -0,0 +1,302 @@
+package com.gateway.admission;
+
+import com.gateway.acquirer.AcquirerConfig;
+import com.gateway.config.TcpConfig;
+import com.gateway.model.enums.ResponseCode;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * CoDel-style admission control in front of the host link.
+ * Callers queue for a permit here instead of inside the TCP pool; once the queueing delay has
+ * stayed above the target for a whole interval, new work is only admitted while a permit is free
+ * and nobody is queued for one. A single probe request at a time still queues, so the delay keeps
+ * being measured; the dropping state ends when a probe gets through under the target, or when no
+ * request has had to queue for a whole interval. Requests whose client deadline passes while
+ * queued are dropped before any host work.
+ */
+@Component
+@Log4j2
+public class LoadShedder {
+
+    private static final Permit NO_OP_PERMIT = () -> { };
+
+    private final AdmissionConfig config;
+    private final ResizableSemaphore permits;
+    private final LongSupplier clock;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    // guarded by permits
+    private int maxConcurrent;
+
+    // connections of acquirer profiles besides the default one
+    private final int otherPools;
+
+    // CoDel state, guarded by this
+    private long firstAboveTime;
+    private long lastAboveTime;
+    private volatile boolean dropping;
+    // a request queued while dropping, to measure the delay
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile boolean draining;
+
+    @Autowired
+    public LoadShedder(AdmissionConfig config, TcpConfig tcpConfig, AcquirerConfig acquirerConfig) {
+        this(config, acquirerConnections(acquirerConfig), config.getMaxConcurrent() > 0 ? config.getMaxConcurrent()
+                : tcpConfig.getMaxConnections() + acquirerConnections(acquirerConfig), System::nanoTime);
+    }
+
+    LoadShedder(AdmissionConfig config, int maxConcurrent, LongSupplier clock) {
+        this(config, 0, maxConcurrent, clock);
+    }
+
+    private LoadShedder(AdmissionConfig config, int otherPools, int maxConcurrent, LongSupplier clock) {
+        this.config = config;
+        this.otherPools = otherPools;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new ResizableSemaphore(this.maxConcurrent);
+        this.clock = clock;
+    }
+
+    /**
+     * Admits one unit of work or fails fast.
+     *
+     * @param deadlineNanos client deadline on the {@link System#nanoTime()} scale
+     * @return a permit that must be closed once the host exchange is over
+     * @throws LoadSheddingException when the request is shed or its deadline has passed
+     */
+    public Permit admit(long deadlineNanos) {
+        if (draining) {
+            shed.incrementAndGet();
+            throw new LoadSheddingException(ResponseCode.ISSUER_UNAVAILABLE, config.getRetryAfter(), "Gateway draining");
+        }
+        if (!config.isEnabled()) {
+            return NO_OP_PERMIT;
+        }
+
+        long enqueuedAt = clock.getAsLong();
+        if (deadlineNanos - enqueuedAt <= 0) {
+            throw expired();
+        }
+
+        if (dropping) {
+            if (tryAcquireNow()) {
+                // nothing was measured, so this alone does not end the dropping state
+                onAdmittedWhileDropping(enqueuedAt);
+                return admitted();
+            }
+            if (!probing.compareAndSet(false, true)) {
+                throw overloaded();
+            }
+            try {
+                return queue(deadlineNanos, enqueuedAt);
+            } finally {
+                probing.set(false);
+            }
+        }
+        return queue(deadlineNanos, enqueuedAt);
+    }
+
+    public long deadlineFromTimeout(Long clientTimeoutMillis) {
+        long timeout = clientTimeoutMillis != null && clientTimeoutMillis > 0
+                ? clientTimeoutMillis
+                : config.getDefaultClientTimeout();
+        return clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Follows a resize of the default host pool when no explicit {@code maxConcurrent} is configured.
+     * The pools of other acquirer profiles are fixed and stay counted.
+     */
+    public void onPoolResized(int maxConnections) {
+        if (config.getMaxConcurrent() <= 0) {
+            setMaxConcurrent(maxConnections + otherPools);
+        }
+    }
+
+    /**
+     * Shrinking takes effect as in-flight permits are returned; nothing already admitted is revoked.
+     */
+    public void setMaxConcurrent(int limit) {
+        int target = Math.max(1, limit);
+        synchronized (permits) {
+            int delta = target - maxConcurrent;
+            if (delta > 0) {
+                permits.release(delta);
+            } else if (delta < 0) {
+                permits.reducePermits(-delta);
+            }
+            maxConcurrent = target;
+        }
+    }
+
+    public int getMaxConcurrent() {
+        synchronized (permits) {
+            return maxConcurrent;
+        }
+    }
+
+    /**
+     * Sheds work turned away before it reached {@link #admit}, such as by a full queue.
+     */
+    public LoadSheddingException reject(String reason) {
+        shed.incrementAndGet();
+        return new LoadSheddingException(ResponseCode.ISSUER_UNAVAILABLE, config.getRetryAfter(), reason);
+    }
+
+    /**
+     * Rejects all new work from now on, whether or not admission control is enabled.
+     */
+    public void beginDrain() {
+        draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public boolean isDropping() {
+        return dropping;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    private Permit queue(long deadlineNanos, long enqueuedAt) {
+        long maxWait = Math.min(TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueTime()), deadlineNanos - enqueuedAt);
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        }
+
+        long now = clock.getAsLong();
+        onSojourn(now - enqueuedAt, now);
+
+        if (!acquired) {
+            if (deadlineNanos - now <= 0) {
+                throw expired();
+            }
+            throw overloaded();
+        }
+
+        if (deadlineNanos - now <= 0) {
+            permits.release();
+            throw expired();
+        }
+
+        return admitted();
+    }
+
+    /**
+     * The timed form honours the semaphore's fairness: unlike {@link Semaphore#tryAcquire()} it
+     * never takes a permit ahead of requests already queued for one.
+     */
+    private boolean tryAcquireNow() {
+        try {
+            return permits.tryAcquire(0L, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized void onAdmittedWhileDropping(long now) {
+        if (dropping && now - lastAboveTime >= TimeUnit.MILLISECONDS.toNanos(config.getInterval())) {
+            dropping = false;
+            firstAboveTime = 0L;
+            log.info("No queueing for {}ms, leaving dropping state", config.getInterval());
+        }
+    }
+
+    private synchronized void onSojourn(long sojournNanos, long now) {
+        if (sojournNanos < TimeUnit.MILLISECONDS.toNanos(config.getTargetDelay())) {
+            firstAboveTime = 0L;
+            if (dropping) {
+                dropping = false;
+                log.info("Queue delay back under target, leaving dropping state");
+            }
+            return;
+        }
+
+        lastAboveTime = now;
+        if (firstAboveTime == 0L) {
+            firstAboveTime = now + TimeUnit.MILLISECONDS.toNanos(config.getInterval());
+        } else if (!dropping && now - firstAboveTime >= 0) {
+            dropping = true;
+            log.warn("Queue delay above {}ms for {}ms, shedding new work", config.getTargetDelay(), config.getInterval());
+        }
+    }
+
+    private Permit admitted() {
+        admitted.incrementAndGet();
+        return permits::release;
+    }
+
+    private LoadSheddingException overloaded() {
+        shed.incrementAndGet();
+        return new LoadSheddingException(ResponseCode.ISSUER_UNAVAILABLE, config.getRetryAfter(), "Gateway overloaded");
+    }
+
+    private LoadSheddingException expired() {
+        expired.incrementAndGet();
+        return new LoadSheddingException(ResponseCode.SYSTEM_ERROR, config.getRetryAfter(), "Client deadline exceeded");
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static int acquirerConnections(AcquirerConfig acquirerConfig) {
+        int total = 0;
+        for (AcquirerConfig.Profile profile : acquirerConfig.getProfiles()) {
+            total += profile.getTcp().getMaxConnections();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,25 @@
+package com.gateway.admission;
+
+import com.gateway.model.enums.ResponseCode;
+
+public class LoadSheddingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ResponseCode responseCode;
+    private final long retryAfterMillis;
+
+    public LoadSheddingException(ResponseCode responseCode, long retryAfterMillis, String message) {
+        super(message, null, false, false);
+        this.responseCode = responseCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public ResponseCode getResponseCode() {
+        return responseCode;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,39 @@
+package com.gateway.balance;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.balance-cache")
+@SuppressWarnings("unused")
+public class BalanceCacheConfig {
+    private boolean enabled = true;
+    // How long an approved balance answer is reused (ms); keep short, the host balance moves
+    private long ttl = 5000;
+    // Cards held; beyond this, expired cards are swept and then arbitrary ones evicted
+    private int maxEntries = 100000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+}
@@ -0,0 +1,215 @@
+package com.gateway.balance;
+
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of approved balance inquiries, keyed by PAN, account type and a salted digest
+ * of the card verification data the caller presented, so only callers that could have made the
+ * same inquiry themselves are served its answer. The verification data itself is never kept.
+ * <p>
+ * The first caller for a key inserts a placeholder and asks the host; identical inquiries that
+ * arrive meanwhile wait for that answer instead of sending their own. Declines and stand-in
+ * answers are shared with those waiters but not kept. {@link #invalidate} drops every account of
+ * a card, including an inquiry still in flight, so a balance read before a debit or credit is
+ * never served after it.
+ */
+@Component
+public class BalanceInquiryCache {
+
+    private static final long LOADING = Long.MIN_VALUE;
+
+    private final BalanceCacheConfig config;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, Card> cards = new ConcurrentHashMap<>();
+    // random per instance, so the digests cannot be looked up across restarts or nodes
+    private final byte[] salt = new byte[16];
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(BalanceInquiryCache::sha256);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    @Autowired
+    public BalanceInquiryCache(BalanceCacheConfig config, GatewayMetrics gatewayMetrics) {
+        this(config, System::nanoTime);
+        gatewayMetrics.gaugeBalanceCache(cards::size, hits::sum, misses::sum, shared::sum);
+    }
+
+    BalanceInquiryCache(BalanceCacheConfig config, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        new SecureRandom().nextBytes(salt);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled() && config.getTtl() > 0;
+    }
+
+    /**
+     * @param verification the card verification data of the inquiry, e.g. expiry date and CVV
+     * @return a private copy of the cached, shared or freshly loaded response
+     */
+    public TransactionResponse get(String pan, String accountType, String verification,
+                                   Supplier<TransactionResponse> loader) {
+        String key = accountType + '/' + digest(verification);
+        while (true) {
+            Card card = cards.get(pan);
+            if (card == null) {
+                Card created = new Card();
+                card = cards.putIfAbsent(pan, created);
+                if (card == null) {
+                    card = created;
+                    enforceBound();
+                }
+            }
+
+            Entry entry = card.accounts.get(key);
+            if (entry != null) {
+                long expiresAt = entry.expiresAt;
+                if (expiresAt == LOADING) {
+                    shared.increment();
+                    return copy(await(entry));
+                }
+                if (clock.getAsLong() - expiresAt < 0) {
+                    hits.increment();
+                    return copy(await(entry));
+                }
+                card.accounts.remove(key, entry);
+                continue;
+            }
+
+            Entry loading = new Entry();
+            if (card.accounts.putIfAbsent(key, loading) != null) {
+                continue;
+            }
+            misses.increment();
+            return copy(load(card, key, loading, loader));
+        }
+    }
+
+    /**
+     * Drops every cached or in-flight balance for the card.
+     */
+    public void invalidate(String pan) {
+        if (pan != null) {
+            cards.remove(pan);
+        }
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    private TransactionResponse load(Card card, String key, Entry entry, Supplier<TransactionResponse> loader) {
+        TransactionResponse response;
+        try {
+            response = loader.get();
+        } catch (RuntimeException e) {
+            card.accounts.remove(key, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (response != null && response.isSuccess() && !"STAND_IN".equals(response.getStatus())) {
+            entry.expiresAt = clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(config.getTtl());
+        } else {
+            card.accounts.remove(key, entry);
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    private String digest(String verification) {
+        MessageDigest digest = digests.get();
+        digest.update(salt);
+        if (verification != null) {
+            digest.update(verification.getBytes(StandardCharsets.UTF_8));
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static TransactionResponse await(Entry entry) {
+        try {
+            return entry.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static TransactionResponse copy(TransactionResponse response) {
+        return response != null ? response.toBuilder().build() : null;
+    }
+
+    /**
+     * Runs on the thread that pushed the cache over its bound; others carry on without waiting.
+     */
+    private void enforceBound() {
+        int max = config.getMaxEntries();
+        if (cards.size() <= max || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = clock.getAsLong();
+            cards.values().removeIf(card -> card.isExpired(now));
+            // still full of live entries: drop a tenth so the next few inserts do not sweep again
+            int target = max - max / 10;
+            Iterator<Map.Entry<String, Card>> it = cards.entrySet().iterator();
+            while (cards.size() > target && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static final class Card {
+
+        private final ConcurrentHashMap<String, Entry> accounts = new ConcurrentHashMap<>(4);
+
+        private boolean isExpired(long now) {
+            for (Entry entry : accounts.values()) {
+                if (entry.expiresAt == LOADING || now - entry.expiresAt < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<TransactionResponse> response = new CompletableFuture<>();
+        private volatile long expiresAt = LOADING;
+    }
+}
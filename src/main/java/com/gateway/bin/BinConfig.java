@@ -0,0 +1,29 @@
+package com.gateway.bin;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.bin")
+@SuppressWarnings("unused")
+public class BinConfig {
+    // Empty means no BIN table; lookups then always miss
+    private String file = "";
+    private long reloadInterval = 60000;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public long getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(long reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+}
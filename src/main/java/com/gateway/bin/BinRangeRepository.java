@@ -0,0 +1,101 @@
+package com.gateway.bin;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Holds the current {@link BinTable} and reloads it when the BIN file changes.
+ * A reload builds a complete new table off to the side and publishes it with a single volatile
+ * write, so lookups never block or see a half-loaded table.
+ * <p>
+ * File format, one range per line: {@code low,high,cardType,issuerCountry,accountType,route}.
+ * Blank lines and lines starting with {@code #} are ignored.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class BinRangeRepository {
+
+    private final BinConfig binConfig;
+
+    private volatile BinTable table = BinTable.empty();
+    private volatile long loadedModifiedTime = -1L;
+
+    @PostConstruct
+    public void init() {
+        reloadIfChanged();
+    }
+
+    /**
+     * Callers must look up and read attributes from the same snapshot.
+     */
+    public BinTable current() {
+        return table;
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.bin.reload-interval:60000}",
+               initialDelayString = "${gateway.bin.reload-interval:60000}")
+    public void reloadIfChanged() {
+        String file = binConfig.getFile();
+        if (file == null || file.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(file);
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == loadedModifiedTime) {
+                return;
+            }
+            long start = System.nanoTime();
+            BinTable loaded = load(path);
+            table = loaded;
+            loadedModifiedTime = modified;
+            log.info("Loaded {} BIN ranges from {} in {}ms", loaded.size(), path,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load BIN file {}, keeping {} existing ranges: {}",
+                    path, table.size(), e.getMessage());
+        }
+    }
+
+    static BinTable load(Path path) throws IOException {
+        BinTable.Builder builder = new BinTable.Builder();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] columns = line.split(",", -1);
+                if (columns.length != 6) {
+                    throw new IOException("Line " + lineNumber + ": expected 6 columns, found " + columns.length);
+                }
+                try {
+                    builder.add(columns[0].trim(), columns[1].trim(), emptyToNull(columns[2]),
+                            emptyToNull(columns[3]), emptyToNull(columns[4]), emptyToNull(columns[5]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static String emptyToNull(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
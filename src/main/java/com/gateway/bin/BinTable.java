@@ -0,0 +1,194 @@
+package com.gateway.bin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable table of non-overlapping BIN/IIN ranges.
+ * <p>
+ * Range bounds are normalised to {@link #KEY_DIGITS} digits (low padded with 0, high with 9) and
+ * kept in parallel primitive arrays sorted by low bound; attributes are dictionary-encoded. A lookup
+ * is a binary search over a {@code long[]} and does not allocate. The returned index is only
+ * meaningful for the table instance that produced it.
+ */
+public final class BinTable {
+
+    public static final int KEY_DIGITS = 12;
+
+    private static final int INDEX_BITS = 23;
+    private static final int MAX_RANGES = (1 << INDEX_BITS) - 1;
+
+    private static final BinTable EMPTY = new Builder().build();
+
+    private final long[] lows;
+    private final long[] highs;
+    private final short[] cardTypes;
+    private final short[] countries;
+    private final short[] accountTypes;
+    private final short[] routes;
+    private final String[] dictionary;
+
+    private BinTable(long[] lows, long[] highs, short[] cardTypes, short[] countries,
+                     short[] accountTypes, short[] routes, String[] dictionary) {
+        this.lows = lows;
+        this.highs = highs;
+        this.cardTypes = cardTypes;
+        this.countries = countries;
+        this.accountTypes = accountTypes;
+        this.routes = routes;
+        this.dictionary = dictionary;
+    }
+
+    public static BinTable empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return lows.length;
+    }
+
+    /**
+     * @return index of the range containing the PAN, or -1
+     */
+    public int find(CharSequence pan) {
+        if (pan == null || lows.length == 0) {
+            return -1;
+        }
+        long key = 0;
+        int length = pan.length();
+        for (int i = 0; i < KEY_DIGITS; i++) {
+            int digit = 0;
+            if (i < length) {
+                digit = pan.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+            }
+            key = key * 10 + digit;
+        }
+
+        int lo = 0;
+        int hi = lows.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lows[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        // hi is now the last range whose low bound is <= key
+        return hi >= 0 && key <= highs[hi] ? hi : -1;
+    }
+
+    public String cardType(int index) {
+        return dictionary[cardTypes[index]];
+    }
+
+    public String issuerCountry(int index) {
+        return dictionary[countries[index]];
+    }
+
+    public String accountType(int index) {
+        return dictionary[accountTypes[index]];
+    }
+
+    public String route(int index) {
+        return dictionary[routes[index]];
+    }
+
+    public static final class Builder {
+
+        private final List<long[]> bounds = new ArrayList<>();
+        private final List<short[]> attributes = new ArrayList<>();
+        private final Map<String, Short> dictionaryIndex = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+
+        public Builder() {
+            encode(null);
+        }
+
+        /**
+         * @param low  lowest BIN prefix of the range, up to {@link #KEY_DIGITS} digits
+         * @param high highest BIN prefix of the range, up to {@link #KEY_DIGITS} digits
+         */
+        public Builder add(String low, String high, String cardType, String issuerCountry,
+                           String accountType, String route) {
+            if (bounds.size() >= MAX_RANGES) {
+                throw new IllegalStateException("BIN table limited to " + MAX_RANGES + " ranges");
+            }
+            long lowKey = normalise(low, '0');
+            long highKey = normalise(high, '9');
+            if (highKey < lowKey) {
+                throw new IllegalArgumentException("BIN range " + low + "-" + high + " is inverted");
+            }
+            bounds.add(new long[] {lowKey, highKey});
+            attributes.add(new short[] {encode(cardType), encode(issuerCountry), encode(accountType), encode(route)});
+            return this;
+        }
+
+        public BinTable build() {
+            int n = bounds.size();
+            // low bounds fit in 40 bits, so sort (low, insertion index) pairs packed into one long
+            long[] order = new long[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = (bounds.get(i)[0] << INDEX_BITS) | i;
+            }
+            Arrays.sort(order);
+
+            long[] lows = new long[n];
+            long[] highs = new long[n];
+            short[] cardTypes = new short[n];
+            short[] countries = new short[n];
+            short[] accountTypes = new short[n];
+            short[] routes = new short[n];
+            for (int i = 0; i < n; i++) {
+                int source = (int) (order[i] & MAX_RANGES);
+                long[] range = bounds.get(source);
+                short[] attrs = attributes.get(source);
+                lows[i] = range[0];
+                highs[i] = range[1];
+                cardTypes[i] = attrs[0];
+                countries[i] = attrs[1];
+                accountTypes[i] = attrs[2];
+                routes[i] = attrs[3];
+                if (i > 0 && lows[i] <= highs[i - 1]) {
+                    throw new IllegalArgumentException("BIN ranges overlap at " + lows[i]);
+                }
+            }
+            return new BinTable(lows, highs, cardTypes, countries, accountTypes, routes,
+                    dictionary.toArray(new String[0]));
+        }
+
+        private short encode(String value) {
+            Short index = dictionaryIndex.get(value);
+            if (index == null) {
+                if (dictionary.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct BIN attribute values");
+                }
+                index = (short) dictionary.size();
+                dictionary.add(value);
+                dictionaryIndex.put(value, index);
+            }
+            return index;
+        }
+
+        private static long normalise(String prefix, char pad) {
+            if (prefix == null || prefix.isEmpty() || prefix.length() > KEY_DIGITS) {
+                throw new IllegalArgumentException("Invalid BIN prefix: " + prefix);
+            }
+            long key = 0;
+            for (int i = 0; i < KEY_DIGITS; i++) {
+                char c = i < prefix.length() ? prefix.charAt(i) : pad;
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Invalid BIN prefix: " + prefix);
+                }
+                key = key * 10 + (c - '0');
+            }
+            return key;
+        }
+    }
+}
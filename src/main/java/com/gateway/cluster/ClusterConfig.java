@@ -0,0 +1,89 @@
+package com.gateway.cluster;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.cluster")
+@SuppressWarnings("unused")
+public class ClusterConfig {
+    private boolean enabled = false;
+    // 0-based and unique per instance; STANs are partitioned by nodeId modulo nodeCount
+    private int nodeId = 0;
+    private int nodeCount = 1;
+    private int port = 7070;
+    // host:port of every other node's replication listener
+    private List<String> peers = new ArrayList<>();
+    // Shared secret checked on connect; required when enabled. The link is not encrypted and
+    // replicated reversals carry PANs, so keep it on a private network or an encrypted tunnel
+    private String token = "";
+    private int queueCapacity = 100000;
+    private int reconnectInterval = 2000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(int nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public void setNodeCount(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public void setPeers(List<String> peers) {
+        this.peers = peers;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getReconnectInterval() {
+        return reconnectInterval;
+    }
+
+    public void setReconnectInterval(int reconnectInterval) {
+        this.reconnectInterval = reconnectInterval;
+    }
+}
@@ -0,0 +1,50 @@
+package com.gateway.cluster;
+
+import com.gateway.service.PendingReversalStore;
+import com.gateway.util.Iso8583Util;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replication status at {@code /actuator/cluster}: this node's STAN partition and, per peer, whether
+ * the link is up and how far behind it is.
+ */
+@Component
+@Endpoint(id = "cluster")
+@RequiredArgsConstructor
+public class ClusterEndpoint {
+
+    private final ClusterConfig clusterConfig;
+    private final ClusterReplicator clusterReplicator;
+    private final PendingReversalStore pendingReversals;
+    private final Iso8583Util iso8583Util;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", clusterConfig.isEnabled());
+        status.put("nodeId", iso8583Util.getNodeId());
+        status.put("nodeCount", clusterConfig.isEnabled() ? clusterConfig.getNodeCount() : 1);
+        status.put("pendingReversals", pendingReversals.size());
+        status.put("received", clusterReplicator.getReceivedCount());
+
+        List<Map<String, Object>> peers = new ArrayList<>();
+        for (ClusterReplicator.PeerLink link : clusterReplicator.getPeers()) {
+            Map<String, Object> peer = new LinkedHashMap<>();
+            peer.put("address", link.getAddress());
+            peer.put("connected", link.isConnected());
+            peer.put("queued", link.getQueued());
+            peer.put("sent", link.getSent());
+            peers.add(peer);
+        }
+        status.put("peers", peers);
+        return status;
+    }
+}
@@ -0,0 +1,315 @@
+package com.gateway.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.PendingReversalStore;
+import com.gateway.util.Iso8583Util;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replicates {@link PendingReversalStore} to every other gateway node, so a reversal can be
+ * processed by whichever node the load balancer picks.
+ * <p>
+ * Each node listens on {@code gateway.cluster.port} and keeps one outbound connection per peer.
+ * Changes are queued per peer and written by that peer's thread, never on the authorisation path.
+ * Every (re)connect, and any queue overflow, is followed by a snapshot of the entries this node
+ * issued (the owner is encoded in the RRN's STAN); the receiver drops any entry from that owner
+ * missing from the snapshot, so a peer that was down or fell behind converges without a separate
+ * catch-up protocol.
+ * <p>
+ * Peers prove themselves with the shared {@code token}, which must be set. The link is not
+ * encrypted: entries carry card numbers (never CVV or expiry), so it must run on a private network
+ * or inside an encrypted tunnel between the nodes.
+ */
+@Component
+@Log4j2
+public class ClusterReplicator implements PendingReversalStore.ReplicationListener {
+
+    private final ClusterConfig clusterConfig;
+    private final PendingReversalStore pendingReversals;
+    private final Iso8583Util iso8583Util;
+    private final ReplicationCodec codec;
+
+    private final List<PeerLink> peers = new ArrayList<>();
+    private final AtomicLong received = new AtomicLong();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ClusterReplicator(ClusterConfig clusterConfig, PendingReversalStore pendingReversals,
+                             Iso8583Util iso8583Util, ObjectMapper objectMapper) {
+        this.clusterConfig = clusterConfig;
+        this.pendingReversals = pendingReversals;
+        this.iso8583Util = iso8583Util;
+        this.codec = new ReplicationCodec(objectMapper);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!clusterConfig.isEnabled()) {
+            return;
+        }
+        String token = clusterConfig.getToken();
+        if (token == null || token.trim().isEmpty()) {
+            throw new IllegalStateException("gateway.cluster.enabled is set but no gateway.cluster.token is configured");
+        }
+        running = true;
+        serverSocket = new ServerSocket(clusterConfig.getPort());
+        startThread(this::acceptLoop, "cluster-accept");
+
+        for (String peer : clusterConfig.getPeers()) {
+            int colon = peer.lastIndexOf(':');
+            PeerLink link = new PeerLink(new InetSocketAddress(peer.substring(0, colon),
+                    Integer.parseInt(peer.substring(colon + 1))));
+            peers.add(link);
+            startThread(link::run, "cluster-peer-" + peer);
+        }
+        pendingReversals.setReplicationListener(this);
+        log.info("Cluster node {}/{} replicating on port {} to {}", clusterConfig.getNodeId(),
+                clusterConfig.getNodeCount(), clusterConfig.getPort(), clusterConfig.getPeers());
+    }
+
+    @Override
+    public void onPut(String rrn, TransactionRequest request) {
+        for (PeerLink peer : peers) {
+            peer.offer(ReplicationCodec.Message.put(rrn, request));
+        }
+    }
+
+    @Override
+    public void onRemove(String rrn) {
+        for (PeerLink peer : peers) {
+            peer.offer(ReplicationCodec.Message.remove(rrn));
+        }
+    }
+
+    public List<PeerLink> getPeers() {
+        return Collections.unmodifiableList(peers);
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                startThread(() -> receive(socket), "cluster-in-" + socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Cluster listener error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            ReplicationCodec.Message hello = codec.read(in);
+            if (hello.op != ReplicationCodec.HELLO || !isClusterToken(hello.token)) {
+                log.warn("Rejected cluster connection from {}: bad handshake", s.getRemoteSocketAddress());
+                return;
+            }
+            log.info("Cluster node {} connected from {}", hello.rrn, s.getRemoteSocketAddress());
+            int syncOwner = -1;
+            Set<String> synced = null;
+            while (running) {
+                ReplicationCodec.Message message = codec.read(in);
+                switch (message.op) {
+                    case ReplicationCodec.PUT:
+                        pendingReversals.putReplica(message.rrn, message.request);
+                        if (synced != null) {
+                            synced.add(message.rrn);
+                        }
+                        break;
+                    case ReplicationCodec.REMOVE:
+                        pendingReversals.removeReplica(message.rrn);
+                        break;
+                    case ReplicationCodec.SYNC_START:
+                        syncOwner = Integer.parseInt(message.rrn);
+                        synced = new HashSet<>();
+                        break;
+                    case ReplicationCodec.SYNC_END:
+                        if (synced != null) {
+                            int owner = syncOwner;
+                            Set<String> kept = synced;
+                            pendingReversals.removeReplicasIf(
+                                    rrn -> iso8583Util.ownerOf(rrn) == owner && !kept.contains(rrn));
+                            synced = null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                received.incrementAndGet();
+            }
+        } catch (IOException e) {
+            if (running) {
+                log.info("Cluster connection from {} closed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compares in constant time, so the token cannot be guessed a byte at a time.
+     */
+    private boolean isClusterToken(String token) {
+        return token != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                clusterConfig.getToken().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void startThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        pendingReversals.setReplicationListener(null);
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log.debug("Error closing cluster listener: {}", e.getMessage());
+        }
+        peers.forEach(PeerLink::close);
+    }
+
+    public final class PeerLink {
+
+        private final InetSocketAddress address;
+        private final BlockingQueue<ReplicationCodec.Message> queue;
+        private final AtomicLong sent = new AtomicLong();
+        private volatile boolean resync = true;
+        private volatile Socket socket;
+
+        private PeerLink(InetSocketAddress address) {
+            this.address = address;
+            this.queue = new ArrayBlockingQueue<>(clusterConfig.getQueueCapacity());
+        }
+
+        private void offer(ReplicationCodec.Message message) {
+            if (!queue.offer(message)) {
+                // cheaper to resend everything once than to block the caller
+                resync = true;
+            }
+        }
+
+        private void run() {
+            while (running) {
+                try (Socket s = new Socket()) {
+                    s.connect(address, clusterConfig.getReconnectInterval());
+                    s.setTcpNoDelay(true);
+                    socket = s;
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    codec.writeHello(out, clusterConfig.getNodeId(), clusterConfig.getToken());
+                    resync = true;
+                    while (running) {
+                        if (resync) {
+                            sendSnapshot(out);
+                        }
+                        ReplicationCodec.Message message = queue.poll(500, TimeUnit.MILLISECONDS);
+                        if (message == null) {
+                            continue;
+                        }
+                        codec.write(out, message);
+                        sent.incrementAndGet();
+                        // batch whatever else is already queued into the same flush
+                        while ((message = queue.poll()) != null) {
+                            codec.write(out, message);
+                            sent.incrementAndGet();
+                        }
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    log.debug("Cluster peer {} unavailable: {}", address, e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    socket = null;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(clusterConfig.getReconnectInterval());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void sendSnapshot(DataOutputStream out) throws IOException {
+            resync = false;
+            // anything queued before the snapshot is already reflected in it
+            queue.clear();
+            int self = clusterConfig.getNodeId();
+            int count = 0;
+            codec.writeSyncStart(out, self);
+            for (Map.Entry<String, TransactionRequest> entry : pendingReversals.snapshot().entrySet()) {
+                if (iso8583Util.ownerOf(entry.getKey()) == self) {
+                    codec.write(out, ReplicationCodec.Message.put(entry.getKey(), entry.getValue()));
+                    count++;
+                }
+            }
+            codec.writeSyncEnd(out);
+            out.flush();
+            sent.addAndGet(count);
+            log.info("Sent snapshot of {} pending reversals to {}", count, address);
+        }
+
+        private void close() {
+            Socket s = socket;
+            if (s != null) {
+                try {
+                    s.close();
+                } catch (IOException e) {
+                    log.debug("Error closing cluster peer {}: {}", address, e.getMessage());
+                }
+            }
+        }
+
+        public String getAddress() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+
+        public boolean isConnected() {
+            return socket != null;
+        }
+
+        public int getQueued() {
+            return queue.size();
+        }
+
+        public long getSent() {
+            return sent.get();
+        }
+    }
+}
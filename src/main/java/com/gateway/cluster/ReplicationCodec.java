@@ -0,0 +1,110 @@
+package com.gateway.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.PendingReversalStore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format between cluster nodes. Every frame starts with a one-byte opcode:
+ * <pre>
+ * 'H' int nodeId, UTF token          hello, first frame on a connection
+ * 'S' int nodeId                      snapshot of the sender's own entries follows
+ * 'E'                                 end of snapshot
+ * 'P' UTF rrn, int length, JSON      pending reversal added
+ * 'R' UTF rrn                         pending reversal removed
+ * </pre>
+ * A pending reversal is sent as {@link PendingReversalStore#reversalRecord}, so nothing beyond what
+ * the reversal needs leaves the node.
+ */
+final class ReplicationCodec {
+
+    static final byte HELLO = 'H';
+    static final byte SYNC_START = 'S';
+    static final byte SYNC_END = 'E';
+    static final byte PUT = 'P';
+    static final byte REMOVE = 'R';
+
+    private final ObjectMapper objectMapper;
+
+    ReplicationCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    void writeHello(DataOutputStream out, int nodeId, String token) throws IOException {
+        out.writeByte(HELLO);
+        out.writeInt(nodeId);
+        out.writeUTF(token);
+    }
+
+    void writeSyncStart(DataOutputStream out, int nodeId) throws IOException {
+        out.writeByte(SYNC_START);
+        out.writeInt(nodeId);
+    }
+
+    void writeSyncEnd(DataOutputStream out) throws IOException {
+        out.writeByte(SYNC_END);
+    }
+
+    void write(DataOutputStream out, Message message) throws IOException {
+        out.writeByte(message.op);
+        out.writeUTF(message.rrn);
+        if (message.op == PUT) {
+            byte[] json = objectMapper.writeValueAsBytes(PendingReversalStore.reversalRecord(message.request));
+            out.writeInt(json.length);
+            out.write(json);
+        }
+    }
+
+    /**
+     * @return the next message; hello and sync-start carry the node id in {@code rrn}, hello also
+     * the token in {@code token}
+     */
+    Message read(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case HELLO:
+                int nodeId = in.readInt();
+                return new Message(HELLO, Integer.toString(nodeId), null, in.readUTF());
+            case SYNC_START:
+                return new Message(SYNC_START, Integer.toString(in.readInt()), null, null);
+            case SYNC_END:
+                return new Message(SYNC_END, null, null, null);
+            case PUT:
+                String rrn = in.readUTF();
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                return new Message(PUT, rrn, objectMapper.readValue(json, TransactionRequest.class), null);
+            case REMOVE:
+                return new Message(REMOVE, in.readUTF(), null, null);
+            default:
+                throw new IOException("Unknown replication opcode " + op);
+        }
+    }
+
+    static final class Message {
+
+        final byte op;
+        final String rrn;
+        final TransactionRequest request;
+        final String token;
+
+        private Message(byte op, String rrn, TransactionRequest request, String token) {
+            this.op = op;
+            this.rrn = rrn;
+            this.request = request;
+            this.token = token;
+        }
+
+        static Message put(String rrn, TransactionRequest request) {
+            return new Message(PUT, rrn, request, null);
+        }
+
+        static Message remove(String rrn) {
+            return new Message(REMOVE, rrn, null, null);
+        }
+    }
+}
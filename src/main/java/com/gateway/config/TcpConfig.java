@@ -7,21 +7,43 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "gateway.tcp")
 @SuppressWarnings("unused")
 public class TcpConfig {
-    private String host = "localhost";
-    private int port = 5000;
-    private int connectionTimeout = 30000;
-    private int readTimeout = 30000;
-    private int maxConnections = 10;
-    private int minConnections = 2;
+    // Volatile fields can be changed at runtime through /actuator/tcp
+    private volatile String host = "localhost";
+    private volatile int port = 5000;
+    private volatile int connectionTimeout = 30000;
+    private volatile int readTimeout = 30000;
+    private volatile int maxConnections = 10;
+    private volatile int minConnections = 2;
     private boolean keepAlive = true;
     private boolean tcpNoDelay = true;
-    private int retryAttempts = 3;
-    private int retryDelay = 1000;
-    private int maxRetryDelay = 10000;
-    private int connectionPoolTimeout = 5000;
+    private volatile int retryAttempts = 3;
+    private volatile int retryDelay = 1000;
+    private volatile int maxRetryDelay = 10000;
+    private volatile int connectionPoolTimeout = 5000;
+    // After a read timeout the socket waits this long for the answer (ms), so a late approval can
+    // be reversed; 0 closes it at once. Waiting sockets count against max-connections
+    private volatile int lateResponseWindow = 30000;
+    private int lateResponseMaxPending = 100;
     private boolean lengthHeader = true;
     private int lengthHeaderSize = 2;
+    // binary (big-endian, 2 or 4 bytes) or ascii (zero-padded decimal digits)
+    private String lengthHeaderFormat = "binary";
     private String encoding = "UTF-8";
+    // TLS to the host; stores are read once at startup
+    private boolean tlsEnabled = false;
+    private String tlsKeyStore;
+    private String tlsKeyStorePassword;
+    private String tlsKeyStoreType = "PKCS12";
+    private String tlsTrustStore;
+    private String tlsTrustStorePassword;
+    private String tlsTrustStoreType = "PKCS12";
+    // Comma-separated; empty means the JDK defaults
+    private String tlsProtocols = "TLSv1.3,TLSv1.2";
+    private String tlsCipherSuites;
+    private boolean tlsVerifyHostname = true;
+    // Sessions kept for resumption, and how long one may be resumed (s)
+    private int tlsSessionCacheSize = 64;
+    private int tlsSessionTimeout = 86400;
 
     public String getHost() {
         return host;
@@ -119,6 +141,22 @@ public class TcpConfig {
         this.connectionPoolTimeout = connectionPoolTimeout;
     }
 
+    public int getLateResponseWindow() {
+        return lateResponseWindow;
+    }
+
+    public void setLateResponseWindow(int lateResponseWindow) {
+        this.lateResponseWindow = lateResponseWindow;
+    }
+
+    public int getLateResponseMaxPending() {
+        return lateResponseMaxPending;
+    }
+
+    public void setLateResponseMaxPending(int lateResponseMaxPending) {
+        this.lateResponseMaxPending = lateResponseMaxPending;
+    }
+
     public boolean isLengthHeader() {
         return lengthHeader;
     }
@@ -135,6 +173,14 @@ public class TcpConfig {
         this.lengthHeaderSize = lengthHeaderSize;
     }
 
+    public String getLengthHeaderFormat() {
+        return lengthHeaderFormat;
+    }
+
+    public void setLengthHeaderFormat(String lengthHeaderFormat) {
+        this.lengthHeaderFormat = lengthHeaderFormat;
+    }
+
     public String getEncoding() {
         return encoding;
     }
@@ -142,4 +188,100 @@ public class TcpConfig {
     public void setEncoding(String encoding) {
         this.encoding = encoding;
     }
-}
\ No newline at end of file
+
+    public boolean isTlsEnabled() {
+        return tlsEnabled;
+    }
+
+    public void setTlsEnabled(boolean tlsEnabled) {
+        this.tlsEnabled = tlsEnabled;
+    }
+
+    public String getTlsKeyStore() {
+        return tlsKeyStore;
+    }
+
+    public void setTlsKeyStore(String tlsKeyStore) {
+        this.tlsKeyStore = tlsKeyStore;
+    }
+
+    public String getTlsKeyStorePassword() {
+        return tlsKeyStorePassword;
+    }
+
+    public void setTlsKeyStorePassword(String tlsKeyStorePassword) {
+        this.tlsKeyStorePassword = tlsKeyStorePassword;
+    }
+
+    public String getTlsKeyStoreType() {
+        return tlsKeyStoreType;
+    }
+
+    public void setTlsKeyStoreType(String tlsKeyStoreType) {
+        this.tlsKeyStoreType = tlsKeyStoreType;
+    }
+
+    public String getTlsTrustStore() {
+        return tlsTrustStore;
+    }
+
+    public void setTlsTrustStore(String tlsTrustStore) {
+        this.tlsTrustStore = tlsTrustStore;
+    }
+
+    public String getTlsTrustStorePassword() {
+        return tlsTrustStorePassword;
+    }
+
+    public void setTlsTrustStorePassword(String tlsTrustStorePassword) {
+        this.tlsTrustStorePassword = tlsTrustStorePassword;
+    }
+
+    public String getTlsTrustStoreType() {
+        return tlsTrustStoreType;
+    }
+
+    public void setTlsTrustStoreType(String tlsTrustStoreType) {
+        this.tlsTrustStoreType = tlsTrustStoreType;
+    }
+
+    public String getTlsProtocols() {
+        return tlsProtocols;
+    }
+
+    public void setTlsProtocols(String tlsProtocols) {
+        this.tlsProtocols = tlsProtocols;
+    }
+
+    public String getTlsCipherSuites() {
+        return tlsCipherSuites;
+    }
+
+    public void setTlsCipherSuites(String tlsCipherSuites) {
+        this.tlsCipherSuites = tlsCipherSuites;
+    }
+
+    public boolean isTlsVerifyHostname() {
+        return tlsVerifyHostname;
+    }
+
+    public void setTlsVerifyHostname(boolean tlsVerifyHostname) {
+        this.tlsVerifyHostname = tlsVerifyHostname;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    public int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    public void setTlsSessionTimeout(int tlsSessionTimeout) {
+        this.tlsSessionTimeout = tlsSessionTimeout;
+    }
+}
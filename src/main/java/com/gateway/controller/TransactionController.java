@@ -1,15 +1,23 @@
 package com.gateway.controller;
 
+import com.gateway.admission.LoadShedder;
+import com.gateway.history.HistoryPage;
+import com.gateway.history.HistoryQuery;
+import com.gateway.history.TransactionHistory;
 import com.gateway.model.TransactionRequest;
 import com.gateway.model.TransactionResponse;
 import com.gateway.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.concurrent.CompletableFuture;
 
 @RestController
@@ -18,36 +26,33 @@ import java.util.concurrent.CompletableFuture;
 @Log4j2
 public class TransactionController {
     
+    private static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+    
     private final TransactionService transactionService;
+    private final LoadShedder loadShedder;
+    private final TransactionHistory transactionHistory;
     
     @PostMapping("/process")
     public ResponseEntity<TransactionResponse> processTransaction(
-            @Valid @RequestBody TransactionRequest request) {
+            @Valid @RequestBody TransactionRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long requestTimeout) {
         
         log.info("Received transaction request: Type={}, Terminal={}", 
             request.getTransactionType(), request.getTerminalId());
         
-        TransactionResponse response = transactionService.processTransaction(request);
+        TransactionResponse response = transactionService.processTransaction(
+            request, loadShedder.deadlineFromTimeout(requestTimeout));
         
-        if (response.isSuccess()) {
-            return ResponseEntity.ok(response);
-        } else {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
-        }
+        return toResponseEntity(response);
     }
     
     @PostMapping("/process/async")
     public CompletableFuture<ResponseEntity<TransactionResponse>> processTransactionAsync(
-            @Valid @RequestBody TransactionRequest request) {
+            @Valid @RequestBody TransactionRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long requestTimeout) {
         
-        return transactionService.processTransactionAsync(request)
-            .thenApply(response -> {
-                if (response.isSuccess()) {
-                    return ResponseEntity.ok(response);
-                } else {
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
-                }
-            });
+        return transactionService.processTransactionAsync(request, loadShedder.deadlineFromTimeout(requestTimeout))
+            .thenApply(this::toResponseEntity);
     }
     
     @PostMapping("/reverse")
@@ -72,8 +77,53 @@ public class TransactionController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/history")
+    public ResponseEntity<HistoryPage> getTransactionHistory(
+            @RequestParam(required = false) String merchantId,
+            @RequestParam(required = false) String terminalId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String responseCode,
+            @RequestParam(required = false) String rrn,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        
+        HistoryQuery query = HistoryQuery.builder()
+            .merchantId(merchantId)
+            .terminalId(terminalId)
+            .from(from)
+            .to(to)
+            .responseCode(responseCode)
+            .rrn(rrn)
+            .minAmount(minAmount)
+            .maxAmount(maxAmount)
+            .limit(limit)
+            .cursor(cursor)
+            .build();
+        try {
+            return ResponseEntity.ok(transactionHistory.query(query));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Debit/Credit Gateway is running");
     }
+    
+    private ResponseEntity<TransactionResponse> toResponseEntity(TransactionResponse response) {
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        }
+        if (response.getRetryAfter() != null) {
+            long retryAfterSeconds = Math.max(1, (response.getRetryAfter() + 999) / 1000);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(response);
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.gateway.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.admission.LoadShedder;
+import com.gateway.history.TransactionHistory;
 import com.gateway.model.TransactionRequest;
 import com.gateway.model.TransactionResponse;
 import com.gateway.service.TransactionService;
@@ -18,6 +20,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.math.BigDecimal;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -34,6 +37,12 @@ public class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
     
+    @MockBean
+    private LoadShedder loadShedder;
+    
+    @MockBean
+    private TransactionHistory transactionHistory;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
@@ -62,7 +71,7 @@ public class TransactionControllerTest {
     
     @Test
     void testProcessTransaction_Success() throws Exception {
-        when(transactionService.processTransaction(any(TransactionRequest.class)))
+        when(transactionService.processTransaction(any(TransactionRequest.class), anyLong()))
             .thenReturn(successResponse);
         
         mockMvc.perform(post("/api/v1/transactions/process")
@@ -0,0 +1,74 @@
+package com.gateway.history;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only string dictionary. Ids are dense and never change, so a segment written with an
+ * older snapshot still decodes against a newer one. Encoding is for the writer thread; lookups
+ * are safe from any thread.
+ */
+final class Dictionary {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * @return the id of the value, adding it if new; -1 for null
+     */
+    synchronized int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        // volatile write publishes the new name before any row can carry its id
+        names = current;
+        ids.put(value, size);
+        return size++;
+    }
+
+    /**
+     * @return the id of a known value, or -1
+     */
+    int idOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : -1;
+    }
+
+    String name(int id) {
+        return id >= 0 ? names[id] : null;
+    }
+
+    synchronized String[] snapshot() {
+        return Arrays.copyOf(names, size);
+    }
+
+    /**
+     * Loads a saved snapshot, keeping its ids.
+     */
+    synchronized void restore(String[] values) {
+        if (size != 0) {
+            throw new IllegalStateException("Dictionary already in use");
+        }
+        for (String value : values) {
+            encode(value);
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,86 @@
+package com.gateway.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.history")
+@SuppressWarnings("unused")
+public class HistoryConfig {
+    private boolean enabled = true;
+    private String directory = "data/history";
+    // Rows per segment; a full segment is written to disk and a new one started
+    private int segmentRows = 262144;
+    // A partly filled segment is also written once its first row is this old (ms)
+    private long sealInterval = 600000;
+    // Sealed segments kept on the heap; older ones are served from memory-mapped files
+    private int memorySegments = 4;
+    private int retentionDays = 90;
+    // Rows waiting for the writer thread; when full, rows are dropped rather than delaying authorisation
+    private int queueCapacity = 65536;
+    private int maxPageSize = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentRows() {
+        return segmentRows;
+    }
+
+    public void setSegmentRows(int segmentRows) {
+        this.segmentRows = segmentRows;
+    }
+
+    public long getSealInterval() {
+        return sealInterval;
+    }
+
+    public void setSealInterval(long sealInterval) {
+        this.sealInterval = sealInterval;
+    }
+
+    public int getMemorySegments() {
+        return memorySegments;
+    }
+
+    public void setMemorySegments(int memorySegments) {
+        this.memorySegments = memorySegments;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+}
@@ -0,0 +1,20 @@
+package com.gateway.history;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of history, newest first. {@code nextCursor} is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryPage {
+
+    private List<HistoryRecord> items;
+    private String nextCursor;
+    private long scannedRows;
+}
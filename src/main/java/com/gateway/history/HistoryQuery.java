@@ -0,0 +1,28 @@
+package com.gateway.history;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * History filter; every field is optional. {@code from} is inclusive and {@code to} exclusive.
+ */
+@Data
+@Builder
+public class HistoryQuery {
+
+    private String merchantId;
+    private String terminalId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String responseCode;
+    // the gateway RRN, field 37
+    private String rrn;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private Integer limit;
+    // nextCursor of the previous page
+    private String cursor;
+}
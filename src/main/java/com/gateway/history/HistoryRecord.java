@@ -0,0 +1,29 @@
+package com.gateway.history;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryRecord {
+
+    private LocalDateTime timestamp;
+    private String rrn;
+    private String stan;
+    private String authCode;
+    private String terminalId;
+    private String merchantId;
+    private String maskedCardNumber;
+    private String transactionType;
+    private BigDecimal amount;
+    private String currencyCode;
+    private String responseCode;
+    private String status;
+}
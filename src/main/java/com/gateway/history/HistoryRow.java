@@ -0,0 +1,129 @@
+package com.gateway.history;
+
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import com.gateway.model.enums.ResponseCode;
+import com.gateway.util.Iso8583Util;
+
+/**
+ * One transaction on its way from the authorisation path to the writer thread. Fixed-width values
+ * are packed here; strings are dictionary-encoded by the writer.
+ */
+final class HistoryRow {
+
+    final long time;
+    final long amount;
+    final long rrn;
+    final long authCode;
+    final int stan;
+    final int panBin;
+    final short panLast4;
+    final byte panLength;
+    final String terminalId;
+    final String merchantId;
+    final String currency;
+    final String responseCode;
+    final String type;
+    final String status;
+
+    HistoryRow(long time, TransactionRequest request, String type, TransactionResponse response) {
+        this.time = time;
+        this.amount = request.getAmount() != null
+                ? Iso8583Util.toMinorUnits(request.getAmount(), request.getCurrencyCode()) : 0;
+        this.rrn = parseDigits(response.getRrn(), 12);
+        this.authCode = packAscii(response.getAuthCode());
+        this.stan = (int) parseDigits(response.getStan(), 9);
+        String pan = request.getCardNumber();
+        if (pan != null && pan.length() >= 10 && pan.length() <= 19
+                && parseDigits(pan.substring(0, 6), 6) >= 0 && parseDigits(pan.substring(pan.length() - 4), 4) >= 0) {
+            this.panBin = (int) parseDigits(pan.substring(0, 6), 6);
+            this.panLast4 = (short) parseDigits(pan.substring(pan.length() - 4), 4);
+            this.panLength = (byte) pan.length();
+        } else {
+            this.panBin = -1;
+            this.panLast4 = -1;
+            this.panLength = 0;
+        }
+        // a format decline may be for the ids themselves; the dictionaries never forget a value,
+        // so ids nobody vetted are not written
+        boolean malformed = ResponseCode.FORMAT_ERROR.getCode().equals(response.getResponseCode());
+        this.terminalId = malformed ? null : request.getTerminalId();
+        this.merchantId = malformed ? null : request.getMerchantId();
+        this.currency = request.getCurrencyCode();
+        this.responseCode = response.getResponseCode();
+        this.type = type;
+        this.status = response.getStatus();
+    }
+
+    /**
+     * @return the value of an all-digit string of at most {@code maxDigits}, or -1
+     */
+    static long parseDigits(String value, int maxDigits) {
+        if (value == null || value.isEmpty() || value.length() > maxDigits) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Packs up to eight printable ASCII characters into a long; 0 means absent or unpackable.
+     */
+    static long packAscii(String value) {
+        if (value == null || value.isEmpty() || value.length() > 8) {
+            return 0;
+        }
+        long packed = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return 0;
+            }
+            packed = (packed << 8) | c;
+        }
+        return packed;
+    }
+
+    static String unpackAscii(long packed) {
+        if (packed == 0) {
+            return null;
+        }
+        char[] chars = new char[8];
+        int start = 8;
+        while (packed != 0) {
+            chars[--start] = (char) (packed & 0xFF);
+            packed >>>= 8;
+        }
+        return new String(chars, start, 8 - start);
+    }
+
+    static String zeroPad(long value, int width) {
+        if (value < 0) {
+            return null;
+        }
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    static String maskedPan(int bin, short last4, byte length) {
+        if (bin < 0) {
+            return null;
+        }
+        StringBuilder masked = new StringBuilder(length).append(zeroPad(bin, 6));
+        for (int i = 10; i < length; i++) {
+            masked.append('*');
+        }
+        return masked.append(zeroPad(last4, 4)).toString();
+    }
+}
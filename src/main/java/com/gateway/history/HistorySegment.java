@@ -0,0 +1,64 @@
+package com.gateway.history;
+
+/**
+ * Column access to one segment of history rows. Rows are in arrival order; string columns hold
+ * {@link Dictionary} ids and missing values are -1.
+ */
+abstract class HistorySegment {
+
+    private final long sequence;
+
+    HistorySegment(long sequence) {
+        this.sequence = sequence;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Segments written before amounts followed their currency's exponent hold hundredths for
+     * every currency.
+     */
+    boolean centAmounts() {
+        return false;
+    }
+
+    abstract int size();
+
+    abstract long minTime();
+
+    abstract long maxTime();
+
+    abstract long time(int row);
+
+    /**
+     * @return the amount in the minor unit of the row's currency, or hundredths when
+     * {@link #centAmounts()}
+     */
+    abstract long amount(int row);
+
+    abstract long rrn(int row);
+
+    abstract long authCode(int row);
+
+    abstract int stan(int row);
+
+    abstract int terminal(int row);
+
+    abstract int merchant(int row);
+
+    abstract int panBin(int row);
+
+    abstract short panLast4(int row);
+
+    abstract byte panLength(int row);
+
+    abstract short currency(int row);
+
+    abstract short responseCode(int row);
+
+    abstract short type(int row);
+
+    abstract short status(int row);
+}
@@ -0,0 +1,145 @@
+package com.gateway.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only segment served straight from a memory-mapped {@link SegmentFile}; the page cache, not
+ * the heap, holds its columns.
+ */
+final class MappedSegment extends HistorySegment {
+
+    private final int rows;
+    private final long minTime;
+    private final long maxTime;
+    private final ByteBuffer buffer;
+    private final boolean centAmounts;
+
+    private final int timeOffset;
+    private final int amountOffset;
+    private final int rrnOffset;
+    private final int authCodeOffset;
+    private final int stanOffset;
+    private final int terminalOffset;
+    private final int merchantOffset;
+    private final int panBinOffset;
+    private final int panLast4Offset;
+    private final int currencyOffset;
+    private final int responseCodeOffset;
+    private final int typeOffset;
+    private final int statusOffset;
+    private final int panLengthOffset;
+
+    MappedSegment(long sequence, int rows, long minTime, long maxTime, ByteBuffer buffer, int columnsStart,
+                  boolean centAmounts) {
+        super(sequence);
+        this.rows = rows;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.buffer = buffer;
+        this.centAmounts = centAmounts;
+        timeOffset = columnsStart;
+        amountOffset = timeOffset + rows * 8;
+        rrnOffset = amountOffset + rows * 8;
+        authCodeOffset = rrnOffset + rows * 8;
+        stanOffset = authCodeOffset + rows * 8;
+        terminalOffset = stanOffset + rows * 4;
+        merchantOffset = terminalOffset + rows * 4;
+        panBinOffset = merchantOffset + rows * 4;
+        panLast4Offset = panBinOffset + rows * 4;
+        currencyOffset = panLast4Offset + rows * 2;
+        responseCodeOffset = currencyOffset + rows * 2;
+        typeOffset = responseCodeOffset + rows * 2;
+        statusOffset = typeOffset + rows * 2;
+        panLengthOffset = statusOffset + rows * 2;
+    }
+
+    @Override
+    boolean centAmounts() {
+        return centAmounts;
+    }
+
+    @Override
+    int size() {
+        return rows;
+    }
+
+    @Override
+    long minTime() {
+        return minTime;
+    }
+
+    @Override
+    long maxTime() {
+        return maxTime;
+    }
+
+    @Override
+    long time(int row) {
+        return buffer.getLong(timeOffset + row * 8);
+    }
+
+    @Override
+    long amount(int row) {
+        return buffer.getLong(amountOffset + row * 8);
+    }
+
+    @Override
+    long rrn(int row) {
+        return buffer.getLong(rrnOffset + row * 8);
+    }
+
+    @Override
+    long authCode(int row) {
+        return buffer.getLong(authCodeOffset + row * 8);
+    }
+
+    @Override
+    int stan(int row) {
+        return buffer.getInt(stanOffset + row * 4);
+    }
+
+    @Override
+    int terminal(int row) {
+        return buffer.getInt(terminalOffset + row * 4);
+    }
+
+    @Override
+    int merchant(int row) {
+        return buffer.getInt(merchantOffset + row * 4);
+    }
+
+    @Override
+    int panBin(int row) {
+        return buffer.getInt(panBinOffset + row * 4);
+    }
+
+    @Override
+    short panLast4(int row) {
+        return buffer.getShort(panLast4Offset + row * 2);
+    }
+
+    @Override
+    byte panLength(int row) {
+        return buffer.get(panLengthOffset + row);
+    }
+
+    @Override
+    short currency(int row) {
+        return buffer.getShort(currencyOffset + row * 2);
+    }
+
+    @Override
+    short responseCode(int row) {
+        return buffer.getShort(responseCodeOffset + row * 2);
+    }
+
+    @Override
+    short type(int row) {
+        return buffer.getShort(typeOffset + row * 2);
+    }
+
+    @Override
+    short status(int row) {
+        return buffer.getShort(statusOffset + row * 2);
+    }
+}
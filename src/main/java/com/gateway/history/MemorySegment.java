@@ -0,0 +1,160 @@
+package com.gateway.history;
+
+/**
+ * Heap segment filled by the single history writer. Columns are preallocated to capacity; a row
+ * becomes visible to queries when {@link #append} publishes the new size.
+ */
+final class MemorySegment extends HistorySegment {
+
+    private final long[] time;
+    private final long[] amount;
+    private final long[] rrn;
+    private final long[] authCode;
+    private final int[] stan;
+    private final int[] terminal;
+    private final int[] merchant;
+    private final int[] panBin;
+    private final short[] panLast4;
+    private final byte[] panLength;
+    private final short[] currency;
+    private final short[] responseCode;
+    private final short[] type;
+    private final short[] status;
+
+    private volatile int size;
+    private volatile long minTime = Long.MAX_VALUE;
+    private volatile long maxTime = Long.MIN_VALUE;
+
+    MemorySegment(long sequence, int capacity) {
+        super(sequence);
+        time = new long[capacity];
+        amount = new long[capacity];
+        rrn = new long[capacity];
+        authCode = new long[capacity];
+        stan = new int[capacity];
+        terminal = new int[capacity];
+        merchant = new int[capacity];
+        panBin = new int[capacity];
+        panLast4 = new short[capacity];
+        panLength = new byte[capacity];
+        currency = new short[capacity];
+        responseCode = new short[capacity];
+        type = new short[capacity];
+        status = new short[capacity];
+    }
+
+    boolean isFull() {
+        return size == time.length;
+    }
+
+    void append(HistoryRow row, int terminalId, int merchantId, int currencyId, int responseCodeId,
+                int typeId, int statusId) {
+        int i = size;
+        time[i] = row.time;
+        amount[i] = row.amount;
+        rrn[i] = row.rrn;
+        authCode[i] = row.authCode;
+        stan[i] = row.stan;
+        terminal[i] = terminalId;
+        merchant[i] = merchantId;
+        panBin[i] = row.panBin;
+        panLast4[i] = row.panLast4;
+        panLength[i] = row.panLength;
+        currency[i] = (short) currencyId;
+        responseCode[i] = (short) responseCodeId;
+        type[i] = (short) typeId;
+        status[i] = (short) statusId;
+        if (row.time < minTime) {
+            minTime = row.time;
+        }
+        if (row.time > maxTime) {
+            maxTime = row.time;
+        }
+        size = i + 1;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    long minTime() {
+        return minTime;
+    }
+
+    @Override
+    long maxTime() {
+        return maxTime;
+    }
+
+    @Override
+    long time(int row) {
+        return time[row];
+    }
+
+    @Override
+    long amount(int row) {
+        return amount[row];
+    }
+
+    @Override
+    long rrn(int row) {
+        return rrn[row];
+    }
+
+    @Override
+    long authCode(int row) {
+        return authCode[row];
+    }
+
+    @Override
+    int stan(int row) {
+        return stan[row];
+    }
+
+    @Override
+    int terminal(int row) {
+        return terminal[row];
+    }
+
+    @Override
+    int merchant(int row) {
+        return merchant[row];
+    }
+
+    @Override
+    int panBin(int row) {
+        return panBin[row];
+    }
+
+    @Override
+    short panLast4(int row) {
+        return panLast4[row];
+    }
+
+    @Override
+    byte panLength(int row) {
+        return panLength[row];
+    }
+
+    @Override
+    short currency(int row) {
+        return currency[row];
+    }
+
+    @Override
+    short responseCode(int row) {
+        return responseCode[row];
+    }
+
+    @Override
+    short type(int row) {
+        return type[row];
+    }
+
+    @Override
+    short status(int row) {
+        return status[row];
+    }
+}
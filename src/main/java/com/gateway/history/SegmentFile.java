@@ -0,0 +1,195 @@
+package com.gateway.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk segment format. A header with the row count and time range is followed by the
+ * dictionaries as they stood when the segment was written, then each column as one contiguous
+ * big-endian array, so a memory-mapped file is scanned in place without decoding.
+ * <pre>
+ * int magic, int version, long sequence, int rows, long minTime, long maxTime
+ * 3 x (int count, count x (short length, UTF-8 bytes))    terminals, merchants, labels
+ * padding to 8 bytes
+ * long[rows] time, amount, rrn, authCode
+ * int[rows] stan, terminal, merchant, panBin
+ * short[rows] panLast4, currency, responseCode, type, status
+ * byte[rows] panLength
+ * </pre>
+ * Amounts are in the minor unit of each row's currency. Version 1 files, which held hundredths
+ * whatever the currency, are still read.
+ */
+final class SegmentFile {
+
+    static final int MAGIC = 0x47485331; // "GHS1"
+    static final int VERSION = 2;
+    static final int CENT_AMOUNTS_VERSION = 1;
+    static final int ROW_BYTES = 4 * 8 + 4 * 4 + 5 * 2 + 1;
+    static final int DICTIONARIES = 3;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 8 + 8;
+
+    private SegmentFile() {
+    }
+
+    static String fileName(long sequence) {
+        return String.format("segment-%012d.seg", sequence);
+    }
+
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".seg")) {
+            return -1;
+        }
+        return HistoryRow.parseDigits(name.substring(8, name.length() - 4), 18);
+    }
+
+    /**
+     * Writes to a temporary file and renames it, so a crash never leaves a half-written segment.
+     */
+    static void write(Path file, HistorySegment segment, Dictionary... dictionaries) throws IOException {
+        int rows = segment.size();
+        String[][] names = new String[dictionaries.length][];
+        int headerBytes = HEADER_BYTES;
+        byte[][][] encoded = new byte[dictionaries.length][][];
+        for (int d = 0; d < dictionaries.length; d++) {
+            names[d] = dictionaries[d].snapshot();
+            encoded[d] = new byte[names[d].length][];
+            headerBytes += 4;
+            for (int i = 0; i < names[d].length; i++) {
+                encoded[d][i] = names[d][i].getBytes(StandardCharsets.UTF_8);
+                headerBytes += 2 + encoded[d][i].length;
+            }
+        }
+        int columnsStart = align(headerBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(columnsStart + rows * ROW_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(segment.sequence()).putInt(rows)
+                .putLong(segment.minTime()).putLong(segment.maxTime());
+        for (byte[][] dictionary : encoded) {
+            buffer.putInt(dictionary.length);
+            for (byte[] name : dictionary) {
+                buffer.putShort((short) name.length).put(name);
+            }
+        }
+        buffer.position(columnsStart);
+        for (int i = 0; i < rows; i++) {
+            buffer.putLong(segment.time(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putLong(segment.amount(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putLong(segment.rrn(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putLong(segment.authCode(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putInt(segment.stan(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putInt(segment.terminal(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putInt(segment.merchant(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putInt(segment.panBin(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putShort(segment.panLast4(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putShort(segment.currency(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putShort(segment.responseCode(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putShort(segment.type(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.putShort(segment.status(i));
+        }
+        for (int i = 0; i < rows; i++) {
+            buffer.put(segment.panLength(i));
+        }
+        buffer.flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static MappedSegment open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a history segment: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION && version != CENT_AMOUNTS_VERSION) {
+            throw new IOException("Unsupported history segment version " + version + ": " + file);
+        }
+        long sequence = buffer.getLong();
+        int rows = buffer.getInt();
+        long minTime = buffer.getLong();
+        long maxTime = buffer.getLong();
+        readDictionaries(buffer, false);
+        int columnsStart = align(buffer.position());
+        if (buffer.capacity() < columnsStart + (long) rows * ROW_BYTES) {
+            throw new IOException("Truncated history segment: " + file);
+        }
+        return new MappedSegment(sequence, rows, minTime, maxTime, buffer, columnsStart,
+                version == CENT_AMOUNTS_VERSION);
+    }
+
+    /**
+     * @return terminals, merchants and labels as they stood when the segment was written
+     */
+    static String[][] readDictionaries(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        buffer.position(HEADER_BYTES);
+        return readDictionaries(buffer, true);
+    }
+
+    private static String[][] readDictionaries(ByteBuffer buffer, boolean decode) {
+        String[][] dictionaries = new String[DICTIONARIES][];
+        for (int d = 0; d < DICTIONARIES; d++) {
+            int count = buffer.getInt();
+            String[] names = decode ? new String[count] : null;
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getShort() & 0xFFFF;
+                if (decode) {
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    names[i] = new String(bytes, StandardCharsets.UTF_8);
+                } else {
+                    buffer.position(buffer.position() + length);
+                }
+            }
+            dictionaries[d] = names;
+        }
+        return dictionaries;
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+}
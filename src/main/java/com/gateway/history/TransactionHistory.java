@@ -0,0 +1,491 @@
+package com.gateway.history;
+
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import com.gateway.util.Iso8583Util;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Queryable history of processed transactions.
+ * <p>
+ * The authorisation path only packs a {@link HistoryRow} and offers it to a bounded queue. A
+ * single writer thread dictionary-encodes the strings and appends the row to the open
+ * {@link MemorySegment}, whose columns are primitive arrays. Full or old segments are written to
+ * disk; the most recent stay on the heap and older ones are queried through memory-mapped files.
+ * Queries scan columns newest first, skip segments by time range and compare dictionary ids
+ * rather than strings.
+ */
+@Component
+@Log4j2
+public class TransactionHistory {
+
+    // keeps a segment file's int offsets well inside 2 GB
+    private static final int MAX_SEGMENT_ROWS = 16 * 1024 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int WRITER_BATCH = 1024;
+    private static final int UNKNOWN = -2;
+
+    private final HistoryConfig historyConfig;
+    private final GatewayMetrics gatewayMetrics;
+
+    private final Dictionary terminals = new Dictionary();
+    private final Dictionary merchants = new Dictionary();
+    // currencies, response codes, transaction types and statuses
+    private final Dictionary labels = new Dictionary();
+
+    private final Object segmentsLock = new Object();
+    // oldest first; the last one is the segment being written
+    private volatile List<HistorySegment> segments = Collections.emptyList();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    // rows the writer has taken off the queue
+    private final AtomicLong written = new AtomicLong();
+
+    private BlockingQueue<HistoryRow> queue;
+    private Path directory;
+    private Thread writer;
+    private volatile boolean running;
+
+    // writer thread only
+    private MemorySegment active;
+    private long activeOpenedAt;
+    private long nextSequence;
+
+    public TransactionHistory(HistoryConfig historyConfig, GatewayMetrics gatewayMetrics) {
+        this.historyConfig = historyConfig;
+        this.gatewayMetrics = gatewayMetrics;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!historyConfig.isEnabled()) {
+            return;
+        }
+        if (historyConfig.getSegmentRows() < 1 || historyConfig.getSegmentRows() > MAX_SEGMENT_ROWS) {
+            throw new IllegalArgumentException("gateway.history.segment-rows must be between 1 and " + MAX_SEGMENT_ROWS);
+        }
+        directory = Paths.get(historyConfig.getDirectory());
+        Files.createDirectories(directory);
+        load();
+
+        queue = new ArrayBlockingQueue<>(historyConfig.getQueueCapacity());
+        running = true;
+        writer = new Thread(this::writeLoop, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
+        gatewayMetrics.gaugeHistory(queue::size, dropped::sum, this::getRowCount);
+    }
+
+    /**
+     * Never blocks; if the writer has fallen behind the row is dropped and counted. Rows declined
+     * with 30 are kept without their terminal and merchant ids.
+     */
+    public void record(TransactionRequest request, String transactionType, TransactionResponse response) {
+        BlockingQueue<HistoryRow> rows = queue;
+        if (rows == null || request == null || response == null) {
+            return;
+        }
+        if (rows.offer(new HistoryRow(System.currentTimeMillis(), request, transactionType, response))) {
+            accepted.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    public boolean isEnabled() {
+        return queue != null;
+    }
+
+    /**
+     * Waits until every row accepted before the call has been appended and is visible to queries.
+     *
+     * @return false if the writer did not catch up in time
+     */
+    public boolean awaitWritten(long timeoutMillis) throws InterruptedException {
+        long target = accepted.sum();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (written.get() < target) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Hands every row with {@code from <= time < to} (epoch millis) to the consumer, in no
+     * particular order. Segments are scanned in parallel, so the consumer must be thread-safe.
+     */
+    public void scan(long from, long to, Consumer<HistoryRecord> consumer) {
+        segments.parallelStream()
+                .filter(segment -> segment.size() > 0 && segment.maxTime() >= from && segment.minTime() < to)
+                .forEach(segment -> {
+                    int size = segment.size();
+                    for (int row = 0; row < size; row++) {
+                        long time = segment.time(row);
+                        if (time >= from && time < to) {
+                            consumer.accept(toRecord(segment, row));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public HistoryPage query(HistoryQuery query) {
+        int limit = query.getLimit() != null ? query.getLimit() : DEFAULT_PAGE_SIZE;
+        limit = Math.max(1, Math.min(limit, historyConfig.getMaxPageSize()));
+
+        long cursorSequence = Long.MAX_VALUE;
+        int cursorRow = Integer.MAX_VALUE;
+        if (query.getCursor() != null) {
+            int colon = query.getCursor().indexOf(':');
+            long sequence = colon > 0 ? HistoryRow.parseDigits(query.getCursor().substring(0, colon), 18) : -1;
+            long row = colon > 0 ? HistoryRow.parseDigits(query.getCursor().substring(colon + 1), 9) : -1;
+            if (sequence < 0 || row < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + query.getCursor());
+            }
+            cursorSequence = sequence;
+            cursorRow = (int) row;
+        }
+
+        int terminal = filterId(terminals, query.getTerminalId());
+        int merchant = filterId(merchants, query.getMerchantId());
+        int responseCode = filterId(labels, query.getResponseCode());
+        long rrn = query.getRrn() != null ? HistoryRow.parseDigits(query.getRrn(), 12) : -1;
+        if (terminal == UNKNOWN || merchant == UNKNOWN || responseCode == UNKNOWN
+                || query.getRrn() != null && rrn < 0) {
+            return new HistoryPage(Collections.emptyList(), null, 0);
+        }
+        long from = query.getFrom() != null ? toEpochMillis(query.getFrom()) : Long.MIN_VALUE;
+        long to = query.getTo() != null ? toEpochMillis(query.getTo()) : Long.MAX_VALUE;
+        AmountRange amounts = query.getMinAmount() != null || query.getMaxAmount() != null
+                ? new AmountRange(query.getMinAmount(), query.getMaxAmount()) : null;
+
+        List<HistoryRecord> items = new ArrayList<>(Math.min(limit, 64));
+        String nextCursor = null;
+        long scanned = 0;
+        List<HistorySegment> snapshot = segments;
+        scan:
+        for (int s = snapshot.size() - 1; s >= 0; s--) {
+            HistorySegment segment = snapshot.get(s);
+            if (segment.sequence() > cursorSequence) {
+                continue;
+            }
+            int size = segment.size();
+            if (size == 0 || segment.maxTime() < from || segment.minTime() >= to) {
+                continue;
+            }
+            int row = segment.sequence() == cursorSequence ? Math.min(cursorRow, size) - 1 : size - 1;
+            for (; row >= 0; row--) {
+                scanned++;
+                if (terminal >= 0 && segment.terminal(row) != terminal
+                        || merchant >= 0 && segment.merchant(row) != merchant
+                        || responseCode >= 0 && segment.responseCode(row) != responseCode
+                        || rrn >= 0 && segment.rrn(row) != rrn) {
+                    continue;
+                }
+                long time = segment.time(row);
+                if (time < from || time >= to || amounts != null && !amounts.contains(segment, row)) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    nextCursor = segment.sequence() + ":" + (row + 1);
+                    break scan;
+                }
+                items.add(toRecord(segment, row));
+            }
+        }
+        return new HistoryPage(items, nextCursor, scanned);
+    }
+
+    public long getRowCount() {
+        long rows = 0;
+        for (HistorySegment segment : segments) {
+            rows += segment.size();
+        }
+        return rows;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.history.purge-interval:3600000}")
+    public void purgeExpired() {
+        if (directory == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(historyConfig.getRetentionDays());
+        List<HistorySegment> expired = new ArrayList<>();
+        synchronized (segmentsLock) {
+            List<HistorySegment> current = segments;
+            List<HistorySegment> kept = new ArrayList<>(current.size());
+            for (int i = 0; i < current.size(); i++) {
+                HistorySegment segment = current.get(i);
+                // the newest segment may still be open; heap segments, including those whose file
+                // could not be written, expire like mapped ones
+                if (i < current.size() - 1 && segment.maxTime() < cutoff) {
+                    expired.add(segment);
+                } else {
+                    kept.add(segment);
+                }
+            }
+            segments = kept;
+        }
+        for (HistorySegment segment : expired) {
+            try {
+                Files.deleteIfExists(directory.resolve(SegmentFile.fileName(segment.sequence())));
+            } catch (IOException e) {
+                log.warn("Could not delete expired history segment {}: {}", segment.sequence(), e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.info("Purged {} history segments older than {} days", expired.size(), historyConfig.getRetentionDays());
+        }
+    }
+
+    /**
+     * Stops the writer, appends whatever is still queued and writes the open segment, so a restart
+     * loses nothing that was accepted.
+     */
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("History writer did not stop; open segment not written");
+            return;
+        }
+        HistoryRow row;
+        while ((row = queue.poll()) != null) {
+            append(row);
+        }
+        if (active != null && active.size() > 0) {
+            seal();
+        }
+    }
+
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> SegmentFile.sequenceOf(file) >= 0)
+                    .sorted(Comparator.comparingLong(SegmentFile::sequenceOf))
+                    .collect(Collectors.toList());
+        }
+        List<HistorySegment> loaded = new ArrayList<>(files.size());
+        Path newest = null;
+        for (Path file : files) {
+            try {
+                loaded.add(SegmentFile.open(file));
+                newest = file;
+            } catch (IOException | RuntimeException e) {
+                log.error("Skipping unreadable history segment {}: {}", file, e.getMessage());
+            }
+        }
+        if (newest != null) {
+            // ids only ever grow, so the newest segment's dictionaries decode every older one
+            String[][] dictionaries = SegmentFile.readDictionaries(newest);
+            terminals.restore(dictionaries[0]);
+            merchants.restore(dictionaries[1]);
+            labels.restore(dictionaries[2]);
+            nextSequence = SegmentFile.sequenceOf(files.get(files.size() - 1)) + 1;
+        }
+        segments = loaded;
+        log.info("Loaded {} history segments ({} rows) from {}", loaded.size(), getRowCount(), directory);
+    }
+
+    private void writeLoop() {
+        List<HistoryRow> batch = new ArrayList<>(WRITER_BATCH);
+        while (running) {
+            try {
+                HistoryRow row = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (row != null) {
+                    append(row);
+                    queue.drainTo(batch, WRITER_BATCH);
+                    for (HistoryRow next : batch) {
+                        append(next);
+                    }
+                    batch.clear();
+                }
+                if (active != null && active.size() > 0
+                        && System.currentTimeMillis() - activeOpenedAt >= historyConfig.getSealInterval()) {
+                    seal();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                batch.clear();
+                log.error("History writer error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void append(HistoryRow row) {
+        try {
+            appendRow(row);
+        } finally {
+            written.incrementAndGet();
+        }
+    }
+
+    private void appendRow(HistoryRow row) {
+        if (active == null) {
+            active = new MemorySegment(nextSequence++, historyConfig.getSegmentRows());
+            activeOpenedAt = System.currentTimeMillis();
+            synchronized (segmentsLock) {
+                List<HistorySegment> updated = new ArrayList<>(segments);
+                updated.add(active);
+                segments = updated;
+            }
+        }
+        active.append(row, terminals.encode(row.terminalId), merchants.encode(row.merchantId),
+                labels.encode(row.currency), labels.encode(row.responseCode), labels.encode(row.type),
+                labels.encode(row.status));
+        if (active.isFull()) {
+            seal();
+        }
+    }
+
+    /**
+     * Writes the open segment to disk and swaps the oldest heap segments beyond the configured
+     * number for their mapped files.
+     */
+    private void seal() {
+        MemorySegment sealed = active;
+        active = null;
+        try {
+            SegmentFile.write(directory.resolve(SegmentFile.fileName(sealed.sequence())), sealed,
+                    terminals, merchants, labels);
+        } catch (IOException e) {
+            log.error("Could not write history segment {}, keeping it in memory only: {}",
+                    sealed.sequence(), e.getMessage());
+            return;
+        }
+        synchronized (segmentsLock) {
+            List<HistorySegment> updated = new ArrayList<>(segments);
+            int onHeap = 0;
+            for (HistorySegment segment : updated) {
+                if (segment instanceof MemorySegment) {
+                    onHeap++;
+                }
+            }
+            for (int i = 0; i < updated.size() && onHeap > historyConfig.getMemorySegments(); i++) {
+                HistorySegment segment = updated.get(i);
+                if (segment instanceof MemorySegment) {
+                    try {
+                        updated.set(i, SegmentFile.open(directory.resolve(SegmentFile.fileName(segment.sequence()))));
+                        onHeap--;
+                    } catch (IOException e) {
+                        log.warn("Keeping history segment {} on the heap: {}", segment.sequence(), e.getMessage());
+                    }
+                }
+            }
+            segments = updated;
+        }
+    }
+
+    private HistoryRecord toRecord(HistorySegment segment, int row) {
+        return HistoryRecord.builder()
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(segment.time(row)), ZoneId.systemDefault()))
+                .rrn(HistoryRow.zeroPad(segment.rrn(row), 12))
+                .stan(HistoryRow.zeroPad(segment.stan(row), 6))
+                .authCode(HistoryRow.unpackAscii(segment.authCode(row)))
+                .terminalId(terminals.name(segment.terminal(row)))
+                .merchantId(merchants.name(segment.merchant(row)))
+                .maskedCardNumber(HistoryRow.maskedPan(segment.panBin(row), segment.panLast4(row),
+                        segment.panLength(row)))
+                .transactionType(labels.name(segment.type(row)))
+                .amount(BigDecimal.valueOf(segment.amount(row), amountScale(segment, segment.currency(row))))
+                .currencyCode(labels.name(segment.currency(row)))
+                .responseCode(labels.name(segment.responseCode(row)))
+                .status(labels.name(segment.status(row)))
+                .build();
+    }
+
+    private int amountScale(HistorySegment segment, int currency) {
+        return segment.centAmounts() ? 2 : Iso8583Util.minorUnitDigits(labels.name(currency));
+    }
+
+    /**
+     * @return -1 when the filter is not set, {@link #UNKNOWN} when no row can match it
+     */
+    private static int filterId(Dictionary dictionary, String value) {
+        if (value == null) {
+            return -1;
+        }
+        int id = dictionary.idOf(value);
+        return id >= 0 ? id : UNKNOWN;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Amount bounds of one query. Rows hold minor units of their own currency, so the bounds are
+     * scaled once per currency (and per segment kind) and then compared as longs.
+     */
+    private final class AmountRange {
+
+        private final BigDecimal min;
+        private final BigDecimal max;
+        private final Map<Integer, long[]> scaled = new HashMap<>();
+
+        private AmountRange(BigDecimal min, BigDecimal max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        private boolean contains(HistorySegment segment, int row) {
+            int currency = segment.currency(row);
+            long[] bounds = scaled.computeIfAbsent(segment.centAmounts() ? -currency - 2 : currency, key -> {
+                int scale = amountScale(segment, currency);
+                return new long[]{
+                        min != null ? min.movePointRight(scale).setScale(0, RoundingMode.CEILING).longValue() : Long.MIN_VALUE,
+                        max != null ? max.movePointRight(scale).setScale(0, RoundingMode.FLOOR).longValue() : Long.MAX_VALUE};
+            });
+            long amount = segment.amount(row);
+            return amount >= bounds[0] && amount <= bounds[1];
+        }
+    }
+}
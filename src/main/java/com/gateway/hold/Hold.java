@@ -0,0 +1,132 @@
+package com.gateway.hold;
+
+/**
+ * One open pre-authorisation and what has been completed against it. Amounts are in minor units.
+ * A completion first reserves its amount, so concurrent completions cannot overdraw the hold, and
+ * then either confirms or releases the reservation once the host has answered.
+ */
+public final class Hold {
+
+    private final String rrn;
+    private final String stan;
+    private final String authCode;
+    private final String cardNumber;
+    private final String terminalId;
+    private final String merchantId;
+    private final String currencyCode;
+    private final long authorised;
+    private final long expiresAt;
+
+    private long completed;
+    private long reserved;
+    private int completions;
+    private boolean closed;
+
+    // expiry wheel links, guarded by the wheel
+    long tick;
+    Hold prev;
+    Hold next;
+    boolean scheduled;
+
+    Hold(String rrn, String stan, String authCode, String cardNumber, String terminalId, String merchantId,
+         String currencyCode, long authorised, long expiresAt) {
+        this.rrn = rrn;
+        this.stan = stan;
+        this.authCode = authCode;
+        this.cardNumber = cardNumber;
+        this.terminalId = terminalId;
+        this.merchantId = merchantId;
+        this.currencyCode = currencyCode;
+        this.authorised = authorised;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getRrn() {
+        return rrn;
+    }
+
+    public String getStan() {
+        return stan;
+    }
+
+    public String getAuthCode() {
+        return authCode;
+    }
+
+    public String getCardNumber() {
+        return cardNumber;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public long getAuthorised() {
+        return authorised;
+    }
+
+    /**
+     * @return epoch millis after which the hold can no longer be completed
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized int getCompletions() {
+        return completions;
+    }
+
+    synchronized boolean reserve(long amount, long limit) {
+        if (closed || completed + reserved + amount > limit) {
+            return false;
+        }
+        reserved += amount;
+        return true;
+    }
+
+    /**
+     * @return {@code true} if nothing is left to complete
+     */
+    synchronized boolean confirm(long amount) {
+        reserved -= amount;
+        completed += amount;
+        completions++;
+        return completed >= authorised && reserved == 0;
+    }
+
+    /**
+     * @return {@code true} if nothing is left to complete
+     */
+    synchronized boolean release(long amount) {
+        reserved -= amount;
+        return completed >= authorised && reserved == 0;
+    }
+
+    /**
+     * @return {@code false} if the hold was already closed
+     */
+    synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    synchronized void restore(long completed, int completions) {
+        this.completed = completed;
+        this.completions = completions;
+    }
+}
@@ -0,0 +1,59 @@
+package com.gateway.hold;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.hold")
+@SuppressWarnings("unused")
+public class HoldConfig {
+    private boolean enabled = true;
+    // How long an approved pre-authorisation can be completed (ms); the issuer releases the rest
+    private long ttl = 604800000;
+    // How far the completions of one hold may exceed it in total (percent of the authorised amount)
+    private int overagePercent = 0;
+    // Expiry resolution (ms); holds expire up to one tick late
+    private long tick = 60000;
+    // Slots in the expiry wheel; holds further out than tick * wheel-size wait extra rounds
+    private int wheelSize = 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getOveragePercent() {
+        return overagePercent;
+    }
+
+    public void setOveragePercent(int overagePercent) {
+        this.overagePercent = overagePercent;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    public int getWheelSize() {
+        return wheelSize;
+    }
+
+    public void setWheelSize(int wheelSize) {
+        this.wheelSize = wheelSize;
+    }
+}
@@ -0,0 +1,229 @@
+package com.gateway.hold;
+
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.util.Iso8583Util;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Open pre-authorisations, indexed by RRN, by auth code and card, and by card and terminal, so a
+ * completion finds its hold with a few hash lookups whatever it quotes. The card and terminal index
+ * keeps the latest hold. A hold closes when it is completed in full, cancelled by a reversal, or
+ * expires; expiry runs on a timer wheel rather than a scan of the open holds.
+ */
+@Component
+@Log4j2
+public class HoldLedger {
+
+    private final HoldConfig config;
+    private final LongSupplier clock;
+    private final HoldWheel wheel;
+
+    private final Map<String, Hold> byRrn = new ConcurrentHashMap<>();
+    private final Map<String, Hold> byAuthCode = new ConcurrentHashMap<>();
+    private final Map<String, Hold> byCardTerminal = new ConcurrentHashMap<>();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+
+    @Autowired
+    public HoldLedger(HoldConfig config, GatewayMetrics gatewayMetrics) {
+        this(config, System::currentTimeMillis);
+        gatewayMetrics.gaugeHolds(byRrn::size, opened::sum, completed::sum, expired::sum, unmatched::sum);
+    }
+
+    HoldLedger(HoldConfig config, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        this.wheel = new HoldWheel(config.getTick(), config.getWheelSize(), clock.getAsLong());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Records an approved pre-authorisation.
+     */
+    public Hold open(TransactionRequest request, String rrn, String stan, String authCode) {
+        Hold hold = new Hold(rrn, stan, authCode, request.getCardNumber(), request.getTerminalId(),
+                request.getMerchantId(), request.getCurrencyCode(), minorUnits(request.getAmount(), request.getCurrencyCode()),
+                clock.getAsLong() + config.getTtl());
+        index(hold);
+        opened.increment();
+        return hold;
+    }
+
+    /**
+     * Finds the open hold a completion refers to: by its original RRN, then its original auth code,
+     * then the latest hold for the card at the same terminal.
+     *
+     * @return the hold, or {@code null} if none is open for this card
+     */
+    public Hold match(TransactionRequest completion) {
+        String pan = completion.getCardNumber();
+        Hold hold = null;
+        if (completion.getOriginalRRN() != null) {
+            hold = byRrn.get(completion.getOriginalRRN());
+        }
+        if (hold == null && completion.getOriginalAuthCode() != null) {
+            hold = byAuthCode.get(key(completion.getOriginalAuthCode(), pan));
+        }
+        if (hold == null) {
+            hold = byCardTerminal.get(key(pan, completion.getTerminalId()));
+        }
+        // an RRN quoted for another card does not match
+        if (hold == null || !hold.getCardNumber().equals(pan)) {
+            unmatched.increment();
+            return null;
+        }
+        return hold;
+    }
+
+    /**
+     * Sets the completion's amount aside before it is sent.
+     *
+     * @return {@code false} if the hold has closed or the amount exceeds what is left of it
+     */
+    public boolean reserve(Hold hold, BigDecimal amount) {
+        long limit = hold.getAuthorised() + hold.getAuthorised() * config.getOveragePercent() / 100;
+        return hold.reserve(minorUnits(amount, hold.getCurrencyCode()), limit);
+    }
+
+    /**
+     * Draws an approved completion from its hold, closing the hold once it is used up.
+     */
+    public void complete(Hold hold, BigDecimal amount) {
+        completed.increment();
+        if (hold.confirm(minorUnits(amount, hold.getCurrencyCode()))) {
+            close(hold);
+        }
+    }
+
+    /**
+     * Returns a declined or failed completion's reservation to the hold.
+     */
+    public void release(Hold hold, BigDecimal amount) {
+        if (hold.release(minorUnits(amount, hold.getCurrencyCode()))) {
+            close(hold);
+        }
+    }
+
+    /**
+     * Closes the hold of a reversed pre-authorisation.
+     */
+    public void cancel(String rrn) {
+        Hold hold = byRrn.get(rrn);
+        if (hold != null) {
+            close(hold);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.hold.tick:60000}")
+    public void expire() {
+        int count = 0;
+        for (Hold hold : wheel.advance(clock.getAsLong())) {
+            if (unindex(hold)) {
+                count++;
+                log.debug("Hold expired: RRN={}, {} completions, {} of {} completed", hold.getRrn(),
+                        hold.getCompletions(), hold.getCompleted(), hold.getAuthorised());
+            }
+        }
+        if (count > 0) {
+            expired.add(count);
+            log.info("Expired {} holds, {} still open", count, byRrn.size());
+        }
+    }
+
+    public Hold get(String rrn) {
+        return byRrn.get(rrn);
+    }
+
+    public int size() {
+        return byRrn.size();
+    }
+
+    public List<HoldRecord> snapshot() {
+        List<HoldRecord> records = new ArrayList<>(byRrn.size());
+        for (Hold hold : byRrn.values()) {
+            HoldRecord record = new HoldRecord();
+            record.rrn = hold.getRrn();
+            record.stan = hold.getStan();
+            record.authCode = hold.getAuthCode();
+            record.cardNumber = hold.getCardNumber();
+            record.terminalId = hold.getTerminalId();
+            record.merchantId = hold.getMerchantId();
+            record.currencyCode = hold.getCurrencyCode();
+            record.authorised = hold.getAuthorised();
+            record.completed = hold.getCompleted();
+            record.completions = hold.getCompletions();
+            record.expiresAt = hold.getExpiresAt();
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Reopens saved holds; any that expired while the gateway was down go out on the next tick.
+     */
+    public void restore(List<HoldRecord> records) {
+        for (HoldRecord record : records) {
+            Hold hold = new Hold(record.rrn, record.stan, record.authCode, record.cardNumber, record.terminalId,
+                    record.merchantId, record.currencyCode, record.authorised, record.expiresAt);
+            hold.restore(record.completed, record.completions);
+            index(hold);
+        }
+    }
+
+    private void index(Hold hold) {
+        Hold previous = byRrn.put(hold.getRrn(), hold);
+        if (previous != null && previous != hold) {
+            close(previous);
+        }
+        if (hold.getAuthCode() != null) {
+            byAuthCode.put(key(hold.getAuthCode(), hold.getCardNumber()), hold);
+        }
+        byCardTerminal.put(key(hold.getCardNumber(), hold.getTerminalId()), hold);
+        wheel.schedule(hold);
+    }
+
+    private void close(Hold hold) {
+        wheel.cancel(hold);
+        unindex(hold);
+    }
+
+    /**
+     * @return {@code false} if another thread closed the hold first
+     */
+    private boolean unindex(Hold hold) {
+        if (!hold.close()) {
+            return false;
+        }
+        byRrn.remove(hold.getRrn(), hold);
+        if (hold.getAuthCode() != null) {
+            byAuthCode.remove(key(hold.getAuthCode(), hold.getCardNumber()), hold);
+        }
+        byCardTerminal.remove(key(hold.getCardNumber(), hold.getTerminalId()), hold);
+        return true;
+    }
+
+    private static String key(String first, String second) {
+        return first + '|' + second;
+    }
+
+    private static long minorUnits(BigDecimal amount, String currencyCode) {
+        return amount != null ? Iso8583Util.toMinorUnits(amount, currencyCode) : 0;
+    }
+}
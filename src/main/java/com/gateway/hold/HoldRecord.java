@@ -0,0 +1,19 @@
+package com.gateway.hold;
+
+/**
+ * An open hold as saved across a restart. Reservations of completions still in flight are not
+ * kept; the drain has finished or cut off their exchanges by the time state is saved.
+ */
+public class HoldRecord {
+    public String rrn;
+    public String stan;
+    public String authCode;
+    public String cardNumber;
+    public String terminalId;
+    public String merchantId;
+    public String currencyCode;
+    public long authorised;
+    public long completed;
+    public int completions;
+    public long expiresAt;
+}
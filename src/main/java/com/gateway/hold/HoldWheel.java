@@ -0,0 +1,102 @@
+package com.gateway.hold;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hashed timer wheel for hold expiry. A hold is linked into the slot of the tick it expires in, so
+ * scheduling and cancelling are O(1); each tick visits one slot, leaving holds due in a later
+ * round where they are.
+ */
+final class HoldWheel {
+
+    private final long tickMillis;
+    private final Hold[] slots;
+    private final int mask;
+    private long lastTick;
+    private int size;
+
+    HoldWheel(long tickMillis, int wheelSize, long nowMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Hold wheel tick and size must be positive");
+        }
+        int length = Integer.highestOneBit(wheelSize);
+        if (length < wheelSize) {
+            length <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new Hold[length];
+        this.mask = length - 1;
+        this.lastTick = nowMillis / tickMillis;
+    }
+
+    synchronized void schedule(Hold hold) {
+        // rounded up so a hold never expires early; one already due goes out on the next tick
+        long tick = Math.max((hold.getExpiresAt() + tickMillis - 1) / tickMillis, lastTick + 1);
+        int index = (int) (tick & mask);
+        hold.tick = tick;
+        hold.prev = null;
+        hold.next = slots[index];
+        if (hold.next != null) {
+            hold.next.prev = hold;
+        }
+        slots[index] = hold;
+        hold.scheduled = true;
+        size++;
+    }
+
+    synchronized void cancel(Hold hold) {
+        if (hold.scheduled) {
+            unlink(hold);
+        }
+    }
+
+    /**
+     * @return the holds whose expiry tick has passed, now unlinked
+     */
+    synchronized List<Hold> advance(long nowMillis) {
+        long now = nowMillis / tickMillis;
+        if (now <= lastTick) {
+            return Collections.emptyList();
+        }
+        List<Hold> expired = null;
+        // after a gap longer than a round every slot is visited once
+        long from = Math.max(lastTick + 1, now - slots.length + 1);
+        for (long tick = from; tick <= now; tick++) {
+            Hold hold = slots[(int) (tick & mask)];
+            while (hold != null) {
+                Hold next = hold.next;
+                if (hold.tick <= now) {
+                    unlink(hold);
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(hold);
+                }
+                hold = next;
+            }
+        }
+        lastTick = now;
+        return expired != null ? expired : Collections.emptyList();
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void unlink(Hold hold) {
+        if (hold.prev != null) {
+            hold.prev.next = hold.next;
+        } else {
+            slots[(int) (hold.tick & mask)] = hold.next;
+        }
+        if (hold.next != null) {
+            hold.next.prev = hold.prev;
+        }
+        hold.prev = null;
+        hold.next = null;
+        hold.scheduled = false;
+        size--;
+    }
+}
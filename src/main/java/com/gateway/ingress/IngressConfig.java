@@ -0,0 +1,106 @@
+package com.gateway.ingress;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.ingress")
+@SuppressWarnings("unused")
+public class IngressConfig {
+    private boolean enabled = false;
+    private int port = 8583;
+    private int backlog = 1024;
+    // Framing of terminal messages, as gateway.tcp.length-header-size/-format
+    private int lengthHeaderSize = 2;
+    private String lengthHeaderFormat = "binary";
+    // Connections beyond this are closed as soon as they are accepted
+    private int maxConnections = 10000;
+    // Unpack, dispatch and pack; also run the transactions when the staged pipeline is off
+    private int workerThreads = 32;
+    // Per-connection read buffer (bytes); a larger frame closes the connection
+    private int readBufferSize = 8192;
+    // Deadline for each transaction (ms), as the X-Request-Timeout header; 0 means the admission default
+    private long requestTimeout = 0;
+    // How long shutdown waits for answers still being worked on to be written (ms)
+    private long shutdownTimeout = 5000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public int getLengthHeaderSize() {
+        return lengthHeaderSize;
+    }
+
+    public void setLengthHeaderSize(int lengthHeaderSize) {
+        this.lengthHeaderSize = lengthHeaderSize;
+    }
+
+    public String getLengthHeaderFormat() {
+        return lengthHeaderFormat;
+    }
+
+    public void setLengthHeaderFormat(String lengthHeaderFormat) {
+        this.lengthHeaderFormat = lengthHeaderFormat;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = readBufferSize;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+}
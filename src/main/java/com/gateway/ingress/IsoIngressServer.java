@@ -0,0 +1,436 @@
+package com.gateway.ingress;
+
+import com.gateway.admission.LoadShedder;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacService;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import com.gateway.model.enums.ResponseCode;
+import com.gateway.model.enums.TransactionType;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.service.PendingReversalStore;
+import com.gateway.service.TransactionService;
+import com.gateway.tcp.LengthHeader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes ISO 8583 straight from terminals and switches, next to the JSON API.
+ * <p>
+ * A single selector thread accepts connections and reads length-prefixed frames in the bundled
+ * packager's layout. Frames are unpacked on a worker pool and go through {@link TransactionService}
+ * like any JSON request; the answer is written back on the connection it came in on, so several
+ * requests may be outstanding on one connection and are answered as they complete. Reversals
+ * (0400/0420) quote the RRN the gateway returned in field 37 of the original response; network
+ * management messages (0800) are answered here. When MACing is on, every request must carry a valid
+ * MAC and every answer is signed with the same key as the host link.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class IsoIngressServer {
+
+    private static final long SHUTDOWN_POLL_MILLIS = 20;
+
+    private final IngressConfig config;
+    private final CustomPackager customPackager;
+    private final Iso8583Converter iso8583Converter;
+    private final TransactionService transactionService;
+    private final LoadShedder loadShedder;
+    private final GatewayMetrics gatewayMetrics;
+    private final MacService macService;
+    private final PendingReversalStore pendingReversals;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    // frames taken in whose answer has not been queued for writing yet
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong answered = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    private LengthHeader lengthHeader;
+    private ServerSocketChannel server;
+    private Selector selector;
+    private ExecutorService workers;
+    private Thread ioThread;
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        lengthHeader = LengthHeader.of(config.getLengthHeaderSize(), config.getLengthHeaderFormat());
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(config.getWorkerThreads(), r -> {
+            Thread thread = new Thread(r, "iso-ingress-worker-" + workerIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        gatewayMetrics.gaugeIngress(connections::size, received::get, answered::get, refused::get);
+
+        running = true;
+        ioThread = new Thread(this::ioLoop, "iso-ingress-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        log.info("ISO ingress listening on port {} ({}-byte {} length header)", getPort(),
+                config.getLengthHeaderSize(), config.getLengthHeaderFormat());
+    }
+
+    /**
+     * Stops accepting, lets the transactions already taken in be answered, then closes every
+     * connection. Runs after the drain, which sheds what arrives in the meantime.
+     */
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            log.debug("Error closing ingress listener: {}", e.getMessage());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getShutdownTimeout());
+        try {
+            while ((inFlight.get() > 0 || hasQueuedWrites()) && System.nanoTime() < deadline) {
+                Thread.sleep(SHUTDOWN_POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (inFlight.get() > 0) {
+            log.warn("ISO ingress stopped with {} transactions unanswered", inFlight.get());
+        }
+        running = false;
+        workers.shutdownNow();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing ingress selector: {}", e.getMessage());
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getPort() {
+        return server != null ? server.socket().getLocalPort() : config.getPort();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getAnsweredCount() {
+        return answered.get();
+    }
+
+    private void ioLoop() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    if (pending.key.isValid()) {
+                        pending.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read((Connection) key.attachment());
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write((Connection) key.attachment());
+                        }
+                    } catch (IOException e) {
+                        Object attachment = key.attachment();
+                        if (attachment instanceof Connection) {
+                            log.debug("Closing ingress connection {}: {}", attachment, e.getMessage());
+                            ((Connection) attachment).close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                log.error("ISO ingress I/O loop stopped: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            if (connections.size() >= config.getMaxConnections()) {
+                refused.incrementAndGet();
+                log.warn("Refusing ingress connection from {}: {} connections open",
+                        channel.getRemoteAddress(), connections.size());
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setKeepAlive(true);
+            Connection connection = new Connection(channel, config.getReadBufferSize());
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        if (connection.channel.read(buffer) < 0) {
+            connection.close();
+            return;
+        }
+        buffer.flip();
+        int headerSize = lengthHeader.size();
+        while (buffer.remaining() >= headerSize) {
+            int length = lengthHeader.decode(buffer.array(), buffer.arrayOffset() + buffer.position());
+            if (length > buffer.capacity() - headerSize) {
+                throw new IOException("Frame of " + length + " bytes exceeds the read buffer");
+            }
+            if (buffer.remaining() < headerSize + length) {
+                break;
+            }
+            buffer.position(buffer.position() + headerSize);
+            byte[] frame = new byte[length];
+            buffer.get(frame);
+            received.incrementAndGet();
+            inFlight.incrementAndGet();
+            try {
+                workers.execute(() -> handle(connection, frame));
+            } catch (RejectedExecutionException e) {
+                // shutting down; the terminal will time the request out and reverse it
+                inFlight.decrementAndGet();
+            }
+        }
+        buffer.compact();
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer next;
+        while ((next = connection.writeQueue.peek()) != null) {
+            connection.channel.write(next);
+            if (next.hasRemaining()) {
+                return;
+            }
+            connection.writeQueue.poll();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+        // an answer may have been queued after the peek above returned null
+        if (!connection.writeQueue.isEmpty()) {
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void handle(Connection connection, byte[] frame) {
+        ISOMsg request;
+        try {
+            request = customPackager.unpack(frame);
+        } catch (ISOException e) {
+            // without a readable MTI there is nothing to answer
+            log.warn("Unreadable ISO message from {}: {}", connection, e.getMessage());
+            inFlight.decrementAndGet();
+            return;
+        }
+        try {
+            macService.verifyRequest(frame, request);
+        } catch (ISOException e) {
+            log.warn("Rejected ingress message from {}: {}", connection, e.getMessage());
+            connection.reply(request, answer(ResponseCode.SECURITY_VIOLATION));
+            return;
+        }
+        try {
+            String mti = request.getMTI();
+            switch (mti) {
+                case "0800":
+                    connection.reply(request, answer(ResponseCode.APPROVED));
+                    return;
+                case "0400":
+                case "0420":
+                    connection.reply(request, reverse(request));
+                    return;
+                default:
+                    break;
+            }
+            TransactionType type = iso8583Converter.ingressTransactionType(request);
+            if (type == null) {
+                connection.reply(request, answer(ResponseCode.INVALID_TRANSACTION));
+                return;
+            }
+            TransactionRequest transaction = iso8583Converter.isoToRequest(request, type);
+            long deadline = loadShedder.deadlineFromTimeout(
+                    config.getRequestTimeout() > 0 ? config.getRequestTimeout() : null);
+            transactionService.processTransactionAsync(transaction, deadline, workers)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            log.error("Ingress transaction failed: STAN={}: {}", request.getString(11),
+                                    error.getMessage(), error);
+                            connection.reply(request, answer(ResponseCode.SYSTEM_ERROR));
+                        } else {
+                            connection.reply(request, response);
+                        }
+                    });
+        } catch (ISOException | RejectedExecutionException e) {
+            log.error("Could not process ingress message: STAN={}: {}", request.getString(11), e.getMessage());
+            connection.reply(request, answer(ResponseCode.SYSTEM_ERROR));
+        }
+    }
+
+    private TransactionResponse reverse(ISOMsg request) {
+        String rrn = request.getString(37);
+        if (rrn == null || rrn.length() < 6) {
+            return answer(ResponseCode.FORMAT_ERROR);
+        }
+        // only the terminal and merchant that sent the original may reverse it
+        TransactionRequest original = pendingReversals.get(rrn);
+        if (original == null || !sameId(original.getTerminalId(), request.getString(41))
+                || !sameId(original.getMerchantId(), request.getString(42))) {
+            if (original != null) {
+                log.warn("Ingress reversal of RRN={} from terminal {} merchant {}, which did not send the original",
+                        rrn, request.getString(41), request.getString(42));
+            }
+            return answer(ResponseCode.RECORD_NOT_FOUND);
+        }
+        // the gateway RRN ends with the STAN it sent the original under
+        return transactionService.reverseTransaction(rrn, rrn.substring(rrn.length() - 6));
+    }
+
+    private static boolean sameId(String expected, String actual) {
+        return expected != null && actual != null && expected.trim().equals(actual.trim());
+    }
+
+    private static TransactionResponse answer(ResponseCode responseCode) {
+        return TransactionResponse.builder()
+                .responseCode(responseCode.getCode())
+                .responseMessage(responseCode.getMessage())
+                .approved(responseCode == ResponseCode.APPROVED)
+                .build();
+    }
+
+    private boolean hasQueuedWrites() {
+        for (Connection connection : connections) {
+            if (!connection.writeQueue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer;
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private final String remote;
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel, int readBufferSize) throws IOException {
+            this.channel = channel;
+            this.readBuffer = ByteBuffer.allocate(readBufferSize);
+            this.remote = String.valueOf(channel.getRemoteAddress());
+        }
+
+        /**
+         * Queues the answer to one request; safe from any thread.
+         */
+        private void reply(ISOMsg request, TransactionResponse response) {
+            try {
+                if (!channel.isOpen()) {
+                    log.warn("Ingress connection {} closed before STAN={} was answered", remote,
+                            request.getString(11));
+                    return;
+                }
+                byte[] body = macService.pack(iso8583Converter.responseToIso(request, response));
+                if (body.length > lengthHeader.maxLength()) {
+                    throw new ISOException("Answer of " + body.length + " bytes does not fit the length header");
+                }
+                byte[] framed = new byte[lengthHeader.size() + body.length];
+                lengthHeader.encode(framed, body.length);
+                System.arraycopy(body, 0, framed, lengthHeader.size(), body.length);
+                writeQueue.add(ByteBuffer.wrap(framed));
+                answered.incrementAndGet();
+                pendingWrites.add(this);
+                selector.wakeup();
+            } catch (ISOException e) {
+                log.error("Could not answer ingress message: STAN={}: {}", request.getString(11), e.getMessage());
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private void close() {
+            connections.remove(this);
+            try {
+                if (key != null) {
+                    key.cancel();
+                }
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing ingress connection: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return remote;
+        }
+    }
+}
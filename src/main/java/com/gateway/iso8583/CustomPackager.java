@@ -1,5 +1,8 @@
 package com.gateway.iso8583;
 
+import com.gateway.jfr.PackEvent;
+import com.gateway.jfr.UnpackEvent;
+import lombok.extern.log4j.Log4j2;
 import org.jpos.iso.ISOException;
 import org.jpos.iso.ISOMsg;
 import org.jpos.iso.ISOPackager;
@@ -14,21 +17,23 @@ import javax.annotation.PostConstruct;
 import java.io.InputStream;
 
 @Component
+@Log4j2
 public class CustomPackager {
     
     private ISOPackager packager;
     private ISOPackager defaultPackager;
+    private String fallbackReason;
     
-    @Value("${gateway.iso.packager.type:custom}")
-    private String packagerType;
-    
-    @Value("${gateway.iso.packager.config:classpath:iso8583/iso-packager.xml}")
-    private String packagerConfig;
-    
+    private final String packagerType;
+    private final String packagerConfig;
     private final ResourceLoader resourceLoader;
     
-    public CustomPackager(ResourceLoader resourceLoader) {
+    public CustomPackager(ResourceLoader resourceLoader,
+                          @Value("${gateway.iso.packager.type:custom}") String packagerType,
+                          @Value("${gateway.iso.packager.config:classpath:iso8583/iso-packager.xml}") String packagerConfig) {
         this.resourceLoader = resourceLoader;
+        this.packagerType = packagerType;
+        this.packagerConfig = packagerConfig;
         this.defaultPackager = new ISO87APackager();
     }
     
@@ -44,22 +49,51 @@ public class CustomPackager {
             }
         } catch (Exception e) {
             this.packager = defaultPackager;
+            this.fallbackReason = e.getMessage();
+            log.warn("Could not load packager {}, falling back to {}: {}", packagerConfig,
+                    defaultPackager.getClass().getSimpleName(), e.getMessage());
         }
     }
+
+    /**
+     * @return why the configured packager could not be loaded, or {@code null} if it is in use
+     */
+    public String getFallbackReason() {
+        return fallbackReason;
+    }
     
     public ISOPackager getPackager() {
         return packager;
     }
+
+    public String getPackagerConfig() {
+        return packagerConfig;
+    }
     
     public byte[] pack(ISOMsg isoMsg) throws ISOException {
+        PackEvent event = new PackEvent();
+        event.begin();
         isoMsg.setPackager(packager);
-        return isoMsg.pack();
+        byte[] packed = isoMsg.pack();
+        if (event.shouldCommit()) {
+            event.mti = isoMsg.getMTI();
+            event.bytes = packed.length;
+            event.commit();
+        }
+        return packed;
     }
     
     public ISOMsg unpack(byte[] data) throws ISOException {
+        UnpackEvent event = new UnpackEvent();
+        event.begin();
         ISOMsg isoMsg = new ISOMsg();
         isoMsg.setPackager(packager);
         isoMsg.unpack(data);
+        if (event.shouldCommit()) {
+            event.mti = isoMsg.getMTI();
+            event.bytes = data.length;
+            event.commit();
+        }
         return isoMsg;
     }
     
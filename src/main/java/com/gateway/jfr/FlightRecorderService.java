@@ -0,0 +1,99 @@
+package com.gateway.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Continuous, size- and age-bounded flight recording with the gateway events enabled,
+ * dumped to disk on demand. Events that capture the process environment are always off, so a
+ * dump never contains the keys the gateway was started with.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class FlightRecorderService {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    // Environment, system properties and JVM arguments carry keys and passwords; they stay off
+    // whatever the settings file says
+    private static final String[] SECRET_EVENTS = {
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation"};
+
+    private final JfrConfig jfrConfig;
+    private final ResourceLoader resourceLoader;
+
+    private Recording recording;
+
+    @PostConstruct
+    public void start() {
+        if (!jfrConfig.isEnabled() || !FlightRecorder.isAvailable()) {
+            return;
+        }
+        try {
+            Map<String, String> settings = new HashMap<>(jdk.jfr.Configuration.getConfiguration("default").getSettings());
+            try (Reader reader = new InputStreamReader(
+                    resourceLoader.getResource(jfrConfig.getSettings()).getInputStream(), StandardCharsets.UTF_8)) {
+                settings.putAll(jdk.jfr.Configuration.create(reader).getSettings());
+            }
+            for (String event : SECRET_EVENTS) {
+                settings.put(event + "#enabled", "false");
+            }
+
+            Recording continuous = new Recording(settings);
+            continuous.setName("gateway-continuous");
+            continuous.setToDisk(true);
+            continuous.setMaxAge(Duration.ofMinutes(jfrConfig.getMaxAgeMinutes()));
+            continuous.setMaxSize(jfrConfig.getMaxSizeMb() * 1024L * 1024L);
+            continuous.start();
+            this.recording = continuous;
+            log.info("Started continuous flight recording (max age {}m, max size {}MB)",
+                    jfrConfig.getMaxAgeMinutes(), jfrConfig.getMaxSizeMb());
+        } catch (IOException | ParseException | RuntimeException e) {
+            log.warn("Could not start flight recording: {}", e.getMessage());
+        }
+    }
+
+    public boolean isRecording() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    public Path dump() throws IOException {
+        if (!isRecording()) {
+            throw new IllegalStateException("Flight recording is not running");
+        }
+        Path directory = Paths.get(jfrConfig.getDumpDirectory());
+        Files.createDirectories(directory);
+        Path file = directory.resolve("gateway-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr");
+        recording.dump(file);
+        log.info("Dumped flight recording to {}", file);
+        return file;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
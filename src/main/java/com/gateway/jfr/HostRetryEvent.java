@@ -0,0 +1,30 @@
+package com.gateway.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.gateway.HostRetry")
+@Label("Host Retry")
+@Description("Host exchange failed and will be retried")
+@Category({"Gateway", "Host"})
+@StackTrace(false)
+public class HostRetryEvent extends Event {
+
+    @Label("Host")
+    public String host;
+
+    @Label("Attempt")
+    public int attempt;
+
+    @Label("Backoff Delay")
+    @Timespan(Timespan.MILLISECONDS)
+    public long delay;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,56 @@
+package com.gateway.jfr;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.jfr")
+@SuppressWarnings("unused")
+public class JfrConfig {
+    private boolean enabled = true;
+    // Applied on top of the JDK "default" profile
+    private String settings = "classpath:jfr/gateway.jfc";
+    private int maxAgeMinutes = 30;
+    private int maxSizeMb = 256;
+    private String dumpDirectory = "logs/jfr";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getSettings() {
+        return settings;
+    }
+
+    public void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    public int getMaxAgeMinutes() {
+        return maxAgeMinutes;
+    }
+
+    public void setMaxAgeMinutes(int maxAgeMinutes) {
+        this.maxAgeMinutes = maxAgeMinutes;
+    }
+
+    public int getMaxSizeMb() {
+        return maxSizeMb;
+    }
+
+    public void setMaxSizeMb(int maxSizeMb) {
+        this.maxSizeMb = maxSizeMb;
+    }
+
+    public String getDumpDirectory() {
+        return dumpDirectory;
+    }
+
+    public void setDumpDirectory(String dumpDirectory) {
+        this.dumpDirectory = dumpDirectory;
+    }
+}
@@ -0,0 +1,24 @@
+package com.gateway.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.gateway.Pack")
+@Label("Pack")
+@Description("ISOMsg packed to bytes")
+@Category({"Gateway", "Codec"})
+@StackTrace(false)
+public class PackEvent extends Event {
+
+    @Label("MTI")
+    public String mti;
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+}
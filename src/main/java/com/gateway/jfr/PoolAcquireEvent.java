@@ -0,0 +1,25 @@
+package com.gateway.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.gateway.PoolAcquire")
+@Label("Pool Acquire")
+@Description("Wait for a host connection from the pool")
+@Category({"Gateway", "Host"})
+@StackTrace(false)
+public class PoolAcquireEvent extends Event {
+
+    @Label("Host")
+    public String host;
+
+    @Label("Idle Connections")
+    public int idle;
+
+    @Label("Total Connections")
+    public int total;
+}
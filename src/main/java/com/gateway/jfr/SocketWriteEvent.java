@@ -0,0 +1,30 @@
+package com.gateway.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.gateway.SocketWrite")
+@Label("Host Write")
+@Description("Framed ISO 8583 message written to the host")
+@Category({"Gateway", "Host"})
+@StackTrace(false)
+public class SocketWriteEvent extends Event {
+
+    @Label("Host")
+    public String host;
+
+    @Label("MTI")
+    public String mti;
+
+    @Label("STAN")
+    public String stan;
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+}
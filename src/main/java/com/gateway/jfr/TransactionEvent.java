@@ -0,0 +1,34 @@
+package com.gateway.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.gateway.Transaction")
+@Label("Transaction")
+@Description("One processTransaction or reverseTransaction call")
+@Category({"Gateway", "Transactions"})
+@StackTrace(false)
+public class TransactionEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Transaction Type")
+    public String transactionType;
+
+    @Label("MTI")
+    public String mti;
+
+    @Label("STAN")
+    public String stan;
+
+    @Label("RRN")
+    public String rrn;
+
+    @Label("Response Code")
+    public String responseCode;
+}
@@ -0,0 +1,41 @@
+package com.gateway.lifecycle;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.drain")
+@SuppressWarnings("unused")
+public class DrainConfig {
+    // How long in-flight host exchanges may run once draining starts
+    private long timeout = 20000;
+    // Pending reversals and store-and-forward messages are saved here on shutdown and restored on start
+    private String stateFile = "data/gateway-state.jsonl";
+    // Hex AES key (16, 24 or 32 bytes) the card numbers in the state file are encrypted under;
+    // without one no state is saved
+    private String stateKey;
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public String getStateFile() {
+        return stateFile;
+    }
+
+    public void setStateFile(String stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    public String getStateKey() {
+        return stateKey;
+    }
+
+    public void setStateKey(String stateKey) {
+        this.stateKey = stateKey;
+    }
+}
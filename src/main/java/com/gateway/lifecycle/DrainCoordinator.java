@@ -0,0 +1,105 @@
+package com.gateway.lifecycle;
+
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.admission.LoadShedder;
+import com.gateway.service.TransactionService;
+import com.gateway.stip.StandInAdviceQueue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Takes the instance out of service without losing transactions:
+ * <ol>
+ *   <li>readiness goes to REFUSING_TRAFFIC and new requests are shed with 91 / Retry-After</li>
+ *   <li>in-flight host exchanges get up to {@code gateway.drain.timeout} to finish</li>
+ *   <li>exchanges still running are cut off; each one queues a reversal</li>
+ *   <li>transactions still queued in the staged pipeline, if enabled, are completed as shed</li>
+ *   <li>one store-and-forward pass is attempted, then whatever is left is saved to disk</li>
+ * </ol>
+ * Runs on context close, before lifecycle beans stop and before the acquirer connection pools close
+ * their sockets, or earlier when triggered through {@code /actuator/drain} (e.g. from a preStop hook), in
+ * which case the state is saved again on close.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class DrainCoordinator {
+
+    // time for cut-off callers to queue their reversals
+    private static final long ABORT_GRACE_MILLIS = 2000;
+
+    private final DrainConfig drainConfig;
+    private final LoadShedder loadShedder;
+    private final AcquirerRegistry acquirers;
+    private final TransactionService transactionService;
+    private final StandInAdviceQueue storeAndForward;
+    private final GatewayStateStore stateStore;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean completed;
+
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        if (!started.get()) {
+            drain();
+        } else {
+            // drained earlier through the endpoint; state may have moved on since
+            saveState();
+        }
+    }
+
+    public synchronized void drain() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        log.info("Draining: refusing new work, {} host exchanges in flight", acquirers.getInFlightCount());
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        loadShedder.beginDrain();
+
+        try {
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(drainConfig.getTimeout());
+            if (!acquirers.awaitInFlight(deadline)) {
+                int aborted = acquirers.abortInFlight();
+                log.warn("Drain deadline reached, cut off {} host exchanges", aborted);
+                acquirers.awaitInFlight(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ABORT_GRACE_MILLIS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        transactionService.stopPipeline();
+
+        // best effort: reversals queued above go out now if the host is still there
+        storeAndForward.forward();
+        saveState();
+        completed = true;
+        log.info("Drain finished in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void saveState() {
+        try {
+            stateStore.save();
+        } catch (IOException e) {
+            log.error("Could not save gateway state: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isDraining() {
+        return started.get();
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,41 @@
+package com.gateway.lifecycle;
+
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.stip.StandInAdviceQueue;
+import com.gateway.service.PendingReversalStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "drain")
+@RequiredArgsConstructor
+public class DrainEndpoint {
+
+    private final DrainCoordinator drainCoordinator;
+    private final AcquirerRegistry acquirers;
+    private final PendingReversalStore pendingReversals;
+    private final StandInAdviceQueue storeAndForward;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("draining", drainCoordinator.isDraining());
+        status.put("completed", drainCoordinator.isCompleted());
+        status.put("inFlight", acquirers.getInFlightCount());
+        status.put("pendingReversals", pendingReversals.size());
+        status.put("storeAndForward", storeAndForward.size());
+        return status;
+    }
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        drainCoordinator.drain();
+        return status();
+    }
+}
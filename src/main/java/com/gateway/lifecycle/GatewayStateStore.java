@@ -0,0 +1,236 @@
+package com.gateway.lifecycle;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.hold.HoldLedger;
+import com.gateway.hold.HoldRecord;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.PendingReversalStore;
+import com.gateway.stip.StandInAdviceQueue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOUtil;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves state that must outlive a restart and restores it on the next start.
+ * <p>
+ * One JSON object per line: {@code {"kind":"reversal","rrn":...,"request":{...}}} for a pending
+ * reversal, {@code {"kind":"saf","acquirer":...,"message":"<hex>"}} for a store-and-forward message
+ * packed in its acquirer's layout, {@code {"kind":"hold","hold":{...}}} for an open pre-authorisation.
+ * Card numbers are taken out of each record and saved next to it in {@code "pan"}, encrypted under
+ * {@code state-key}. Without a key nothing is saved: a reversal or advice without its card number
+ * could not be routed or matched, and holds are looked up by card. Track 2, PIN block and chip data
+ * never reach the file. The file is readable by its owner only, written to a temporary name and
+ * moved into place, and deleted once restored. Restored messages go to the acquirer they were saved
+ * for rather than being routed again.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class GatewayStateStore {
+
+    private static final String KIND_REVERSAL = "reversal";
+    private static final String KIND_SAF = "saf";
+    private static final String KIND_HOLD = "hold";
+    // Track 2, PIN block and chip data are never saved; the PAN is saved separately
+    private static final int[] SAF_STRIPPED_FIELDS = {35, 52, 55};
+
+    private final DrainConfig drainConfig;
+    private final PendingReversalStore pendingReversals;
+    private final StandInAdviceQueue storeAndForward;
+    private final AcquirerRegistry acquirers;
+    private final HoldLedger holds;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    public void restore() {
+        StateCipher cipher = cipher();
+        Path path = Paths.get(drainConfig.getStateFile());
+        if (!Files.exists(path)) {
+            return;
+        }
+        Map<String, TransactionRequest> reversals = new HashMap<>();
+        List<ISOMsg> messages = new ArrayList<>();
+        List<AcquirerProfile> messageAcquirers = new ArrayList<>();
+        List<HoldRecord> openHolds = new ArrayList<>();
+        try (BufferedReader lines = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                StateRecord record = objectMapper.readValue(line, StateRecord.class);
+                String pan = record.pan != null ? decrypt(cipher, record.pan) : null;
+                if (KIND_REVERSAL.equals(record.kind)) {
+                    if (pan != null) {
+                        record.request.setCardNumber(pan);
+                    }
+                    reversals.put(record.rrn, record.request);
+                } else if (KIND_HOLD.equals(record.kind)) {
+                    if (pan != null) {
+                        record.hold.cardNumber = pan;
+                    }
+                    openHolds.add(record.hold);
+                } else {
+                    // records written before acquirer profiles existed have none and use the default
+                    AcquirerProfile acquirer = acquirers.getProfile(record.acquirer);
+                    ISOMsg message = acquirer.getPackager().unpack(ISOUtil.hex2byte(record.message));
+                    if (pan != null) {
+                        message.set(2, pan);
+                    }
+                    messages.add(message);
+                    messageAcquirers.add(acquirer);
+                }
+            }
+        } catch (IOException | ISOException | GeneralSecurityException e) {
+            // keep the file for manual recovery rather than silently losing reversals
+            log.error("Could not restore gateway state from {}: {}", path, e.getMessage());
+            return;
+        }
+        pendingReversals.putAll(reversals);
+        for (int i = 0; i < messages.size(); i++) {
+            storeAndForward.restore(messages.get(i), messageAcquirers.get(i));
+        }
+        holds.restore(openHolds);
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            log.warn("Restored state but could not delete {}: {}", path, e.getMessage());
+        }
+        log.info("Restored {} pending reversals, {} store-and-forward messages and {} holds from {}",
+                reversals.size(), messages.size(), openHolds.size(), path);
+    }
+
+    public void save() throws IOException {
+        StateCipher cipher = cipher();
+        Map<String, TransactionRequest> reversals = pendingReversals.snapshot();
+        List<ISOMsg> messages = storeAndForward.snapshot();
+        List<HoldRecord> openHolds = holds.snapshot();
+        Path path = Paths.get(drainConfig.getStateFile()).toAbsolutePath();
+        if (reversals.isEmpty() && messages.isEmpty() && openHolds.isEmpty()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        if (cipher == null) {
+            // left for manual recovery from the log
+            reversals.keySet().forEach(rrn -> log.error("Unsaved pending reversal RRN={}", rrn));
+            messages.forEach(msg -> log.error("Unsaved store-and-forward message MTI={} STAN={} RRN={}",
+                    msg.getString(0), msg.getString(11), msg.getString(37)));
+            throw new IOException("No gateway.drain.state-key set: refusing to save " + reversals.size()
+                    + " pending reversals, " + messages.size() + " store-and-forward messages and "
+                    + openHolds.size() + " holds without their card numbers");
+        }
+        Files.createDirectories(path.getParent());
+        Path temp = createOwnerOnly(path.resolveSibling(path.getFileName() + ".tmp"));
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, TransactionRequest> entry : reversals.entrySet()) {
+                StateRecord record = new StateRecord();
+                record.kind = KIND_REVERSAL;
+                record.rrn = entry.getKey();
+                record.request = PendingReversalStore.reversalRecord(entry.getValue());
+                record.pan = encrypt(cipher, record.request.getCardNumber());
+                record.request.setCardNumber(null);
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+            for (ISOMsg message : messages) {
+                StateRecord record = new StateRecord();
+                AcquirerProfile acquirer = storeAndForward.acquirerFor(message);
+                ISOMsg saved = (ISOMsg) message.clone();
+                saved.unset(SAF_STRIPPED_FIELDS);
+                record.pan = encrypt(cipher, saved.getString(2));
+                saved.unset(2);
+                record.kind = KIND_SAF;
+                record.acquirer = acquirer.getName();
+                record.message = ISOUtil.hexString(acquirer.getPackager().pack(saved));
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+            for (HoldRecord hold : openHolds) {
+                StateRecord record = new StateRecord();
+                record.kind = KIND_HOLD;
+                record.pan = encrypt(cipher, hold.cardNumber);
+                hold.cardNumber = null;
+                record.hold = hold;
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+        } catch (ISOException e) {
+            throw new IOException("Could not pack store-and-forward message", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt card number", e);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Saved {} pending reversals, {} store-and-forward messages and {} holds to {}",
+                reversals.size(), messages.size(), openHolds.size(), path);
+    }
+
+    private StateCipher cipher() {
+        String key = drainConfig.getStateKey();
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        try {
+            return new StateCipher(key);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid gateway.drain.state-key: " + e.getMessage(), e);
+        }
+    }
+
+    private static String encrypt(StateCipher cipher, String pan) throws GeneralSecurityException {
+        return pan != null ? cipher.encrypt(pan) : null;
+    }
+
+    private static String decrypt(StateCipher cipher, String pan) throws GeneralSecurityException {
+        if (cipher == null) {
+            throw new GeneralSecurityException("card numbers are encrypted but no gateway.drain.state-key is set");
+        }
+        return cipher.decrypt(pan);
+    }
+
+    /**
+     * Creates the file empty and readable by its owner only, where the file system has POSIX
+     * permissions.
+     */
+    private static Path createOwnerOnly(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        return Files.createFile(file);
+    }
+
+    // Bound directly rather than through JsonNode, which would normalise amount scale
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class StateRecord {
+        public String kind;
+        public String rrn;
+        public TransactionRequest request;
+        public String acquirer;
+        public String message;
+        public HoldRecord hold;
+        // Base64 of IV, AES-GCM ciphertext and tag
+        public String pan;
+    }
+}
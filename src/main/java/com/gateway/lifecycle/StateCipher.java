@@ -0,0 +1,70 @@
+package com.gateway.lifecycle;
+
+import org.jpos.iso.ISOUtil;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * AES-GCM for the cardholder data in the state file. Each value gets a fresh 96-bit IV, stored in
+ * front of the ciphertext and tag, and the whole is Base64 encoded.
+ */
+final class StateCipher {
+
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @throws IllegalArgumentException unless the key is 16, 24 or 32 bytes of hex
+     */
+    StateCipher(String hexKey) {
+        byte[] bytes;
+        try {
+            bytes = ISOUtil.hex2byte(hexKey);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("State key is not a hex string");
+        }
+        if (hexKey.length() % 2 != 0 || (bytes.length != 16 && bytes.length != 24 && bytes.length != 32)) {
+            throw new IllegalArgumentException("State key must be 16, 24 or 32 bytes of hex");
+        }
+        this.key = new SecretKeySpec(bytes, "AES");
+    }
+
+    String encrypt(String value) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] sealed = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        byte[] out = new byte[IV_LENGTH + sealed.length];
+        System.arraycopy(iv, 0, out, 0, IV_LENGTH);
+        System.arraycopy(sealed, 0, out, IV_LENGTH, sealed.length);
+        return Base64.getEncoder().encodeToString(out);
+    }
+
+    /**
+     * @throws GeneralSecurityException if the value was not sealed under this key or was altered
+     */
+    String decrypt(String value) throws GeneralSecurityException {
+        byte[] in;
+        try {
+            in = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Encrypted value is not Base64", e);
+        }
+        if (in.length <= IV_LENGTH) {
+            throw new GeneralSecurityException("Encrypted value is truncated");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, in, 0, IV_LENGTH));
+        return new String(cipher.doFinal(in, IV_LENGTH, in.length - IV_LENGTH), StandardCharsets.UTF_8);
+    }
+}
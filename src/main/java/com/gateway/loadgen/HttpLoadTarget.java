@@ -0,0 +1,56 @@
+package com.gateway.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Posts corpus entries to {@code /api/v1/transactions/process}. Request bodies are the raw corpus
+ * JSON, so the generator does not spend time serialising.
+ */
+public class HttpLoadTarget implements LoadTarget {
+
+    private static final String PROCESS_PATH = "/api/v1/transactions/process";
+
+    private final HttpClient client;
+    private final URI uri;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+
+    public HttpLoadTarget(String baseUrl, Duration timeout, ObjectMapper objectMapper) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.uri = URI.create(baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) + PROCESS_PATH
+                : baseUrl + PROCESS_PATH);
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String send(RequestCorpus.Entry entry) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("X-Request-Timeout", Long.toString(timeout.toMillis()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(entry.getJson()))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        byte[] body = response.body();
+        if (body == null || body.length == 0) {
+            if (response.statusCode() >= 400) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            return null;
+        }
+        JsonNode code = objectMapper.readTree(body).get("responseCode");
+        return code == null || code.isNull() ? null : code.asText();
+    }
+}
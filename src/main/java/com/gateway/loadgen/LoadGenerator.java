@@ -0,0 +1,151 @@
+package com.gateway.loadgen;
+
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link LoadTarget} with a {@link LoadProfile} and collects latency histograms.
+ * <p>
+ * In open-loop and replay modes every request has an intended send time fixed by the schedule.
+ * Response time is measured from that intended time, not from when a worker got round to sending
+ * it, so a stall in the gateway shows up in the percentiles of every request that queued behind
+ * it (no coordinated omission). Service time, measured from the actual send, is reported alongside.
+ * Closed-loop runs have no schedule; their histogram is corrected afterwards using the mean cycle
+ * time per worker as the expected interval.
+ */
+@Log4j2
+public class LoadGenerator {
+
+    private static final String NO_CODE = "none";
+    private static final long START_DELAY = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final LoadTarget target;
+    private final RequestCorpus corpus;
+    private final LoadProfile profile;
+
+    public LoadGenerator(LoadTarget target, RequestCorpus corpus, LoadProfile profile) {
+        if (profile.getMode() == LoadProfile.Mode.REPLAY && !corpus.isTimed()) {
+            throw new IllegalArgumentException("Replay needs a corpus of captured {timestamp, request} records");
+        }
+        if (profile.getMode() == LoadProfile.Mode.OPEN && profile.getRate() <= 0) {
+            throw new IllegalArgumentException("Open-loop rate must be positive");
+        }
+        this.target = target;
+        this.corpus = corpus;
+        this.profile = profile;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        int workers = profile.getConcurrency();
+        AtomicLong sequence = new AtomicLong();
+        LongAdder errors = new LongAdder();
+        Map<String, LongAdder> responseCodes = new ConcurrentHashMap<>();
+        Histogram[] responseTimes = new Histogram[workers];
+        Histogram[] serviceTimes = new Histogram[workers];
+
+        long start = System.nanoTime() + START_DELAY;
+        long end = start + profile.getDuration().toNanos();
+
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            Histogram responseTime = new Histogram(3);
+            Histogram serviceTime = new Histogram(3);
+            responseTimes[i] = responseTime;
+            serviceTimes[i] = serviceTime;
+            threads[i] = new Thread(() -> work(start, end, sequence, errors, responseCodes, responseTime, serviceTime),
+                    "loadgen-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Histogram responseTime = new Histogram(3);
+        Histogram serviceTime = new Histogram(3);
+        for (int i = 0; i < workers; i++) {
+            responseTime.add(responseTimes[i]);
+            serviceTime.add(serviceTimes[i]);
+        }
+        if (profile.getMode() == LoadProfile.Mode.CLOSED && responseTime.getTotalCount() > 0) {
+            long expectedInterval = (long) responseTime.getMean() + profile.getThinkTime().toNanos();
+            responseTime = responseTime.copyCorrectedForCoordinatedOmission(expectedInterval);
+        }
+        return new LoadReport(profile, elapsed, serviceTime.getTotalCount(), errors.sum(), responseCodes,
+                responseTime, serviceTime);
+    }
+
+    private void work(long start, long end, AtomicLong sequence, LongAdder errors, Map<String, LongAdder> responseCodes,
+                      Histogram responseTime, Histogram serviceTime) {
+        long maxRequests = profile.getMaxRequests();
+        long thinkTime = profile.getThinkTime().toNanos();
+        boolean scheduled = profile.getMode() != LoadProfile.Mode.CLOSED;
+        parkUntil(start);
+
+        while (true) {
+            long seq = sequence.getAndIncrement();
+            if (maxRequests > 0 && seq >= maxRequests) {
+                return;
+            }
+            long intended;
+            if (scheduled) {
+                intended = intendedStart(start, seq);
+                if (intended >= end) {
+                    return;
+                }
+                parkUntil(intended);
+            } else {
+                intended = System.nanoTime();
+                if (intended >= end) {
+                    return;
+                }
+            }
+
+            long sent = System.nanoTime();
+            try {
+                String code = target.send(corpus.get(seq));
+                responseCodes.computeIfAbsent(code == null ? NO_CODE : code, k -> new LongAdder()).increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                errors.increment();
+                log.debug("Load request {} failed: {}", seq, e.toString());
+            }
+            long done = System.nanoTime();
+            responseTime.recordValue(done - intended);
+            serviceTime.recordValue(done - sent);
+
+            if (thinkTime > 0 && !scheduled) {
+                parkUntil(done + thinkTime);
+            }
+        }
+    }
+
+    long intendedStart(long start, long seq) {
+        if (profile.getMode() == LoadProfile.Mode.OPEN) {
+            return start + (long) (seq * (TimeUnit.SECONDS.toNanos(1) / profile.getRate()));
+        }
+        // replay loops the capture; passes are separated by the capture's mean inter-arrival gap
+        int size = corpus.size();
+        long span = corpus.getSpanNanos();
+        long gap = size > 1 ? span / (size - 1) : TimeUnit.MILLISECONDS.toNanos(1);
+        long pass = seq / size;
+        long offset = pass * (span + gap) + corpus.get(seq).getOffsetNanos();
+        return start + (long) (offset / profile.getSpeed());
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.gateway.loadgen;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.DebitCreditGatewayApplication;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.TransactionService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Command-line front end for {@link LoadGenerator}.
+ * <pre>
+ * java -cp gateway.jar com.gateway.loadgen.LoadGeneratorMain \
+ *     --target http://localhost:8080 --mode open --rate 500 --concurrency 64 --duration 60 --corpus corpus.jsonl
+ * </pre>
+ * {@code --target service} runs an embedded gateway (no web server) and calls {@code TransactionService}
+ * directly; its host settings come from the usual {@code gateway.*} properties.
+ */
+public final class LoadGeneratorMain {
+
+    private LoadGeneratorMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String targetSpec = "http://localhost:8080";
+        String corpusPath = null;
+        long timeoutMillis = 30000;
+        LoadProfile.LoadProfileBuilder profile = LoadProfile.builder();
+
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--target":
+                    targetSpec = value;
+                    break;
+                case "--corpus":
+                    corpusPath = value;
+                    break;
+                case "--mode":
+                    profile.mode(LoadProfile.Mode.valueOf(value.toUpperCase()));
+                    break;
+                case "--rate":
+                    profile.rate(Double.parseDouble(value));
+                    break;
+                case "--concurrency":
+                    profile.concurrency(Integer.parseInt(value));
+                    break;
+                case "--duration":
+                    profile.duration(Duration.ofSeconds(Long.parseLong(value)));
+                    break;
+                case "--requests":
+                    profile.maxRequests(Long.parseLong(value));
+                    break;
+                case "--speed":
+                    profile.speed(Double.parseDouble(value));
+                    break;
+                case "--think-time":
+                    profile.thinkTime(Duration.ofMillis(Long.parseLong(value)));
+                    break;
+                case "--timeout":
+                    timeoutMillis = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        RequestCorpus corpus;
+        if (corpusPath != null) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(corpusPath), StandardCharsets.UTF_8)) {
+                corpus = RequestCorpus.parse(reader, objectMapper);
+            }
+        } else {
+            corpus = RequestCorpus.of(Collections.singletonList(defaultRequest()), objectMapper);
+        }
+
+        ConfigurableApplicationContext context = null;
+        LoadTarget target;
+        if ("service".equals(targetSpec)) {
+            context = new SpringApplicationBuilder(DebitCreditGatewayApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run();
+            target = new ServiceLoadTarget(context.getBean(TransactionService.class));
+        } else {
+            target = new HttpLoadTarget(targetSpec, Duration.ofMillis(timeoutMillis), objectMapper);
+        }
+
+        try (LoadTarget t = target) {
+            LoadReport report = new LoadGenerator(t, corpus, profile.build()).run();
+            report.print(System.out);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static TransactionRequest defaultRequest() {
+        return TransactionRequest.builder()
+                .cardNumber("4111111111111111")
+                .transactionType("DEBIT")
+                .amount(new BigDecimal("25.00"))
+                .currencyCode("USD")
+                .terminalId("LOADGEN1")
+                .merchantId("LOADGEN00000001")
+                .merchantName("Load Generator")
+                .posEntryMode("05")
+                .merchantCategoryCode("5999")
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.gateway.loadgen;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class LoadProfile {
+
+    public enum Mode {
+        /** Fixed arrival rate regardless of how fast the gateway answers. */
+        OPEN,
+        /** Each worker sends its next request when the previous one completes. */
+        CLOSED,
+        /** Timed corpus played back with its captured spacing, compressed by {@code speed}. */
+        REPLAY
+    }
+
+    @Builder.Default
+    private Mode mode = Mode.OPEN;
+
+    // requests per second, open loop only
+    @Builder.Default
+    private double rate = 100;
+
+    // worker threads, i.e. the most requests in flight at once
+    @Builder.Default
+    private int concurrency = 16;
+
+    @Builder.Default
+    private Duration duration = Duration.ofSeconds(60);
+
+    // stop after this many requests; 0 means run for the full duration
+    private long maxRequests;
+
+    // replay speed multiplier, 2.0 plays a capture twice as fast
+    @Builder.Default
+    private double speed = 1.0;
+
+    // pause between requests per worker, closed loop only
+    @Builder.Default
+    private Duration thinkTime = Duration.ZERO;
+}
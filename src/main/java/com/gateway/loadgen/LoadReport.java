@@ -0,0 +1,97 @@
+package com.gateway.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of a {@link LoadGenerator} run. Histograms are in nanoseconds.
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final LoadProfile profile;
+    private final long elapsedNanos;
+    private final long requests;
+    private final long errors;
+    private final Map<String, Long> responseCodes = new TreeMap<>();
+    private final Histogram responseTime;
+    private final Histogram serviceTime;
+
+    LoadReport(LoadProfile profile, long elapsedNanos, long requests, long errors, Map<String, LongAdder> responseCodes,
+               Histogram responseTime, Histogram serviceTime) {
+        this.profile = profile;
+        this.elapsedNanos = elapsedNanos;
+        this.requests = requests;
+        this.errors = errors;
+        responseCodes.forEach((code, count) -> this.responseCodes.put(code, count.sum()));
+        this.responseTime = responseTime;
+        this.serviceTime = serviceTime;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public Map<String, Long> getResponseCodes() {
+        return responseCodes;
+    }
+
+    /**
+     * Completed requests per second, including errors.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Latency from intended send time, corrected for coordinated omission.
+     */
+    public Histogram getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Latency from actual send time; what the gateway alone costs per request.
+     */
+    public Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("mode=%s concurrency=%d elapsed=%.1fs%n", profile.getMode(), profile.getConcurrency(),
+                elapsedNanos / 1e9);
+        if (profile.getMode() == LoadProfile.Mode.OPEN) {
+            out.printf("target rate:  %.1f req/s%n", profile.getRate());
+        } else if (profile.getMode() == LoadProfile.Mode.REPLAY) {
+            out.printf("replay speed: %.2fx%n", profile.getSpeed());
+        }
+        out.printf("throughput:   %.1f req/s (%d requests, %d errors)%n", getThroughput(), requests, errors);
+        out.printf("responses:    %s%n", responseCodes);
+        out.printf("%-12s %12s %12s%n", "latency(ms)", "response", "service");
+        for (double percentile : PERCENTILES) {
+            out.printf("%-12s %12.3f %12.3f%n", "p" + formatPercentile(percentile),
+                    millis(responseTime.getValueAtPercentile(percentile)),
+                    millis(serviceTime.getValueAtPercentile(percentile)));
+        }
+        out.printf("%-12s %12.3f %12.3f%n", "max", millis(responseTime.getMaxValue()), millis(serviceTime.getMaxValue()));
+        out.printf("%-12s %12.3f %12.3f%n", "mean", responseTime.getMean() / 1e6, serviceTime.getMean() / 1e6);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Integer.toString((int) percentile) : Double.toString(percentile);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,22 @@
+package com.gateway.loadgen;
+
+/**
+ * System under test for {@link LoadGenerator}. Implementations are called from many threads.
+ */
+public interface LoadTarget extends AutoCloseable {
+
+    /**
+     * Sends one request and blocks until the response arrives.
+     *
+     * @return the ISO response code, or {@code null} when the reply carried none
+     * @throws Exception on transport failure; counted as an error, not a response
+     */
+    String send(RequestCorpus.Entry entry) throws Exception;
+
+    /**
+     * Releases whatever the target holds open; the default holds nothing.
+     */
+    @Override
+    default void close() {
+    }
+}
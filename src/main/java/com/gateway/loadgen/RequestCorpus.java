@@ -0,0 +1,125 @@
+package com.gateway.loadgen;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.model.TransactionRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests to drive the gateway with, one JSON object per line.
+ * <p>
+ * A line is either a plain {@code TransactionRequest} (a template, sent in rotation) or a captured
+ * record {@code {"timestamp": <epoch millis>, "request": {...}}}. When every line is a captured
+ * record the corpus is timed and can be replayed with its original spacing.
+ */
+public final class RequestCorpus {
+
+    private final List<Entry> entries;
+    private final boolean timed;
+
+    private RequestCorpus(List<Entry> entries, boolean timed) {
+        this.entries = entries;
+        this.timed = timed;
+    }
+
+    public static RequestCorpus of(List<TransactionRequest> requests, ObjectMapper objectMapper) throws IOException {
+        List<Entry> entries = new ArrayList<>(requests.size());
+        for (TransactionRequest request : requests) {
+            entries.add(new Entry(0L, request, objectMapper.writeValueAsBytes(request)));
+        }
+        return new RequestCorpus(Collections.unmodifiableList(entries), false);
+    }
+
+    public static RequestCorpus parse(Reader source, ObjectMapper objectMapper) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        boolean timed = true;
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getOriginalMessage(), e);
+            }
+            JsonNode requestNode = node;
+            long offsetNanos = 0L;
+            if (node.has("request") && node.has("timestamp")) {
+                requestNode = node.get("request");
+                offsetNanos = TimeUnit.MILLISECONDS.toNanos(node.get("timestamp").asLong());
+            } else {
+                timed = false;
+            }
+            TransactionRequest request = objectMapper.treeToValue(requestNode, TransactionRequest.class);
+            entries.add(new Entry(offsetNanos, request, objectMapper.writeValueAsBytes(requestNode)));
+        }
+        if (entries.isEmpty()) {
+            throw new IOException("Corpus contains no requests");
+        }
+        if (timed) {
+            // captures are not guaranteed to be written in arrival order
+            entries.sort((a, b) -> Long.compare(a.offsetNanos, b.offsetNanos));
+            long first = entries.get(0).offsetNanos;
+            entries.replaceAll(e -> new Entry(e.offsetNanos - first, e.request, e.json));
+        }
+        return new RequestCorpus(Collections.unmodifiableList(entries), timed);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public Entry get(long sequence) {
+        return entries.get((int) (sequence % entries.size()));
+    }
+
+    /**
+     * Offset of the last captured request; one replay pass lasts this long at 1x speed.
+     */
+    public long getSpanNanos() {
+        return timed ? entries.get(entries.size() - 1).offsetNanos : 0L;
+    }
+
+    public static final class Entry {
+
+        private final long offsetNanos;
+        private final TransactionRequest request;
+        private final byte[] json;
+
+        Entry(long offsetNanos, TransactionRequest request, byte[] json) {
+            this.offsetNanos = offsetNanos;
+            this.request = request;
+            this.json = json;
+        }
+
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public TransactionRequest getRequest() {
+            return request;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.gateway.loadgen;
+
+import com.gateway.model.TransactionResponse;
+import com.gateway.service.TransactionService;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Calls {@link TransactionService} in-process, leaving HTTP and JSON out of the measurement.
+ */
+@RequiredArgsConstructor
+public class ServiceLoadTarget implements LoadTarget {
+
+    private final TransactionService transactionService;
+
+    @Override
+    public String send(RequestCorpus.Entry entry) {
+        TransactionResponse response = transactionService.processTransaction(entry.getRequest());
+        return response.getResponseCode();
+    }
+}
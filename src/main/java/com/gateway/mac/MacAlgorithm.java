@@ -0,0 +1,10 @@
+package com.gateway.mac;
+
+public enum MacAlgorithm {
+    /** ISO 9797-1 algorithm 1: CBC-MAC under single DES or the full triple-DES key. */
+    ISO9797_ALG1,
+    /** ISO 9797-1 algorithm 3 (retail MAC): single-DES CBC under K1, last block finished with K2. */
+    ISO9797_ALG3,
+    /** NIST SP 800-38B / RFC 4493 CMAC under AES, truncated to 8 bytes. */
+    AES_CMAC
+}
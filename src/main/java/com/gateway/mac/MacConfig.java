@@ -0,0 +1,130 @@
+package com.gateway.mac;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.mac")
+@SuppressWarnings("unused")
+public class MacConfig {
+    private boolean enabled = false;
+    // ISO9797_ALG1, ISO9797_ALG3 (retail MAC) or AES_CMAC
+    private MacAlgorithm algorithm = MacAlgorithm.ISO9797_ALG3;
+    // ISO 9797-1 padding method 1 (zeros) or 2 (0x80 then zeros); AES-CMAC pads itself
+    private int padding = 1;
+    private String keyId;
+    // Hex key; supply through the environment, never commit it
+    private String key;
+    // Key retired by the last rotation; inbound MACs under it are still accepted
+    private String previousKeyId;
+    private String previousKey;
+    // Properties file with key-id and key, used instead of the two above; a changed file is
+    // rotated to within key-file-reload-interval (ms)
+    private String keyFile;
+    private long keyFileReloadInterval = 60000;
+    private boolean verifyInbound = true;
+    // Reject responses that carry no MAC at all
+    private boolean requireInbound = false;
+    // MTIs sent and accepted without a MAC
+    private List<String> excludeMtis = new ArrayList<>(Arrays.asList("0800", "0810"));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public MacAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(MacAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getPadding() {
+        return padding;
+    }
+
+    public void setPadding(int padding) {
+        this.padding = padding;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(String keyId) {
+        this.keyId = keyId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getPreviousKeyId() {
+        return previousKeyId;
+    }
+
+    public void setPreviousKeyId(String previousKeyId) {
+        this.previousKeyId = previousKeyId;
+    }
+
+    public String getPreviousKey() {
+        return previousKey;
+    }
+
+    public void setPreviousKey(String previousKey) {
+        this.previousKey = previousKey;
+    }
+
+    public String getKeyFile() {
+        return keyFile;
+    }
+
+    public void setKeyFile(String keyFile) {
+        this.keyFile = keyFile;
+    }
+
+    public long getKeyFileReloadInterval() {
+        return keyFileReloadInterval;
+    }
+
+    public void setKeyFileReloadInterval(long keyFileReloadInterval) {
+        this.keyFileReloadInterval = keyFileReloadInterval;
+    }
+
+    public boolean isVerifyInbound() {
+        return verifyInbound;
+    }
+
+    public void setVerifyInbound(boolean verifyInbound) {
+        this.verifyInbound = verifyInbound;
+    }
+
+    public boolean isRequireInbound() {
+        return requireInbound;
+    }
+
+    public void setRequireInbound(boolean requireInbound) {
+        this.requireInbound = requireInbound;
+    }
+
+    public List<String> getExcludeMtis() {
+        return excludeMtis;
+    }
+
+    public void setExcludeMtis(List<String> excludeMtis) {
+        this.excludeMtis = excludeMtis;
+    }
+}
@@ -0,0 +1,42 @@
+package com.gateway.mac;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MAC status at {@code /actuator/mac}. Only key ids and check values are shown. Keys are never
+ * accepted here; they are rotated through {@code gateway.mac.key-file}.
+ */
+@Component
+@Endpoint(id = "mac")
+@RequiredArgsConstructor
+public class MacEndpoint {
+
+    private final MacService macService;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", macService.isEnabled());
+        MacKey current = macService.getCurrentKey();
+        if (current != null) {
+            status.put("algorithm", current.getAlgorithm());
+            status.put("keyId", current.getId());
+            status.put("kcv", current.getCheckValue());
+        }
+        MacKey previous = macService.getPreviousKey();
+        if (previous != null) {
+            status.put("previousKeyId", previous.getId());
+            status.put("previousKcv", previous.getCheckValue());
+        }
+        status.put("generated", macService.getGeneratedCount());
+        status.put("verified", macService.getVerifiedCount());
+        status.put("failures", macService.getFailureCount());
+        return status;
+    }
+}
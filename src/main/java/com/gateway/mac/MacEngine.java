@@ -0,0 +1,171 @@
+package com.gateway.mac;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Computes MACs under one {@link MacKey}. The ciphers are initialised once, so the key schedule is
+ * built when the engine is created rather than per message. All blocks but the last go through one
+ * CBC call straight off the caller's array; the last is padded and finished in a one-block state
+ * buffer. Not thread-safe; {@link MacService} keeps one per thread.
+ */
+final class MacEngine {
+
+    static final int MAC_LENGTH = 8;
+
+    private final MacKey key;
+    private final MacAlgorithm algorithm;
+    private final Cipher chain;
+    private final Cipher block;
+    // algorithm 3 only: K2 decrypt and K1 re-encrypt of the final block
+    private final Cipher finishDecrypt;
+    private final Cipher finishEncrypt;
+    private final int blockSize;
+    private final byte padByte;
+    // CMAC subkeys
+    private final byte[] subkey1;
+    private final byte[] subkey2;
+
+    private final byte[] state;
+    private final byte[] last;
+    // CBC output; only its last block is used, but JCE has to write all of it somewhere
+    private byte[] scratch = new byte[512];
+
+    MacEngine(MacKey key) throws GeneralSecurityException {
+        this.key = key;
+        this.algorithm = key.getAlgorithm();
+        byte[] bytes = key.keyBytes();
+        switch (algorithm) {
+            case ISO9797_ALG1:
+                chain = des(bytes, "CBC", Cipher.ENCRYPT_MODE);
+                block = des(bytes, "ECB", Cipher.ENCRYPT_MODE);
+                finishDecrypt = null;
+                finishEncrypt = null;
+                break;
+            case ISO9797_ALG3:
+                byte[] k1 = Arrays.copyOfRange(bytes, 0, 8);
+                chain = cipher("DES", "CBC", k1, Cipher.ENCRYPT_MODE);
+                block = cipher("DES", "ECB", k1, Cipher.ENCRYPT_MODE);
+                finishDecrypt = cipher("DES", "ECB", Arrays.copyOfRange(bytes, 8, 16), Cipher.DECRYPT_MODE);
+                finishEncrypt = block;
+                break;
+            default:
+                chain = cipher("AES", "CBC", bytes, Cipher.ENCRYPT_MODE);
+                block = cipher("AES", "ECB", bytes, Cipher.ENCRYPT_MODE);
+                finishDecrypt = null;
+                finishEncrypt = null;
+                break;
+        }
+        this.blockSize = block.getBlockSize();
+        this.state = new byte[blockSize];
+        this.last = new byte[blockSize];
+        this.padByte = algorithm == MacAlgorithm.AES_CMAC || key.getPadding() == 2 ? (byte) 0x80 : 0;
+
+        if (algorithm == MacAlgorithm.AES_CMAC) {
+            byte[] l = block.doFinal(new byte[blockSize]);
+            subkey1 = doubleBlock(l);
+            subkey2 = doubleBlock(subkey1);
+        } else {
+            subkey1 = null;
+            subkey2 = null;
+        }
+    }
+
+    MacKey getKey() {
+        return key;
+    }
+
+    /**
+     * Writes the 8-byte MAC of {@code data[offset, offset + length)} to {@code out[outOffset]}.
+     */
+    void compute(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        int bs = blockSize;
+        // the final block is always handled separately: it may need padding, a subkey or K2
+        boolean finalComplete = length > 0 && length % bs == 0
+                && (padByte == 0 || algorithm == MacAlgorithm.AES_CMAC);
+        int fullBlocks = finalComplete ? length / bs - 1 : length / bs;
+
+        int chained = fullBlocks * bs;
+        int p = offset + chained;
+        try {
+            if (chained > 0) {
+                if (scratch.length < chained) {
+                    scratch = new byte[Math.max(chained, scratch.length * 2)];
+                }
+                // doFinal also resets the chain to the zero IV for the next message
+                chain.doFinal(data, offset, chained, scratch, 0);
+                System.arraycopy(scratch, chained - bs, state, 0, bs);
+            } else {
+                Arrays.fill(state, (byte) 0);
+            }
+
+            int remaining = offset + length - p;
+            System.arraycopy(data, p, last, 0, remaining);
+            if (remaining < bs) {
+                last[remaining] = padByte;
+                Arrays.fill(last, remaining + 1, bs, (byte) 0);
+            }
+            if (subkey1 != null) {
+                byte[] subkey = finalComplete ? subkey1 : subkey2;
+                for (int i = 0; i < bs; i++) {
+                    last[i] ^= subkey[i];
+                }
+            }
+            for (int i = 0; i < bs; i++) {
+                state[i] ^= last[i];
+            }
+            block.update(state, 0, bs, state, 0);
+            if (finishDecrypt != null) {
+                finishDecrypt.update(state, 0, bs, state, 0);
+                finishEncrypt.update(state, 0, bs, state, 0);
+            }
+        } catch (GeneralSecurityException e) {
+            // block-aligned input into buffers sized for it; cannot happen with a working provider
+            throw new IllegalStateException(e);
+        }
+        System.arraycopy(state, 0, out, outOffset, MAC_LENGTH);
+    }
+
+    static Cipher cipher(String algorithm, String mode, byte[] key, int opmode) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(algorithm + "/" + mode + "/NoPadding");
+        SecretKeySpec spec = new SecretKeySpec(key, algorithm);
+        if ("CBC".equals(mode)) {
+            cipher.init(opmode, spec, new IvParameterSpec(new byte[cipher.getBlockSize()]));
+        } else {
+            cipher.init(opmode, spec);
+        }
+        return cipher;
+    }
+
+    /**
+     * Single DES for an 8-byte key, otherwise triple DES with a double-length key taken as K1 K2 K1.
+     */
+    static Cipher des(byte[] key, String mode, int opmode) throws GeneralSecurityException {
+        if (key.length == 8) {
+            return cipher("DES", mode, key, opmode);
+        }
+        byte[] tripleLength = key.length == 24 ? key : new byte[24];
+        if (key.length == 16) {
+            System.arraycopy(key, 0, tripleLength, 0, 16);
+            System.arraycopy(key, 0, tripleLength, 16, 8);
+        }
+        return cipher("DESede", mode, tripleLength, opmode);
+    }
+
+    private static byte[] doubleBlock(byte[] block) {
+        byte[] doubled = new byte[block.length];
+        int carry = 0;
+        for (int i = block.length - 1; i >= 0; i--) {
+            int b = block[i] & 0xFF;
+            doubled[i] = (byte) ((b << 1) | carry);
+            carry = b >>> 7;
+        }
+        if (carry != 0) {
+            doubled[block.length - 1] ^= (byte) 0x87;
+        }
+        return doubled;
+    }
+}
@@ -0,0 +1,108 @@
+package com.gateway.mac;
+
+import org.jpos.iso.ISOUtil;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * An immutable MAC key. Engines are cached per key instance, so a rotation is simply a new
+ * {@code MacKey}.
+ */
+public final class MacKey {
+
+    private final String id;
+    private final MacAlgorithm algorithm;
+    private final int padding;
+    private final byte[] key;
+    private final String checkValue;
+
+    private MacKey(String id, MacAlgorithm algorithm, int padding, byte[] key) {
+        this.id = id;
+        this.algorithm = algorithm;
+        this.padding = padding;
+        this.key = key;
+        this.checkValue = computeCheckValue();
+    }
+
+    public static MacKey of(String id, MacAlgorithm algorithm, int padding, String hexKey) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("MAC key id is required");
+        }
+        if (algorithm == null) {
+            throw new IllegalArgumentException("MAC algorithm is required");
+        }
+        if (padding != 1 && padding != 2) {
+            throw new IllegalArgumentException("MAC padding must be method 1 or 2, not " + padding);
+        }
+        if (hexKey == null || hexKey.isEmpty() || hexKey.length() % 2 != 0) {
+            throw new IllegalArgumentException("MAC key " + id + " is not a hex string");
+        }
+        byte[] key;
+        try {
+            key = ISOUtil.hex2byte(hexKey);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("MAC key " + id + " is not a hex string");
+        }
+        int length = key.length;
+        boolean valid;
+        switch (algorithm) {
+            case ISO9797_ALG1:
+                valid = length == 8 || length == 16 || length == 24;
+                break;
+            case ISO9797_ALG3:
+                valid = length == 16;
+                break;
+            default:
+                valid = length == 16 || length == 24 || length == 32;
+                break;
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("MAC key " + id + " has the wrong length for " + algorithm
+                    + ": " + length + " bytes");
+        }
+        return new MacKey(id, algorithm, padding, key);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public MacAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getPadding() {
+        return padding;
+    }
+
+    /**
+     * Key check value: the first three bytes of a zero block encrypted under the key, as hex.
+     * Safe to log and compare with the host's key ceremony records.
+     */
+    public String getCheckValue() {
+        return checkValue;
+    }
+
+    byte[] keyBytes() {
+        return key;
+    }
+
+    private String computeCheckValue() {
+        try {
+            Cipher cipher = algorithm == MacAlgorithm.AES_CMAC
+                    ? MacEngine.cipher("AES", "ECB", key, Cipher.ENCRYPT_MODE)
+                    : MacEngine.des(key, "ECB", Cipher.ENCRYPT_MODE);
+            byte[] block = cipher.doFinal(new byte[cipher.getBlockSize()]);
+            return ISOUtil.hexString(Arrays.copyOf(block, 3));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("MAC key " + id + " is not usable: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + algorithm + ", KCV " + checkValue + ")";
+    }
+}
@@ -0,0 +1,306 @@
+package com.gateway.mac;
+
+import com.gateway.iso8583.CustomPackager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOBasePackager;
+import org.jpos.iso.ISOBinaryField;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOFieldPackager;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Signs outbound messages in field 64 (or 128 when the message has a secondary bitmap) and checks
+ * the MAC on host responses.
+ * <p>
+ * The MAC field is always the last one packed, so {@link #pack} packs once with a zero placeholder,
+ * MACs the packed bytes up to the placeholder and overwrites it in place. Keys are swapped with a
+ * single volatile write; each thread keeps engines for the current and previous key, so a rotation
+ * costs one key schedule per thread and never blocks a sender. With {@code key-file} set, the key
+ * is read from that file and rotated to whenever the file changes.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class MacService {
+
+    private final MacConfig macConfig;
+    private final CustomPackager customPackager;
+
+    private volatile KeySet keys;
+    private volatile long keyFileModifiedTime = -1L;
+
+    private final ThreadLocal<MacEngine[]> engines = ThreadLocal.withInitial(() -> new MacEngine[2]);
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!macConfig.isEnabled()) {
+            return;
+        }
+        MacKey current;
+        if (hasKeyFile()) {
+            Path path = Paths.get(macConfig.getKeyFile());
+            try {
+                keyFileModifiedTime = Files.getLastModifiedTime(path).toMillis();
+                current = loadKeyFile(path);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalStateException("Cannot read MAC key file " + path + ": " + e.getMessage(), e);
+            }
+        } else if (macConfig.getKey() == null || macConfig.getKey().isEmpty()) {
+            throw new IllegalStateException("gateway.mac.enabled is set but no MAC key is configured");
+        } else {
+            current = MacKey.of(macConfig.getKeyId(), macConfig.getAlgorithm(), macConfig.getPadding(),
+                    macConfig.getKey());
+        }
+        MacKey previous = null;
+        if (macConfig.getPreviousKey() != null && !macConfig.getPreviousKey().isEmpty()) {
+            previous = MacKey.of(macConfig.getPreviousKeyId(), macConfig.getAlgorithm(), macConfig.getPadding(),
+                    macConfig.getPreviousKey());
+        }
+        keys = new KeySet(current, previous);
+        log.info("MAC enabled with key {}{}", current, previous != null ? ", previous " + previous : "");
+    }
+
+    public boolean isEnabled() {
+        return keys != null;
+    }
+
+    public MacKey getCurrentKey() {
+        KeySet snapshot = keys;
+        return snapshot != null ? snapshot.current : null;
+    }
+
+    public MacKey getPreviousKey() {
+        KeySet snapshot = keys;
+        return snapshot != null ? snapshot.previous : null;
+    }
+
+    /**
+     * Makes {@code next} the signing key. The old key is kept for verification until the next
+     * rotation, so responses to requests already on the wire still check out.
+     */
+    public void rotate(MacKey next) {
+        KeySet snapshot = keys;
+        keys = new KeySet(next, snapshot != null ? snapshot.current : null);
+        log.info("MAC key rotated to {}", next);
+    }
+
+    /**
+     * Rotates to the key in {@code key-file} when the file has changed since it was last read. A
+     * file that cannot be read or holds a bad key is logged and the current key kept.
+     */
+    @Scheduled(fixedDelayString = "${gateway.mac.key-file-reload-interval:60000}",
+               initialDelayString = "${gateway.mac.key-file-reload-interval:60000}")
+    public void reloadKeyFile() {
+        KeySet snapshot = keys;
+        if (snapshot == null || !hasKeyFile()) {
+            return;
+        }
+        Path path = Paths.get(macConfig.getKeyFile());
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == keyFileModifiedTime) {
+                return;
+            }
+            MacKey next = loadKeyFile(path);
+            keyFileModifiedTime = modified;
+            if (!next.getId().equals(snapshot.current.getId())
+                    || !next.getCheckValue().equals(snapshot.current.getCheckValue())) {
+                rotate(next);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to load MAC key file {}, keeping key {}: {}", path, snapshot.current, e.getMessage());
+        }
+    }
+
+    private boolean hasKeyFile() {
+        return macConfig.getKeyFile() != null && !macConfig.getKeyFile().isEmpty();
+    }
+
+    private MacKey loadKeyFile(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return MacKey.of(properties.getProperty("key-id"), macConfig.getAlgorithm(), macConfig.getPadding(),
+                properties.getProperty("key"));
+    }
+
+    /**
+     * Packs the message with its MAC. Messages are packed unsigned when MACing is off or the MTI is
+     * excluded.
+     */
+    public byte[] pack(ISOMsg msg) throws ISOException {
+        return pack(msg, customPackager);
+    }
+
+    /**
+     * As {@link #pack(ISOMsg)}, with the packager of the acquirer the message is going to.
+     */
+    public byte[] pack(ISOMsg msg, CustomPackager packager) throws ISOException {
+        KeySet snapshot = keys;
+        if (snapshot == null || isExcluded(msg.getMTI())) {
+            return packager.pack(msg);
+        }
+        int field;
+        if (msg.getMaxField() > 64) {
+            field = 128;
+            msg.unset(64);
+        } else {
+            field = 64;
+        }
+        byte[] mac = new byte[MacEngine.MAC_LENGTH];
+        msg.set(field, mac);
+        byte[] packed = packager.pack(msg);
+
+        ISOFieldPackager fieldPackager = fieldPackager(packager, field);
+        int macStart = packed.length - fieldPackager.getMaxPackedLength();
+        engine(snapshot.current).compute(packed, 0, macStart, mac, 0);
+        byte[] encoded = fieldPackager.pack(new ISOBinaryField(field, mac));
+        System.arraycopy(encoded, 0, packed, macStart, encoded.length);
+        generated.increment();
+        return packed;
+    }
+
+    /**
+     * Checks the MAC of a response against the current key, then the previous one.
+     *
+     * @param packed the bytes {@code msg} was unpacked from
+     * @throws MacVerificationException if the MAC is wrong, or missing when one is required
+     */
+    public void verify(byte[] packed, ISOMsg msg) throws ISOException {
+        verify(packed, msg, customPackager);
+    }
+
+    public void verify(byte[] packed, ISOMsg msg, CustomPackager packager) throws ISOException {
+        if (macConfig.isVerifyInbound()) {
+            verify(packed, msg, packager, macConfig.isRequireInbound());
+        }
+    }
+
+    /**
+     * Checks the MAC of a request taken in from a terminal. Unlike a response, a request must carry
+     * one whenever MACing is on and its MTI is not excluded.
+     *
+     * @throws MacVerificationException if the MAC is wrong or missing
+     */
+    public void verifyRequest(byte[] packed, ISOMsg msg) throws ISOException {
+        verify(packed, msg, customPackager, true);
+    }
+
+    private void verify(byte[] packed, ISOMsg msg, CustomPackager packager, boolean required) throws ISOException {
+        KeySet snapshot = keys;
+        if (snapshot == null) {
+            return;
+        }
+        int field = msg.getMaxField() > 64 ? 128 : 64;
+        if (!msg.hasField(field)) {
+            if (required && !isExcluded(msg.getMTI())) {
+                failures.increment();
+                throw new MacVerificationException("No MAC on " + msg.getMTI() + " STAN " + msg.getString(11));
+            }
+            return;
+        }
+        ISOFieldPackager fieldPackager = fieldPackager(packager, field);
+        int macStart = packed.length - fieldPackager.getMaxPackedLength();
+        if (macStart < 0 || !matches(snapshot.current, fieldPackager, field, packed, macStart)
+                && (snapshot.previous == null || !matches(snapshot.previous, fieldPackager, field, packed, macStart))) {
+            failures.increment();
+            throw new MacVerificationException("MAC verification failed on " + msg.getMTI()
+                    + " STAN " + msg.getString(11));
+        }
+        verified.increment();
+    }
+
+    public long getGeneratedCount() {
+        return generated.sum();
+    }
+
+    public long getVerifiedCount() {
+        return verified.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    private boolean matches(MacKey key, ISOFieldPackager fieldPackager, int field, byte[] packed, int macStart)
+            throws ISOException {
+        byte[] mac = new byte[MacEngine.MAC_LENGTH];
+        engine(key).compute(packed, 0, macStart, mac, 0);
+        byte[] expected = fieldPackager.pack(new ISOBinaryField(field, mac));
+        if (expected.length != packed.length - macStart) {
+            return false;
+        }
+        // constant time, so a forger learns nothing from how quickly a guess is rejected
+        int diff = 0;
+        for (int i = 0; i < expected.length; i++) {
+            diff |= expected[i] ^ packed[macStart + i];
+        }
+        return diff == 0;
+    }
+
+    private MacEngine engine(MacKey key) {
+        MacEngine[] slots = engines.get();
+        if (slots[0] != null && slots[0].getKey() == key) {
+            return slots[0];
+        }
+        if (slots[1] != null && slots[1].getKey() == key) {
+            return slots[1];
+        }
+        MacEngine engine;
+        try {
+            engine = new MacEngine(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise MAC key " + key.getId(), e);
+        }
+        slots[1] = slots[0];
+        slots[0] = engine;
+        return engine;
+    }
+
+    private static ISOFieldPackager fieldPackager(CustomPackager customPackager, int field) throws ISOException {
+        ISOPackager packager = customPackager.getPackager();
+        if (!(packager instanceof ISOBasePackager)) {
+            throw new ISOException("MAC needs a field-based packager, not " + packager.getClass().getSimpleName());
+        }
+        ISOFieldPackager fieldPackager = ((ISOBasePackager) packager).getFieldPackager(field);
+        if (fieldPackager == null) {
+            throw new ISOException("Packager does not define MAC field " + field);
+        }
+        return fieldPackager;
+    }
+
+    private boolean isExcluded(String mti) {
+        return mti != null && macConfig.getExcludeMtis().contains(mti);
+    }
+
+    private static final class KeySet {
+
+        private final MacKey current;
+        private final MacKey previous;
+
+        private KeySet(MacKey current, MacKey previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+}
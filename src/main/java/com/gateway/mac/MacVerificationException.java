@@ -0,0 +1,16 @@
+package com.gateway.mac;
+
+import org.jpos.iso.ISOException;
+
+/**
+ * A host response whose MAC is missing or wrong. The response cannot be trusted, so the host may
+ * have acted on the request without us knowing the outcome.
+ */
+public class MacVerificationException extends ISOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MacVerificationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,275 @@
+package com.gateway.mapping;
+
+import com.gateway.util.Iso8583Util;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * A value conversion applied between a model property and an ISO field. Each format declares the
+ * type it accepts and produces so a definition is type-checked once, when it is compiled.
+ * <p>
+ * Outbound (model to ISO): {@code amount} (BigDecimal to 12 digits in the minor units of the
+ * request's currency, zeros when absent), {@code pad:n} (left-justify to n, truncating),
+ * {@code zeropad:n}, {@code prefix:text}.
+ * Inbound (ISO to model): {@code amount} (minor units of the field 49 currency to BigDecimal),
+ * {@code mask} (PAN masking),
+ * {@code trim} (drops the padding of fixed-width fields), {@code truncate:n} (first n characters),
+ * {@code currency} (ISO 4217 numeric code to alphabetic; alphabetic codes pass through).
+ */
+abstract class FieldFormat {
+
+    // ISO 4217 alphabetic codes indexed by numeric code
+    private static final String[] CURRENCY_BY_NUMBER = new String[1000];
+
+    static {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int number = currency.getNumericCode();
+            if (number > 0 && number < CURRENCY_BY_NUMBER.length) {
+                CURRENCY_BY_NUMBER[number] = currency.getCurrencyCode();
+            }
+        }
+    }
+
+    static final FieldFormat TEXT = new FieldFormat("text", Object.class, String.class) {
+        @Override
+        Object apply(Object value) {
+            return value != null ? value.toString() : null;
+        }
+    };
+
+    static final FieldFormat NONE = new FieldFormat("none", String.class, String.class) {
+        @Override
+        Object apply(Object value) {
+            return value;
+        }
+    };
+
+    private final String name;
+    private final Class<?> accepts;
+    private final Class<?> produces;
+
+    private FieldFormat(String name, Class<?> accepts, Class<?> produces) {
+        this.name = name;
+        this.accepts = accepts;
+        this.produces = produces;
+    }
+
+    abstract Object apply(Object value);
+
+    /**
+     * Applies the format to a value of a message in the given currency; only amounts depend on it.
+     */
+    Object apply(Object value, String currencyCode) {
+        return apply(value);
+    }
+
+    Class<?> accepts() {
+        return accepts;
+    }
+
+    Class<?> produces() {
+        return produces;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * @param spec     {@code name} or {@code name:argument}
+     * @param outbound whether the format is used building a message rather than reading one
+     */
+    static FieldFormat of(String spec, boolean outbound) {
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon);
+        String argument = colon < 0 ? null : spec.substring(colon + 1);
+        if (outbound) {
+            switch (name) {
+                case "amount":
+                    return new FieldFormat(spec, BigDecimal.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return apply(value, null);
+                        }
+
+                        @Override
+                        Object apply(Object value, String currencyCode) {
+                            long minor = value == null ? 0 : ((BigDecimal) value)
+                                    .movePointRight(Iso8583Util.minorUnitDigits(currencyCode))
+                                    .setScale(0).longValueExact();
+                            return zeroPad(minor, 12);
+                        }
+                    };
+                case "pad":
+                    int width = width(spec, argument);
+                    return new FieldFormat(spec, String.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return pad((String) value, width);
+                        }
+                    };
+                case "zeropad":
+                    int digits = width(spec, argument);
+                    return new FieldFormat(spec, Number.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return value != null ? zeroPad(((Number) value).longValue(), digits) : null;
+                        }
+                    };
+                case "prefix":
+                    if (argument == null || argument.isEmpty()) {
+                        throw new IllegalArgumentException("prefix needs text, e.g. prefix:INV");
+                    }
+                    return new FieldFormat(spec, String.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return value != null ? argument + value : null;
+                        }
+                    };
+                default:
+                    break;
+            }
+        } else {
+            switch (name) {
+                case "amount":
+                    return new FieldFormat(spec, String.class, BigDecimal.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return apply(value, null);
+                        }
+
+                        @Override
+                        Object apply(Object value, String currencyCode) {
+                            try {
+                                return BigDecimal.valueOf(Long.parseLong((String) value),
+                                        Iso8583Util.minorUnitDigits(currencyCode));
+                            } catch (NumberFormatException e) {
+                                return BigDecimal.ZERO;
+                            }
+                        }
+                    };
+                case "mask":
+                    return new FieldFormat(spec, String.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return mask((String) value);
+                        }
+                    };
+                case "trim":
+                    return new FieldFormat(spec, String.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return ((String) value).trim();
+                        }
+                    };
+                case "truncate":
+                    int length = width(spec, argument);
+                    return new FieldFormat(spec, String.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            String text = (String) value;
+                            return text.length() > length ? text.substring(0, length) : text;
+                        }
+                    };
+                case "currency":
+                    return new FieldFormat(spec, String.class, String.class) {
+                        @Override
+                        Object apply(Object value) {
+                            return currency((String) value);
+                        }
+                    };
+                default:
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + (outbound ? "outbound" : "inbound") + " format " + spec);
+    }
+
+    /**
+     * Runs {@code this} and then {@code next}, rejecting chains whose types do not line up.
+     */
+    FieldFormat then(FieldFormat next) {
+        if (!next.accepts.isAssignableFrom(produces)) {
+            throw new IllegalArgumentException(next + " cannot follow " + this + ": it takes "
+                    + next.accepts.getSimpleName() + ", not " + produces.getSimpleName());
+        }
+        FieldFormat first = this;
+        return new FieldFormat(this + " " + next, accepts, next.produces) {
+            @Override
+            Object apply(Object value) {
+                return next.apply(first.apply(value));
+            }
+
+            @Override
+            Object apply(Object value, String currencyCode) {
+                return next.apply(first.apply(value, currencyCode), currencyCode);
+            }
+        };
+    }
+
+    private static int width(String spec, String argument) {
+        try {
+            int width = Integer.parseInt(argument);
+            if (width > 0) {
+                return width;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(spec + " needs a positive width");
+    }
+
+    private static String pad(String value, int width) {
+        char[] out = new char[width];
+        int length = value == null ? 0 : Math.min(value.length(), width);
+        if (length > 0) {
+            value.getChars(0, length, out, 0);
+        }
+        for (int i = length; i < width; i++) {
+            out[i] = ' ';
+        }
+        return new String(out);
+    }
+
+    private static String zeroPad(long value, int width) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot zero-pad negative value " + value);
+        }
+        char[] out = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Value does not fit in " + width + " digits");
+        }
+        return new String(out);
+    }
+
+    private static String currency(String code) {
+        if (code.length() == 3 && code.charAt(0) >= '0' && code.charAt(0) <= '9') {
+            try {
+                String alpha = CURRENCY_BY_NUMBER[Integer.parseInt(code)];
+                if (alpha != null) {
+                    return alpha;
+                }
+            } catch (NumberFormatException e) {
+                // not a numeric code; left for validation to reject
+            }
+        }
+        return code;
+    }
+
+    private static String mask(String pan) {
+        if (pan.length() < 10) {
+            return pan;
+        }
+        char[] masked = pan.toCharArray();
+        for (int i = 6; i < masked.length - 4; i++) {
+            masked[i] = '*';
+        }
+        return new String(masked);
+    }
+}
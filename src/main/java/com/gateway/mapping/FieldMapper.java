@@ -0,0 +1,60 @@
+package com.gateway.mapping;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads and compiles the field mapping definition at startup. Unlike the packager there is no
+ * built-in fallback: a gateway that cannot map its messages must not start.
+ */
+@Component
+@Log4j2
+public class FieldMapper {
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+
+    private FieldMapping mapping;
+
+    public FieldMapper(ResourceLoader resourceLoader,
+                       @Value("${gateway.iso.mapping:classpath:iso8583/field-mapping.txt}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+    }
+
+    @PostConstruct
+    public void init() {
+        long start = System.nanoTime();
+        mapping = load(resourceLoader, location);
+        log.info("Compiled field mapping {} ({} request, {} reversal, {} response, {} ingress fields) in {}ms",
+                location, mapping.getRequestFieldCount(), mapping.getReversalFieldCount(),
+                mapping.getResponseFieldCount(), mapping.getIngressFieldCount(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public FieldMapping getMapping() {
+        return mapping;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public static FieldMapping load(ResourceLoader resourceLoader, String location) {
+        Resource resource = resourceLoader.getResource(location);
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            return FieldMapping.parse(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load field mapping " + location + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.gateway.mapping;
+
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import org.jpos.iso.ISOMsg;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Which model property goes to which ISO field, and back, compiled once into arrays of direct
+ * accessors. Applying a mapping is a loop over those arrays with no reflection or lookups.
+ * <p>
+ * Text form, one field per line, {@code #} starts a comment:
+ * <pre>
+ * request  4   amount          amount
+ * request  11  $stan
+ * request  25  '00'
+ * request  43  merchantName    pad:40
+ * reversal 90  $originalData
+ * response 2   maskedCardNumber mask
+ * ingress  43  merchantName    trim
+ * </pre>
+ * Columns are section ({@code request}, {@code reversal}, {@code response} or {@code ingress}),
+ * field number, source and any number of {@link FieldFormat formats} applied left to right.
+ * Outbound sources are a {@link TransactionRequest} property, a {@link MappingContext} value
+ * prefixed with {@code $}, or a quoted constant. Inbound sources name the property to set: of the
+ * {@link TransactionResponse} for a host response, of the {@link TransactionRequest} for a message
+ * taken in from a terminal. Formats also see null values, so {@code pad:40} sends 40 spaces for a
+ * missing merchant name; a value that is still null or empty after formatting leaves the field
+ * unset, and an absent inbound field leaves the property alone.
+ */
+public final class FieldMapping {
+
+    private final Outbound[] request;
+    private final Outbound[] reversal;
+    private final Inbound<TransactionResponse>[] response;
+    private final Inbound<TransactionRequest>[] ingress;
+
+    @SuppressWarnings("unchecked")
+    private FieldMapping(List<Outbound> request, List<Outbound> reversal,
+                         List<Inbound<TransactionResponse>> response, List<Inbound<TransactionRequest>> ingress) {
+        this.request = request.toArray(new Outbound[0]);
+        this.reversal = reversal.toArray(new Outbound[0]);
+        this.response = (Inbound<TransactionResponse>[]) response.toArray(new Inbound<?>[0]);
+        this.ingress = (Inbound<TransactionRequest>[]) ingress.toArray(new Inbound<?>[0]);
+    }
+
+    public void applyRequest(MappingContext context, ISOMsg msg) {
+        apply(request, context, msg);
+    }
+
+    public void applyReversal(MappingContext context, ISOMsg msg) {
+        apply(reversal, context, msg);
+    }
+
+    public void applyResponse(ISOMsg msg, TransactionResponse target) {
+        apply(response, msg, target);
+    }
+
+    /**
+     * Fills a request from an ISO message received on the ingress listener.
+     */
+    public void applyIngress(ISOMsg msg, TransactionRequest target) {
+        apply(ingress, msg, target);
+    }
+
+    public int getRequestFieldCount() {
+        return request.length;
+    }
+
+    public int getReversalFieldCount() {
+        return reversal.length;
+    }
+
+    public int getResponseFieldCount() {
+        return response.length;
+    }
+
+    public int getIngressFieldCount() {
+        return ingress.length;
+    }
+
+    private static void apply(Outbound[] fields, MappingContext context, ISOMsg msg) {
+        String currencyCode = context.getRequest().getCurrencyCode();
+        for (Outbound field : fields) {
+            Object value = field.source.apply(context);
+            if (field.format != null) {
+                value = field.format.apply(value, currencyCode);
+            }
+            if (value != null) {
+                String text = (String) value;
+                if (!text.isEmpty()) {
+                    msg.set(field.number, text);
+                }
+            }
+        }
+    }
+
+    private static <T> void apply(Inbound<T>[] fields, ISOMsg msg, T target) {
+        // amounts are in the minor units of the message's currency
+        String currencyCode = msg.getString(49);
+        for (Inbound<T> field : fields) {
+            String value = msg.getString(field.number);
+            if (value != null) {
+                field.setter.accept(target, field.format != null ? field.format.apply(value, currencyCode) : value);
+            }
+        }
+    }
+
+    public static FieldMapping parse(Reader source) throws IOException {
+        List<Outbound> request = new ArrayList<>();
+        List<Outbound> reversal = new ArrayList<>();
+        List<Inbound<TransactionResponse>> response = new ArrayList<>();
+        List<Inbound<TransactionRequest>> ingress = new ArrayList<>();
+        BitSet requestFields = new BitSet();
+        BitSet reversalFields = new BitSet();
+        BitSet responseFields = new BitSet();
+        BitSet ingressFields = new BitSet();
+
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                String[] tokens = line.split("\\s+");
+                if (tokens.length < 3) {
+                    throw new IllegalArgumentException("expected section, field and source");
+                }
+                int number = fieldNumber(tokens[1]);
+                switch (tokens[0]) {
+                    case "request":
+                        request.add(outbound(number, tokens, requestFields));
+                        break;
+                    case "reversal":
+                        reversal.add(outbound(number, tokens, reversalFields));
+                        break;
+                    case "response":
+                        response.add(inbound(TransactionResponse.class, number, tokens, responseFields));
+                        break;
+                    case "ingress":
+                        ingress.add(inbound(TransactionRequest.class, number, tokens, ingressFields));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown section " + tokens[0]);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return new FieldMapping(request, reversal, response, ingress);
+    }
+
+    private static Outbound outbound(int number, String[] tokens, BitSet seen) {
+        claim(seen, number, tokens[0]);
+        String name = tokens[2];
+        Function<MappingContext, Object> source;
+        Class<?> type = String.class;
+        if (name.length() >= 2 && name.charAt(0) == '\'' && name.charAt(name.length() - 1) == '\'') {
+            String constant = name.substring(1, name.length() - 1);
+            source = context -> constant;
+        } else if (name.charAt(0) == '$') {
+            source = contextValue(name.substring(1));
+        } else {
+            Method getter = Accessors.getter(TransactionRequest.class, name);
+            Function<TransactionRequest, Object> property = Accessors.compileGetter(getter);
+            source = context -> property.apply(context.getRequest());
+            type = Accessors.boxed(getter.getReturnType());
+        }
+
+        FieldFormat format = formats(tokens, true);
+        if (format == null && type != String.class) {
+            format = FieldFormat.TEXT;
+        }
+        if (format != null && !format.accepts().isAssignableFrom(type)) {
+            throw new IllegalArgumentException(format + " takes " + format.accepts().getSimpleName()
+                    + " but " + name + " is " + type.getSimpleName());
+        }
+        if (format != null && format.produces() != String.class) {
+            throw new IllegalArgumentException(format + " does not produce text for field " + number);
+        }
+        return new Outbound(number, source, format);
+    }
+
+    private static <T> Inbound<T> inbound(Class<T> target, int number, String[] tokens, BitSet seen) {
+        claim(seen, number, tokens[0]);
+        Method setter = Accessors.setter(target, tokens[2]);
+        Class<?> type = Accessors.boxed(setter.getParameterTypes()[0]);
+        FieldFormat format = formats(tokens, false);
+        Class<?> produced = format != null ? format.produces() : String.class;
+        if (!type.isAssignableFrom(produced)) {
+            throw new IllegalArgumentException(tokens[2] + " is " + type.getSimpleName() + " but field "
+                    + number + " maps to " + produced.getSimpleName());
+        }
+        BiConsumer<T, Object> compiled = Accessors.compileSetter(setter);
+        return new Inbound<>(number, compiled, format);
+    }
+
+    private static Function<MappingContext, Object> contextValue(String name) {
+        switch (name) {
+            case "stan":
+                return MappingContext::getStan;
+            case "rrn":
+                return MappingContext::getRrn;
+            case "processingCode":
+                return MappingContext::getProcessingCode;
+            case "transmissionDateTime":
+                return MappingContext::getTransmissionDateTime;
+            case "localTime":
+                return MappingContext::getLocalTime;
+            case "localDate":
+                return MappingContext::getLocalDate;
+            case "track2":
+                return MappingContext::getTrack2;
+            case "originalData":
+                return MappingContext::getOriginalData;
+            default:
+                throw new IllegalArgumentException("unknown message value $" + name);
+        }
+    }
+
+    private static FieldFormat formats(String[] tokens, boolean outbound) {
+        FieldFormat format = null;
+        for (int i = 3; i < tokens.length; i++) {
+            FieldFormat next = FieldFormat.of(tokens[i], outbound);
+            format = format == null ? next : format.then(next);
+        }
+        return format;
+    }
+
+    private static int fieldNumber(String token) {
+        int number;
+        try {
+            number = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("field must be a number, not " + token);
+        }
+        // 1 is the bitmap and 64/128 are owned by MacService
+        if (number < 2 || number > 128 || number == 64 || number == 128) {
+            throw new IllegalArgumentException("field " + number + " cannot be mapped");
+        }
+        return number;
+    }
+
+    private static void claim(BitSet seen, int number, String section) {
+        if (seen.get(number)) {
+            throw new IllegalArgumentException("field " + number + " is mapped twice in " + section);
+        }
+        seen.set(number);
+    }
+
+    private static final class Outbound {
+        private final int number;
+        private final Function<MappingContext, Object> source;
+        private final FieldFormat format;
+
+        private Outbound(int number, Function<MappingContext, Object> source, FieldFormat format) {
+            this.number = number;
+            this.source = source;
+            this.format = format;
+        }
+    }
+
+    private static final class Inbound<T> {
+        private final int number;
+        private final BiConsumer<T, Object> setter;
+        private final FieldFormat format;
+
+        private Inbound(int number, BiConsumer<T, Object> setter, FieldFormat format) {
+            this.number = number;
+            this.setter = setter;
+            this.format = format;
+        }
+    }
+}
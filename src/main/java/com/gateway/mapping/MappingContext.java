@@ -0,0 +1,98 @@
+package com.gateway.mapping;
+
+import com.gateway.model.TransactionRequest;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-message values an outbound mapping can read besides the request itself, named with a
+ * {@code $} prefix in the definition ({@code $stan}, {@code $localTime}, ...). Date and time fields
+ * are written digit by digit rather than through a {@code DateTimeFormatter}.
+ */
+public final class MappingContext {
+
+    private final TransactionRequest request;
+    private final LocalDateTime now;
+    private final String stan;
+    private final String rrn;
+    private final String processingCode;
+
+    public MappingContext(TransactionRequest request, LocalDateTime now, String stan, String rrn,
+                          String processingCode) {
+        this.request = request;
+        this.now = now;
+        this.stan = stan;
+        this.rrn = rrn;
+        this.processingCode = processingCode;
+    }
+
+    public TransactionRequest getRequest() {
+        return request;
+    }
+
+    public String getStan() {
+        return stan;
+    }
+
+    public String getRrn() {
+        return rrn;
+    }
+
+    public String getProcessingCode() {
+        return processingCode;
+    }
+
+    /**
+     * MMddHHmmss, field 7.
+     */
+    public String getTransmissionDateTime() {
+        char[] out = new char[10];
+        digits(out, 0, now.getMonthValue());
+        digits(out, 2, now.getDayOfMonth());
+        digits(out, 4, now.getHour());
+        digits(out, 6, now.getMinute());
+        digits(out, 8, now.getSecond());
+        return new String(out);
+    }
+
+    /**
+     * HHmmss, field 12.
+     */
+    public String getLocalTime() {
+        char[] out = new char[6];
+        digits(out, 0, now.getHour());
+        digits(out, 2, now.getMinute());
+        digits(out, 4, now.getSecond());
+        return new String(out);
+    }
+
+    /**
+     * MMdd, field 13.
+     */
+    public String getLocalDate() {
+        char[] out = new char[4];
+        digits(out, 0, now.getMonthValue());
+        digits(out, 2, now.getDayOfMonth());
+        return new String(out);
+    }
+
+    /**
+     * PAN=YYMM, or {@code null} when the expiry date is unknown.
+     */
+    public String getTrack2() {
+        String expiry = request.getCardExpiryDate();
+        return expiry != null ? request.getCardNumber() + "=" + expiry : null;
+    }
+
+    /**
+     * STAN, MMdd and HHmmss of the message being referred to, field 90 of a reversal.
+     */
+    public String getOriginalData() {
+        return stan + getLocalDate() + getLocalTime();
+    }
+
+    private static void digits(char[] out, int offset, int value) {
+        out[offset] = (char) ('0' + value / 10);
+        out[offset + 1] = (char) ('0' + value % 10);
+    }
+}
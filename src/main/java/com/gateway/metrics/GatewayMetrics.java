@@ -0,0 +1,191 @@
+package com.gateway.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Gateway-specific meters. Every pipeline stage is recorded into {@code gateway.stage} with a
+ * percentile histogram, tagged by stage, MTI, response code and host; unknown tags are "none".
+ */
+@Component
+@RequiredArgsConstructor
+public class GatewayMetrics {
+
+    public static final String STAGE_VALIDATION = "validation";
+    public static final String STAGE_REQUEST_TO_ISO = "request_to_iso";
+    public static final String STAGE_PACK = "pack";
+    public static final String STAGE_POOL_ACQUIRE = "pool_acquire";
+    public static final String STAGE_WIRE = "wire";
+    public static final String STAGE_UNPACK = "unpack";
+    public static final String STAGE_ISO_TO_RESPONSE = "iso_to_response";
+    public static final String STAGE_TOTAL = "total";
+
+    private static final String NONE = "none";
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(1_000);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(60);
+
+    private final MeterRegistry registry;
+    // register() builds the meter id, runs the registry's filters and looks the meter up on every
+    // call; stage timers are recorded several times per transaction, so each tag set registers once
+    private final ConcurrentHashMap<StageKey, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    public void recordStage(String stage, long nanos, String mti) {
+        recordStage(stage, nanos, mti, null, null);
+    }
+
+    public void recordStage(String stage, long nanos, String mti, String responseCode, String host) {
+        stageTimers.computeIfAbsent(new StageKey(stage, orNone(mti), orNone(responseCode), orNone(host)),
+                        this::stageTimer)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer stageTimer(StageKey key) {
+        return Timer.builder("gateway.stage")
+                .description("Time spent in one transaction pipeline stage")
+                .tag("stage", key.stage)
+                .tag("mti", key.mti)
+                .tag("responseCode", key.responseCode)
+                .tag("host", key.host)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry);
+    }
+
+    public void incrementRetries(String host) {
+        Counter.builder("gateway.host.retries")
+                .description("Host exchanges retried after a communication error")
+                .tag("host", orNone(host))
+                .register(registry)
+                .increment();
+    }
+
+    public void incrementHostErrors(String host, String type) {
+        Counter.builder("gateway.host.errors")
+                .tag("host", orNone(host))
+                .tag("type", type)
+                .register(registry)
+                .increment();
+    }
+
+    public void incrementLateResponses(String host, String outcome) {
+        Counter.builder("gateway.host.late.responses")
+                .description("Answers to exchanges that had timed out, by what became of them")
+                .tag("host", orNone(host))
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public void gaugePool(String host, Supplier<Number> idle, Supplier<Number> total, Supplier<Number> max) {
+        Gauge.builder("gateway.pool.idle", idle).tag("host", host).register(registry);
+        Gauge.builder("gateway.pool.total", total).tag("host", host).register(registry);
+        Gauge.builder("gateway.pool.max", max).tag("host", host).register(registry);
+    }
+
+    public void gaugeHistory(Supplier<Number> queued, Supplier<Number> dropped, Supplier<Number> rows) {
+        Gauge.builder("gateway.history.queued", queued).register(registry);
+        Gauge.builder("gateway.history.dropped", dropped)
+                .description("History rows dropped because the writer fell behind")
+                .register(registry);
+        Gauge.builder("gateway.history.rows", rows).register(registry);
+    }
+
+    public void gaugeBalanceCache(Supplier<Number> size, Supplier<Number> hits, Supplier<Number> misses,
+                                  Supplier<Number> shared) {
+        Gauge.builder("gateway.balance.cache.size", size).register(registry);
+        Gauge.builder("gateway.balance.cache.requests", hits).tag("result", "hit").register(registry);
+        Gauge.builder("gateway.balance.cache.requests", misses).tag("result", "miss").register(registry);
+        Gauge.builder("gateway.balance.cache.requests", shared)
+                .description("Inquiries answered by another caller's in-flight host request")
+                .tag("result", "shared")
+                .register(registry);
+    }
+
+    public void gaugeHolds(Supplier<Number> open, Supplier<Number> opened, Supplier<Number> completed,
+                           Supplier<Number> expired, Supplier<Number> unmatched) {
+        Gauge.builder("gateway.holds.open", open).register(registry);
+        Gauge.builder("gateway.holds.events", opened).tag("event", "opened").register(registry);
+        Gauge.builder("gateway.holds.events", completed).tag("event", "completed").register(registry);
+        Gauge.builder("gateway.holds.events", expired).tag("event", "expired").register(registry);
+        Gauge.builder("gateway.holds.events", unmatched)
+                .description("Completions that matched no open hold and went to the host as sent")
+                .tag("event", "unmatched")
+                .register(registry);
+    }
+
+    public void gaugeIngress(Supplier<Number> connections, Supplier<Number> received, Supplier<Number> answered,
+                             Supplier<Number> refused) {
+        Gauge.builder("gateway.ingress.connections", connections).register(registry);
+        Gauge.builder("gateway.ingress.messages", received).tag("direction", "received").register(registry);
+        Gauge.builder("gateway.ingress.messages", answered).tag("direction", "answered").register(registry);
+        Gauge.builder("gateway.ingress.refused", refused)
+                .description("Connections closed on accept because max-connections were open")
+                .register(registry);
+    }
+
+    public void gaugePipelineStage(String stage, Supplier<Number> depth, Supplier<Number> processed,
+                                   Supplier<Number> batches) {
+        Gauge.builder("gateway.pipeline.depth", depth)
+                .description("Items waiting in a pipeline stage's queue")
+                .tag("stage", stage)
+                .register(registry);
+        Gauge.builder("gateway.pipeline.processed", processed).tag("stage", stage).register(registry);
+        Gauge.builder("gateway.pipeline.batches", batches)
+                .description("Stage wake-ups that found work; processed / batches is the mean batch size")
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    private static String orNone(String value) {
+        return value != null ? value : NONE;
+    }
+
+    private static final class StageKey {
+
+        private final String stage;
+        private final String mti;
+        private final String responseCode;
+        private final String host;
+        private final int hash;
+
+        private StageKey(String stage, String mti, String responseCode, String host) {
+            this.stage = stage;
+            this.mti = mti;
+            this.responseCode = responseCode;
+            this.host = host;
+            this.hash = Objects.hash(stage, mti, responseCode, host);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StageKey)) {
+                return false;
+            }
+            StageKey other = (StageKey) o;
+            return hash == other.hash
+                    && Objects.equals(stage, other.stage)
+                    && mti.equals(other.mti)
+                    && responseCode.equals(other.responseCode)
+                    && host.equals(other.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
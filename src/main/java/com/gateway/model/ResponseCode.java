@@ -11,6 +11,7 @@ public enum ResponseCode {
     INVALID_AMOUNT("13", "Invalid amount"),
     INVALID_CARD("14", "Invalid card number"),
     NO_ISSUER("15", "No such issuer"),
+    RECORD_NOT_FOUND("25", "Unable to locate original transaction"),
     FORMAT_ERROR("30", "Format error"),
     LOST_CARD("41", "Lost card"),
     STOLEN_CARD("43", "Stolen card"),
@@ -18,10 +19,21 @@ public enum ResponseCode {
     EXPIRED_CARD("54", "Expired card"),
     INVALID_PIN("55", "Invalid PIN"),
     TRANSACTION_NOT_PERMITTED("57", "Transaction not permitted"),
+    SECURITY_VIOLATION("63", "Security violation"),
+    ISSUER_UNAVAILABLE("91", "Issuer or switch inoperative"),
     SYSTEM_ERROR("96", "System error"),
     TIMEOUT("97", "Timeout"),
     DUPLICATE("94", "Duplicate transaction");
     
+    // Indexed by the numeric value of two-digit codes; values() clones its array on every call
+    private static final ResponseCode[] BY_CODE = new ResponseCode[100];
+    
+    static {
+        for (ResponseCode rc : values()) {
+            BY_CODE[Integer.parseInt(rc.code)] = rc;
+        }
+    }
+    
     private final String code;
     private final String message;
     
@@ -31,11 +43,15 @@ public enum ResponseCode {
     }
     
     public static ResponseCode fromCode(String code) {
-        for (ResponseCode rc : values()) {
-            if (rc.code.equals(code)) {
-                return rc;
-            }
+        if (code == null || code.length() != 2) {
+            return SYSTEM_ERROR;
+        }
+        int hi = code.charAt(0) - '0';
+        int lo = code.charAt(1) - '0';
+        if (hi < 0 || hi > 9 || lo < 0 || lo > 9) {
+            return SYSTEM_ERROR;
         }
-        return SYSTEM_ERROR;
+        ResponseCode rc = BY_CODE[hi * 10 + lo];
+        return rc != null ? rc : SYSTEM_ERROR;
     }
 }
\ No newline at end of file
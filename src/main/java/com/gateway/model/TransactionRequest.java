@@ -14,21 +14,19 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class TransactionRequest {
     
+    // Format, BIN and Luhn checks run in RequestValidator before any host work
     @NotBlank(message = "Card number is required")
-    @Pattern(regexp = "^[0-9]{16,19}$", message = "Invalid card number")
     private String cardNumber;
     
     @NotBlank(message = "Transaction type is required")
-    @Pattern(regexp = "^(DEBIT|CREDIT|REFUND|REVERSAL)$", message = "Invalid transaction type")
     private String transactionType;
     
-    @NotNull(message = "Amount is required")
+    // Required for every type except BALANCE; RequestValidator enforces it per type
     @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
     @DecimalMax(value = "999999.99", message = "Amount exceeds maximum")
     private BigDecimal amount;
     
     @NotBlank(message = "Currency code is required")
-    @Pattern(regexp = "^[A-Z]{3}$", message = "Invalid currency code")
     private String currencyCode;
     
     @NotBlank(message = "Terminal ID is required")
@@ -44,10 +42,8 @@ public class TransactionRequest {
     private String merchantName;
     
     @NotBlank(message = "POS entry mode is required")
-    @Pattern(regexp = "^[0-9]{2}$", message = "Invalid POS entry mode")
     private String posEntryMode;
     
-    @Pattern(regexp = "^[0-9]{3}$", message = "Invalid merchant category code")
     private String merchantCategoryCode;
     
     private String cardExpiryDate;
@@ -58,6 +54,8 @@ public class TransactionRequest {
     
     private String originalTransactionId;
     private String originalRRN;
+    // Completions: the pre-authorisation's auth code, if the terminal has no RRN for it
+    private String originalAuthCode;
     
     // Additional fields for specific transaction types
     private String fromAccount;
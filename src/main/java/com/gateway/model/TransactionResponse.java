@@ -9,7 +9,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TransactionResponse {
@@ -37,8 +37,15 @@ public class TransactionResponse {
     private String status;
     private Long processingTime;
     private String hostResponseCode;
+    private Long retryAfter;
+    // From field 54 of a balance inquiry response
+    private BigDecimal ledgerBalance;
+    private BigDecimal availableBalance;
     
     public String getMaskedCardNumber() {
+        if (maskedCardNumber != null) {
+            return maskedCardNumber;
+        }
         if (cardNumber != null && cardNumber.length() >= 16) {
             return cardNumber.substring(0, 6) + "******" + cardNumber.substring(12);
         }
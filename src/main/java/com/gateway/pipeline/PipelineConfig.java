@@ -0,0 +1,50 @@
+package com.gateway.pipeline;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.pipeline")
+@SuppressWarnings("unused")
+public class PipelineConfig {
+    // Run transactions through staged threads instead of on the caller's thread
+    private boolean enabled = false;
+    // Slots per stage queue, rounded up to a power of two; a full entry queue sheds new work
+    private int ringSize = 4096;
+    // Threads doing host exchanges; 0 means one per pooled connection
+    private int hostWorkers = 0;
+    // Most items a stage thread takes per wake-up
+    private int batchSize = 64;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public void setRingSize(int ringSize) {
+        this.ringSize = ringSize;
+    }
+
+    public int getHostWorkers() {
+        return hostWorkers;
+    }
+
+    public void setHostWorkers(int hostWorkers) {
+        this.hostWorkers = hostWorkers;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
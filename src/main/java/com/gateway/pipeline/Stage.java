@@ -0,0 +1,174 @@
+package com.gateway.pipeline;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * One pipeline stage: a {@link RingBuffer} drained by a fixed set of dedicated threads. A thread
+ * takes up to {@code batchSize} items per wake-up, spins briefly when the ring runs dry and then
+ * parks until a producer unparks it, so a busy stage runs without context switches and an idle
+ * one costs nothing.
+ */
+@Log4j2
+final class Stage<T> {
+
+    private static final int SPINS = 100;
+    // upper bound on a park, in case an unpark races with the sleeper registering itself
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String name;
+    private final RingBuffer<T> ring;
+    private final int batchSize;
+    private final Consumer<T> handler;
+    private final BiConsumer<T, Throwable> onError;
+    private final Thread[] threads;
+    private final Queue<Thread> sleepers = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running = true;
+
+    Stage(String name, int ringSize, int threadCount, int batchSize, Consumer<T> handler,
+          BiConsumer<T, Throwable> onError) {
+        this.name = name;
+        this.ring = new RingBuffer<>(ringSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        this.onError = onError;
+        this.threads = new Thread[Math.max(1, threadCount)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(this::run, threads.length == 1 ? "pipeline-" + name : "pipeline-" + name + "-" + (i + 1));
+            threads[i].setDaemon(true);
+        }
+    }
+
+    void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * @return {@code false} if the stage is full or stopped
+     */
+    boolean offer(T item) {
+        if (!running || !ring.offer(item)) {
+            return false;
+        }
+        wakeOne();
+        return true;
+    }
+
+    /**
+     * Waits for room. Used between stages, so a slow stage holds back the one feeding it and the
+     * backlog ends up at the entry, where it is shed.
+     */
+    void put(T item) {
+        int spins = 0;
+        while (!ring.offer(item)) {
+            if (spins++ < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            }
+        }
+        wakeOne();
+    }
+
+    /**
+     * Lets the threads finish what is already queued, then stops them.
+     *
+     * @return {@code true} if every thread exited in time
+     */
+    boolean stop(long deadlineNanos) throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+        for (Thread thread : threads) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            thread.join(Math.max(1, remaining));
+        }
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                log.warn("Pipeline stage {} still busy at shutdown with {} items queued", name, ring.size());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getDepth() {
+        return ring.size();
+    }
+
+    int getCapacity() {
+        return ring.capacity();
+    }
+
+    long getProcessed() {
+        return processed.sum();
+    }
+
+    long getBatches() {
+        return batches.sum();
+    }
+
+    private void wakeOne() {
+        Thread sleeper = sleepers.poll();
+        if (sleeper != null) {
+            LockSupport.unpark(sleeper);
+        }
+    }
+
+    private void run() {
+        @SuppressWarnings("unchecked")
+        T[] batch = (T[]) new Object[batchSize];
+        Thread current = Thread.currentThread();
+        int idle = 0;
+        while (true) {
+            int count = ring.drainTo(batch, batchSize);
+            if (count == 0) {
+                if (!running) {
+                    return;
+                }
+                if (idle++ < SPINS) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                sleepers.add(current);
+                // re-check after registering, or a producer that just missed us would not wake us
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                sleepers.remove(current);
+                continue;
+            }
+            idle = 0;
+            batches.increment();
+            for (int i = 0; i < count; i++) {
+                T item = batch[i];
+                batch[i] = null;
+                try {
+                    handler.accept(item);
+                } catch (Throwable t) {
+                    onError.accept(item, t);
+                }
+            }
+            processed.add(count);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.gateway.pipeline;
+
+import com.gateway.metrics.GatewayMetrics;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Runs work items through three stages connected by ring buffers:
+ * <ol>
+ *     <li>{@code prepare}, one thread, batched: local checks and message building;</li>
+ *     <li>{@code host}, one worker per pooled connection, one item at a time since each blocks on
+ *     its socket;</li>
+ *     <li>{@code complete}, one thread, batched: response mapping and bookkeeping.</li>
+ * </ol>
+ * Items that are finished after {@code prepare} (local declines) skip the host stage. Only the
+ * entry queue rejects work; later queues push back on the stage before them.
+ */
+@Log4j2
+public final class StagedPipeline<C> {
+
+    private final Stage<C> prepare;
+    private final Stage<C> host;
+    private final Stage<C> complete;
+    private final List<Stage<C>> stages;
+    private final int hostWorkers;
+
+    public StagedPipeline(PipelineConfig config, int hostWorkers, Consumer<C> prepareStep, Predicate<C> finished,
+                          Consumer<C> hostStep, Consumer<C> completeStep, BiConsumer<C, Throwable> onError) {
+        int ringSize = config.getRingSize();
+        int batchSize = config.getBatchSize();
+        this.complete = new Stage<>("complete", ringSize, 1, batchSize, completeStep, onError);
+        this.host = new Stage<>("host", ringSize, hostWorkers, 1, item -> {
+            hostStep.accept(item);
+            complete.put(item);
+        }, onError);
+        this.prepare = new Stage<>("prepare", ringSize, 1, batchSize, item -> {
+            prepareStep.accept(item);
+            if (finished.test(item)) {
+                complete.put(item);
+            } else {
+                host.put(item);
+            }
+        }, onError);
+        this.stages = Arrays.asList(prepare, host, complete);
+        this.hostWorkers = Math.max(1, hostWorkers);
+    }
+
+    public StagedPipeline<C> start(GatewayMetrics metrics) {
+        for (Stage<C> stage : stages) {
+            metrics.gaugePipelineStage(stage.getName(), stage::getDepth, stage::getProcessed, stage::getBatches);
+            stage.start();
+        }
+        log.info("Staged pipeline started: ring size {}, {} host workers", prepare.getCapacity(),
+                hostWorkers);
+        return this;
+    }
+
+    /**
+     * @return {@code false} if the entry queue is full or the pipeline is stopping
+     */
+    public boolean submit(C item) {
+        return prepare.offer(item);
+    }
+
+    /**
+     * Stops taking work and lets each stage empty into the next before stopping it. A stage still
+     * busy at the deadline leaves the stages after it running, so nothing it passes on is lost.
+     */
+    public void stop(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (Stage<C> stage : stages) {
+                if (!stage.stop(deadline)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.gateway.service;
 
+import com.gateway.bin.BinRangeRepository;
+import com.gateway.bin.BinTable;
+import com.gateway.hold.Hold;
 import com.gateway.iso8583.CustomPackager;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.mapping.FieldMapping;
+import com.gateway.mapping.MappingContext;
 import com.gateway.model.TransactionRequest;
 import com.gateway.model.TransactionResponse;
 import com.gateway.model.enums.ResponseCode;
 import com.gateway.model.enums.TransactionType;
+import com.gateway.settlement.SettlementEntry;
+import com.gateway.settlement.SettlementKey;
+import com.gateway.settlement.SettlementTotals;
 import com.gateway.util.Iso8583Util;
+import com.gateway.util.TransactionIdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.jpos.iso.ISOException;
@@ -16,8 +26,7 @@ import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @RequiredArgsConstructor
@@ -26,184 +35,306 @@ public class Iso8583Converter {
     
     private final CustomPackager customPackager;
     private final Iso8583Util iso8583Util;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final BinRangeRepository binRangeRepository;
+    private final FieldMapper fieldMapper;
     
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMdd");
-    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HHmmss");
     private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // PAN, processing code, amount, STAN, local time and date, RRN, terminal, merchant, currency
+    private static final int[] REVERSAL_COPIED_FIELDS = {2, 3, 4, 11, 12, 13, 37, 41, 42, 49};
+    // Track 2, PIN block, chip data and MACs never go back to a terminal
+    private static final int[] INGRESS_STRIPPED_FIELDS = {35, 52, 55, 64, 128};
     
     public ISOMsg requestToIso(TransactionRequest request) throws ISOException {
+        return requestToIso(request, customPackager, fieldMapper.getMapping());
+    }
+    
+    /**
+     * Builds the request in the layout of one acquirer.
+     */
+    public ISOMsg requestToIso(TransactionRequest request, CustomPackager packager, FieldMapping mapping)
+            throws ISOException {
         TransactionType transactionType = TransactionType.valueOf(request.getTransactionType());
         String mti = getMtiForTransactionType(transactionType);
         
-        ISOMsg isoMsg = customPackager.createMessage(mti);
-        LocalDateTime now = LocalDateTime.now();
+        ISOMsg isoMsg = packager.createMessage(mti);
         String stan = iso8583Util.generateStan();
-        String rrn = iso8583Util.generateRRN();
-        
-        // Field 2 - Primary Account Number (PAN)
-        isoMsg.set(2, request.getCardNumber());
-        
-        // Field 3 - Processing Code
-        isoMsg.set(3, getProcessingCode(request));
-        
-        // Field 4 - Transaction Amount
-        isoMsg.set(4, iso8583Util.formatAmount(request.getAmount()));
+        String rrn = iso8583Util.generateRRN(stan);
         
-        // Field 7 - Transmission Date & Time
-        isoMsg.set(7, iso8583Util.formatDateTime(now));
+        MappingContext context = new MappingContext(request, LocalDateTime.now(), stan, rrn,
+                getProcessingCode(request));
+        mapping.applyRequest(context, isoMsg);
         
-        // Field 11 - System Trace Audit Number (STAN)
-        isoMsg.set(11, stan);
-        
-        // Field 12 - Local Transaction Time
-        isoMsg.set(12, now.format(TIME_FORMAT));
-        
-        // Field 13 - Local Transaction Date
-        isoMsg.set(13, now.format(DATE_FORMAT));
-        
-        // Field 14 - Card Expiry Date
-        if (request.getCardExpiryDate() != null) {
-            isoMsg.set(14, request.getCardExpiryDate());
-        }
+        log.debug("Created ISO message: MTI={}, STAN={}, RRN={}", mti, stan, rrn);
+        iso8583Util.logISOMsg(isoMsg);
         
-        // Field 18 - Merchant Category Code
-        if (request.getMerchantCategoryCode() != null) {
-            isoMsg.set(18, request.getMerchantCategoryCode());
+        return isoMsg;
+    }
+    
+    public TransactionResponse isoToResponse(ISOMsg isoMsg) throws ISOException {
+        return isoToResponse(isoMsg, fieldMapper.getMapping());
+    }
+    
+    public TransactionResponse isoToResponse(ISOMsg isoMsg, FieldMapping mapping) throws ISOException {
+        // getString returns null for absent fields, so no separate hasField lookups
+        String responseCode = isoMsg.getString(39);
+        if (responseCode == null) {
+            responseCode = ResponseCode.SYSTEM_ERROR.getCode();
         }
+        ResponseCode rc = ResponseCode.fromCode(responseCode);
+        boolean approved = ResponseCode.APPROVED.getCode().equals(responseCode);
         
-        // Field 22 - POS Entry Mode
-        isoMsg.set(22, request.getPosEntryMode());
+        TransactionResponse response = new TransactionResponse();
+        response.setTransactionId(transactionIdGenerator.nextId());
         
-        // Field 25 - POS Condition Code
-        isoMsg.set(25, "00"); // Normal presentation
+        String authCode = isoMsg.getString(38);
+        response.setAuthCode(authCode != null ? authCode : generateAuthCode());
         
-        // Field 26 - POS PIN Capture Code
-        isoMsg.set(26, "12"); // PIN capture capability
+        response.setResponseCode(responseCode);
+        response.setResponseMessage(rc.getMessage());
+        response.setApproved(approved);
+        response.setStatus(approved ? "SUCCESS" : "FAILED");
+        response.setHostResponseCode(responseCode);
         
-        // Field 32 - Acquiring Institution ID
-        isoMsg.set(32, "123456");
+        // Only the masked PAN goes back to the caller; see the response section of the mapping
+        mapping.applyResponse(isoMsg, response);
         
-        // Field 35 - Track 2 Data
-        if (request.getCardExpiryDate() != null) {
-            String track2 = request.getCardNumber() + "=" + request.getCardExpiryDate();
-            isoMsg.set(35, track2);
+        // Field 54 - Additional Amounts (balances)
+        String additionalAmounts = isoMsg.getString(54);
+        if (additionalAmounts != null) {
+            applyAdditionalAmounts(response, additionalAmounts);
         }
         
-        // Field 37 - Retrieval Reference Number (RRN)
-        isoMsg.set(37, rrn);
-        
-        // Field 41 - Terminal ID
-        isoMsg.set(41, request.getTerminalId());
-        
-        // Field 42 - Merchant ID
-        isoMsg.set(42, request.getMerchantId());
-        
-        // Field 43 - Merchant Name & Location
-        isoMsg.set(43, formatMerchantName(request));
+        log.debug("Converted ISO response: Code={}, Message={}", responseCode, rc.getMessage());
         
-        // Field 49 - Currency Code
-        isoMsg.set(49, request.getCurrencyCode());
-        
-        // Field 60 - Additional Data (Invoice number, etc.)
-        if (request.getInvoiceNumber() != null) {
-            isoMsg.set(60, "INV" + request.getInvoiceNumber());
+        return response;
+    }
+    
+    /**
+     * The transaction a terminal's message asks for, from its MTI and processing code.
+     *
+     * @return {@code null} for messages the gateway does not authorise
+     */
+    public TransactionType ingressTransactionType(ISOMsg isoMsg) throws ISOException {
+        String processingCode = isoMsg.getString(3);
+        String type = processingCode != null && processingCode.length() >= 2 ? processingCode.substring(0, 2) : "00";
+        switch (isoMsg.getMTI()) {
+            case "0100":
+                return TransactionType.BALANCE.getProcessingCode().equals(type)
+                        ? TransactionType.BALANCE : TransactionType.PRE_AUTHORIZATION;
+            case "0200":
+                if (TransactionType.BALANCE.getProcessingCode().equals(type)) {
+                    return TransactionType.BALANCE;
+                }
+                return TransactionType.CREDIT.getProcessingCode().equals(type)
+                        ? TransactionType.CREDIT : TransactionType.DEBIT;
+            case "0220":
+                return TransactionType.COMPLETION;
+            default:
+                return null;
         }
-        
-        // Field 62 - Additional Transaction Data
-        StringBuilder additionalData = new StringBuilder();
-        if (request.getDescription() != null) {
-            additionalData.append(request.getDescription());
+    }
+    
+    /**
+     * Reads a terminal's message into the same request the JSON API builds, through the ingress
+     * section of the mapping.
+     */
+    public TransactionRequest isoToRequest(ISOMsg isoMsg, TransactionType transactionType) {
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType(transactionType.name());
+        fieldMapper.getMapping().applyIngress(isoMsg, request);
+        
+        // Field 35 - Track 2 for swiped cards that do not send the PAN separately
+        String track2 = isoMsg.getString(35);
+        if (request.getCardNumber() == null && track2 != null) {
+            int separator = Math.max(track2.indexOf('='), track2.indexOf('D'));
+            if (separator > 0) {
+                request.setCardNumber(track2.substring(0, separator));
+                if (request.getCardExpiryDate() == null && track2.length() >= separator + 5) {
+                    request.setCardExpiryDate(track2.substring(separator + 1, separator + 5));
+                }
+            }
         }
-        if (additionalData.length() > 0) {
-            isoMsg.set(62, additionalData.toString());
+        return request;
+    }
+    
+    /**
+     * Answers a terminal's message on the ingress listener. The terminal's own STAN and fields are
+     * echoed; field 37 carries the gateway RRN, which a later 0400 must quote.
+     */
+    public ISOMsg responseToIso(ISOMsg isoRequest, TransactionResponse response) throws ISOException {
+        ISOMsg isoMsg = (ISOMsg) isoRequest.clone();
+        isoMsg.setResponseMTI();
+        for (int field : INGRESS_STRIPPED_FIELDS) {
+            isoMsg.unset(field);
         }
         
-        // Field 102 - From Account
-        if (request.getFromAccount() != null) {
-            isoMsg.set(102, request.getFromAccount());
+        String responseCode = response.getResponseCode() != null
+                ? response.getResponseCode() : ResponseCode.SYSTEM_ERROR.getCode();
+        isoMsg.set(39, responseCode);
+        if (response.isSuccess() && response.getAuthCode() != null) {
+            isoMsg.set(38, response.getAuthCode());
         }
-        
-        // Field 103 - To Account
-        if (request.getToAccount() != null) {
-            isoMsg.set(103, request.getToAccount());
+        if (response.getRrn() != null) {
+            isoMsg.set(37, response.getRrn());
         }
         
-        log.info("Created ISO message: MTI={}, STAN={}, RRN={}", mti, stan, rrn);
-        iso8583Util.logISOMsg(isoMsg);
-        
+        // Field 54 - Additional Amounts, the inverse of applyAdditionalAmounts
+        if (response.getLedgerBalance() != null || response.getAvailableBalance() != null) {
+            String processingCode = isoRequest.getString(3);
+            String accountType = processingCode != null && processingCode.length() >= 4
+                    ? processingCode.substring(2, 4) : "00";
+            String currency = response.getCurrencyCode() != null
+                    ? response.getCurrencyCode() : isoRequest.getString(49);
+            StringBuilder amounts = new StringBuilder(40);
+            appendAdditionalAmount(amounts, accountType, "01", currency, response.getLedgerBalance());
+            appendAdditionalAmount(amounts, accountType, "02", currency, response.getAvailableBalance());
+            isoMsg.set(54, amounts.toString());
+        }
         return isoMsg;
     }
     
-    public TransactionResponse isoToResponse(ISOMsg isoMsg) throws ISOException {
-        String responseCode = isoMsg.hasField(39) ? isoMsg.getString(39) : "96";
-        ResponseCode rc = ResponseCode.fromCode(responseCode);
-        
-        TransactionResponse response = TransactionResponse.builder()
-            .transactionId(UUID.randomUUID().toString())
-            .rrn(isoMsg.hasField(37) ? isoMsg.getString(37) : null)
-            .stan(isoMsg.hasField(11) ? isoMsg.getString(11) : null)
-            .authCode(isoMsg.hasField(38) ? isoMsg.getString(38) : generateAuthCode())
-            .responseCode(responseCode)
-            .responseMessage(rc.getMessage())
-            .approved("00".equals(responseCode))
-            .status("00".equals(responseCode) ? "SUCCESS" : "FAILED")
-            .processingTime(System.currentTimeMillis())
-            .hostResponseCode(responseCode)
-            .build();
-        
-        // Optional fields
-        if (isoMsg.hasField(2)) {
-            response.setCardNumber(isoMsg.getString(2));
-        }
-        
-        if (isoMsg.hasField(4)) {
-            response.setAmount(iso8583Util.parseAmount(isoMsg.getString(4)));
-        }
-        
-        if (isoMsg.hasField(41)) {
-            response.setTerminalId(isoMsg.getString(41));
+    /**
+     * Account type the request is made against, as sent in positions 3-4 of the processing code.
+     */
+    public String accountType(TransactionRequest request) {
+        return request.getFromAccount() != null
+                ? determineAccountType(request.getCardNumber(), request.getFromAccount())
+                : "00";
+    }
+    
+    public void applyBinAttributes(TransactionResponse response, String cardNumber) {
+        BinTable bins = binRangeRepository.current();
+        int bin = bins.find(cardNumber);
+        if (bin >= 0) {
+            response.setCardType(bins.cardType(bin));
+            response.setIssuerCountry(bins.issuerCountry(bin));
         }
+    }
+    
+    /**
+     * Ties a completion to the pre-authorisation it draws on.
+     */
+    public void applyHold(ISOMsg completion, Hold hold) throws ISOException {
+        // Field 38 - Authorization code of the pre-authorisation
+        completion.set(38, hold.getAuthCode());
+    }
+    
+    public ISOMsg createReversalMessage(TransactionRequest request, String originalRRN, String originalSTAN) throws ISOException {
+        return createReversalMessage(request, originalRRN, originalSTAN, customPackager, fieldMapper.getMapping());
+    }
+    
+    public ISOMsg createReversalMessage(TransactionRequest request, String originalRRN, String originalSTAN,
+                                        CustomPackager packager, FieldMapping mapping) throws ISOException {
+        ISOMsg isoMsg = packager.createMessage("0400");
+        // The context carries the original STAN and RRN, which also make up field 90
+        MappingContext context = new MappingContext(request, LocalDateTime.now(), originalSTAN, originalRRN,
+                getProcessingCode(request));
+        mapping.applyReversal(context, isoMsg);
         
-        if (isoMsg.hasField(42)) {
-            response.setMerchantId(isoMsg.getString(42));
+        return isoMsg;
+    }
+    
+    /**
+     * Reverses a request known only by its ISO message, e.g. one whose approval came back after the
+     * exchange had timed out.
+     */
+    public ISOMsg createReversalMessage(ISOMsg original, CustomPackager packager) throws ISOException {
+        ISOMsg isoMsg = packager.createMessage("0400");
+        for (int field : REVERSAL_COPIED_FIELDS) {
+            String value = original.getString(field);
+            if (value != null) {
+                isoMsg.set(field, value);
+            }
         }
-        
-        if (isoMsg.hasField(49)) {
-            response.setCurrencyCode(isoMsg.getString(49));
+        // Field 90 - Original data elements, as the mapping's $originalData
+        String stan = original.getString(11);
+        String date = original.getString(13);
+        String time = original.getString(12);
+        if (stan != null && date != null && time != null) {
+            isoMsg.set(90, stan + date + time);
         }
+        return isoMsg;
+    }
+    
+    public ISOMsg createEchoMessage() throws ISOException {
+        ISOMsg isoMsg = customPackager.createMessage("0800");
+        isoMsg.set(7, iso8583Util.formatDateTime(LocalDateTime.now()));
+        isoMsg.set(11, iso8583Util.generateStan());
+        // Field 70 - Network Management Information Code (301 = echo test)
+        isoMsg.set(70, "301");
+        return isoMsg;
+    }
+    
+    /**
+     * Builds an acquirer reconciliation request (0500) or advice (0520) for one key of a closed
+     * settlement batch.
+     */
+    public ISOMsg createReconciliationMessage(String mti, long batchNumber, SettlementKey key,
+                                              SettlementTotals.Snapshot totals) throws ISOException {
+        ISOMsg isoMsg = customPackager.createMessage(mti);
+        isoMsg.set(7, iso8583Util.formatDateTime(LocalDateTime.now()));
+        isoMsg.set(11, iso8583Util.generateStan());
+        isoMsg.set(41, key.getTerminalId());
+        isoMsg.set(42, key.getMerchantId());
         
-        if (isoMsg.hasField(7)) {
-            // Could parse and set transaction date
-        }
+        // Field 50 - Settlement Currency
+        isoMsg.set(50, key.getCurrencyCode());
         
-        log.info("Converted ISO response: Code={}, Message={}", responseCode, rc.getMessage());
+        // Field 60 - Batch number
+        isoMsg.set(60, ISOUtil.zeropad(batchNumber, 6));
         
-        return response;
-    }
-    
-    public ISOMsg createReversalMessage(TransactionRequest request, String originalRRN, String originalSTAN) throws ISOException {
-        ISOMsg isoMsg = customPackager.createMessage("0400");
-        LocalDateTime now = LocalDateTime.now();
+        // Fields 74-77 - Credit, credit reversal, debit and debit reversal counts
+        isoMsg.set(74, ISOUtil.zeropad(totals.getCount(SettlementEntry.Kind.CREDIT), 10));
+        isoMsg.set(75, ISOUtil.zeropad(totals.getCount(SettlementEntry.Kind.CREDIT_REVERSAL), 10));
+        isoMsg.set(76, ISOUtil.zeropad(totals.getCount(SettlementEntry.Kind.DEBIT), 10));
+        isoMsg.set(77, ISOUtil.zeropad(totals.getCount(SettlementEntry.Kind.DEBIT_REVERSAL), 10));
         
-        // Copy original transaction details
-        isoMsg.set(2, request.getCardNumber());
-        isoMsg.set(3, getProcessingCode(request));
-        isoMsg.set(4, iso8583Util.formatAmount(request.getAmount()));
-        isoMsg.set(11, originalSTAN); // Original STAN
-        isoMsg.set(12, now.format(TIME_FORMAT));
-        isoMsg.set(13, now.format(DATE_FORMAT));
-        isoMsg.set(37, originalRRN); // Original RRN
-        isoMsg.set(41, request.getTerminalId());
-        isoMsg.set(42, request.getMerchantId());
-        isoMsg.set(49, request.getCurrencyCode());
+        // Fields 86-89 - The matching amounts
+        isoMsg.set(86, ISOUtil.zeropad(totals.getAmount(SettlementEntry.Kind.CREDIT), 16));
+        isoMsg.set(87, ISOUtil.zeropad(totals.getAmount(SettlementEntry.Kind.CREDIT_REVERSAL), 16));
+        isoMsg.set(88, ISOUtil.zeropad(totals.getAmount(SettlementEntry.Kind.DEBIT), 16));
+        isoMsg.set(89, ISOUtil.zeropad(totals.getAmount(SettlementEntry.Kind.DEBIT_REVERSAL), 16));
         
-        // Field 90 - Original Data Elements
-        String originalData = originalSTAN + now.format(DATE_FORMAT) + now.format(TIME_FORMAT);
-        isoMsg.set(90, originalData);
+        // Field 97 - Net settlement amount, C when the acquirer is owed
+        long net = totals.getNetAmount();
+        isoMsg.set(97, (net >= 0 ? "C" : "D") + ISOUtil.zeropad(Math.abs(net), 16));
         
         return isoMsg;
     }
     
+    /**
+     * Field 54 holds up to six 20-character blocks: account type (2), amount type (2), currency (3),
+     * sign C/D (1) and amount in minor units (12). Amount type 01 is the ledger balance, 02 the
+     * available balance.
+     */
+    private void applyAdditionalAmounts(TransactionResponse response, String amounts) {
+        for (int i = 0; i + 20 <= amounts.length(); i += 20) {
+            String amountType = amounts.substring(i + 2, i + 4);
+            BigDecimal amount = iso8583Util.parseAmount(amounts.substring(i + 8, i + 20),
+                    amounts.substring(i + 4, i + 7));
+            if (amounts.charAt(i + 7) == 'D') {
+                amount = amount.negate();
+            }
+            if ("01".equals(amountType)) {
+                response.setLedgerBalance(amount);
+            } else if ("02".equals(amountType)) {
+                response.setAvailableBalance(amount);
+            }
+        }
+    }
+    
+    private void appendAdditionalAmount(StringBuilder amounts, String accountType, String amountType,
+                                        String currency, BigDecimal amount) {
+        if (amount == null) {
+            return;
+        }
+        amounts.append(accountType).append(amountType)
+                .append(currency != null && currency.length() == 3 ? currency : "000")
+                .append(amount.signum() < 0 ? 'D' : 'C')
+                .append(iso8583Util.formatAmount(amount.abs(), currency));
+    }
+    
     private String getMtiForTransactionType(TransactionType type) {
         switch (type) {
             case DEBIT:
@@ -225,21 +356,26 @@ public class Iso8583Converter {
     private String getProcessingCode(TransactionRequest request) {
         TransactionType type = TransactionType.valueOf(request.getTransactionType());
         
-        String fromAccountType = "00"; // Default
+        String fromAccountType = accountType(request);
         String toAccountType = "00"; // Default
         
-        if (request.getFromAccount() != null) {
-            fromAccountType = determineAccountType(request.getFromAccount());
-        }
-        
         if (request.getToAccount() != null) {
-            toAccountType = determineAccountType(request.getToAccount());
+            toAccountType = determineAccountType(null, request.getToAccount());
         }
         
         return type.getProcessingCode() + fromAccountType + toAccountType;
     }
     
-    private String determineAccountType(String account) {
+    private String determineAccountType(String cardNumber, String account) {
+        // The card's BIN range knows the account type; the prefix guess is only a fallback
+        if (cardNumber != null) {
+            BinTable bins = binRangeRepository.current();
+            int bin = bins.find(cardNumber);
+            if (bin >= 0 && bins.accountType(bin) != null) {
+                return bins.accountType(bin);
+            }
+        }
+        
         if (account.startsWith("4")) {
             return "10"; // Savings account
         } else if (account.startsWith("5")) {
@@ -249,22 +385,13 @@ public class Iso8583Converter {
         }
     }
     
-    private String formatMerchantName(TransactionRequest request) {
-        StringBuilder sb = new StringBuilder();
-        if (request.getMerchantName() != null) {
-            sb.append(request.getMerchantName());
-        }
-        // Pad or truncate to 40 characters
-        String result = sb.toString();
-        if (result.length() > 40) {
-            result = result.substring(0, 40);
-        } else if (result.length() < 40) {
-            result = String.format("%-40s", result);
+    private static String generateAuthCode() {
+        int value = ThreadLocalRandom.current().nextInt(1000000);
+        char[] digits = new char[6];
+        for (int i = 5; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
         }
-        return result;
-    }
-    
-    private String generateAuthCode() {
-        return String.format("%06d", new Random().nextInt(999999));
+        return new String(digits);
     }
 }
\ No newline at end of file
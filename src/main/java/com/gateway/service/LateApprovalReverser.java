@@ -0,0 +1,84 @@
+package com.gateway.service;
+
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.stip.StandInAdviceQueue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Reconciles approvals the host sent after we had stopped waiting. A caller that was told the
+ * exchange failed, or was declined by stand-in, never got the goods, so the host's approval is
+ * reversed through the store-and-forward queue like any other reversal that has to reach it.
+ * A caller approved by stand-in keeps the approval: the host's own makes the queued advice
+ * redundant, so the advice is withdrawn instead.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class LateApprovalReverser {
+
+    private final AcquirerRegistry acquirers;
+    private final Iso8583Converter iso8583Converter;
+    private final StandInAdviceQueue storeAndForward;
+
+    @PostConstruct
+    public void register() {
+        for (AcquirerProfile acquirer : acquirers.getProfiles()) {
+            acquirer.getClient().setLateApprovalListener((request, response, standIn, trusted) ->
+                    onLateApproval(acquirer.getName(), acquirer.getPackager(), request, standIn, trusted));
+        }
+    }
+
+    void onLateApproval(String acquirer, CustomPackager packager, ISOMsg request, ISOMsg standIn, boolean trusted) {
+        if (standIn == null || !"00".equals(standIn.getString(39))) {
+            reverse(acquirer, packager, request);
+            return;
+        }
+        String rrn = request.getString(37);
+        if (!trusted) {
+            // the host may not have approved at all; the advice tells it about the stand-in approval
+            log.warn("Keeping stand-in advice after unverifiable late response at {}: STAN={}, RRN={}", acquirer,
+                    request.getString(11), rrn);
+        } else if (rrn != null && storeAndForward.withdrawAdvice(rrn)) {
+            log.info("Host at {} approved stand-in approval itself, advice withdrawn: STAN={}, RRN={}", acquirer,
+                    request.getString(11), rrn);
+        } else {
+            log.warn("Host at {} approved stand-in approval whose advice is already forwarded: STAN={}, RRN={}",
+                    acquirer, request.getString(11), rrn);
+        }
+    }
+
+    private void reverse(String acquirer, CustomPackager packager, ISOMsg request) {
+        try {
+            if (!needsReversal(request)) {
+                return;
+            }
+            log.warn("Queuing reversal of late approval at {}: STAN={}, RRN={}", acquirer,
+                    request.getString(11), request.getString(37));
+            storeAndForward.enqueue(iso8583Converter.createReversalMessage(request, packager));
+        } catch (ISOException e) {
+            log.error("Could not reverse late approval at {}: STAN={}, RRN={}: {}", acquirer,
+                    request.getString(11), request.getString(37), e.getMessage());
+        }
+    }
+
+    /**
+     * Authorisation and financial requests move money; balance inquiries, reversals, advices and
+     * network messages do not need undoing.
+     */
+    static boolean needsReversal(ISOMsg request) throws ISOException {
+        String mti = request.getMTI();
+        if (!"0100".equals(mti) && !"0200".equals(mti)) {
+            return false;
+        }
+        String processingCode = request.getString(3);
+        return processingCode == null || !processingCode.startsWith("31");
+    }
+}
@@ -0,0 +1,103 @@
+package com.gateway.service;
+
+import com.gateway.model.TransactionRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Original requests that may still need a reversal, keyed by RRN. Only what a reversal is built
+ * and routed from is kept: card number, transaction type and accounts (the processing code),
+ * amount, currency, terminal and merchant. Expiry, CVV and free text are dropped on the way in.
+ * Local changes are passed to the {@link ReplicationListener}, if one is set; changes received from
+ * other nodes go through the {@code *Replica} methods so they are not echoed back.
+ */
+@Component
+public class PendingReversalStore {
+
+    public interface ReplicationListener {
+        void onPut(String rrn, TransactionRequest request);
+
+        void onRemove(String rrn);
+    }
+
+    private final Map<String, TransactionRequest> pending = new ConcurrentHashMap<>();
+    private volatile ReplicationListener replicationListener;
+
+    public void setReplicationListener(ReplicationListener replicationListener) {
+        this.replicationListener = replicationListener;
+    }
+
+    /**
+     * Never replaces the record of another transaction that was given the same RRN, which
+     * happens when the STANs wrap within the hour; see {@link com.gateway.util.Iso8583Util#generateRRN(String)}.
+     *
+     * @return {@code false} if the RRN is already pending a reversal
+     */
+    public boolean put(String rrn, TransactionRequest request) {
+        TransactionRequest record = reversalRecord(request);
+        if (pending.putIfAbsent(rrn, record) != null) {
+            return false;
+        }
+        ReplicationListener listener = replicationListener;
+        if (listener != null) {
+            listener.onPut(rrn, record);
+        }
+        return true;
+    }
+
+    public void putReplica(String rrn, TransactionRequest request) {
+        pending.put(rrn, reversalRecord(request));
+    }
+
+    public void removeReplica(String rrn) {
+        pending.remove(rrn);
+    }
+
+    public void removeReplicasIf(Predicate<String> rrnFilter) {
+        pending.keySet().removeIf(rrnFilter);
+    }
+
+    public TransactionRequest get(String rrn) {
+        return pending.get(rrn);
+    }
+
+    public void remove(String rrn) {
+        pending.remove(rrn);
+        ReplicationListener listener = replicationListener;
+        if (listener != null) {
+            listener.onRemove(rrn);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public Map<String, TransactionRequest> snapshot() {
+        return new HashMap<>(pending);
+    }
+
+    public void putAll(Map<String, TransactionRequest> entries) {
+        entries.forEach((rrn, request) -> pending.put(rrn, reversalRecord(request)));
+    }
+
+    /**
+     * The part of a request its reversal needs.
+     */
+    public static TransactionRequest reversalRecord(TransactionRequest request) {
+        return TransactionRequest.builder()
+                .cardNumber(request.getCardNumber())
+                .transactionType(request.getTransactionType())
+                .fromAccount(request.getFromAccount())
+                .toAccount(request.getToAccount())
+                .amount(request.getAmount())
+                .currencyCode(request.getCurrencyCode())
+                .terminalId(request.getTerminalId())
+                .merchantId(request.getMerchantId())
+                .build();
+    }
+}
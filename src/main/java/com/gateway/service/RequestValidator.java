@@ -0,0 +1,229 @@
+package com.gateway.service;
+
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.enums.ResponseCode;
+import com.gateway.model.enums.TransactionType;
+import com.gateway.util.Iso8583Util;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Local pre-checks run before a request is converted and sent to the host.
+ * Each check is a hand-written scan over the field, so rejecting malformed traffic costs
+ * microseconds instead of a host round trip. Methods return the decline code, or {@code null}
+ * when the field is acceptable.
+ */
+@Component
+public class RequestValidator {
+
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("999999.99");
+
+    private final Clock clock;
+
+    public RequestValidator() {
+        this(Clock.systemDefaultZone());
+    }
+
+    RequestValidator(Clock clock) {
+        this.clock = clock;
+    }
+
+    public ResponseCode validate(TransactionRequest request) {
+        TransactionType type = typeOf(request.getTransactionType());
+        if (type == null) {
+            return ResponseCode.INVALID_TRANSACTION;
+        }
+        ResponseCode rc = null;
+        switch (type) {
+            case BALANCE:
+                // inquiries carry no amount
+                break;
+            default:
+                rc = checkAmount(request.getAmount(), request.getCurrencyCode());
+        }
+        if (rc == null) {
+            rc = checkPan(request.getCardNumber());
+        }
+        if (rc == null && request.getCardExpiryDate() != null) {
+            rc = checkExpiry(request.getCardExpiryDate());
+        }
+        if (rc == null && request.getMerchantCategoryCode() != null) {
+            rc = checkMcc(request.getMerchantCategoryCode());
+        }
+        if (rc == null) {
+            rc = checkFormat(request);
+        }
+        return rc;
+    }
+
+    /**
+     * Accepts exactly the {@link TransactionType} names; refunds are sent as {@code CREDIT}.
+     */
+    public ResponseCode checkTransactionType(String type) {
+        return typeOf(type) == null ? ResponseCode.INVALID_TRANSACTION : null;
+    }
+
+    /**
+     * Positive, within the maximum, and with no more decimals than the currency's minor unit:
+     * 10.005 USD or 10.5 JPY cannot be expressed in field 4.
+     */
+    public ResponseCode checkAmount(BigDecimal amount, String currencyCode) {
+        if (amount == null || amount.signum() <= 0 || amount.compareTo(MAX_AMOUNT) > 0) {
+            return ResponseCode.INVALID_AMOUNT;
+        }
+        if (amount.scale() > 0 && amount.stripTrailingZeros().scale() > Iso8583Util.minorUnitDigits(currencyCode)) {
+            return ResponseCode.INVALID_AMOUNT;
+        }
+        return null;
+    }
+
+    private static TransactionType typeOf(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (TransactionType type : TransactionType.values()) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Digits only, ISO/IEC 7812 length, a payment-card industry identifier, a brand-consistent
+     * length and a valid Luhn check digit.
+     */
+    public ResponseCode checkPan(CharSequence pan) {
+        if (pan == null) {
+            return ResponseCode.INVALID_CARD;
+        }
+        int length = pan.length();
+        if (length < 12 || length > 19 || !isDigits(pan, 0, length)) {
+            return ResponseCode.INVALID_CARD;
+        }
+        if (!isPlausibleBin(pan, length) || !passesLuhn(pan, length)) {
+            return ResponseCode.INVALID_CARD;
+        }
+        return null;
+    }
+
+    /**
+     * Expiry in YYMM; the card is valid through the last day of that month.
+     */
+    public ResponseCode checkExpiry(CharSequence expiry) {
+        if (expiry.length() != 4 || !isDigits(expiry, 0, 4)) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        int year = twoDigits(expiry, 0);
+        int month = twoDigits(expiry, 2);
+        if (month < 1 || month > 12) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        LocalDate today = LocalDate.now(clock);
+        int currentYear = today.getYear() % 100;
+        int currentMonth = today.getMonthValue();
+        if (year < currentYear || (year == currentYear && month < currentMonth)) {
+            return ResponseCode.EXPIRED_CARD;
+        }
+        return null;
+    }
+
+    public ResponseCode checkMcc(CharSequence mcc) {
+        if (mcc.length() != 4 || !isDigits(mcc, 0, 4)) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        return null;
+    }
+
+    private ResponseCode checkFormat(TransactionRequest request) {
+        String currency = request.getCurrencyCode();
+        if (currency == null || currency.length() != 3 || !isUpperAlpha(currency)) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        String posEntryMode = request.getPosEntryMode();
+        if (posEntryMode == null || posEntryMode.length() != 2 || !isDigits(posEntryMode, 0, 2)) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        if (request.getTerminalId() == null || request.getTerminalId().length() != 8) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        if (request.getMerchantId() == null || request.getMerchantId().length() != 15) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        String cvv = request.getCvv();
+        if (cvv != null && (cvv.length() < 3 || cvv.length() > 4 || !isDigits(cvv, 0, cvv.length()))) {
+            return ResponseCode.FORMAT_ERROR;
+        }
+        return null;
+    }
+
+    private static boolean isPlausibleBin(CharSequence pan, int length) {
+        char mii = pan.charAt(0);
+        switch (mii) {
+            case '4':
+                // Visa
+                return length == 13 || length == 16 || length == 19;
+            case '3':
+                // Amex 34/37 is always 15 digits; other 3-series (JCB, Diners) vary
+                char second = pan.charAt(1);
+                return (second != '4' && second != '7') || length == 15;
+            case '5':
+                // Mastercard 51-55 is always 16 digits; Maestro 50/56-58 varies
+                char next = pan.charAt(1);
+                return next < '1' || next > '5' || length == 16;
+            case '2':
+                // Mastercard 2221-2720
+                int prefix = twoDigits(pan, 0) * 100 + twoDigits(pan, 2);
+                return prefix < 2221 || prefix > 2720 || length == 16;
+            case '6':
+                return true;
+            default:
+                // 0, 1, 7, 8 and 9 are not payment-card industry identifiers
+                return false;
+        }
+    }
+
+    static boolean passesLuhn(CharSequence pan, int length) {
+        int sum = 0;
+        boolean doubleIt = false;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = pan.charAt(i) - '0';
+            if (doubleIt) {
+                digit <<= 1;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleIt = !doubleIt;
+        }
+        return sum % 10 == 0;
+    }
+
+    private static boolean isDigits(CharSequence value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUpperAlpha(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int twoDigits(CharSequence value, int offset) {
+        return (value.charAt(offset) - '0') * 10 + (value.charAt(offset + 1) - '0');
+    }
+}
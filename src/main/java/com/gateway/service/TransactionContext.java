@@ -0,0 +1,52 @@
+package com.gateway.service;
+
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.hold.Hold;
+import com.gateway.jfr.TransactionEvent;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import org.jpos.iso.ISOMsg;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One transaction's state between the stages of {@link TransactionService}. A transaction is
+ * finished early once it has a {@code response} (a local decline) or a {@code failure}; later
+ * stages then only do the bookkeeping. Stages may run on different threads; the hand-off between
+ * them publishes these fields.
+ */
+public final class TransactionContext {
+
+    final TransactionRequest request;
+    final long deadlineNanos;
+    final long startTime;
+    final String requestId;
+    final TransactionEvent event;
+    // pipeline mode only
+    final CompletableFuture<TransactionResponse> result;
+
+    AcquirerProfile acquirer;
+    // completions only: the hold whose amount is reserved until the host answers
+    Hold hold;
+    ISOMsg isoRequest;
+    String mti;
+    ISOMsg isoResponse;
+    boolean standIn;
+    TransactionResponse response;
+    Exception failure;
+
+    TransactionContext(TransactionRequest request, long deadlineNanos, String requestId,
+                       CompletableFuture<TransactionResponse> result) {
+        this.event = new TransactionEvent();
+        event.begin();
+        this.startTime = System.nanoTime();
+        this.request = request;
+        this.deadlineNanos = deadlineNanos;
+        this.requestId = requestId;
+        this.result = result;
+    }
+
+    boolean isFinished() {
+        return response != null || failure != null;
+    }
+}
@@ -1,89 +1,368 @@
 package com.gateway.service;
 
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.admission.LoadShedder;
+import com.gateway.admission.LoadSheddingException;
+import com.gateway.balance.BalanceInquiryCache;
+import com.gateway.history.TransactionHistory;
+import com.gateway.hold.Hold;
+import com.gateway.hold.HoldLedger;
+import com.gateway.jfr.TransactionEvent;
+import com.gateway.mac.MacVerificationException;
+import com.gateway.metrics.GatewayMetrics;
 import com.gateway.model.TransactionRequest;
 import com.gateway.model.TransactionResponse;
 import com.gateway.model.enums.ResponseCode;
+import com.gateway.model.enums.TransactionType;
+import com.gateway.pipeline.PipelineConfig;
+import com.gateway.pipeline.StagedPipeline;
+import com.gateway.settlement.SettlementEngine;
+import com.gateway.stip.StandInAdviceQueue;
+import com.gateway.stip.StandInProcessor;
+import com.gateway.tcp.ExchangeAbortedException;
 import com.gateway.tcp.IsoTcpClient;
 import com.gateway.util.Iso8583Util;
-import com.gateway.converter.Iso8583Converter;
 
-import java.math.BigDecimal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOException;
 import org.jpos.iso.ISOMsg;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 @RequiredArgsConstructor
 @Log4j2
 public class TransactionService {
 
-    private final IsoTcpClient iso8583TcpClient;
+    private static final long PIPELINE_STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final AcquirerRegistry acquirers;
     private final Iso8583Converter iso8583Converter;
     private final Iso8583Util iso8583Util;
+    private final LoadShedder loadShedder;
+    private final RequestValidator requestValidator;
+    private final StandInProcessor standInProcessor;
+    private final GatewayMetrics gatewayMetrics;
+    private final PendingReversalStore pendingReversals;
+    private final StandInAdviceQueue storeAndForward;
+    private final SettlementEngine settlementEngine;
+    private final TransactionHistory transactionHistory;
+    private final BalanceInquiryCache balanceCache;
+    private final HoldLedger holds;
+    private final PipelineConfig pipelineConfig;
+
+    // null unless gateway.pipeline.enabled
+    private StagedPipeline<TransactionContext> pipeline;
+
+    @PostConstruct
+    public void startPipeline() {
+        if (!pipelineConfig.isEnabled()) {
+            return;
+        }
+        int hostWorkers = pipelineConfig.getHostWorkers() > 0
+                ? pipelineConfig.getHostWorkers() : acquirers.getMaxConnections();
+        pipeline = new StagedPipeline<>(pipelineConfig, hostWorkers,
+                this::prepare, TransactionContext::isFinished, this::exchange,
+                context -> context.result.complete(complete(context)),
+                (context, error) -> {
+                    log.error("Pipeline stage failed [{}]: {}", context.requestId, error.getMessage(), error);
+                    context.result.completeExceptionally(error);
+                }).start(gatewayMetrics);
+    }
 
-    // Cache for pending reversals
-    private final Map<String, TransactionRequest> pendingReversals = new ConcurrentHashMap<>();
+    /**
+     * Stops taking work and completes what is queued. Called by the drain once host exchanges are
+     * over, so queued transactions are shed quickly instead of reaching the host.
+     */
+    @PreDestroy
+    public void stopPipeline() {
+        if (pipeline != null) {
+            pipeline.stop(PIPELINE_STOP_TIMEOUT_MILLIS);
+        }
+    }
 
     @Retryable(value = { Exception.class }, maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2))
     public TransactionResponse processTransaction(TransactionRequest request) {
-        long startTime = System.currentTimeMillis();
-        String requestId = iso8583Util.generateRequestId();
+        return processTransaction(request, loadShedder.deadlineFromTimeout(null));
+    }
+
+    public TransactionResponse processTransaction(TransactionRequest request, long deadlineNanos) {
+        if (TransactionType.BALANCE.name().equals(request.getTransactionType()) && balanceCache.isEnabled()
+                && request.getCardNumber() != null) {
+            return inquireBalance(request, deadlineNanos);
+        }
+        return process(request, deadlineNanos);
+    }
+
+    /**
+     * Repeated polls for the same card share one host inquiry. Each caller is validated before the
+     * cache is consulted and only shares answers with callers presenting the same expiry and CVV;
+     * a caller served from the cache still gets its own history row, metrics and event.
+     */
+    private TransactionResponse inquireBalance(TransactionRequest request, long deadlineNanos) {
+        TransactionEvent event = new TransactionEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        ResponseCode decline = requestValidator.validate(request);
+        gatewayMetrics.recordStage(GatewayMetrics.STAGE_VALIDATION, System.nanoTime() - startTime, null);
+        if (decline != null) {
+            // declined locally the usual way, never from or into the cache
+            return process(request, deadlineNanos);
+        }
+
+        boolean[] loaded = new boolean[1];
+        TransactionResponse response = balanceCache.get(request.getCardNumber(), iso8583Converter.accountType(request),
+                request.getCardExpiryDate() + '/' + request.getCvv(), () -> {
+                    loaded[0] = true;
+                    return process(request, deadlineNanos);
+                });
+        response.setProcessingTime(elapsedMillis(startTime));
+        if (!loaded[0]) {
+            transactionHistory.record(request, request.getTransactionType(), response);
+            gatewayMetrics.recordStage(GatewayMetrics.STAGE_TOTAL, System.nanoTime() - startTime, null,
+                    response.getResponseCode(), null);
+            commitEvent(event, "cached", request.getTransactionType(), null, response);
+        }
+        return response;
+    }
+
+    private TransactionResponse process(TransactionRequest request, long deadlineNanos) {
+        if (pipeline != null) {
+            return dispatch(request, deadlineNanos).join();
+        }
+        TransactionContext context = begin(request, deadlineNanos, null);
+        prepare(context);
+        exchange(context);
+        return complete(context);
+    }
+
+    private CompletableFuture<TransactionResponse> dispatch(TransactionRequest request, long deadlineNanos) {
+        CompletableFuture<TransactionResponse> result = new CompletableFuture<>();
+        TransactionContext context = begin(request, deadlineNanos, result);
+        if (!pipeline.submit(context)) {
+            context.failure = loadShedder.reject("Transaction pipeline full or stopped");
+            result.complete(complete(context));
+        }
+        return result;
+    }
 
+    private TransactionContext begin(TransactionRequest request, long deadlineNanos,
+                                     CompletableFuture<TransactionResponse> result) {
+        TransactionContext context = new TransactionContext(request, deadlineNanos, iso8583Util.generateRequestId(), result);
         log.info("Processing transaction [{}]: Type={}, Terminal={}, Amount={} {}",
-                requestId, request.getTransactionType(), request.getTerminalId(),
+                context.requestId, request.getTransactionType(), request.getTerminalId(),
                 request.getAmount(), request.getCurrencyCode());
+        return context;
+    }
 
+    private void prepare(TransactionContext context) {
+        TransactionRequest request = context.request;
         try {
-            // Validate request
-            validateRequest(request);
+            // Validate request locally; malformed traffic never reaches the host
+            long start = System.nanoTime();
+            ResponseCode decline = requestValidator.validate(request);
+            long validated = System.nanoTime();
+            gatewayMetrics.recordStage(GatewayMetrics.STAGE_VALIDATION, validated - start, null);
+            if (decline != null) {
+                log.info("Transaction declined locally [{}]: Code={}", context.requestId, decline.getCode());
+                context.response = createErrorResponse(request, decline, context.startTime);
+                return;
+            }
 
-            // Convert request to ISO message
-            ISOMsg isoRequest = iso8583Converter.requestToIso(request);
+            // A completion draws on its hold; one we hold no record of goes to the host as sent
+            if (TransactionType.COMPLETION.name().equals(request.getTransactionType()) && holds.isEnabled()) {
+                Hold hold = holds.match(request);
+                if (hold != null && !holds.reserve(hold, request.getAmount())) {
+                    log.info("Completion exceeds its hold [{}]: RRN={}", context.requestId, hold.getRrn());
+                    context.response = createErrorResponse(request, ResponseCode.INVALID_AMOUNT, context.startTime);
+                    return;
+                }
+                context.hold = hold;
+            }
 
-            // Send to host
-            ISOMsg isoResponse = iso8583TcpClient.sendRequest(isoRequest);
+            // Convert request to ISO message in the layout of the acquirer it is routed to
+            AcquirerProfile acquirer = acquirers.route(request);
+            context.acquirer = acquirer;
+            context.isoRequest = iso8583Converter.requestToIso(request, acquirer.getPackager(), acquirer.getMapping());
+            if (context.hold != null) {
+                iso8583Converter.applyHold(context.isoRequest, context.hold);
+            }
+            context.mti = context.isoRequest.getMTI();
+            gatewayMetrics.recordStage(GatewayMetrics.STAGE_REQUEST_TO_ISO, System.nanoTime() - validated, context.mti);
+        } catch (Exception e) {
+            context.failure = e;
+        }
+    }
 
-            // Convert response
-            TransactionResponse response = iso8583Converter.isoToResponse(isoResponse);
+    @SuppressWarnings("try") // the admission permit is only held for the exchange, never used
+    private void exchange(TransactionContext context) {
+        if (context.isFinished()) {
+            return;
+        }
+        TransactionRequest request = context.request;
+        ISOMsg isoRequest = context.isoRequest;
+        AcquirerProfile acquirer = context.acquirer;
+        try {
+            // Send to host, unless we are already too far behind to answer in time
+            // Host unreachable after retries: authorise locally instead of failing outright. The client
+            // only stands in when no attempt reached the host, so the host cannot have approved it too
+            IsoTcpClient.StandIn standIn = !standInProcessor.isEnabled() ? null : isoMsg -> {
+                log.warn("Host unavailable [{}], using stand-in processing", context.requestId);
+                context.standIn = true;
+                return standInProcessor.authorize(request, isoMsg);
+            };
+            try (LoadShedder.Permit ignored = loadShedder.admit(context.deadlineNanos)) {
+                context.isoResponse = acquirer.getClient().sendRequest(isoRequest, standIn);
+            } catch (ExchangeAbortedException | MacVerificationException e) {
+                // The host may have authorised a request we never saw (or cannot trust) the answer to; reverse it
+                log.warn("Host exchange cut off [{}], queuing reversal: {}", context.requestId, e.getMessage());
+                storeAndForward.enqueue(iso8583Converter.createReversalMessage(request, isoRequest.getString(37),
+                        isoRequest.getString(11), acquirer.getPackager(), acquirer.getMapping()));
+                context.response = createErrorResponse(request, ResponseCode.ISSUER_UNAVAILABLE, context.startTime);
+            }
+        } catch (Exception e) {
+            context.failure = e;
+        }
+    }
 
-            // Store for potential reversal
-            if (request.getTransactionType() == TransactionType.DEBIT && response.isSuccess()) {
-                pendingReversals.put(isoRequest.getString(37), request);
+    private TransactionResponse complete(TransactionContext context) {
+        TransactionRequest request = context.request;
+        try {
+            if (!context.isFinished()) {
+                context.response = mapResponse(context);
             }
+        } catch (Exception e) {
+            context.failure = e;
+        }
 
-            // Handle response
-            if (!response.isSuccess()) {
-                storeForReversal(request, isoRequest.getString(37), isoRequest.getString(11));
+        try {
+            if (context.failure instanceof LoadSheddingException) {
+                LoadSheddingException e = (LoadSheddingException) context.failure;
+                log.warn("Transaction shed [{}]: {}", context.requestId, e.getMessage());
+                context.response = createErrorResponse(request, e.getResponseCode(), context.startTime);
+                context.response.setRetryAfter(e.getRetryAfterMillis());
+            } else if (context.failure != null) {
+                Exception e = context.failure;
+                log.error("Transaction failed [{}]: {}", context.requestId, e.getMessage(), e);
+                context.response = createErrorResponse(request, ResponseCode.SYSTEM_ERROR, context.startTime);
+            }
+            return context.response;
+        } finally {
+            TransactionResponse response = context.response;
+            if (context.hold != null) {
+                // declined, failed or cut off: the amount is still available to later completions
+                holds.release(context.hold, request.getAmount());
             }
+            if (context.mti != null && isBalanceChanging(request.getTransactionType())) {
+                balanceCache.invalidate(request.getCardNumber());
+            }
+            transactionHistory.record(request, request.getTransactionType(), response);
+            gatewayMetrics.recordStage(GatewayMetrics.STAGE_TOTAL, System.nanoTime() - context.startTime,
+                    context.mti, response != null ? response.getResponseCode() : null, null);
+            commitEvent(context.event, "process", request.getTransactionType(), context.mti, response);
+        }
+    }
 
-            // Calculate processing time
-            response.setProcessingTime(System.currentTimeMillis() - startTime);
+    private TransactionResponse mapResponse(TransactionContext context) throws ISOException {
+        TransactionRequest request = context.request;
+        ISOMsg isoRequest = context.isoRequest;
+
+        // Convert response
+        long mappingStart = System.nanoTime();
+        TransactionResponse response = iso8583Converter.isoToResponse(context.isoResponse,
+                context.acquirer.getMapping());
+        iso8583Converter.applyBinAttributes(response, request.getCardNumber());
+        if (context.standIn) {
+            response.setStatus("STAND_IN");
+        }
+        gatewayMetrics.recordStage(GatewayMetrics.STAGE_ISO_TO_RESPONSE, System.nanoTime() - mappingStart,
+                context.mti, response.getResponseCode(), null);
 
-            log.info("Transaction completed [{}]: Code={}, Time={}ms",
-                    requestId, response.getResponseCode(), response.getProcessingTime());
+        if (response.isSuccess()) {
+            settlementEngine.record(request, false);
+            recordHold(context, response);
+        }
 
-            return response;
+        // Store for potential reversal; reversing a pre-authorisation cancels its hold
+        if (response.isSuccess() && (TransactionType.DEBIT.name().equals(request.getTransactionType())
+                || TransactionType.PRE_AUTHORIZATION.name().equals(request.getTransactionType()))) {
+            storeForReversal(request, isoRequest.getString(37));
+        }
 
-        } catch (Exception e) {
-            log.error("Transaction failed [{}]: {}", requestId, e.getMessage(), e);
-            return createErrorResponse(request, ResponseCode.SYSTEM_ERROR);
+        // Handle response
+        if (!response.isSuccess()) {
+            storeForReversal(request, isoRequest.getString(37));
+        }
+
+        // Calculate processing time
+        response.setProcessingTime(elapsedMillis(context.startTime));
+
+        log.info("Transaction completed [{}]: Code={}, Time={}ms",
+                context.requestId, response.getResponseCode(), response.getProcessingTime());
+
+        return response;
+    }
+
+    private void recordHold(TransactionContext context, TransactionResponse response) {
+        if (context.hold != null) {
+            holds.complete(context.hold, context.request.getAmount());
+            context.hold = null;
+        } else if (TransactionType.PRE_AUTHORIZATION.name().equals(context.request.getTransactionType())
+                && holds.isEnabled()) {
+            holds.open(context.request, context.isoRequest.getString(37), context.isoRequest.getString(11),
+                    response.getAuthCode());
         }
     }
 
     public CompletableFuture<TransactionResponse> processTransactionAsync(TransactionRequest request) {
-        return CompletableFuture.supplyAsync(() -> processTransaction(request));
+        return processTransactionAsync(request, loadShedder.deadlineFromTimeout(null));
+    }
+
+    public CompletableFuture<TransactionResponse> processTransactionAsync(TransactionRequest request, long deadlineNanos) {
+        return processTransactionAsync(request, deadlineNanos, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs the transaction when the staged pipeline does not
+     */
+    public CompletableFuture<TransactionResponse> processTransactionAsync(TransactionRequest request, long deadlineNanos,
+                                                                         Executor executor) {
+        if (pipeline != null && !TransactionType.BALANCE.name().equals(request.getTransactionType())) {
+            // no thread waits on the pipeline; the future completes on its completion stage
+            return dispatch(request, deadlineNanos);
+        }
+        return CompletableFuture.supplyAsync(() -> processTransaction(request, deadlineNanos), executor);
     }
 
     public TransactionResponse reverseTransaction(String originalRRN, String originalSTAN) {
+        TransactionEvent event = new TransactionEvent();
+        event.begin();
+        TransactionResponse response = null;
+        try {
+            response = reverse(originalRRN, originalSTAN);
+            return response;
+        } finally {
+            if (event.shouldCommit()) {
+                event.rrn = originalRRN;
+                event.stan = originalSTAN;
+            }
+            commitEvent(event, "reverse", TransactionType.REVERSAL.name(), "0400", response);
+        }
+    }
+
+    private TransactionResponse reverse(String originalRRN, String originalSTAN) {
         log.info("Processing reversal for RRN={}, STAN={}", originalRRN, originalSTAN);
 
         TransactionRequest originalRequest = pendingReversals.get(originalRRN);
@@ -91,22 +370,39 @@ public class TransactionService {
         if (originalRequest == null) {
             log.warn("Original transaction not found for reversal: RRN={}", originalRRN);
             return TransactionResponse.builder()
-                    .responseCode("25")
-                    .responseMessage("Original transaction not found")
+                    .responseCode(ResponseCode.RECORD_NOT_FOUND.getCode())
+                    .responseMessage(ResponseCode.RECORD_NOT_FOUND.getMessage())
                     .approved(false)
                     .build();
         }
 
         try {
+            // routed like the original, so the reversal goes to the acquirer that authorised it
+            AcquirerProfile acquirer = acquirers.route(originalRequest);
             ISOMsg reversalMsg = iso8583Converter.createReversalMessage(
-                    originalRequest, originalRRN, originalSTAN);
+                    originalRequest, originalRRN, originalSTAN, acquirer.getPackager(), acquirer.getMapping());
+
+            // A stand-in approval the host has not heard of yet: the reversal must not overtake its advice
+            if (storeAndForward.enqueueBehindAdvice(originalRRN, reversalMsg)) {
+                TransactionResponse queued = TransactionResponse.builder()
+                        .rrn(originalRRN)
+                        .stan(originalSTAN)
+                        .responseCode(ResponseCode.APPROVED.getCode())
+                        .responseMessage("Reversal queued behind stand-in advice")
+                        .approved(true)
+                        .status("QUEUED")
+                        .build();
+                transactionHistory.record(originalRequest, TransactionType.REVERSAL.name(), queued);
+                reversed(originalRequest, originalRRN);
+                return queued;
+            }
 
-            ISOMsg response = iso8583TcpClient.sendRequest(reversalMsg);
-            TransactionResponse reversalResponse = iso8583Converter.isoToResponse(response);
+            ISOMsg response = acquirer.getClient().sendRequest(reversalMsg);
+            TransactionResponse reversalResponse = iso8583Converter.isoToResponse(response, acquirer.getMapping());
+            transactionHistory.record(originalRequest, TransactionType.REVERSAL.name(), reversalResponse);
 
             if (reversalResponse.isSuccess()) {
-                pendingReversals.remove(originalRRN);
-                log.info("Reversal successful for RRN={}", originalRRN);
+                reversed(originalRequest, originalRRN);
             }
 
             return reversalResponse;
@@ -121,6 +417,14 @@ public class TransactionService {
         }
     }
 
+    private void reversed(TransactionRequest originalRequest, String originalRRN) {
+        pendingReversals.remove(originalRRN);
+        holds.cancel(originalRRN);
+        settlementEngine.record(originalRequest, true);
+        balanceCache.invalidate(originalRequest.getCardNumber());
+        log.info("Reversal successful for RRN={}", originalRRN);
+    }
+
     @Cacheable(value = "transactionStatus", key = "#rrn")
     public TransactionResponse getTransactionStatus(String rrn) {
         log.info("Checking status for transaction RRN={}", rrn);
@@ -134,20 +438,15 @@ public class TransactionService {
                 .build();
     }
 
-    private void validateRequest(TransactionRequest request) {
-        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Invalid amount");
+    private void storeForReversal(TransactionRequest request, String rrn) {
+        if (!pendingReversals.put(rrn, request)) {
+            // the STANs wrapped within the hour; the transaction holding the RRN keeps its record
+            log.error("RRN {} is already pending a reversal for another transaction; this one cannot be reversed by RRN",
+                    rrn);
         }
-
-        // Add more validation logic
     }
 
-    private void storeForReversal(TransactionRequest request, String rrn, String stan) {
-        // Store for 24 hours
-        pendingReversals.put(rrn, request);
-    }
-
-    private TransactionResponse createErrorResponse(TransactionRequest request, ResponseCode responseCode) {
+    private TransactionResponse createErrorResponse(TransactionRequest request, ResponseCode responseCode, long startTime) {
         return TransactionResponse.builder()
                 .transactionId(iso8583Util.generateRequestId())
                 .responseCode(responseCode.getCode())
@@ -162,10 +461,41 @@ public class TransactionService {
                 .transactionDate(LocalDateTime.now())
                 .approved(false)
                 .status("FAILED")
-                .processingTime(System.currentTimeMillis())
+                .processingTime(elapsedMillis(startTime))
                 .build();
     }
 
+    private static void commitEvent(TransactionEvent event, String operation, String transactionType,
+                                    String mti, TransactionResponse response) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.operation = operation;
+        event.transactionType = transactionType;
+        event.mti = mti;
+        if (response != null) {
+            if (event.rrn == null) {
+                event.rrn = response.getRrn();
+            }
+            if (event.stan == null) {
+                event.stan = response.getStan();
+            }
+            event.responseCode = response.getResponseCode();
+        }
+        event.commit();
+    }
+
+    private static boolean isBalanceChanging(String transactionType) {
+        return TransactionType.DEBIT.name().equals(transactionType)
+                || TransactionType.CREDIT.name().equals(transactionType)
+                || TransactionType.PRE_AUTHORIZATION.name().equals(transactionType)
+                || TransactionType.COMPLETION.name().equals(transactionType);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
     private String maskCardNumber(String cardNumber) {
         if (cardNumber == null || cardNumber.length() < 10)
             return cardNumber;
@@ -0,0 +1,39 @@
+package com.gateway.settlement;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.settlement")
+@SuppressWarnings("unused")
+public class SettlementConfig {
+    private boolean enabled = true;
+    // Spring cron; the batch is closed and a new one opened at this time
+    private String cutoverCron = "0 0 0 * * *";
+    // Recompute each closed batch from the transaction history and report keys that disagree
+    private boolean verifyOnCutover = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getCutoverCron() {
+        return cutoverCron;
+    }
+
+    public void setCutoverCron(String cutoverCron) {
+        this.cutoverCron = cutoverCron;
+    }
+
+    public boolean isVerifyOnCutover() {
+        return verifyOnCutover;
+    }
+
+    public void setVerifyOnCutover(boolean verifyOnCutover) {
+        this.verifyOnCutover = verifyOnCutover;
+    }
+}
@@ -0,0 +1,74 @@
+package com.gateway.settlement;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settlement totals at {@code /actuator/settlement}; a POST forces a cutover.
+ */
+@Component
+@Endpoint(id = "settlement")
+@RequiredArgsConstructor
+public class SettlementEndpoint {
+
+    private final SettlementEngine settlementEngine;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        Map<String, Object> open = new LinkedHashMap<>();
+        open.put("batchNumber", settlementEngine.getCurrentBatchNumber());
+        open.put("openedAt", settlementEngine.getCurrentBatchOpenedAt());
+        open.put("totals", describe(settlementEngine.currentTotals()));
+        status.put("open", open);
+        SettlementReport last = settlementEngine.getLastReport();
+        if (last != null) {
+            status.put("last", describe(last));
+        }
+        return status;
+    }
+
+    @WriteOperation
+    public Map<String, Object> cutover() {
+        return describe(settlementEngine.cutover());
+    }
+
+    private static Map<String, Object> describe(SettlementReport report) {
+        Map<String, Object> described = new LinkedHashMap<>();
+        described.put("batchNumber", report.getBatchNumber());
+        described.put("openedAt", report.getOpenedAt());
+        described.put("closedAt", report.getClosedAt());
+        described.put("entries", report.getEntryCount());
+        described.put("verified", report.getVerified());
+        described.put("mismatches", String.valueOf(report.getMismatches()));
+        described.put("cutoverMillis", report.getCutoverMillis());
+        described.put("verifyMillis", report.getVerifyMillis());
+        described.put("totals", describe(report.getTotals()));
+        return described;
+    }
+
+    private static List<Map<String, Object>> describe(Map<SettlementKey, SettlementTotals.Snapshot> totals) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        totals.forEach((key, snapshot) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("terminalId", key.getTerminalId());
+            row.put("merchantId", key.getMerchantId());
+            row.put("currency", key.getCurrencyCode());
+            for (SettlementEntry.Kind kind : SettlementEntry.Kind.values()) {
+                row.put(kind.name().toLowerCase() + "Count", snapshot.getCount(kind));
+                row.put(kind.name().toLowerCase() + "Amount", snapshot.getAmount(kind));
+            }
+            row.put("netAmount", snapshot.getNetAmount());
+            rows.add(row);
+        });
+        return rows;
+    }
+}
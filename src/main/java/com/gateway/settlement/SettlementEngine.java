@@ -0,0 +1,335 @@
+package com.gateway.settlement;
+
+import com.gateway.history.HistoryPage;
+import com.gateway.history.HistoryQuery;
+import com.gateway.history.HistoryRecord;
+import com.gateway.history.TransactionHistory;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.enums.TransactionType;
+import com.gateway.util.Iso8583Util;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming settlement totals per terminal, merchant and currency.
+ * <p>
+ * Completed transactions are added to the open batch as they happen, so cutover only has to swap
+ * in a new batch and read the closed one's accumulators; it never scans history. Amounts are kept
+ * in the minor units of each currency, which is what fields 86-89 and 97 carry.
+ * <p>
+ * After cutover the closed batch is recomputed from {@link TransactionHistory}, one segment per
+ * task, and keys whose totals disagree are added to the report. The two are written at slightly
+ * different moments of a transaction, so one completing exactly at cutover, or a history row that
+ * was dropped, shows up as a mismatch.
+ */
+@Component
+@Log4j2
+public class SettlementEngine {
+
+    // how long verification waits for the history writer to catch up
+    private static final long HISTORY_WAIT_MILLIS = 10_000;
+
+    private final SettlementConfig settlementConfig;
+    private final TransactionHistory transactionHistory;
+
+    private volatile Batch current = new Batch(1);
+    private volatile SettlementReport lastReport;
+    private volatile CompletableFuture<SettlementReport> lastVerification;
+
+    public SettlementEngine(SettlementConfig settlementConfig) {
+        this(settlementConfig, null);
+    }
+
+    @Autowired
+    public SettlementEngine(SettlementConfig settlementConfig, TransactionHistory transactionHistory) {
+        this.settlementConfig = settlementConfig;
+        this.transactionHistory = transactionHistory;
+    }
+
+    /**
+     * Adds an approved transaction, or a successful reversal of one, to the open batch. Types that
+     * move no money (balance inquiries, pre-authorisations) are ignored.
+     */
+    public void record(TransactionRequest request, boolean reversal) {
+        if (!settlementConfig.isEnabled()) {
+            return;
+        }
+        SettlementEntry.Kind kind = kindOf(request.getTransactionType(), reversal);
+        if (kind == null || request.getAmount() == null) {
+            return;
+        }
+        SettlementKey key = new SettlementKey(request.getTerminalId(), request.getMerchantId(),
+                request.getCurrencyCode());
+        long amountMinor = Iso8583Util.toMinorUnits(request.getAmount(), request.getCurrencyCode());
+
+        Batch batch = enter();
+        try {
+            batch.totals.computeIfAbsent(key, SettlementTotals::new).add(kind, amountMinor);
+        } finally {
+            batch.exited.increment();
+        }
+    }
+
+    /**
+     * Closes the open batch and opens the next one. Recording never blocks: writers that raced
+     * the swap finish on the closed batch, and cutover waits for them before reading totals.
+     * Verification runs afterwards and replaces the returned report with a verified copy.
+     */
+    @Scheduled(cron = "${gateway.settlement.cutover-cron:0 0 0 * * *}")
+    public synchronized SettlementReport cutover() {
+        long start = System.nanoTime();
+        Batch closed = current;
+        Batch opened = new Batch(closed.number + 1);
+        current = opened;
+        closed.awaitWriters();
+
+        Map<SettlementKey, SettlementTotals.Snapshot> totals = snapshot(closed.totals.values());
+        long entries = 0;
+        for (SettlementTotals.Snapshot snapshot : totals.values()) {
+            for (SettlementEntry.Kind kind : SettlementEntry.Kind.values()) {
+                entries += snapshot.getCount(kind);
+            }
+        }
+
+        SettlementReport report = SettlementReport.builder()
+                .batchNumber(closed.number)
+                .openedAt(closed.openedAt)
+                .closedAt(opened.openedAt)
+                .totals(totals)
+                .entryCount(entries)
+                .cutoverMillis((System.nanoTime() - start) / 1_000_000)
+                .build();
+        lastReport = report;
+
+        log.info("Settlement batch {} closed: {} keys, {} entries, cutover {}ms",
+                closed.number, totals.size(), report.getEntryCount(), report.getCutoverMillis());
+        if (settlementConfig.isVerifyOnCutover() && transactionHistory != null && transactionHistory.isEnabled()) {
+            lastVerification = CompletableFuture
+                    .supplyAsync(() -> verify(report, closed.openedAtMillis, opened.openedAtMillis))
+                    .whenComplete((verified, e) -> {
+                        if (e != null) {
+                            log.error("Could not verify settlement batch {}: {}", closed.number, e.getMessage(), e);
+                        }
+                    });
+        }
+        return report;
+    }
+
+    /**
+     * Totals of the open batch so far; approximate while transactions are completing.
+     */
+    public Map<SettlementKey, SettlementTotals.Snapshot> currentTotals() {
+        return snapshot(current.totals.values());
+    }
+
+    public long getCurrentBatchNumber() {
+        return current.number;
+    }
+
+    public LocalDateTime getCurrentBatchOpenedAt() {
+        return current.openedAt;
+    }
+
+    public SettlementReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * @return the verification started by the last cutover, or null if none was
+     */
+    public CompletableFuture<SettlementReport> getLastVerification() {
+        return lastVerification;
+    }
+
+    static SettlementEntry.Kind kindOf(String transactionType, boolean reversal) {
+        if (TransactionType.DEBIT.name().equals(transactionType)
+                || TransactionType.COMPLETION.name().equals(transactionType)) {
+            return reversal ? SettlementEntry.Kind.DEBIT_REVERSAL : SettlementEntry.Kind.DEBIT;
+        }
+        if (TransactionType.CREDIT.name().equals(transactionType)) {
+            return reversal ? SettlementEntry.Kind.CREDIT_REVERSAL : SettlementEntry.Kind.CREDIT;
+        }
+        return null;
+    }
+
+    /**
+     * Recomputes the totals of {@code from <= time < to} from the history and compares them, key by
+     * key, with what was streamed into the batch.
+     */
+    private SettlementReport verify(SettlementReport report, long from, long to) {
+        long start = System.nanoTime();
+        try {
+            if (!transactionHistory.awaitWritten(HISTORY_WAIT_MILLIS)) {
+                log.warn("History writer still behind after {}ms; batch {} is verified against what it has written",
+                        HISTORY_WAIT_MILLIS, report.getBatchNumber());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return report;
+        }
+        Map<SettlementKey, SettlementTotals.Snapshot> recomputed = recompute(from, to);
+
+        SettlementTotals.Snapshot none = new SettlementTotals(null).snapshot();
+        Set<SettlementKey> keys = new LinkedHashSet<>(report.getTotals().keySet());
+        keys.addAll(recomputed.keySet());
+        List<SettlementKey> mismatches = new ArrayList<>();
+        for (SettlementKey key : keys) {
+            if (!Objects.equals(report.getTotals().getOrDefault(key, none), recomputed.getOrDefault(key, none))) {
+                mismatches.add(key);
+            }
+        }
+        SettlementReport verified = report.toBuilder()
+                .verified(mismatches.isEmpty())
+                .mismatches(mismatches)
+                .verifyMillis((System.nanoTime() - start) / 1_000_000)
+                .build();
+        synchronized (this) {
+            if (lastReport == report) {
+                lastReport = verified;
+            }
+        }
+
+        if (mismatches.isEmpty()) {
+            log.info("Settlement batch {} matches the transaction history, verify {}ms",
+                    report.getBatchNumber(), verified.getVerifyMillis());
+        } else {
+            log.error("Settlement batch {} disagrees with the transaction history for {} keys: {}",
+                    report.getBatchNumber(), mismatches.size(), mismatches);
+        }
+        return verified;
+    }
+
+    private Map<SettlementKey, SettlementTotals.Snapshot> recompute(long from, long to) {
+        Map<SettlementKey, SettlementTotals> totals = new ConcurrentHashMap<>();
+        // a reversal's history row carries the original's RRN, not its type
+        Map<String, String> approvedTypes = new ConcurrentHashMap<>();
+        Queue<HistoryRecord> reversals = new ConcurrentLinkedQueue<>();
+        transactionHistory.scan(from, to, record -> {
+            if (!isApproved(record)) {
+                return;
+            }
+            if (TransactionType.REVERSAL.name().equals(record.getTransactionType())) {
+                reversals.add(record);
+                return;
+            }
+            if (record.getRrn() != null) {
+                approvedTypes.put(record.getRrn(), record.getTransactionType());
+            }
+            add(totals, record, kindOf(record.getTransactionType(), false));
+        });
+        for (HistoryRecord reversal : reversals) {
+            String type = reversal.getRrn() != null ? approvedTypes.get(reversal.getRrn()) : null;
+            if (type == null) {
+                type = approvedTypeBefore(reversal.getRrn(), from);
+            }
+            add(totals, reversal, kindOf(type, true));
+        }
+        return snapshot(totals.values());
+    }
+
+    /**
+     * Looks up the type of a reversed transaction that was approved in an earlier batch.
+     */
+    private String approvedTypeBefore(String rrn, long before) {
+        if (rrn == null) {
+            return null;
+        }
+        HistoryQuery.HistoryQueryBuilder query = HistoryQuery.builder()
+                .rrn(rrn)
+                .to(LocalDateTime.ofInstant(Instant.ofEpochMilli(before), ZoneId.systemDefault()));
+        String cursor = null;
+        do {
+            HistoryPage page = transactionHistory.query(query.cursor(cursor).build());
+            for (HistoryRecord record : page.getItems()) {
+                if (isApproved(record) && !TransactionType.REVERSAL.name().equals(record.getTransactionType())) {
+                    return record.getTransactionType();
+                }
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return null;
+    }
+
+    private static void add(Map<SettlementKey, SettlementTotals> totals, HistoryRecord record,
+                            SettlementEntry.Kind kind) {
+        if (kind == null || record.getAmount() == null) {
+            return;
+        }
+        SettlementKey key = new SettlementKey(record.getTerminalId(), record.getMerchantId(),
+                record.getCurrencyCode());
+        totals.computeIfAbsent(key, SettlementTotals::new)
+                .add(kind, Iso8583Util.toMinorUnits(record.getAmount(), record.getCurrencyCode()));
+    }
+
+    private static boolean isApproved(HistoryRecord record) {
+        return "00".equals(record.getResponseCode()) || "000".equals(record.getResponseCode());
+    }
+
+    private Batch enter() {
+        while (true) {
+            Batch batch = current;
+            batch.entered.increment();
+            if (batch == current) {
+                return batch;
+            }
+            // lost the race with cutover; count ourselves out and use the new batch
+            batch.exited.increment();
+        }
+    }
+
+    private static Map<SettlementKey, SettlementTotals.Snapshot> snapshot(Collection<SettlementTotals> totals) {
+        Map<SettlementKey, SettlementTotals.Snapshot> snapshots = new HashMap<>();
+        for (SettlementTotals t : totals) {
+            snapshots.put(t.getKey(), t.snapshot());
+        }
+        return snapshots;
+    }
+
+    private static final class Batch {
+
+        private final long number;
+        private final long openedAtMillis = System.currentTimeMillis();
+        private final LocalDateTime openedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(openedAtMillis),
+                ZoneId.systemDefault());
+        private final ConcurrentHashMap<SettlementKey, SettlementTotals> totals = new ConcurrentHashMap<>();
+        private final LongAdder entered = new LongAdder();
+        private final LongAdder exited = new LongAdder();
+
+        private Batch(long number) {
+            this.number = number;
+        }
+
+        /**
+         * Both counters only grow and exited never passes entered, so reading exited and then
+         * entered and finding them equal proves nobody was inside at a point after the swap.
+         */
+        private void awaitWriters() {
+            while (true) {
+                long out = exited.sum();
+                if (out == entered.sum()) {
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.gateway.settlement;
+
+/**
+ * How a completed financial transaction counts towards settlement.
+ */
+public final class SettlementEntry {
+
+    /**
+     * The four reconciliation buckets of ISO 8583 fields 74-77 and 86-89.
+     */
+    public enum Kind {
+        CREDIT,
+        CREDIT_REVERSAL,
+        DEBIT,
+        DEBIT_REVERSAL
+    }
+
+    private SettlementEntry() {
+    }
+}
@@ -0,0 +1,58 @@
+package com.gateway.settlement;
+
+import java.util.Objects;
+
+/**
+ * Terminal, merchant and currency a total is kept for.
+ */
+public final class SettlementKey {
+
+    private final String terminalId;
+    private final String merchantId;
+    private final String currencyCode;
+    private final int hash;
+
+    public SettlementKey(String terminalId, String merchantId, String currencyCode) {
+        this.terminalId = terminalId;
+        this.merchantId = merchantId;
+        this.currencyCode = currencyCode;
+        this.hash = Objects.hash(terminalId, merchantId, currencyCode);
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SettlementKey)) {
+            return false;
+        }
+        SettlementKey other = (SettlementKey) o;
+        return hash == other.hash
+                && Objects.equals(terminalId, other.terminalId)
+                && Objects.equals(merchantId, other.merchantId)
+                && Objects.equals(currencyCode, other.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return terminalId + "/" + merchantId + "/" + currencyCode;
+    }
+}
@@ -0,0 +1,27 @@
+package com.gateway.settlement;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Totals of a closed batch, ready to be turned into 0500/0520 reconciliation messages.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class SettlementReport {
+
+    private final long batchNumber;
+    private final LocalDateTime openedAt;
+    private final LocalDateTime closedAt;
+    private final Map<SettlementKey, SettlementTotals.Snapshot> totals;
+    private final long entryCount;
+    // null until the batch has been checked against the transaction history, or when it is not
+    private final Boolean verified;
+    private final List<SettlementKey> mismatches;
+    private final long cutoverMillis;
+    private final long verifyMillis;
+}
@@ -0,0 +1,98 @@
+package com.gateway.settlement;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running counts and amounts for one {@link SettlementKey}. Each bucket is a {@link LongAdder},
+ * so terminals completing transactions concurrently update separate cells instead of contending
+ * on one counter; reading is only needed at cutover.
+ */
+public final class SettlementTotals {
+
+    private static final int KINDS = SettlementEntry.Kind.values().length;
+
+    private final SettlementKey key;
+    private final LongAdder[] counts = new LongAdder[KINDS];
+    private final LongAdder[] amounts = new LongAdder[KINDS];
+
+    public SettlementTotals(SettlementKey key) {
+        this.key = key;
+        for (int i = 0; i < KINDS; i++) {
+            counts[i] = new LongAdder();
+            amounts[i] = new LongAdder();
+        }
+    }
+
+    public SettlementKey getKey() {
+        return key;
+    }
+
+    public void add(SettlementEntry.Kind kind, long amountMinor) {
+        counts[kind.ordinal()].increment();
+        amounts[kind.ordinal()].add(amountMinor);
+    }
+
+    /**
+     * Exact only once writers to this instance have stopped; see {@link SettlementEngine#cutover()}.
+     */
+    public Snapshot snapshot() {
+        long[] c = new long[KINDS];
+        long[] a = new long[KINDS];
+        for (int i = 0; i < KINDS; i++) {
+            c[i] = counts[i].sum();
+            a[i] = amounts[i].sum();
+        }
+        return new Snapshot(c, a);
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long[] amounts;
+
+        private Snapshot(long[] counts, long[] amounts) {
+            this.counts = counts;
+            this.amounts = amounts;
+        }
+
+        public long getCount(SettlementEntry.Kind kind) {
+            return counts[kind.ordinal()];
+        }
+
+        public long getAmount(SettlementEntry.Kind kind) {
+            return amounts[kind.ordinal()];
+        }
+
+        /**
+         * Net amount due to the acquirer: debits less credits, with reversals backed out.
+         * Positive settles as a credit to the acquirer (field 97 sign {@code C}).
+         */
+        public long getNetAmount() {
+            return getAmount(SettlementEntry.Kind.DEBIT) - getAmount(SettlementEntry.Kind.DEBIT_REVERSAL)
+                    - getAmount(SettlementEntry.Kind.CREDIT) + getAmount(SettlementEntry.Kind.CREDIT_REVERSAL);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot other = (Snapshot) o;
+            return Arrays.equals(counts, other.counts) && Arrays.equals(amounts, other.amounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(counts) + Arrays.hashCode(amounts);
+        }
+
+        @Override
+        public String toString() {
+            return "counts=" + Arrays.toString(counts) + " amounts=" + Arrays.toString(amounts);
+        }
+    }
+}
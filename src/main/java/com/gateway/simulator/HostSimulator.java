@@ -0,0 +1,293 @@
+package com.gateway.simulator;
+
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ISO 8583 host simulator for load and failure testing.
+ * <p>
+ * A single selector thread accepts connections and reads length-prefixed frames; requests are
+ * answered on a worker pool after a scripted delay, so replies on one connection can come back out
+ * of order, exactly as with a real switch. Rules can also swallow a request (timeout) or drop the
+ * connection.
+ */
+@Log4j2
+public class HostSimulator implements AutoCloseable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final ISOPackager packager;
+    private final SimulatorScript script;
+    private final int lengthHeaderSize;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ScheduledExecutorService workers;
+    private final Thread ioThread;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong responded = new AtomicLong();
+    private final AtomicLong swallowed = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+
+    private volatile boolean running;
+
+    public HostSimulator(ISOPackager packager, SimulatorScript script, int port) throws IOException {
+        this(packager, script, port, 2, Runtime.getRuntime().availableProcessors());
+    }
+
+    public HostSimulator(ISOPackager packager, SimulatorScript script, int port, int lengthHeaderSize,
+                         int workerThreads) throws IOException {
+        if (lengthHeaderSize != 2 && lengthHeaderSize != 4) {
+            throw new IllegalArgumentException("Length header must be 2 or 4 bytes");
+        }
+        this.packager = packager;
+        this.script = script;
+        this.lengthHeaderSize = lengthHeaderSize;
+
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger workerIndex = new AtomicInteger();
+        this.workers = Executors.newScheduledThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "host-sim-worker-" + workerIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ioThread = new Thread(this::ioLoop, "host-sim-io");
+        this.ioThread.setDaemon(true);
+    }
+
+    public HostSimulator start() {
+        running = true;
+        ioThread.start();
+        log.info("Host simulator listening on port {}", getPort());
+        return this;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getRespondedCount() {
+        return responded.get();
+    }
+
+    public long getSwallowedCount() {
+        return swallowed.get();
+    }
+
+    public long getDisconnectCount() {
+        return disconnects.get();
+    }
+
+    private void ioLoop() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    if (pending.key.isValid()) {
+                        pending.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read((Connection) key.attachment());
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write((Connection) key.attachment());
+                        }
+                    } catch (IOException e) {
+                        Object attachment = key.attachment();
+                        if (attachment instanceof Connection) {
+                            ((Connection) attachment).close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                log.error("Host simulator I/O loop stopped: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        if (connection.channel.read(buffer) < 0) {
+            connection.close();
+            return;
+        }
+        buffer.flip();
+        while (buffer.remaining() >= lengthHeaderSize) {
+            buffer.mark();
+            int length = lengthHeaderSize == 2 ? buffer.getShort() & 0xFFFF : buffer.getInt();
+            if (length > buffer.capacity() - lengthHeaderSize || length < 0) {
+                throw new IOException("Frame too large: " + length);
+            }
+            if (buffer.remaining() < length) {
+                buffer.reset();
+                break;
+            }
+            byte[] frame = new byte[length];
+            buffer.get(frame);
+            received.incrementAndGet();
+            workers.execute(() -> handle(connection, frame));
+        }
+        buffer.compact();
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer next;
+        while ((next = connection.writeQueue.peek()) != null) {
+            connection.channel.write(next);
+            if (next.hasRemaining()) {
+                return;
+            }
+            connection.writeQueue.poll();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+        // a reply may have been queued after the peek above returned null
+        if (!connection.writeQueue.isEmpty()) {
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void handle(Connection connection, byte[] frame) {
+        try {
+            ISOMsg request = new ISOMsg();
+            request.setPackager(packager);
+            request.unpack(frame);
+
+            SimulatorRule rule = script.match(request);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = rule.getLatency().sampleNanos(random);
+
+            switch (rule.chooseAction(random)) {
+                case TIMEOUT:
+                    swallowed.incrementAndGet();
+                    return;
+                case DISCONNECT:
+                    disconnects.incrementAndGet();
+                    workers.schedule(connection::close, delay, TimeUnit.NANOSECONDS);
+                    return;
+                default:
+                    break;
+            }
+
+            request.setResponseMTI();
+            request.set(39, rule.getResponseCode());
+            if ("00".equals(rule.getResponseCode()) && !request.hasField(38)) {
+                request.set(38, String.format("%06d", random.nextInt(1000000)));
+            }
+            byte[] response = request.pack();
+
+            if (delay > 0) {
+                workers.schedule(() -> connection.send(response), delay, TimeUnit.NANOSECONDS);
+            } else {
+                connection.send(response);
+            }
+        } catch (ISOException e) {
+            log.warn("Host simulator could not process message: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        workers.shutdownNow();
+        selector.close();
+        server.close();
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void send(byte[] message) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            ByteBuffer framed = ByteBuffer.allocate(lengthHeaderSize + message.length);
+            if (lengthHeaderSize == 2) {
+                framed.putShort((short) message.length);
+            } else {
+                framed.putInt(message.length);
+            }
+            framed.put(message).flip();
+            writeQueue.add(framed);
+            responded.incrementAndGet();
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        private void close() {
+            try {
+                if (key != null) {
+                    key.cancel();
+                }
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing simulator connection: {}", e.getMessage());
+            }
+        }
+    }
+}
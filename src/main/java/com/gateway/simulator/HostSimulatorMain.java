@@ -0,0 +1,90 @@
+package com.gateway.simulator;
+
+import com.gateway.iso8583.CustomPackager;
+import org.jpos.iso.ISOPackager;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Standalone entry point for {@link HostSimulator}.
+ * <pre>
+ * java -cp gateway.jar com.gateway.simulator.HostSimulatorMain \
+ *     --port 5000 --script host.rules --header-size 2 --workers 8 [--packager file:packager.xml]
+ * </pre>
+ */
+public final class HostSimulatorMain {
+
+    private static final String DEFAULT_PACKAGER = "classpath:iso8583/iso-packager.xml";
+
+    private HostSimulatorMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 5000;
+        int headerSize = 2;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String packagerPath = DEFAULT_PACKAGER;
+        String scriptPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--header-size":
+                    headerSize = Integer.parseInt(value);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(value);
+                    break;
+                case "--packager":
+                    packagerPath = value;
+                    break;
+                case "--script":
+                    scriptPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        SimulatorScript script = SimulatorScript.approveAll();
+        if (scriptPath != null) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(scriptPath), StandardCharsets.UTF_8)) {
+                script = SimulatorScript.parse(reader);
+            }
+        }
+
+        HostSimulator simulator = new HostSimulator(loadPackager(packagerPath), script, port, headerSize, workers).start();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                simulator.close();
+            } catch (IOException ignored) {
+                // shutting down anyway
+            }
+            System.out.printf("received=%d responded=%d swallowed=%d disconnects=%d%n",
+                    simulator.getReceivedCount(), simulator.getRespondedCount(),
+                    simulator.getSwallowedCount(), simulator.getDisconnectCount());
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    /**
+     * Resolves the packager exactly as the gateway does, so both ends agree on the wire format.
+     */
+    private static ISOPackager loadPackager(String location) {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "custom", location);
+        packager.init();
+        return packager.getPackager();
+    }
+}
@@ -0,0 +1,57 @@
+package com.gateway.simulator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response delay model for the host simulator. Specs are written in milliseconds:
+ * {@code fixed:5}, {@code uniform:1-20}, {@code exp:10} (mean) or {@code lognormal:10,0.5}
+ * (median, sigma).
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    LatencyDistribution NONE = random -> 0L;
+
+    long sampleNanos(Random random);
+
+    static LatencyDistribution parse(String spec) {
+        if (spec == null || spec.isEmpty() || "none".equals(spec)) {
+            return NONE;
+        }
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Latency spec must be <type>:<params>: " + spec);
+        }
+        String type = spec.substring(0, colon);
+        String params = spec.substring(colon + 1);
+        switch (type) {
+            case "fixed": {
+                long nanos = millisToNanos(Double.parseDouble(params));
+                return random -> nanos;
+            }
+            case "uniform": {
+                String[] bounds = params.split("-");
+                long min = millisToNanos(Double.parseDouble(bounds[0]));
+                long max = millisToNanos(Double.parseDouble(bounds[1]));
+                return random -> min + (long) (random.nextDouble() * (max - min));
+            }
+            case "exp": {
+                double mean = millisToNanos(Double.parseDouble(params));
+                return random -> (long) (-mean * Math.log(1.0 - random.nextDouble()));
+            }
+            case "lognormal": {
+                String[] values = params.split(",");
+                double mu = Math.log(millisToNanos(Double.parseDouble(values[0])));
+                double sigma = Double.parseDouble(values[1]);
+                return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + type);
+        }
+    }
+
+    private static long millisToNanos(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,82 @@
+package com.gateway.simulator;
+
+import org.jpos.iso.ISOMsg;
+
+import java.util.Random;
+
+/**
+ * One scripted host behaviour: which requests it applies to and how the host answers them.
+ */
+public final class SimulatorRule {
+
+    public enum Action {
+        RESPOND,
+        TIMEOUT,
+        DISCONNECT
+    }
+
+    private final String mti;
+    private final String panPrefix;
+    private final long minAmount;
+    private final long maxAmount;
+    private final String responseCode;
+    private final LatencyDistribution latency;
+    private final double timeoutProbability;
+    private final double disconnectProbability;
+
+    public SimulatorRule(String mti, String panPrefix, long minAmount, long maxAmount, String responseCode,
+                         LatencyDistribution latency, double timeoutProbability, double disconnectProbability) {
+        this.mti = mti;
+        this.panPrefix = panPrefix;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.responseCode = responseCode;
+        this.latency = latency;
+        this.timeoutProbability = timeoutProbability;
+        this.disconnectProbability = disconnectProbability;
+    }
+
+    public static SimulatorRule approveAll() {
+        return new SimulatorRule(null, null, Long.MIN_VALUE, Long.MAX_VALUE, "00", LatencyDistribution.NONE, 0, 0);
+    }
+
+    public boolean matches(ISOMsg request) {
+        if (mti != null && !mti.equals(request.getString(0))) {
+            return false;
+        }
+        if (panPrefix != null) {
+            String pan = request.getString(2);
+            if (pan == null || !pan.startsWith(panPrefix)) {
+                return false;
+            }
+        }
+        if (minAmount != Long.MIN_VALUE || maxAmount != Long.MAX_VALUE) {
+            String amount = request.getString(4);
+            if (amount == null) {
+                return false;
+            }
+            long value = Long.parseLong(amount);
+            return value >= minAmount && value <= maxAmount;
+        }
+        return true;
+    }
+
+    public Action chooseAction(Random random) {
+        double roll = random.nextDouble();
+        if (roll < disconnectProbability) {
+            return Action.DISCONNECT;
+        }
+        if (roll < disconnectProbability + timeoutProbability) {
+            return Action.TIMEOUT;
+        }
+        return Action.RESPOND;
+    }
+
+    public String getResponseCode() {
+        return responseCode;
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+}
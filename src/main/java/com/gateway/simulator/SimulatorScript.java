@@ -0,0 +1,116 @@
+package com.gateway.simulator;
+
+import org.jpos.iso.ISOMsg;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered host behaviour rules; the first matching rule wins and unmatched requests are approved.
+ * <p>
+ * Text form, one rule per line, {@code #} starts a comment:
+ * <pre>
+ * mti=0200 pan=4000 amount=0-5000 code=00 latency=uniform:1-5 timeout=0.01 disconnect=0.001
+ * mti=0200 amount=100000-999999999999 code=51 latency=exp:20
+ * </pre>
+ * Amounts are in minor units as carried in field 4.
+ */
+public final class SimulatorScript {
+
+    private final List<SimulatorRule> rules;
+    private final SimulatorRule fallback;
+
+    public SimulatorScript(List<SimulatorRule> rules, SimulatorRule fallback) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.fallback = fallback;
+    }
+
+    public static SimulatorScript approveAll() {
+        return new SimulatorScript(Collections.emptyList(), SimulatorRule.approveAll());
+    }
+
+    public SimulatorRule match(ISOMsg request) {
+        for (SimulatorRule rule : rules) {
+            if (rule.matches(request)) {
+                return rule;
+            }
+        }
+        return fallback;
+    }
+
+    public static SimulatorScript parse(Reader source) throws IOException {
+        List<SimulatorRule> rules = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(line));
+            } catch (RuntimeException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return new SimulatorScript(rules, SimulatorRule.approveAll());
+    }
+
+    private static SimulatorRule parseRule(String line) {
+        String mti = null;
+        String pan = null;
+        long minAmount = Long.MIN_VALUE;
+        long maxAmount = Long.MAX_VALUE;
+        String code = "00";
+        LatencyDistribution latency = LatencyDistribution.NONE;
+        double timeout = 0;
+        double disconnect = 0;
+
+        for (String token : line.split("\\s+")) {
+            int eq = token.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value: " + token);
+            }
+            String key = token.substring(0, eq);
+            String value = token.substring(eq + 1);
+            switch (key) {
+                case "mti":
+                    mti = value;
+                    break;
+                case "pan":
+                    pan = value;
+                    break;
+                case "amount":
+                    int dash = value.indexOf('-');
+                    minAmount = Long.parseLong(value.substring(0, dash));
+                    maxAmount = Long.parseLong(value.substring(dash + 1));
+                    break;
+                case "code":
+                    code = value;
+                    break;
+                case "latency":
+                    latency = LatencyDistribution.parse(value);
+                    break;
+                case "timeout":
+                    timeout = Double.parseDouble(value);
+                    break;
+                case "disconnect":
+                    disconnect = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown key: " + key);
+            }
+        }
+        return new SimulatorRule(mti, pan, minAmount, maxAmount, code, latency, timeout, disconnect);
+    }
+}
@@ -0,0 +1,220 @@
+package com.gateway.stip;
+
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.model.enums.ResponseCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Store-and-forward queue for messages the host must eventually receive: stand-in advices
+ * (0120/0220) and reversals (0400) for exchanges cut off mid-flight. A message stays queued until
+ * the host approves it; every later attempt goes out as a repeat (0121/0221/0401).
+ * Every message is written to the {@code com.gateway.stip.advice} logger when queued, and whatever
+ * is still pending at shutdown is saved with the rest of the gateway state.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class StandInAdviceQueue {
+
+    private static final Logger ADVICE_LOG = LogManager.getLogger("com.gateway.stip.advice");
+
+    private final AcquirerRegistry acquirers;
+    private final StandInConfig config;
+
+    private final BlockingDeque<ISOMsg> pending = new LinkedBlockingDeque<>();
+    // RRNs forward() has taken off the queue and not yet sent or put back; guarded by this
+    private final Set<String> forwarding = new HashSet<>();
+    // restored messages go back to the acquirer they were saved for, not wherever they route now; guarded by this
+    private final Map<ISOMsg, AcquirerProfile> restoredRoutes = new IdentityHashMap<>();
+
+    public void enqueue(ISOMsg advice) {
+        pending.offer(advice);
+        log(advice);
+    }
+
+    /**
+     * Queues a reversal behind the stand-in advice for the same RRN, if that advice has not reached
+     * the host yet; the queue is sent in order, so the host learns of the approval first.
+     *
+     * @return {@code false} if no advice for the RRN is waiting, so the reversal may go directly
+     */
+    public synchronized boolean enqueueBehindAdvice(String rrn, ISOMsg reversal) {
+        boolean waiting = forwarding.contains(rrn);
+        Iterator<ISOMsg> queued = pending.iterator();
+        while (!waiting && queued.hasNext()) {
+            ISOMsg msg = queued.next();
+            waiting = isAdvice(msg) && rrn.equals(msg.getString(37));
+        }
+        if (waiting) {
+            enqueue(reversal);
+        }
+        return waiting;
+    }
+
+    /**
+     * Withdraws the stand-in advice for the RRN before it is forwarded, e.g. because the host
+     * approved the request itself after all. Anything queued behind the advice stays queued.
+     *
+     * @return {@code false} if no advice for the RRN is waiting, or it is already being sent
+     */
+    public synchronized boolean withdrawAdvice(String rrn) {
+        if (forwarding.contains(rrn)) {
+            return false;
+        }
+        Iterator<ISOMsg> queued = pending.iterator();
+        while (queued.hasNext()) {
+            ISOMsg msg = queued.next();
+            if (isAdvice(msg) && rrn.equals(msg.getString(37))) {
+                queued.remove();
+                restoredRoutes.remove(msg);
+                ADVICE_LOG.info("WITHDRAWN MTI={} STAN={} RRN={}", msg.getString(0), msg.getString(11), rrn);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void log(ISOMsg advice) {
+        ADVICE_LOG.info("QUEUED MTI={} STAN={} RRN={} Amount={} AuthCode={} Terminal={}",
+                advice.getString(0), advice.getString(11), advice.getString(37),
+                advice.getString(4), advice.getString(38), advice.getString(41));
+    }
+
+    private synchronized ISOMsg take() {
+        ISOMsg next = pending.poll();
+        if (next != null && next.getString(37) != null) {
+            forwarding.add(next.getString(37));
+        }
+        return next;
+    }
+
+    private synchronized void sent(ISOMsg msg) {
+        restoredRoutes.remove(msg);
+        if (msg.getString(37) != null) {
+            forwarding.remove(msg.getString(37));
+        }
+    }
+
+    private static boolean isAdvice(ISOMsg msg) {
+        String mti = msg.getString(0);
+        // originals and repeats alike
+        return mti != null && mti.length() == 4 && mti.charAt(2) == '2'
+                && (mti.charAt(3) == '0' || mti.charAt(3) == '1');
+    }
+
+    private static void markRepeat(ISOMsg msg) throws ISOException {
+        // 0120 -> 0121, 0220 -> 0221, 0400 -> 0401; the host may already hold the first attempt
+        String mti = msg.getMTI();
+        if (mti.charAt(3) == '0') {
+            msg.setMTI(mti.substring(0, 3) + "1");
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Everything still queued, oldest first.
+     */
+    public List<ISOMsg> snapshot() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * The acquirer the message will be sent to: the one it was saved for if it was restored, else
+     * wherever it routes.
+     */
+    public synchronized AcquirerProfile acquirerFor(ISOMsg msg) {
+        AcquirerProfile restored = restoredRoutes.get(msg);
+        return restored != null ? restored : acquirers.route(msg);
+    }
+
+    /**
+     * Puts a message saved by a previous instance back in the queue, without logging it again.
+     * It is sent to the acquirer it was saved for.
+     */
+    public synchronized void restore(ISOMsg message, AcquirerProfile acquirer) {
+        restoredRoutes.put(message, acquirer);
+        pending.offer(message);
+    }
+
+    /**
+     * Sends up to a batch of queued messages, each to the acquirer it routes to. A message the host
+     * cannot be reached for, or answers with anything but 00, is put back as a repeat, and everything
+     * behind it for the same acquirer stays queued in order; the other acquirers' messages still go out.
+     */
+    @Scheduled(fixedDelayString = "${gateway.stip.advice-retry-interval:30000}")
+    public void forward() {
+        int sent = 0;
+        List<ISOMsg> deferred = new ArrayList<>();
+        // acquirers that are down or refused a message; the rest of their queue waits for the next round
+        Set<AcquirerProfile> held = new HashSet<>();
+        ISOMsg advice;
+        while (sent < config.getAdviceBatchSize() && (advice = take()) != null) {
+            AcquirerProfile acquirer = acquirerFor(advice);
+            if (held.contains(acquirer)) {
+                deferred.add(advice);
+                continue;
+            }
+            try {
+                ISOMsg response = acquirer.getClient().sendRequest(advice);
+                String hostResponse = response.getString(39);
+                if (ResponseCode.APPROVED.getCode().equals(hostResponse)) {
+                    sent(advice);
+                    sent++;
+                    ADVICE_LOG.info("FORWARDED MTI={} STAN={} RRN={} Acquirer={} HostResponse={}",
+                            advice.getString(0), advice.getString(11), advice.getString(37), acquirer, hostResponse);
+                    continue;
+                }
+                ADVICE_LOG.warn("REFUSED MTI={} STAN={} RRN={} Acquirer={} HostResponse={}",
+                        advice.getString(0), advice.getString(11), advice.getString(37), acquirer, hostResponse);
+            } catch (IOException e) {
+                log.debug("Advice forwarding to {} deferred: {}", acquirer, e.getMessage());
+            } catch (ISOException e) {
+                sent(advice);
+                log.error("Dropping unpackable advice STAN={}: {}", advice.getString(11), e.getMessage());
+                continue;
+            }
+            // Host down or refused it; keep ordering and try again next round
+            try {
+                markRepeat(advice);
+            } catch (ISOException e) {
+                log.warn("Cannot mark advice STAN={} as a repeat: {}", advice.getString(11), e.getMessage());
+            }
+            deferred.add(advice);
+            held.add(acquirer);
+            if (held.size() == acquirers.getProfiles().size()) {
+                break;
+            }
+        }
+        synchronized (this) {
+            for (int i = deferred.size() - 1; i >= 0; i--) {
+                pending.offerFirst(deferred.get(i));
+            }
+            forwarding.clear();
+        }
+        if (sent > 0 || !deferred.isEmpty()) {
+            log.info("Forwarded {} stand-in advices, {} pending", sent, pending.size());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.gateway.stip;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.stip")
+@SuppressWarnings("unused")
+public class StandInConfig {
+    private boolean enabled = false;
+    // ISO 4217 code every limit below is in; requests in any other currency are not stood in for
+    private String currency = "USD";
+    private BigDecimal defaultFloorLimit = new BigDecimal("50.00");
+    // Keyed by 6-digit BIN
+    private Map<String, BigDecimal> binFloorLimits = new HashMap<>();
+    // Keyed by merchant id; takes precedence over BIN limits
+    private Map<String, BigDecimal> merchantFloorLimits = new HashMap<>();
+    private BigDecimal cardCumulativeLimit = new BigDecimal("200.00");
+    private int cardMaxCount = 5;
+    private long adviceRetryInterval = 30000;
+    private int adviceBatchSize = 50;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getDefaultFloorLimit() {
+        return defaultFloorLimit;
+    }
+
+    public void setDefaultFloorLimit(BigDecimal defaultFloorLimit) {
+        this.defaultFloorLimit = defaultFloorLimit;
+    }
+
+    public Map<String, BigDecimal> getBinFloorLimits() {
+        return binFloorLimits;
+    }
+
+    public void setBinFloorLimits(Map<String, BigDecimal> binFloorLimits) {
+        this.binFloorLimits = binFloorLimits;
+    }
+
+    public Map<String, BigDecimal> getMerchantFloorLimits() {
+        return merchantFloorLimits;
+    }
+
+    public void setMerchantFloorLimits(Map<String, BigDecimal> merchantFloorLimits) {
+        this.merchantFloorLimits = merchantFloorLimits;
+    }
+
+    public BigDecimal getCardCumulativeLimit() {
+        return cardCumulativeLimit;
+    }
+
+    public void setCardCumulativeLimit(BigDecimal cardCumulativeLimit) {
+        this.cardCumulativeLimit = cardCumulativeLimit;
+    }
+
+    public int getCardMaxCount() {
+        return cardMaxCount;
+    }
+
+    public void setCardMaxCount(int cardMaxCount) {
+        this.cardMaxCount = cardMaxCount;
+    }
+
+    public long getAdviceRetryInterval() {
+        return adviceRetryInterval;
+    }
+
+    public void setAdviceRetryInterval(long adviceRetryInterval) {
+        this.adviceRetryInterval = adviceRetryInterval;
+    }
+
+    public int getAdviceBatchSize() {
+        return adviceBatchSize;
+    }
+
+    public void setAdviceBatchSize(int adviceBatchSize) {
+        this.adviceBatchSize = adviceBatchSize;
+    }
+}
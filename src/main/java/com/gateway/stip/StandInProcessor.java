@@ -0,0 +1,182 @@
+package com.gateway.stip;
+
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.enums.ResponseCode;
+import com.gateway.model.enums.TransactionType;
+import com.gateway.util.Iso8583Util;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in authorisation used when the host cannot be reached.
+ * Low-value purchases under the merchant/BIN floor limit are approved locally as long as the card's
+ * stand-in exposure for the day stays within limits; each approval carries a local auth code in
+ * field 38 and is queued as an advice for the host. The limits are all in one configured currency,
+ * so requests in any other currency are not stood in for. Everything else is declined with 91.
+ */
+@Component
+@Log4j2
+public class StandInProcessor {
+
+    private static final int COUNT_SHIFT = 48;
+    private static final long AMOUNT_MASK = (1L << COUNT_SHIFT) - 1;
+
+    private final StandInConfig config;
+    private final StandInAdviceQueue adviceQueue;
+
+    // The limits' currency, alphabetic and numeric, as field 49 or the request may carry it
+    private final String currency;
+    private final String currencyNumber;
+    // Floor limits in minor units of that currency, resolved once at startup
+    private final Map<String, Long> merchantFloorLimits;
+    private final Map<String, Long> binFloorLimits;
+    private final long defaultFloorLimit;
+    private final long cardCumulativeLimit;
+
+    // Per-card exposure: approval count in the top 16 bits, cumulative amount in the low 48
+    private final ConcurrentHashMap<String, AtomicLong> cardExposure = new ConcurrentHashMap<>();
+    private final AtomicInteger authSequence = new AtomicInteger();
+
+    public StandInProcessor(StandInConfig config, StandInAdviceQueue adviceQueue) {
+        this.config = config;
+        this.adviceQueue = adviceQueue;
+        Currency limits = currency(config.getCurrency());
+        this.currency = limits.getCurrencyCode();
+        this.currencyNumber = String.format("%03d", limits.getNumericCode());
+        this.merchantFloorLimits = toMinorUnits(config.getMerchantFloorLimits());
+        this.binFloorLimits = toMinorUnits(config.getBinFloorLimits());
+        this.defaultFloorLimit = toMinorUnits(config.getDefaultFloorLimit());
+        this.cardCumulativeLimit = toMinorUnits(config.getCardCumulativeLimit());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Builds the response the host would have sent, approved or declined locally.
+     */
+    public ISOMsg authorize(TransactionRequest request, ISOMsg isoRequest) throws ISOException {
+        ISOMsg response = (ISOMsg) isoRequest.clone();
+        response.setResponseMTI();
+
+        String pan = isoRequest.getString(2);
+        long amount = request.getAmount() != null && isLimitCurrency(request.getCurrencyCode())
+                ? toMinorUnits(request.getAmount()) : -1L;
+
+        if (!isEligible(request) || amount < 0 || amount > floorLimit(request.getMerchantId(), pan)
+                || !reserve(pan, amount)) {
+            response.set(39, ResponseCode.ISSUER_UNAVAILABLE.getCode());
+            log.info("Stand-in declined: STAN={}, RRN={}", isoRequest.getString(11), isoRequest.getString(37));
+            return response;
+        }
+
+        String authCode = nextAuthCode();
+        response.set(38, authCode);
+        response.set(39, ResponseCode.APPROVED.getCode());
+
+        ISOMsg advice = (ISOMsg) isoRequest.clone();
+        advice.setMTI(adviceMti(isoRequest.getMTI()));
+        advice.set(38, authCode);
+        advice.set(39, ResponseCode.APPROVED.getCode());
+        adviceQueue.enqueue(advice);
+
+        log.info("Stand-in approved: STAN={}, RRN={}, AuthCode={}",
+                isoRequest.getString(11), isoRequest.getString(37), authCode);
+        return response;
+    }
+
+    @Scheduled(cron = "${gateway.stip.exposure-reset-cron:0 0 0 * * *}")
+    public void resetExposure() {
+        cardExposure.clear();
+    }
+
+    private boolean isEligible(TransactionRequest request) {
+        String type = request.getTransactionType();
+        return TransactionType.DEBIT.name().equals(type) || TransactionType.PRE_AUTHORIZATION.name().equals(type);
+    }
+
+    private boolean isLimitCurrency(String code) {
+        return currency.equals(code) || currencyNumber.equals(code);
+    }
+
+    private long floorLimit(String merchantId, String pan) {
+        Long limit = merchantId != null ? merchantFloorLimits.get(merchantId) : null;
+        if (limit == null && pan != null && pan.length() >= 6) {
+            limit = binFloorLimits.get(pan.substring(0, 6));
+        }
+        return limit != null ? limit : defaultFloorLimit;
+    }
+
+    private boolean reserve(String pan, long amount) {
+        if (pan == null) {
+            return false;
+        }
+        AtomicLong exposure = cardExposure.get(pan);
+        if (exposure == null) {
+            AtomicLong created = new AtomicLong();
+            exposure = cardExposure.putIfAbsent(pan, created);
+            if (exposure == null) {
+                exposure = created;
+            }
+        }
+        for (;;) {
+            long current = exposure.get();
+            long count = (current >>> COUNT_SHIFT) + 1;
+            long total = (current & AMOUNT_MASK) + amount;
+            if (count > config.getCardMaxCount() || total > cardCumulativeLimit) {
+                return false;
+            }
+            if (exposure.compareAndSet(current, (count << COUNT_SHIFT) | total)) {
+                return true;
+            }
+        }
+    }
+
+    private String nextAuthCode() {
+        int n = Math.floorMod(authSequence.incrementAndGet(), 100000);
+        char[] code = {'S', '0', '0', '0', '0', '0'};
+        for (int i = 5; i > 0 && n > 0; i--) {
+            code[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        return new String(code);
+    }
+
+    private static String adviceMti(String mti) {
+        // 0100 -> 0120, 0200 -> 0220
+        return mti.substring(0, 2) + "20";
+    }
+
+    private static Currency currency(String code) {
+        try {
+            if (code != null) {
+                return Currency.getInstance(code);
+            }
+        } catch (IllegalArgumentException e) {
+            // reported below
+        }
+        throw new IllegalStateException("gateway.stip.currency must be an ISO 4217 code, not " + code);
+    }
+
+    private long toMinorUnits(BigDecimal amount) {
+        return Iso8583Util.toMinorUnits(amount, currency);
+    }
+
+    private Map<String, Long> toMinorUnits(Map<String, BigDecimal> limits) {
+        Map<String, Long> result = new HashMap<>();
+        limits.forEach((key, value) -> result.put(key, toMinorUnits(value)));
+        return result;
+    }
+}
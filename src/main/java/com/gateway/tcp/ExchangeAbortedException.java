@@ -0,0 +1,16 @@
+package com.gateway.tcp;
+
+import java.io.IOException;
+
+/**
+ * The request was written to the host but its socket was closed before the reply arrived, so the
+ * host may or may not have acted on it.
+ */
+public class ExchangeAbortedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ExchangeAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,6 +2,13 @@ package com.gateway.tcp;
 
 import com.gateway.config.TcpConfig;
 import com.gateway.iso8583.CustomPackager;
+import com.gateway.jfr.HostRetryEvent;
+import com.gateway.jfr.PoolAcquireEvent;
+import com.gateway.jfr.SocketReadEvent;
+import com.gateway.jfr.SocketWriteEvent;
+import com.gateway.mac.MacService;
+import com.gateway.mac.MacVerificationException;
+import com.gateway.metrics.GatewayMetrics;
 import com.gateway.util.Iso8583Util;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
@@ -17,12 +24,16 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -31,90 +42,345 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Log4j2
 public class IsoTcpClient {
 
+    /**
+     * Told about an approval that arrived after its exchange had timed out and the caller had
+     * been given no host answer. {@code standIn} is the answer the caller got locally instead, or
+     * {@code null} if it got none. Responses whose MAC fails are reported too, untrusted, since
+     * they may be approvals. Runs on a client thread.
+     */
+    public interface LateApprovalListener {
+        void onLateApproval(ISOMsg request, ISOMsg response, ISOMsg standIn, boolean trusted);
+    }
+
+    /**
+     * Answers a request locally when the host gives no answer. Only asked when every attempt
+     * either failed before it was written or is still waiting for its late answer, so an approval
+     * the host made anyway is always seen and reconciled against the local one.
+     */
+    public interface StandIn {
+        ISOMsg authorize(ISOMsg request) throws ISOException;
+    }
+
     private final TcpConfig tcpConfig;
     private final CustomPackager customPackager;
     private final Iso8583Util iso8583Util;
+    private final GatewayMetrics gatewayMetrics;
+    private final MacService macService;
 
     private final ExecutorService executorService = Executors.newCachedThreadPool();
     private final BlockingQueue<Socket> connectionPool = new LinkedBlockingQueue<>();
     private final AtomicInteger totalConnections = new AtomicInteger(0);
 
+    private InetSocketAddress hostAddress;
+
+    // sockets checked out for an exchange, and those closed under a caller by abortInFlight
+    private final Set<Socket> busySockets = ConcurrentHashMap.newKeySet();
+    private final Set<Socket> abortedSockets = ConcurrentHashMap.newKeySet();
+
+    // timed-out exchanges still waiting for their answer, and the sockets they wait on
+    private final LateResponseTable lateResponses = new LateResponseTable();
+    private final Set<Socket> lateSockets = ConcurrentHashMap.newKeySet();
+    private volatile LateApprovalListener lateApprovalListener;
+
+    // null when the host link is plaintext
+    private TlsConnector tlsConnector;
+
+    // framing is fixed at startup
+    private LengthHeader lengthHeader;
+    private int headerSize;
+
     @PostConstruct
     public void init() {
-        int minConnections = tcpConfig.getMinConnections();
-        for (int i = 0; i < minConnections; i++) {
+        initFraming();
+        hostAddress = new InetSocketAddress(tcpConfig.getHost(), tcpConfig.getPort());
+        if (tcpConfig.isTlsEnabled()) {
             try {
-                Socket socket = createNewConnection();
-                if (connectionPool.offer(socket)) {
-                    totalConnections.incrementAndGet();
-                } else {
-                    closeConnection(socket);
-                }
+                tlsConnector = TlsConnector.create(tcpConfig);
+            } catch (IOException e) {
+                // never fall back to plaintext on a link configured for TLS
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        gatewayMetrics.gaugePool(hostTag(), connectionPool::size, totalConnections::get, tcpConfig::getMaxConnections);
+
+        fillPool();
+    }
+
+    private void initFraming() {
+        if (!tcpConfig.isLengthHeader()) {
+            throw new IllegalStateException("Host responses cannot be framed without a length header");
+        }
+        try {
+            lengthHeader = LengthHeader.of(tcpConfig.getLengthHeaderSize(), tcpConfig.getLengthHeaderFormat());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        headerSize = lengthHeader.size();
+    }
+
+    /**
+     * Opens connections until the pool holds {@code minConnections}. Each missing connection is
+     * attempted, so one refused connect does not leave the pool short.
+     *
+     * @return the number of connections now open
+     */
+    public int fillPool() {
+        int missing = tcpConfig.getMinConnections() - totalConnections.get();
+        int failures = 0;
+        String lastError = null;
+        for (int i = 0; i < missing && reserveSlot(tcpConfig.getMinConnections()); i++) {
+            try {
+                releaseConnection(openReserved());
+            } catch (IOException e) {
+                failures++;
+                lastError = e.getMessage();
+            }
+        }
+        if (failures > 0) {
+            log.warn("Could not open {} of {} initial connections to {}: {}", failures, missing, hostTag(), lastError);
+        }
+        return totalConnections.get();
+    }
+
+    /**
+     * Applies new pool bounds without dropping in-flight exchanges: idle sockets above the new
+     * maximum are closed now, busy ones when they are released.
+     */
+    public void resizePool(int minConnections, int maxConnections) {
+        if (minConnections < 0 || maxConnections < 1 || minConnections > maxConnections) {
+            throw new IllegalArgumentException("Pool bounds must satisfy 0 <= min <= max and max >= 1");
+        }
+        synchronized (this) {
+            tcpConfig.setMaxConnections(maxConnections);
+            tcpConfig.setMinConnections(minConnections);
+        }
+        Socket idle;
+        while (totalConnections.get() > maxConnections && (idle = connectionPool.poll()) != null) {
+            closeConnection(idle);
+        }
+        log.info("Connection pool resized to min={} max={} ({} open)", minConnections, maxConnections,
+                totalConnections.get());
+        fillPool();
+    }
+
+    public int getInFlightCount() {
+        return busySockets.size();
+    }
+
+    /**
+     * Waits for exchanges in progress to complete.
+     *
+     * @return {@code true} if none were left before the deadline
+     */
+    public boolean awaitInFlight(long deadlineNanos) throws InterruptedException {
+        while (!busySockets.isEmpty()) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Closes every socket with an exchange in progress. The callers see an
+     * {@link ExchangeAbortedException} instead of a retry.
+     *
+     * @return the number of exchanges cut off
+     */
+    public int abortInFlight() {
+        int aborted = 0;
+        for (Socket socket : busySockets) {
+            abortedSockets.add(socket);
+            try {
+                socket.close();
+                aborted++;
             } catch (IOException e) {
-                log.warn("Error creating initial connection {}: {}", i + 1, e.getMessage());
-                break;
+                log.warn("Error aborting socket: {}", e.getMessage());
             }
         }
+        return aborted;
+    }
+
+    public InetSocketAddress getHostAddress() {
+        return hostAddress;
+    }
+
+    public int getIdleConnections() {
+        return connectionPool.size();
+    }
+
+    public int getMinConnections() {
+        return tcpConfig.getMinConnections();
+    }
+
+    public int getMaxConnections() {
+        return tcpConfig.getMaxConnections();
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return the TLS layer, or {@code null} for a plaintext link
+     */
+    public TlsConnector getTlsConnector() {
+        return tlsConnector;
+    }
+
+    public void setLateApprovalListener(LateApprovalListener lateApprovalListener) {
+        this.lateApprovalListener = lateApprovalListener;
+    }
+
+    /**
+     * @return sockets kept open for the answer to an exchange that timed out
+     */
+    public int getLateResponsesPending() {
+        return lateResponses.size();
     }
 
     public ISOMsg sendRequest(ISOMsg request) throws IOException, ISOException {
+        return sendRequest(request, null);
+    }
+
+    /**
+     * @param standIn answers the request if no attempt got an answer and none can have reached
+     *                the host unwatched, or {@code null} to fail instead
+     */
+    public ISOMsg sendRequest(ISOMsg request, StandIn standIn) throws IOException, ISOException {
         int attempts = 0;
         int maxAttempts = Math.max(1, tcpConfig.getRetryAttempts());
         IOException lastException = null;
+        String mti = request.getMTI();
+        String host = hostTag();
+        // set once an attempt may have reached the host with nobody left waiting for its answer
+        boolean unwatched = false;
+        // where attempts that timed out wait for their answer
+        LateResponseTable.Exchange parked = null;
 
         while (attempts < maxAttempts) {
             Socket socket = null;
-            long startTime = System.currentTimeMillis();
+            boolean written = false;
+            boolean responseStarted = false;
+            long startTime = System.nanoTime();
             attempts++;
 
             try {
+                PoolAcquireEvent acquireEvent = new PoolAcquireEvent();
+                acquireEvent.begin();
                 socket = getConnection();
+                busySockets.add(socket);
+                // picks up a read timeout changed since the socket was opened
+                socket.setSoTimeout(tcpConfig.getReadTimeout());
+                long acquired = System.nanoTime();
+                if (acquireEvent.shouldCommit()) {
+                    acquireEvent.host = host;
+                    acquireEvent.idle = connectionPool.size();
+                    acquireEvent.total = totalConnections.get();
+                    acquireEvent.commit();
+                }
+                gatewayMetrics.recordStage(GatewayMetrics.STAGE_POOL_ACQUIRE, acquired - startTime, mti, null, host);
 
                 DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
                 DataInputStream dis = new DataInputStream(socket.getInputStream());
 
-                byte[] message = customPackager.pack(request);
-
-                if (tcpConfig.isLengthHeader()) {
-                    byte[] lengthHeader = new byte[tcpConfig.getLengthHeaderSize()];
-                    lengthHeader[0] = (byte) ((message.length >> 8) & 0xFF);
-                    lengthHeader[1] = (byte) (message.length & 0xFF);
-                    dos.write(lengthHeader);
-                }
-
-                dos.write(message);
+                byte[] message = macService.pack(request, customPackager);
+                long packed = System.nanoTime();
+                gatewayMetrics.recordStage(GatewayMetrics.STAGE_PACK, packed - acquired, mti);
+
+                SocketWriteEvent writeEvent = new SocketWriteEvent();
+                writeEvent.begin();
+                // header and body in one write: one segment on the wire, one record under TLS
+                byte[] frame = new byte[headerSize + message.length];
+                encodeLength(frame, message.length);
+                System.arraycopy(message, 0, frame, headerSize, message.length);
+                written = true;
+                dos.write(frame);
                 dos.flush();
+                if (writeEvent.shouldCommit()) {
+                    writeEvent.host = host;
+                    writeEvent.mti = mti;
+                    writeEvent.stan = request.getString(11);
+                    writeEvent.bytes = message.length;
+                    writeEvent.commit();
+                }
 
                 log.debug("Sent message: {}", ISOUtil.hexString(message));
 
-                byte[] responseLength = new byte[tcpConfig.getLengthHeaderSize()];
+                SocketReadEvent readEvent = new SocketReadEvent();
+                readEvent.begin();
+                byte[] responseLength = new byte[headerSize];
                 dis.readFully(responseLength);
 
-                int responseMsgLength = ((responseLength[0] & 0xFF) << 8) | (responseLength[1] & 0xFF);
+                int responseMsgLength = decodeLength(responseLength);
+                responseStarted = true;
 
                 byte[] responseData = new byte[responseMsgLength];
                 dis.readFully(responseData);
+                long received = System.nanoTime();
+                if (readEvent.shouldCommit()) {
+                    readEvent.host = host;
+                    readEvent.mti = mti;
+                    readEvent.stan = request.getString(11);
+                    readEvent.bytes = responseMsgLength;
+                    readEvent.commit();
+                }
+                gatewayMetrics.recordStage(GatewayMetrics.STAGE_WIRE, received - packed, mti, null, host);
 
                 log.debug("Received response: {}", ISOUtil.hexString(responseData));
 
                 ISOMsg response = customPackager.unpack(responseData);
-
-                long elapsed = System.currentTimeMillis() - startTime;
-                log.info("Round trip time: {}ms (attempt {}/{})", elapsed, attempts, maxAttempts);
+                macService.verify(responseData, response, customPackager);
+                long unpacked = System.nanoTime();
+                gatewayMetrics.recordStage(GatewayMetrics.STAGE_UNPACK, unpacked - received, response.getMTI());
+
+                log.info("Round trip time: {}us (attempt {}/{})",
+                        (unpacked - startTime) / 1_000, attempts, maxAttempts);
+                if (attempts > 1) {
+                    // an earlier attempt may still be waiting for its answer; this one settles it
+                    lateResponses.settle(request);
+                }
 
                 return response;
 
             } catch (IOException e) {
+                if (socket != null && abortedSockets.remove(socket)) {
+                    busySockets.remove(socket);
+                    invalidateConnection(socket);
+                    throw new ExchangeAbortedException("Exchange aborted during shutdown", e);
+                }
                 lastException = e;
+                gatewayMetrics.incrementHostErrors(host, e.getClass().getSimpleName());
                 log.error("Communication error on attempt {}/{}: {}", attempts, maxAttempts, e.getMessage());
+                LateResponseTable.Exchange late = null;
                 if (socket != null) {
-                    invalidateConnection(socket);
+                    busySockets.remove(socket);
+                    // a socket that timed out between frames can still carry the answer
+                    if (e instanceof SocketTimeoutException && !responseStarted) {
+                        late = awaitLateResponse(socket, request, host);
+                    }
+                    if (late == null) {
+                        invalidateConnection(socket);
+                    }
                     socket = null;
                 }
+                if (late != null) {
+                    parked = late;
+                } else if (written) {
+                    unwatched = true;
+                }
 
                 if (attempts >= maxAttempts) {
-                    throw e;
+                    ISOMsg local = standIn == null || unwatched ? null : standIn(standIn, request, parked);
+                    if (local == null) {
+                        throw e;
+                    }
+                    log.warn("No answer from host {} after {} attempts, stood in: STAN={}", host, attempts,
+                            request.getString(11));
+                    return local;
                 }
+                gatewayMetrics.incrementRetries(host);
 
                 long baseDelay = Math.max(0, tcpConfig.getRetryDelay());
                 long maxDelay = Math.max(baseDelay, tcpConfig.getMaxRetryDelay());
@@ -123,6 +389,15 @@ public class IsoTcpClient {
                     delay = maxDelay;
                 }
 
+                HostRetryEvent retryEvent = new HostRetryEvent();
+                if (retryEvent.shouldCommit()) {
+                    retryEvent.host = host;
+                    retryEvent.attempt = attempts;
+                    retryEvent.delay = delay;
+                    retryEvent.error = e.getMessage();
+                    retryEvent.commit();
+                }
+
                 try {
                     TimeUnit.MILLISECONDS.sleep(delay);
                 } catch (InterruptedException ie) {
@@ -130,8 +405,14 @@ public class IsoTcpClient {
                     throw new IOException("Interrupted during retry delay", ie);
                 }
             } finally {
-                if (socket != null && !socket.isClosed()) {
-                    releaseConnection(socket);
+                if (socket != null) {
+                    busySockets.remove(socket);
+                    if (!socket.isClosed()) {
+                        releaseConnection(socket);
+                    } else if (abortedSockets.remove(socket)) {
+                        // aborted just after the reply arrived; still needs to leave the pool count
+                        closeConnection(socket);
+                    }
                 }
             }
         }
@@ -153,17 +434,137 @@ public class IsoTcpClient {
         }, executorService);
     }
 
-    private synchronized Socket getConnection() throws IOException {
-        Socket socket = connectionPool.poll();
+    /**
+     * Answers locally for a host that gave no answer. While timed-out attempts still wait for
+     * theirs, the local answer is recorded on their exchange under its lock, so a late host answer
+     * is reconciled against it instead of being taken for one the caller never saw.
+     *
+     * @return {@code null} if a late answer settled the exchange first
+     */
+    private static ISOMsg standIn(StandIn standIn, ISOMsg request, LateResponseTable.Exchange parked)
+            throws ISOException {
+        if (parked == null) {
+            return standIn.authorize(request);
+        }
+        synchronized (parked) {
+            if (parked.settled.get()) {
+                return null;
+            }
+            parked.standIn = standIn.authorize(request);
+            return parked.standIn;
+        }
+    }
 
-        if (socket != null && socket.isConnected() && !socket.isClosed()) {
-            return socket;
+    /**
+     * Keeps a timed-out socket open for up to {@code lateResponseWindow} and reads the answer on a
+     * client thread. The socket goes back to the pool once answered, and is closed otherwise.
+     *
+     * @return the exchange the socket waits on, or {@code null} if late responses are off or too
+     *         many sockets are already waiting
+     */
+    private LateResponseTable.Exchange awaitLateResponse(Socket socket, ISOMsg request, String host) {
+        int window = tcpConfig.getLateResponseWindow();
+        if (window <= 0) {
+            return null;
+        }
+        LateResponseTable.Exchange exchange = lateResponses.park(request, tcpConfig.getLateResponseMaxPending());
+        if (exchange == null) {
+            gatewayMetrics.incrementLateResponses(host, "dropped");
+            return null;
+        }
+        lateSockets.add(socket);
+        try {
+            executorService.execute(() -> readLateResponse(socket, exchange, window, host));
+        } catch (RejectedExecutionException e) {
+            lateSockets.remove(socket);
+            lateResponses.release(exchange);
+            return null;
         }
+        return exchange;
+    }
 
-        if (totalConnections.get() < tcpConfig.getMaxConnections()) {
-            socket = createNewConnection();
-            totalConnections.incrementAndGet();
-            return socket;
+    private void readLateResponse(Socket socket, LateResponseTable.Exchange exchange, int window, String host) {
+        boolean reusable = false;
+        try {
+            socket.setSoTimeout(window);
+            DataInputStream dis = new DataInputStream(socket.getInputStream());
+            byte[] header = new byte[headerSize];
+            dis.readFully(header);
+            byte[] data = new byte[decodeLength(header)];
+            dis.readFully(data);
+            ISOMsg response = customPackager.unpack(data);
+            boolean trusted = true;
+            try {
+                macService.verify(data, response, customPackager);
+            } catch (MacVerificationException e) {
+                trusted = false;
+            }
+            reusable = true;
+
+            LateResponseTable.Exchange answered = lateResponses.match(response);
+            boolean claimed = false;
+            ISOMsg standIn = null;
+            if (answered != null) {
+                synchronized (answered) {
+                    claimed = answered.settled.compareAndSet(false, true);
+                    standIn = answered.standIn;
+                }
+            }
+            if (answered == null) {
+                gatewayMetrics.incrementLateResponses(host, "unmatched");
+                log.warn("Late response from {} matches no timed-out request: STAN={}, RRN={}",
+                        host, response.getString(11), response.getString(37));
+            } else if (!claimed) {
+                // a retry or another late answer got there first
+                gatewayMetrics.incrementLateResponses(host, "answered");
+            } else if (!trusted || "00".equals(response.getString(39))) {
+                gatewayMetrics.incrementLateResponses(host, "approved");
+                log.warn("Late {} from {} after timeout{}: STAN={}, RRN={}",
+                        trusted ? "approval" : "response with bad MAC", host, standIn != null ? " and stand-in" : "",
+                        response.getString(11), response.getString(37));
+                LateApprovalListener listener = lateApprovalListener;
+                if (listener != null) {
+                    listener.onLateApproval(answered.request, response, standIn, trusted);
+                }
+            } else {
+                gatewayMetrics.incrementLateResponses(host, "declined");
+            }
+        } catch (SocketTimeoutException e) {
+            gatewayMetrics.incrementLateResponses(host, "expired");
+        } catch (IOException | ISOException e) {
+            if (!socket.isClosed()) {
+                log.warn("Could not read late response from {}: {}", host, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            log.error("Late response handling failed for {}: {}", host, e.getMessage(), e);
+        } finally {
+            lateSockets.remove(socket);
+            if (reusable && !socket.isClosed()) {
+                releaseConnection(socket);
+            } else {
+                closeConnection(socket);
+            }
+            // last, so nothing is reported pending while the socket is still counted as waiting
+            lateResponses.release(exchange);
+        }
+    }
+
+    /**
+     * Takes an idle socket, or opens a new one while the pool is below its maximum. Nothing here
+     * holds a lock: a new connection's slot is reserved up front, so callers never queue behind
+     * another caller's connect or TLS handshake.
+     */
+    private Socket getConnection() throws IOException {
+        Socket socket;
+        while ((socket = connectionPool.poll()) != null) {
+            if (socket.isConnected() && !socket.isClosed()) {
+                return socket;
+            }
+            closeConnection(socket);
+        }
+
+        if (reserveSlot(tcpConfig.getMaxConnections())) {
+            return openReserved();
         }
 
         try {
@@ -181,22 +582,68 @@ public class IsoTcpClient {
         return socket;
     }
 
+    private void encodeLength(byte[] frame, int length) throws ISOException {
+        if (length > lengthHeader.maxLength()) {
+            throw new ISOException("Message of " + length + " bytes does not fit a " + headerSize + "-byte length header");
+        }
+        lengthHeader.encode(frame, length);
+    }
+
+    private int decodeLength(byte[] header) throws IOException {
+        return lengthHeader.decode(header, 0);
+    }
+
+    private String hostTag() {
+        return tcpConfig.getHost() + ":" + tcpConfig.getPort();
+    }
+
+    /**
+     * Counts a connection that is about to be opened, unless {@code limit} are already open.
+     */
+    private boolean reserveSlot(int limit) {
+        while (true) {
+            int total = totalConnections.get();
+            if (total >= limit) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Opens the connection a {@link #reserveSlot} was made for, giving the slot back if it fails.
+     */
+    private Socket openReserved() throws IOException {
+        try {
+            return createNewConnection();
+        } catch (IOException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
     private Socket createNewConnection() throws IOException {
         Socket socket = new Socket();
         socket.setSoTimeout(tcpConfig.getReadTimeout());
         socket.setKeepAlive(tcpConfig.isKeepAlive());
         socket.setTcpNoDelay(tcpConfig.isTcpNoDelay());
 
-        socket.connect(new InetSocketAddress(tcpConfig.getHost(), tcpConfig.getPort()),
-                tcpConfig.getConnectionTimeout());
+        InetSocketAddress address = hostAddress;
+        socket.connect(address, tcpConfig.getConnectionTimeout());
+        if (tlsConnector != null) {
+            socket = tlsConnector.handshake(socket, address, tcpConfig.getConnectionTimeout());
+        }
 
-        log.info("Created new connection to {}:{}", tcpConfig.getHost(), tcpConfig.getPort());
+        log.info("Created new {}connection to {}", tlsConnector != null ? "TLS " : "", address);
         return socket;
     }
 
     private void releaseConnection(Socket socket) {
         if (socket != null && socket.isConnected() && !socket.isClosed()) {
-            if (!connectionPool.offer(socket)) {
+            // excess sockets left over from a resize are drained here
+            if (totalConnections.get() > tcpConfig.getMaxConnections() || !connectionPool.offer(socket)) {
                 closeConnection(socket);
             }
         }
@@ -214,15 +661,21 @@ public class IsoTcpClient {
         } catch (IOException e) {
             log.warn("Error closing socket: {}", e.getMessage());
         } finally {
-            if (totalConnections.get() > 0) {
-                totalConnections.decrementAndGet();
-            }
+            totalConnections.updateAndGet(total -> total > 0 ? total - 1 : 0);
         }
     }
 
     @PreDestroy
     public void shutdown() {
         log.info("Shutting down TCP client");
+        // wakes the threads waiting on late responses; they release the sockets themselves
+        for (Socket socket : lateSockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.warn("Error closing socket: {}", e.getMessage());
+            }
+        }
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(5000, TimeUnit.MILLISECONDS)) {
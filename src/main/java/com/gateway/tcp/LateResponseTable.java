@@ -0,0 +1,98 @@
+package com.gateway.tcp;
+
+import org.jpos.iso.ISOMsg;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exchanges whose read timed out but whose socket is kept open a while for the answer, keyed by
+ * STAN and RRN. Retries of one request share an entry, so whichever answer comes first settles it.
+ * The table is bounded by the number of sockets waiting, and an entry leaves once its last socket
+ * has been answered or given up on.
+ */
+final class LateResponseTable {
+
+    static final class Exchange {
+        final String key;
+        final ISOMsg request;
+        // set once the caller or a late response has dealt with the outcome
+        final AtomicBoolean settled = new AtomicBoolean();
+        // the answer the caller got by stand-in while the exchange was still open; guarded by this
+        ISOMsg standIn;
+        private int waiting;
+
+        private Exchange(String key, ISOMsg request) {
+            this.key = key;
+            this.request = request;
+        }
+    }
+
+    private final Map<String, Exchange> exchanges = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Registers one more socket waiting on the request's answer.
+     *
+     * @return the shared entry, or {@code null} if the table is full
+     */
+    Exchange park(ISOMsg request, int maxWaiting) {
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return null;
+        }
+        String key = key(request.getString(11), request.getString(37));
+        while (true) {
+            Exchange exchange = exchanges.computeIfAbsent(key, k -> new Exchange(k, request));
+            synchronized (exchange) {
+                // an entry whose last socket just gave up is on its way out; start a fresh one
+                if (exchange.waiting >= 0) {
+                    exchange.waiting++;
+                    return exchange;
+                }
+            }
+            exchanges.remove(key, exchange);
+        }
+    }
+
+    /**
+     * @return the entry the response answers, or {@code null} if it matches no waiting request
+     */
+    Exchange match(ISOMsg response) {
+        return exchanges.get(key(response.getString(11), response.getString(37)));
+    }
+
+    /**
+     * Marks the request as answered after all, e.g. by a retry.
+     */
+    void settle(ISOMsg request) {
+        Exchange exchange = exchanges.get(key(request.getString(11), request.getString(37)));
+        if (exchange != null) {
+            exchange.settled.set(true);
+        }
+    }
+
+    /**
+     * One socket stopped waiting on the entry.
+     */
+    void release(Exchange exchange) {
+        waiting.decrementAndGet();
+        synchronized (exchange) {
+            if (--exchange.waiting > 0) {
+                return;
+            }
+            exchange.waiting = -1;
+        }
+        exchanges.remove(exchange.key, exchange);
+    }
+
+    int size() {
+        return waiting.get();
+    }
+
+    private static String key(String stan, String rrn) {
+        return stan + '/' + rrn;
+    }
+}
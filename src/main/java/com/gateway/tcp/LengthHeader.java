@@ -0,0 +1,83 @@
+package com.gateway.tcp;
+
+import org.jpos.iso.ISOUtil;
+
+import java.io.IOException;
+
+/**
+ * The length prefix in front of every ISO 8583 frame: big-endian binary of 2 or 4 bytes, or 2 to 6
+ * zero-padded ASCII digits. Shared by the host client and the ingress server.
+ */
+public final class LengthHeader {
+
+    private final int size;
+    private final boolean ascii;
+    private final int maxLength;
+
+    private LengthHeader(int size, boolean ascii) {
+        this.size = size;
+        this.ascii = ascii;
+        if (ascii) {
+            this.maxLength = (int) Math.pow(10, size) - 1;
+        } else {
+            this.maxLength = size == 2 ? 0xFFFF : Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @param format {@code binary} or {@code ascii}
+     * @throws IllegalArgumentException for a format and size that cannot be framed
+     */
+    public static LengthHeader of(int size, String format) {
+        boolean ascii = "ascii".equalsIgnoreCase(format);
+        if (ascii ? size < 2 || size > 6 : !"binary".equalsIgnoreCase(format) || (size != 2 && size != 4)) {
+            throw new IllegalArgumentException("Unsupported length header: " + size + " bytes " + format);
+        }
+        return new LengthHeader(size, ascii);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Writes the header for a body of {@code length} bytes into the first {@link #size()} bytes.
+     */
+    public void encode(byte[] frame, int length) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (ascii) {
+                frame[i] = (byte) ('0' + length % 10);
+                length /= 10;
+            } else {
+                frame[i] = (byte) length;
+                length >>>= 8;
+            }
+        }
+    }
+
+    /**
+     * Reads the body length from the first {@link #size()} bytes from {@code offset}.
+     */
+    public int decode(byte[] header, int offset) throws IOException {
+        int length = 0;
+        for (int i = offset; i < offset + size; i++) {
+            byte b = header[i];
+            if (ascii) {
+                if (b < '0' || b > '9') {
+                    throw new IOException("Invalid ASCII length header " + ISOUtil.hexString(header, offset, size));
+                }
+                length = length * 10 + (b - '0');
+            } else {
+                length = (length << 8) | (b & 0xFF);
+            }
+        }
+        if (length < 0) {
+            throw new IOException("Invalid length header " + ISOUtil.hexString(header, offset, size));
+        }
+        return length;
+    }
+}
@@ -0,0 +1,113 @@
+package com.gateway.tcp;
+
+import com.gateway.admission.LoadShedder;
+import com.gateway.config.TcpConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Live view and tuning of the host link at {@code /actuator/tcp}. A POST with any subset of the
+ * fields changes them without a restart; omitted fields keep their current value. Timeouts and
+ * retry settings apply to the next request. The host address is shown but cannot be changed here,
+ * and every value is bounded so a bad POST cannot stall or flood the host link. Not exposed over
+ * HTTP by default; expose it only on a separate management port.
+ */
+@Component
+@Endpoint(id = "tcp")
+@RequiredArgsConstructor
+public class TcpTuningEndpoint {
+
+    static final int MAX_CONNECTIONS = 1000;
+    static final int MAX_TIMEOUT = 120_000;
+    static final int MAX_RETRY_ATTEMPTS = 10;
+
+    private final IsoTcpClient isoTcpClient;
+    private final TcpConfig tcpConfig;
+    private final LoadShedder loadShedder;
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("host", tcpConfig.getHost());
+        settings.put("port", tcpConfig.getPort());
+        settings.put("minConnections", tcpConfig.getMinConnections());
+        settings.put("maxConnections", tcpConfig.getMaxConnections());
+        settings.put("connectionTimeout", tcpConfig.getConnectionTimeout());
+        settings.put("readTimeout", tcpConfig.getReadTimeout());
+        settings.put("retryAttempts", tcpConfig.getRetryAttempts());
+        settings.put("retryDelay", tcpConfig.getRetryDelay());
+        settings.put("connectionPoolTimeout", tcpConfig.getConnectionPoolTimeout());
+        settings.put("openConnections", isoTcpClient.getTotalConnections());
+        settings.put("idleConnections", isoTcpClient.getIdleConnections());
+        settings.put("lateResponseWindow", tcpConfig.getLateResponseWindow());
+        settings.put("lateResponsesPending", isoTcpClient.getLateResponsesPending());
+        settings.put("admissionLimit", loadShedder.getMaxConcurrent());
+        TlsConnector tls = isoTcpClient.getTlsConnector();
+        settings.put("tls", tls != null);
+        if (tls != null) {
+            settings.put("tlsFullHandshakes", tls.getFullHandshakes());
+            settings.put("tlsResumedHandshakes", tls.getResumedHandshakes());
+            settings.put("tlsMeanHandshakeMicros", tls.getMeanHandshakeMicros());
+            settings.put("tlsCachedSessions", tls.getCachedSessions());
+        }
+        return settings;
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Nullable Integer minConnections, @Nullable Integer maxConnections,
+                                      @Nullable Integer connectionTimeout, @Nullable Integer readTimeout,
+                                      @Nullable Integer retryAttempts, @Nullable Integer retryDelay,
+                                      @Nullable Integer connectionPoolTimeout) {
+        // 0 would mean no timeout at all
+        requireBetween("connectionTimeout", connectionTimeout, 1, MAX_TIMEOUT);
+        requireBetween("readTimeout", readTimeout, 1, MAX_TIMEOUT);
+        requireBetween("retryAttempts", retryAttempts, 1, MAX_RETRY_ATTEMPTS);
+        requireBetween("retryDelay", retryDelay, 0, MAX_TIMEOUT);
+        requireBetween("connectionPoolTimeout", connectionPoolTimeout, 0, MAX_TIMEOUT);
+        requireBetween("minConnections", minConnections, 0, MAX_CONNECTIONS);
+        requireBetween("maxConnections", maxConnections, 1, MAX_CONNECTIONS);
+
+        try {
+            if (minConnections != null || maxConnections != null) {
+                int max = maxConnections != null ? maxConnections : tcpConfig.getMaxConnections();
+                isoTcpClient.resizePool(minConnections != null ? minConnections : Math.min(tcpConfig.getMinConnections(), max),
+                        max);
+                loadShedder.onPoolResized(max);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+
+        if (connectionTimeout != null) {
+            tcpConfig.setConnectionTimeout(connectionTimeout);
+        }
+        if (readTimeout != null) {
+            tcpConfig.setReadTimeout(readTimeout);
+        }
+        if (retryAttempts != null) {
+            tcpConfig.setRetryAttempts(retryAttempts);
+        }
+        if (retryDelay != null) {
+            tcpConfig.setRetryDelay(retryDelay);
+        }
+        if (connectionPoolTimeout != null) {
+            tcpConfig.setConnectionPoolTimeout(connectionPoolTimeout);
+        }
+        return settings();
+    }
+
+    private static void requireBetween(String name, Integer value, int min, int max) {
+        if (value != null && (value < min || value > max)) {
+            String message = name + " must be between " + min + " and " + max;
+            throw new InvalidEndpointRequestException(message, message);
+        }
+    }
+}
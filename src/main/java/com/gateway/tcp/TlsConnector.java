@@ -0,0 +1,176 @@
+package com.gateway.tcp;
+
+import com.gateway.config.TcpConfig;
+import lombok.extern.log4j.Log4j2;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Layers TLS over the pool's sockets.
+ * <p>
+ * One {@link SSLContext} serves every connection, so its client session cache is shared across the
+ * pool: the first socket to a host pays the full handshake and later ones (refills, replacements)
+ * resume the cached session or ticket. The handshake runs when a socket is opened: at startup and
+ * refill for the pool's minimum, but on the path of the request that needs it when the pool grows
+ * towards its maximum. Handshakes run concurrently and hold no pool lock, so only that request
+ * waits for one.
+ */
+@Log4j2
+public final class TlsConnector {
+
+    private final SSLSocketFactory socketFactory;
+    private final SSLSessionContext sessionContext;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+    private final boolean verifyHostname;
+
+    private final LongAdder fullHandshakes = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
+    private final LongAdder handshakeNanos = new LongAdder();
+
+    private TlsConnector(SSLContext context, String[] protocols, String[] cipherSuites, boolean verifyHostname) {
+        this.socketFactory = context.getSocketFactory();
+        this.sessionContext = context.getClientSessionContext();
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+        this.verifyHostname = verifyHostname;
+    }
+
+    public static TlsConnector create(TcpConfig config) throws IOException {
+        try {
+            KeyManagerFactory keyManagers = null;
+            if (!isBlank(config.getTlsKeyStore())) {
+                char[] password = toChars(config.getTlsKeyStorePassword());
+                keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                keyManagers.init(load(config.getTlsKeyStore(), config.getTlsKeyStoreType(), password), password);
+            }
+            TrustManagerFactory trustManagers = null;
+            if (!isBlank(config.getTlsTrustStore())) {
+                trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                trustManagers.init(load(config.getTlsTrustStore(), config.getTlsTrustStoreType(),
+                        toChars(config.getTlsTrustStorePassword())));
+            }
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers != null ? keyManagers.getKeyManagers() : null,
+                    trustManagers != null ? trustManagers.getTrustManagers() : null, null);
+            context.getClientSessionContext().setSessionCacheSize(config.getTlsSessionCacheSize());
+            context.getClientSessionContext().setSessionTimeout(config.getTlsSessionTimeout());
+
+            return new TlsConnector(context, split(config.getTlsProtocols()), split(config.getTlsCipherSuites()),
+                    config.isTlsVerifyHostname());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot initialise TLS: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Wraps a connected socket and completes the handshake before returning. The plain socket is
+     * closed if the handshake fails.
+     */
+    public SSLSocket handshake(Socket plain, InetSocketAddress address, int timeoutMillis) throws IOException {
+        SSLSocket socket = (SSLSocket) socketFactory.createSocket(plain, address.getHostString(), address.getPort(), true);
+        try {
+            SSLParameters parameters = socket.getSSLParameters();
+            if (protocols != null) {
+                parameters.setProtocols(protocols);
+            }
+            if (cipherSuites != null) {
+                parameters.setCipherSuites(cipherSuites);
+            }
+            if (verifyHostname) {
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            }
+            socket.setSSLParameters(parameters);
+
+            int readTimeout = plain.getSoTimeout();
+            plain.setSoTimeout(timeoutMillis);
+            long start = System.nanoTime();
+            long startMillis = System.currentTimeMillis();
+            socket.startHandshake();
+            handshakeNanos.add(System.nanoTime() - start);
+            plain.setSoTimeout(readTimeout);
+
+            SSLSession session = socket.getSession();
+            // a resumed session keeps the creation time of the handshake that established it
+            if (session.getCreationTime() < startMillis) {
+                resumedHandshakes.increment();
+            } else {
+                fullHandshakes.increment();
+                log.info("Full TLS handshake with {} ({}, {})", address, session.getProtocol(), session.getCipherSuite());
+            }
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public long getFullHandshakes() {
+        return fullHandshakes.sum();
+    }
+
+    public long getResumedHandshakes() {
+        return resumedHandshakes.sum();
+    }
+
+    /**
+     * @return mean handshake time in microseconds, full and resumed together
+     */
+    public long getMeanHandshakeMicros() {
+        long count = fullHandshakes.sum() + resumedHandshakes.sum();
+        return count == 0 ? 0 : handshakeNanos.sum() / count / 1_000;
+    }
+
+    public int getCachedSessions() {
+        int sessions = 0;
+        for (Enumeration<byte[]> ids = sessionContext.getIds(); ids.hasMoreElements(); ids.nextElement()) {
+            sessions++;
+        }
+        return sessions;
+    }
+
+    private static KeyStore load(String location, String type, char[] password)
+            throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance(type);
+        try (InputStream in = Files.newInputStream(Paths.get(location))) {
+            store.load(in, password);
+        }
+        return store;
+    }
+
+    private static char[] toChars(String password) {
+        return password != null ? password.toCharArray() : null;
+    }
+
+    private static String[] split(String list) {
+        if (isBlank(list)) {
+            return null;
+        }
+        String[] values = list.split(",");
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+        return values;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
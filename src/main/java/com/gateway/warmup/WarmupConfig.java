@@ -0,0 +1,67 @@
+package com.gateway.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "gateway.warmup")
+@SuppressWarnings("unused")
+public class WarmupConfig {
+    private boolean enabled = true;
+    // Synthetic validate/convert/pack/unpack cycles; C2 compiles a method after ~10k invocations
+    private int iterations = 15000;
+    private boolean echo = false;
+    private int echoCount = 20;
+    // Warm-up stops after this long; a pool still short of min-connections is then retried every
+    // pool-retry-interval, and readiness stays OUT_OF_SERVICE until it is full
+    private long timeout = 120000;
+    private long poolRetryInterval = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public boolean isEcho() {
+        return echo;
+    }
+
+    public void setEcho(boolean echo) {
+        this.echo = echo;
+    }
+
+    public int getEchoCount() {
+        return echoCount;
+    }
+
+    public void setEchoCount(int echoCount) {
+        this.echoCount = echoCount;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getPoolRetryInterval() {
+        return poolRetryInterval;
+    }
+
+    public void setPoolRetryInterval(long poolRetryInterval) {
+        this.poolRetryInterval = poolRetryInterval;
+    }
+}
@@ -0,0 +1,47 @@
+package com.gateway.warmup;
+
+import com.gateway.iso8583.CustomPackager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reported as {@code warmup} under {@code /actuator/health} and included in the readiness group.
+ * DOWN when the configured packager could not be loaded, since every message would be packed
+ * with the ISO87APackager fallback; OUT_OF_SERVICE while warm-up runs and while a pool it left
+ * short of {@code minConnections} is being refilled.
+ */
+@Component
+@RequiredArgsConstructor
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final WarmupService warmupService;
+    private final WarmupConfig warmupConfig;
+    private final CustomPackager customPackager;
+
+    @Override
+    public Health health() {
+        Health.Builder builder;
+        if (customPackager.getFallbackReason() != null) {
+            builder = Health.down();
+        } else if (!warmupService.isReady() || warmupService.isPoolShort()) {
+            builder = Health.outOfService();
+        } else {
+            builder = Health.up();
+        }
+        builder.withDetail("phase", warmupService.getPhase())
+                .withDetail("iterations", warmupService.getIterations() + "/" + warmupConfig.getIterations())
+                .withDetail("connections", warmupService.getConnections() + "/" + warmupService.getMinConnections())
+                .withDetail("echoes", warmupService.getEchoes())
+                .withDetail("failures", warmupService.getFailures());
+        if (warmupService.isReady()) {
+            builder.withDetail("elapsedMillis", warmupService.getElapsedMillis())
+                    .withDetail("timedOut", warmupService.isTimedOut());
+        }
+        if (customPackager.getFallbackReason() != null) {
+            builder.withDetail("packagerFallback", customPackager.getFallbackReason());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,254 @@
+package com.gateway.warmup;
+
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.service.RequestValidator;
+import com.gateway.tcp.IsoTcpClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jpos.iso.ISOMsg;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exercises the authorisation code paths and fills the host connection pools before the instance
+ * reports ready, so the first real transactions after a deploy do not pay for class loading,
+ * JIT compilation and TCP connects. Cycles rotate over the acquirer profiles, converting with each
+ * profile's packager and field mapping as routed transactions do, and every profile's pool is
+ * filled to its {@code minConnections}. Runs once, on its own thread, after the context has started;
+ * {@link WarmupHealthIndicator} keeps readiness OUT_OF_SERVICE until it finishes. If the pool is
+ * still short when the timeout expires, the same thread keeps refilling the pools and readiness
+ * stays OUT_OF_SERVICE until each reaches its {@code minConnections}.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class WarmupService {
+
+    public enum Phase { PENDING, CODE_PATHS, CONNECTION_POOL, ECHO, READY }
+
+    private static final String[] CARDS = {"4111111111111111", "5500000000000004", "340000000000009"};
+
+    private final WarmupConfig warmupConfig;
+    private final RequestValidator requestValidator;
+    private final Iso8583Converter iso8583Converter;
+    private final AcquirerRegistry acquirerRegistry;
+
+    private volatile Phase phase = Phase.PENDING;
+    private volatile boolean timedOut;
+    private volatile boolean poolShort;
+    private volatile long elapsedMillis;
+    private final AtomicInteger iterations = new AtomicInteger();
+    private final AtomicInteger echoes = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!warmupConfig.isEnabled()) {
+            phase = Phase.READY;
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            run();
+            refillPool();
+        }, "gateway-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(warmupConfig.getTimeout());
+        try {
+            phase = Phase.CODE_PATHS;
+            exerciseCodePaths(deadline);
+
+            phase = Phase.CONNECTION_POOL;
+            fillPool(deadline);
+
+            if (warmupConfig.isEcho()) {
+                phase = Phase.ECHO;
+                echo(deadline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            phase = Phase.READY;
+            log.info("Warm-up finished in {}ms: {} iterations, {}/{} connections over {} acquirers, {} echoes, "
+                            + "{} failures{}", elapsedMillis, iterations.get(), getConnections(), getMinConnections(),
+                    acquirerRegistry.getProfiles().size(), echoes.get(), failures.get(),
+                    timedOut ? " (timed out)" : "");
+        }
+    }
+
+    private void exerciseCodePaths(long deadline) {
+        int target = warmupConfig.getIterations();
+        TransactionRequest[] requests = syntheticRequests();
+        List<AcquirerProfile> profiles = acquirerRegistry.getProfiles();
+        for (int i = 0; i < target; i++) {
+            if ((i & 0xFF) == 0 && System.nanoTime() > deadline) {
+                timedOut = true;
+                return;
+            }
+            TransactionRequest request = requests[i % requests.length];
+            AcquirerProfile acquirer = profiles.get(i % profiles.size());
+            CustomPackager packager = acquirer.getPackager();
+            try {
+                requestValidator.validate(request);
+                ISOMsg isoRequest = iso8583Converter.requestToIso(request, packager, acquirer.getMapping());
+                ISOMsg echoed = packager.unpack(packager.pack(isoRequest));
+                // routing by fields 42, 2 and 49 does not count towards the profiles' routed totals
+                acquirerRegistry.route(echoed);
+
+                echoed.setResponseMTI();
+                echoed.set(38, "123456");
+                echoed.set(39, (i & 7) == 0 ? "51" : "00");
+                ISOMsg isoResponse = packager.unpack(packager.pack(echoed));
+                iso8583Converter.isoToResponse(isoResponse, acquirer.getMapping());
+            } catch (Exception e) {
+                if (failures.getAndIncrement() == 0) {
+                    log.warn("Warm-up cycle failed: {}", e.getMessage());
+                }
+            }
+            iterations.incrementAndGet();
+        }
+    }
+
+    private void fillPool(long deadline) throws InterruptedException {
+        while (!fillPools()) {
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupConfig.getPoolRetryInterval()) > deadline) {
+                timedOut = true;
+                poolShort = true;
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(warmupConfig.getPoolRetryInterval());
+        }
+    }
+
+    /**
+     * Nothing else opens connections while readiness keeps traffic away, so a pool left short by
+     * the timeout is retried here until it is full.
+     */
+    void refillPool() {
+        if (!poolShort) {
+            return;
+        }
+        try {
+            while (!fillPools()) {
+                TimeUnit.MILLISECONDS.sleep(warmupConfig.getPoolRetryInterval());
+            }
+            poolShort = false;
+            log.info("Connection pools reached {}/{} after warm-up", getConnections(), getMinConnections());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return whether every profile's pool now holds its {@code minConnections}
+     */
+    private boolean fillPools() {
+        boolean full = true;
+        for (AcquirerProfile profile : acquirerRegistry.getProfiles()) {
+            IsoTcpClient client = profile.getClient();
+            full &= client.fillPool() >= client.getMinConnections();
+        }
+        return full;
+    }
+
+    // 0800 is built with the gateway's own packager, so only the default link is echoed
+    private void echo(long deadline) {
+        IsoTcpClient client = acquirerRegistry.getDefaultProfile().getClient();
+        for (int i = 0; i < warmupConfig.getEchoCount() && System.nanoTime() < deadline; i++) {
+            try {
+                client.sendRequest(iso8583Converter.createEchoMessage());
+                echoes.incrementAndGet();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                log.warn("Warm-up echo failed: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static TransactionRequest[] syntheticRequests() {
+        TransactionRequest[] requests = new TransactionRequest[CARDS.length * 2];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = TransactionRequest.builder()
+                    .cardNumber(CARDS[i % CARDS.length])
+                    .transactionType(i < CARDS.length ? "DEBIT" : "CREDIT")
+                    .amount(new BigDecimal("12.34").add(BigDecimal.valueOf(i)))
+                    .currencyCode("USD")
+                    .terminalId("WARMUP01")
+                    .merchantId("WARMUP000000001")
+                    .merchantName("Warm-up")
+                    .posEntryMode("05")
+                    .merchantCategoryCode("5999")
+                    .cardExpiryDate("9912")
+                    .build();
+        }
+        return requests;
+    }
+
+    public int getConnections() {
+        int total = 0;
+        for (AcquirerProfile profile : acquirerRegistry.getProfiles()) {
+            total += profile.getClient().getTotalConnections();
+        }
+        return total;
+    }
+
+    public int getMinConnections() {
+        int total = 0;
+        for (AcquirerProfile profile : acquirerRegistry.getProfiles()) {
+            total += profile.getClient().getMinConnections();
+        }
+        return total;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public boolean isReady() {
+        return phase == Phase.READY;
+    }
+
+    /**
+     * @return whether the pool was below {@code minConnections} when the timeout expired and has
+     *         not been refilled since
+     */
+    public boolean isPoolShort() {
+        return poolShort;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public int getIterations() {
+        return iterations.get();
+    }
+
+    public int getEchoes() {
+        return echoes.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
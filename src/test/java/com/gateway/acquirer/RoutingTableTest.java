@@ -0,0 +1,55 @@
+package com.gateway.acquirer;
+
+import com.gateway.bin.BinTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoutingTableTest {
+
+    private final AcquirerProfile fallback = new AcquirerProfile("default", null, null, null);
+    private final AcquirerProfile alpha = new AcquirerProfile("ALPHA", null, null, null);
+    private final AcquirerProfile beta = new AcquirerProfile("BETA", null, null, null);
+
+    private final BinTable bins = new BinTable.Builder()
+        .add("411111", "411111", "VISA", "GBR", "10", "BETA")
+        .add("510000", "559999", "MASTERCARD", "USA", "30", "UNKNOWN")
+        .build();
+
+    private RoutingTable table() {
+        RoutingTable table = new RoutingTable(fallback);
+        table.addProfile(alpha);
+        table.addProfile(beta);
+        table.addMerchant("MERCHANT0000001", alpha);
+        table.addCurrency("EUR", alpha);
+        table.addCurrency("GBP", beta);
+        return table;
+    }
+
+    @Test
+    void merchantThenBinThenCurrencyThenDefault() {
+        RoutingTable table = table();
+
+        // merchant wins over the card's BIN route
+        assertSame(alpha, table.route("MERCHANT0000001", "4111111111111111", "GBP", bins));
+        // BIN route wins over currency
+        assertSame(beta, table.route("MERCHANT0000002", "4111111111111111", "EUR", bins));
+        // a route naming no profile falls through to currency
+        assertSame(alpha, table.route("MERCHANT0000002", "5500000000000004", "EUR", bins));
+        assertSame(fallback, table.route("MERCHANT0000002", "5500000000000004", "USD", bins));
+        assertSame(fallback, table.route(null, null, null, BinTable.empty()));
+    }
+
+    @Test
+    void conflictingClaimsAreRejected() {
+        RoutingTable table = table();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> table.addMerchant("MERCHANT0000001", beta));
+        assertTrue(e.getMessage().contains("ALPHA and BETA"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> table.addProfile(new AcquirerProfile("default", null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> table.addCurrency("", beta));
+    }
+}
@@ -0,0 +1,141 @@
+package com.gateway.admission;
+
+import com.gateway.model.enums.ResponseCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadShedderTest {
+
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final AtomicLong now = new AtomicLong();
+    private AdmissionConfig config;
+    private LoadShedder loadShedder;
+
+    @BeforeEach
+    void setUp() {
+        config = new AdmissionConfig();
+        config.setTargetDelay(10);
+        config.setInterval(100);
+        config.setMaxQueueTime(1);
+        // every clock read advances 20ms, so any queued request looks delayed
+        loadShedder = new LoadShedder(config, 1, () -> now.addAndGet(STEP));
+    }
+
+    @Test
+    void testExpiredDeadline_RejectedWithSystemError() {
+        LoadSheddingException e = assertThrows(LoadSheddingException.class,
+            () -> loadShedder.admit(now.get()));
+
+        assertEquals(ResponseCode.SYSTEM_ERROR, e.getResponseCode());
+        assertEquals(1, loadShedder.getExpiredCount());
+    }
+
+    @Test
+    void testSustainedQueueDelay_EntersAndLeavesDroppingState() {
+        long deadline = Long.MAX_VALUE / 2;
+        LoadShedder.Permit held = loadShedder.admit(deadline);
+
+        for (int i = 0; i < 10 && !loadShedder.isDropping(); i++) {
+            LoadSheddingException e = assertThrows(LoadSheddingException.class, () -> loadShedder.admit(deadline));
+            assertEquals(ResponseCode.ISSUER_UNAVAILABLE, e.getResponseCode());
+        }
+        assertTrue(loadShedder.isDropping());
+
+        LoadSheddingException shed = assertThrows(LoadSheddingException.class, () -> loadShedder.admit(deadline));
+        assertEquals(config.getRetryAfter(), shed.getRetryAfterMillis());
+
+        held.close();
+        // a free permit alone says nothing about the queue delay
+        loadShedder.admit(deadline).close();
+        assertTrue(loadShedder.isDropping());
+
+        // a whole interval in which nobody had to queue
+        for (int i = 0; i < 5; i++) {
+            loadShedder.admit(deadline).close();
+        }
+        assertFalse(loadShedder.isDropping());
+    }
+
+    @Test
+    void testSustainedOverload_StaysDroppingWhileTheProbeIsDelayed() throws Exception {
+        config.setMaxQueueTime(30);
+        LoadShedder shedder = new LoadShedder(config, 1, System::nanoTime);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        LoadShedder.Permit held = shedder.admit(deadline);
+        for (int i = 0; i < 20 && !shedder.isDropping(); i++) {
+            assertThrows(LoadSheddingException.class, () -> shedder.admit(deadline));
+        }
+        assertTrue(shedder.isDropping());
+
+        // one request queues as a probe; the next is shed without queueing behind it
+        config.setMaxQueueTime(5000);
+        CompletableFuture<LoadShedder.Permit> probe = CompletableFuture.supplyAsync(() -> shedder.admit(deadline));
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shedder.getQueueLength() == 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, shedder.getQueueLength());
+        long shedAt = System.nanoTime();
+        assertThrows(LoadSheddingException.class, () -> shedder.admit(deadline));
+        assertTrue(System.nanoTime() - shedAt < TimeUnit.MILLISECONDS.toNanos(1000));
+
+        // the permit goes to the probe, which waited well past the 10ms target
+        Thread.sleep(20);
+        held.close();
+        LoadShedder.Permit probed = probe.get(5, TimeUnit.SECONDS);
+        assertTrue(shedder.isDropping());
+        probed.close();
+
+        // a permit freed under sustained load no longer ends the dropping state by itself
+        shedder.admit(deadline).close();
+        assertTrue(shedder.isDropping());
+
+        // a probe that gets through under the target does; the target is raised so a busy machine
+        // cannot delay the hand-over past it
+        config.setTargetDelay(200);
+        held = shedder.admit(deadline);
+        probe = CompletableFuture.supplyAsync(() -> shedder.admit(deadline));
+        while (shedder.getQueueLength() == 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(1);
+        }
+        held.close();
+        probe.get(5, TimeUnit.SECONDS).close();
+        assertFalse(shedder.isDropping());
+    }
+
+    @Test
+    void testDisabled_AlwaysAdmits() {
+        config.setEnabled(false);
+
+        loadShedder.admit(0L).close();
+        assertEquals(0, loadShedder.getAdmittedCount());
+    }
+
+    @Test
+    void testResize_ShrinkWaitsForInFlightPermits() {
+        LoadShedder shedder = new LoadShedder(config, 2, System::nanoTime);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        LoadShedder.Permit first = shedder.admit(deadline);
+        LoadShedder.Permit second = shedder.admit(deadline);
+
+        shedder.setMaxConcurrent(1);
+        first.close();
+        assertEquals(0, shedder.getAvailablePermits());
+        second.close();
+        assertEquals(1, shedder.getAvailablePermits());
+
+        shedder.onPoolResized(3);
+        assertEquals(3, shedder.getMaxConcurrent());
+        assertEquals(3, shedder.getAvailablePermits());
+    }
+}
@@ -0,0 +1,129 @@
+package com.gateway.balance;
+
+import com.gateway.model.TransactionResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceInquiryCacheTest {
+
+    private static final String PAN = "4111111111111111";
+    private static final String VERIFICATION = "2912/123";
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger hostCalls = new AtomicInteger();
+
+    @Test
+    void concurrentInquiriesShareOneHostRequest() throws Exception {
+        BalanceInquiryCache cache = cache(5000, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<TransactionResponse>> answers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            answers.add(pool.submit(() -> cache.get(PAN, "10", VERIFICATION, () -> {
+                await(release);
+                return approved("120.50");
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        TransactionResponse first = answers.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<TransactionResponse> answer : answers) {
+            TransactionResponse response = answer.get(5, TimeUnit.SECONDS);
+            assertEquals(new BigDecimal("120.50"), response.getAvailableBalance());
+            if (answer != answers.get(0)) {
+                assertNotSame(first, response);
+            }
+        }
+        assertEquals(1, hostCalls.get());
+        pool.shutdown();
+    }
+
+    @Test
+    void expiresAfterTtlAndOnInvalidate() {
+        BalanceInquiryCache cache = cache(5000, 100);
+        cache.get(PAN, "10", VERIFICATION, () -> approved("10.00"));
+        cache.get(PAN, "10", VERIFICATION, () -> approved("10.00"));
+        cache.get(PAN, "20", VERIFICATION, () -> approved("99.00"));
+        assertEquals(2, hostCalls.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(5000));
+        cache.get(PAN, "10", VERIFICATION, () -> approved("10.00"));
+        assertEquals(3, hostCalls.get());
+
+        cache.invalidate(PAN);
+        cache.get(PAN, "10", VERIFICATION, () -> approved("5.00"));
+        cache.get(PAN, "20", VERIFICATION, () -> approved("94.00"));
+        assertEquals(5, hostCalls.get());
+    }
+
+    @Test
+    void declinesAreNotKept() {
+        BalanceInquiryCache cache = cache(5000, 100);
+        TransactionResponse declined = TransactionResponse.builder().responseCode("91").build();
+        cache.get(PAN, "10", VERIFICATION, () -> {
+            hostCalls.incrementAndGet();
+            return declined;
+        });
+        cache.get(PAN, "10", VERIFICATION, () -> approved("1.00"));
+        assertEquals(2, hostCalls.get());
+    }
+
+    @Test
+    void onlyCallersWithTheSameVerificationDataShareAnAnswer() {
+        BalanceInquiryCache cache = cache(5000, 100);
+        cache.get(PAN, "10", VERIFICATION, () -> approved("10.00"));
+        cache.get(PAN, "10", "2912/999", () -> approved("10.00"));
+        cache.get(PAN, "10", null, () -> approved("10.00"));
+        assertEquals(3, hostCalls.get());
+        cache.get(PAN, "10", VERIFICATION, () -> approved("10.00"));
+        assertEquals(3, hostCalls.get());
+    }
+
+    @Test
+    void sizeIsBounded() {
+        BalanceInquiryCache cache = cache(5000, 100);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("400000000000" + String.format("%04d", i), "00", VERIFICATION, () -> approved("1.00"));
+        }
+        assertTrue(cache.size() <= 100);
+    }
+
+    private BalanceInquiryCache cache(long ttl, int maxEntries) {
+        BalanceCacheConfig config = new BalanceCacheConfig();
+        config.setTtl(ttl);
+        config.setMaxEntries(maxEntries);
+        return new BalanceInquiryCache(config, now::get);
+    }
+
+    private TransactionResponse approved(String available) {
+        hostCalls.incrementAndGet();
+        return TransactionResponse.builder()
+                .responseCode("00")
+                .status("SUCCESS")
+                .availableBalance(new BigDecimal(available))
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.gateway.bin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinTableTest {
+
+    private final BinTable table = new BinTable.Builder()
+        .add("510000", "559999", "MASTERCARD", "USA", "30", "HOST_A")
+        .add("411111", "411111", "VISA", "GBR", "10", "HOST_B")
+        .add("40000000", "40999999", "VISA", "FRA", "20", "HOST_A")
+        .build();
+
+    @Test
+    void testFind_MatchesContainingRange() {
+        int index = table.find("4111111111111111");
+
+        assertTrue(index >= 0);
+        assertEquals("VISA", table.cardType(index));
+        assertEquals("GBR", table.issuerCountry(index));
+        assertEquals("10", table.accountType(index));
+        assertEquals("HOST_B", table.route(index));
+
+        assertEquals("FRA", table.issuerCountry(table.find("4099999999999999")));
+        assertEquals("MASTERCARD", table.cardType(table.find("5500000000000004")));
+    }
+
+    @Test
+    void testFind_MissesGapsAndBadInput() {
+        assertEquals(-1, table.find("4111120000000000"));
+        assertEquals(-1, table.find("3999999999999999"));
+        assertEquals(-1, table.find("5600000000000000"));
+        assertEquals(-1, table.find("41A1111111111111"));
+        assertEquals(-1, table.find(null));
+        assertEquals(-1, BinTable.empty().find("4111111111111111"));
+    }
+
+    @Test
+    void testBuild_RejectsOverlappingRanges() {
+        BinTable.Builder builder = new BinTable.Builder()
+            .add("400000", "499999", "VISA", "USA", "10", "HOST_A")
+            .add("411111", "411111", "VISA", "GBR", "10", "HOST_B");
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+}
@@ -0,0 +1,54 @@
+package com.gateway.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.PendingReversalStore;
+import com.gateway.util.Iso8583Util;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplicationCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void putCarriesOnlyTheReversalRecord() throws Exception {
+        ReplicationCodec codec = new ReplicationCodec(objectMapper);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(bytes), ReplicationCodec.Message.put("000000123456",
+                TransactionRequest.builder()
+                        .cardNumber("4111111111111111")
+                        .transactionType("DEBIT")
+                        .amount(new BigDecimal("42.10"))
+                        .terminalId("TERM0001")
+                        .cardExpiryDate("2912")
+                        .cvv("123")
+                        .build()));
+
+        ReplicationCodec.Message read = codec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("000000123456", read.rrn);
+        assertEquals(new BigDecimal("42.10"), read.request.getAmount());
+        assertEquals("TERM0001", read.request.getTerminalId());
+        assertNull(read.request.getCvv());
+        assertNull(read.request.getCardExpiryDate());
+    }
+
+    @Test
+    void refusesToStartWithoutAToken() {
+        ClusterConfig config = new ClusterConfig();
+        config.setEnabled(true);
+        config.setPort(0);
+        ClusterReplicator replicator = new ClusterReplicator(config, new PendingReversalStore(), new Iso8583Util(),
+                objectMapper);
+        assertThrows(IllegalStateException.class, replicator::start);
+    }
+}
@@ -0,0 +1,180 @@
+package com.gateway.history;
+
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TransactionHistory history;
+
+    @AfterEach
+    void tearDown() {
+        if (history != null) {
+            history.stop();
+        }
+    }
+
+    @Test
+    void filtersAndPagesNewestFirstAcrossHeapAndMappedSegments() throws Exception {
+        history = start(100, 1);
+        for (int i = 0; i < 1000; i++) {
+            String terminal = i % 2 == 0 ? "TERM0001" : "TERM0002";
+            String code = i % 10 == 0 ? "51" : "00";
+            history.record(request(terminal, i + 1), "DEBIT", response(i, code));
+        }
+        awaitRows(history, 1000);
+
+        List<HistoryRecord> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            HistoryPage page = history.query(HistoryQuery.builder().terminalId("TERM0001").limit(30).cursor(cursor).build());
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(500, all.size());
+        assertEquals(new BigDecimal("999.00"), all.get(0).getAmount());
+        assertEquals(new BigDecimal("1.00"), all.get(499).getAmount());
+        HistoryRecord first = all.get(0);
+        assertEquals("TERM0001", first.getTerminalId());
+        assertEquals("411111******1111", first.getMaskedCardNumber());
+        assertEquals("A00998", first.getAuthCode());
+        assertEquals(String.format("%012d", 998), first.getRrn());
+
+        HistoryPage declines = history.query(HistoryQuery.builder().responseCode("51")
+                .minAmount(new BigDecimal("100.00")).maxAmount(new BigDecimal("200.00")).build());
+        assertEquals(10, declines.getItems().size());
+        assertNull(declines.getNextCursor());
+        assertTrue(history.query(HistoryQuery.builder().merchantId("UNKNOWN").build()).getItems().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> history.query(HistoryQuery.builder().cursor("x").build()));
+    }
+
+    @Test
+    void restartServesRowsFromDisk() throws Exception {
+        history = start(64, 2);
+        for (int i = 0; i < 150; i++) {
+            history.record(request("TERM0001", 5), "CREDIT", response(i, "00"));
+        }
+        awaitRows(history, 150);
+        history.stop();
+
+        history = start(64, 2);
+        assertEquals(150, history.getRowCount());
+        HistoryPage page = history.query(HistoryQuery.builder().terminalId("TERM0001").limit(500).build());
+        assertEquals(150, page.getItems().size());
+        assertEquals("CREDIT", page.getItems().get(0).getTransactionType());
+        assertEquals("USD", page.getItems().get(0).getCurrencyCode());
+    }
+
+    @Test
+    void amountsFollowTheirCurrencyAndRowsCanBeFoundByRrn() throws Exception {
+        history = start(64, 2);
+        history.record(request("TERM0001", "USD", "12.34"), "DEBIT", response(1, "00"));
+        history.record(request("TERM0001", "JPY", "1500"), "DEBIT", response(2, "00"));
+        history.record(request("TERM0001", "BHD", "12.345"), "DEBIT", response(3, "00"));
+        assertTrue(history.awaitWritten(5000));
+
+        HistoryPage page = history.query(HistoryQuery.builder().rrn("000000000002").build());
+        assertEquals(1, page.getItems().size());
+        assertEquals(new BigDecimal("1500"), page.getItems().get(0).getAmount());
+        assertEquals(new BigDecimal("12.345"), history.query(HistoryQuery.builder().rrn("000000000003").build())
+                .getItems().get(0).getAmount());
+        // the bounds apply to each row in its own currency
+        HistoryPage between = history.query(HistoryQuery.builder()
+                .minAmount(new BigDecimal("12.34")).maxAmount(new BigDecimal("12.345")).build());
+        assertEquals(2, between.getItems().size());
+        assertTrue(history.query(HistoryQuery.builder().rrn("000000000009").build()).getItems().isEmpty());
+
+        List<HistoryRecord> scanned = Collections.synchronizedList(new ArrayList<>());
+        history.scan(Long.MIN_VALUE, Long.MAX_VALUE, scanned::add);
+        assertEquals(3, scanned.size());
+    }
+
+    @Test
+    void formatDeclinesKeepNoIdsAndExpiredHeapSegmentsArePurged() throws Exception {
+        history = start(10, 5, 0);
+        history.record(request("T\u0000<script>", 1), "DEBIT", response(1, "30"));
+        for (int i = 2; i <= 30; i++) {
+            history.record(request("TERM0001", i), "DEBIT", response(i, "00"));
+        }
+        assertTrue(history.awaitWritten(5000));
+
+        HistoryRecord declined = history.query(HistoryQuery.builder().rrn("000000000001").build()).getItems().get(0);
+        assertEquals("30", declined.getResponseCode());
+        assertNull(declined.getTerminalId());
+        assertNull(declined.getMerchantId());
+        assertTrue(history.query(HistoryQuery.builder().terminalId("T\u0000<script>").build()).getItems().isEmpty());
+
+        // three sealed segments, all still on the heap; the newest is never purged
+        Thread.sleep(5);
+        history.purgeExpired();
+        assertEquals(10, history.getRowCount());
+        assertEquals(10, history.query(HistoryQuery.builder().limit(100).build()).getItems().size());
+    }
+
+    private TransactionHistory start(int segmentRows, int memorySegments) throws Exception {
+        return start(segmentRows, memorySegments, new HistoryConfig().getRetentionDays());
+    }
+
+    private TransactionHistory start(int segmentRows, int memorySegments, int retentionDays) throws Exception {
+        HistoryConfig config = new HistoryConfig();
+        config.setRetentionDays(retentionDays);
+        config.setDirectory(tempDir.toString());
+        config.setSegmentRows(segmentRows);
+        config.setMemorySegments(memorySegments);
+        TransactionHistory started = new TransactionHistory(config, new GatewayMetrics(new SimpleMeterRegistry()));
+        started.start();
+        return started;
+    }
+
+    private static void awaitRows(TransactionHistory history, long rows) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (history.getRowCount() < rows && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(rows, history.getRowCount());
+    }
+
+    private static TransactionRequest request(String terminal, int amount) {
+        return request(terminal, "USD", Integer.toString(amount));
+    }
+
+    private static TransactionRequest request(String terminal, String currency, String amount) {
+        return TransactionRequest.builder()
+                .cardNumber("4111111111111111")
+                .amount(new BigDecimal(amount))
+                .currencyCode(currency)
+                .terminalId(terminal)
+                .merchantId("876543210123456")
+                .build();
+    }
+
+    private static TransactionResponse response(int sequence, String code) {
+        return TransactionResponse.builder()
+                .rrn(String.format("%012d", sequence))
+                .stan(String.format("%06d", sequence))
+                .authCode(String.format("A%05d", sequence))
+                .responseCode(code)
+                .status("00".equals(code) ? "SUCCESS" : "FAILED")
+                .build();
+    }
+}
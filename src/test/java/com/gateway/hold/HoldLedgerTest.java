@@ -0,0 +1,125 @@
+package com.gateway.hold;
+
+import com.gateway.model.TransactionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldLedgerTest {
+
+    private static final String PAN = "4111111111111111";
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void completionMatchesByRrnAuthCodeOrCardAndTerminal() {
+        HoldLedger ledger = ledger(0);
+        Hold hold = ledger.open(request("PRE_AUTHORIZATION", "200.00"), "000000000001", "000001", "AB1234");
+
+        TransactionRequest byRrn = request("COMPLETION", "50.00");
+        byRrn.setOriginalRRN("000000000001");
+        assertSame(hold, ledger.match(byRrn));
+
+        TransactionRequest byAuthCode = request("COMPLETION", "50.00");
+        byAuthCode.setOriginalAuthCode("AB1234");
+        byAuthCode.setTerminalId("TERM0002");
+        assertSame(hold, ledger.match(byAuthCode));
+
+        assertSame(hold, ledger.match(request("COMPLETION", "50.00")));
+
+        // another card quoting this RRN, or this card at another terminal, matches nothing
+        TransactionRequest otherCard = request("COMPLETION", "50.00");
+        otherCard.setCardNumber("5500000000000004");
+        otherCard.setOriginalRRN("000000000001");
+        assertNull(ledger.match(otherCard));
+        TransactionRequest otherTerminal = request("COMPLETION", "50.00");
+        otherTerminal.setTerminalId("TERM0002");
+        assertNull(ledger.match(otherTerminal));
+    }
+
+    @Test
+    void partialCompletionsDrawDownUntilTheHoldIsUsedUp() {
+        HoldLedger ledger = ledger(10);
+        Hold hold = ledger.open(request("PRE_AUTHORIZATION", "100.00"), "000000000001", "000001", "AB1234");
+
+        assertTrue(ledger.reserve(hold, new BigDecimal("60.00")));
+        // the first completion's amount is set aside while it is in flight
+        assertFalse(ledger.reserve(hold, new BigDecimal("55.00")));
+        ledger.complete(hold, new BigDecimal("60.00"));
+        assertEquals(6000, hold.getCompleted());
+
+        assertTrue(ledger.reserve(hold, new BigDecimal("30.00")));
+        ledger.release(hold, new BigDecimal("30.00"));
+        assertEquals(1, ledger.size());
+
+        // up to 10% over the authorised amount in total
+        assertTrue(ledger.reserve(hold, new BigDecimal("50.00")));
+        ledger.complete(hold, new BigDecimal("50.00"));
+        assertEquals(2, hold.getCompletions());
+        assertEquals(0, ledger.size());
+        assertNull(ledger.match(request("COMPLETION", "1.00")));
+        assertFalse(ledger.reserve(hold, new BigDecimal("1.00")));
+    }
+
+    @Test
+    void holdsAreKeptInTheMinorUnitOfTheirCurrency() {
+        HoldLedger ledger = ledger(0);
+        TransactionRequest yen = request("PRE_AUTHORIZATION", "1000");
+        yen.setCurrencyCode("JPY");
+        Hold hold = ledger.open(yen, "000000000001", "000001", "AB1234");
+        assertEquals(1000, hold.getAuthorised());
+
+        assertTrue(ledger.reserve(hold, new BigDecimal("400")));
+        ledger.complete(hold, new BigDecimal("400"));
+        assertEquals(400, hold.getCompleted());
+    }
+
+    @Test
+    void holdsExpireOnTheWheelAndReversalsCancelThem() {
+        HoldLedger ledger = ledger(0);
+        ledger.open(request("PRE_AUTHORIZATION", "10.00"), "000000000001", "000001", "AB0001");
+        now.addAndGet(30_000);
+        ledger.open(request("PRE_AUTHORIZATION", "20.00"), "000000000002", "000002", "AB0002");
+        ledger.open(request("PRE_AUTHORIZATION", "30.00"), "000000000003", "000003", "AB0003");
+
+        ledger.cancel("000000000003");
+        assertNull(ledger.get("000000000003"));
+
+        now.addAndGet(50_000);
+        ledger.expire();
+        assertNull(ledger.get("000000000001"));
+        assertEquals(1, ledger.size());
+
+        // far past a full round of the wheel
+        now.addAndGet(10_000_000);
+        ledger.expire();
+        assertEquals(0, ledger.size());
+    }
+
+    private HoldLedger ledger(int overagePercent) {
+        HoldConfig config = new HoldConfig();
+        config.setTtl(60_000);
+        config.setTick(1_000);
+        config.setWheelSize(16);
+        config.setOveragePercent(overagePercent);
+        return new HoldLedger(config, now::get);
+    }
+
+    private static TransactionRequest request(String type, String amount) {
+        return TransactionRequest.builder()
+            .cardNumber(PAN)
+            .transactionType(type)
+            .amount(new BigDecimal(amount))
+            .currencyCode("USD")
+            .terminalId("TERM0001")
+            .merchantId("MERCHANT0000001")
+            .build();
+    }
+}
@@ -0,0 +1,350 @@
+package com.gateway.ingress;
+
+import com.gateway.acquirer.AcquirerConfig;
+import com.gateway.admission.AdmissionConfig;
+import com.gateway.admission.LoadShedder;
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.service.PendingReversalStore;
+import com.gateway.service.TransactionService;
+import com.gateway.tcp.LengthHeader;
+import com.gateway.util.Iso8583Util;
+import com.gateway.util.TransactionIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IsoIngressServerTest {
+
+    private static final String MAC_KEY = "0123456789ABCDEFFEDCBA9876543210";
+
+    private final CustomPackager packager = packager();
+    private final LengthHeader lengthHeader = LengthHeader.of(2, "binary");
+    private final BlockingQueue<TransactionRequest> transactions = new ArrayBlockingQueue<>(8);
+    private final BlockingQueue<String> reversals = new ArrayBlockingQueue<>(8);
+    private final PendingReversalStore pendingReversals = new PendingReversalStore();
+    private IsoIngressServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void echoIsAnsweredLocally() throws Exception {
+        server = start(new IngressConfig(), new MacConfig());
+        try (Socket socket = connect()) {
+            send(socket, frame(echo("000001")));
+            ISOMsg answer = receive(socket);
+            assertEquals("0810", answer.getMTI());
+            assertEquals("000001", answer.getString(11));
+            assertEquals("00", answer.getString(39));
+        }
+        assertTrue(transactions.isEmpty());
+    }
+
+    @Test
+    void partialAndCoalescedFramesAreEachAnswered() throws Exception {
+        server = start(new IngressConfig(), new MacConfig());
+        try (Socket socket = connect()) {
+            byte[] first = frame(echo("000001"));
+            // header split across writes, then the body in a third
+            send(socket, slice(first, 0, 1));
+            Thread.sleep(50);
+            send(socket, slice(first, 1, 5));
+            Thread.sleep(50);
+            send(socket, slice(first, 5, first.length));
+            assertEquals("000001", receive(socket).getString(11));
+
+            // two frames in one write
+            byte[] second = frame(echo("000002"));
+            byte[] third = frame(echo("000003"));
+            byte[] both = new byte[second.length + third.length];
+            System.arraycopy(second, 0, both, 0, second.length);
+            System.arraycopy(third, 0, both, second.length, third.length);
+            send(socket, both);
+            String a = receive(socket).getString(11);
+            String b = receive(socket).getString(11);
+            assertTrue(a.equals("000002") && b.equals("000003") || a.equals("000003") && b.equals("000002"),
+                    a + " " + b);
+        }
+        assertEquals(3, server.getReceivedCount());
+    }
+
+    @Test
+    void oversizedFrameClosesTheConnection() throws Exception {
+        IngressConfig config = new IngressConfig();
+        config.setReadBufferSize(256);
+        server = start(config, new MacConfig());
+        try (Socket socket = connect()) {
+            byte[] header = new byte[2];
+            lengthHeader.encode(header, 1000);
+            send(socket, header);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        assertEquals(0, server.getReceivedCount());
+    }
+
+    @Test
+    void purchaseRoundTrip() throws Exception {
+        server = start(new IngressConfig(), new MacConfig());
+        try (Socket socket = connect()) {
+            send(socket, frame(purchase("000042")));
+            ISOMsg answer = receive(socket);
+            assertEquals("0210", answer.getMTI());
+            assertEquals("000042", answer.getString(11));
+            assertEquals("00", answer.getString(39));
+            assertEquals("A12345", answer.getString(38));
+            assertEquals("604709000042", answer.getString(37));
+            assertFalse(answer.hasField(35));
+        }
+        TransactionRequest transaction = transactions.poll(5, TimeUnit.SECONDS);
+        assertNotNull(transaction);
+        assertEquals("DEBIT", transaction.getTransactionType());
+        assertEquals("4111111111111111", transaction.getCardNumber());
+        assertEquals(0, new BigDecimal("10.00").compareTo(transaction.getAmount()));
+        assertEquals("USD", transaction.getCurrencyCode());
+    }
+
+    @Test
+    void reversalQuotesTheGatewayRrn() throws Exception {
+        pendingReversals.put("604709000042", original("TERM0001", "MERCHANT0000001"));
+        server = start(new IngressConfig(), new MacConfig());
+        try (Socket socket = connect()) {
+            ISOMsg reversal = purchase("000043");
+            reversal.setMTI("0400");
+            reversal.set(37, "604709000042");
+            send(socket, frame(reversal));
+            ISOMsg answer = receive(socket);
+            assertEquals("0410", answer.getMTI());
+            assertEquals("00", answer.getString(39));
+        }
+        assertEquals("604709000042/000042", reversals.poll(5, TimeUnit.SECONDS));
+        assertTrue(transactions.isEmpty());
+    }
+
+    @Test
+    void reversalFromAnotherTerminalOrMerchantIsRefused() throws Exception {
+        pendingReversals.put("604709000042", original("TERM0001", "MERCHANT0000001"));
+        pendingReversals.put("604709000043", original("TERM0002", "MERCHANT0000001"));
+        pendingReversals.put("604709000044", original("TERM0001", "MERCHANT0000002"));
+        server = start(new IngressConfig(), new MacConfig());
+        try (Socket socket = connect()) {
+            for (String rrn : new String[] {"604709000043", "604709000044", "604709000099"}) {
+                ISOMsg reversal = purchase("000050");
+                reversal.setMTI("0400");
+                reversal.set(37, rrn);
+                send(socket, frame(reversal));
+                ISOMsg answer = receive(socket);
+                assertEquals("0410", answer.getMTI());
+                assertEquals("25", answer.getString(39), rrn);
+            }
+        }
+        assertTrue(reversals.isEmpty());
+        assertNotNull(pendingReversals.get("604709000043"));
+    }
+
+    @Test
+    void connectionsAboveTheLimitAreRefused() throws Exception {
+        IngressConfig config = new IngressConfig();
+        config.setMaxConnections(1);
+        server = start(config, new MacConfig());
+        try (Socket first = connect()) {
+            send(first, frame(echo("000001")));
+            assertEquals("0810", receive(first).getMTI());
+            try (Socket second = connect()) {
+                assertEquals(-1, second.getInputStream().read());
+            }
+            // the first connection is unaffected
+            send(first, frame(echo("000002")));
+            assertEquals("000002", receive(first).getString(11));
+        }
+    }
+
+    @Test
+    void requestsMustCarryAValidMacWhenMacingIsOn() throws Exception {
+        MacConfig macConfig = new MacConfig();
+        macConfig.setEnabled(true);
+        macConfig.setKeyId("k1");
+        macConfig.setKey(MAC_KEY);
+        server = start(new IngressConfig(), macConfig);
+        MacService terminalMac = new MacService(macConfig, packager);
+        terminalMac.init();
+
+        try (Socket socket = connect()) {
+            send(socket, frame(purchase("000044")));
+            assertEquals("63", receive(socket).getString(39));
+            assertNull(transactions.poll(200, TimeUnit.MILLISECONDS));
+
+            send(socket, framed(terminalMac.pack(purchase("000045"))));
+            byte[] body = receiveBody(socket);
+            ISOMsg answer = packager.unpack(body);
+            assertEquals("00", answer.getString(39));
+            assertTrue(answer.hasField(64));
+            assertDoesNotThrow(() -> terminalMac.verify(body, answer));
+
+            // echo is excluded from MACing by default
+            send(socket, frame(echo("000046")));
+            assertEquals("00", receive(socket).getString(39));
+        }
+        // only the signed purchase reached the transaction service
+        assertNotNull(transactions.poll(5, TimeUnit.SECONDS));
+        assertTrue(transactions.isEmpty());
+    }
+
+    private IsoIngressServer start(IngressConfig config, MacConfig macConfig) throws IOException {
+        config.setEnabled(true);
+        config.setPort(0);
+        config.setWorkerThreads(2);
+        FieldMapper fieldMapper = new FieldMapper(new DefaultResourceLoader(), "classpath:iso8583/field-mapping.txt");
+        fieldMapper.init();
+        Iso8583Converter converter = new Iso8583Converter(packager, new Iso8583Util(), new TransactionIdGenerator(),
+                null, fieldMapper);
+        LoadShedder loadShedder = new LoadShedder(new AdmissionConfig(), new TcpConfig(), new AcquirerConfig());
+        MacService macService = new MacService(macConfig, packager);
+        macService.init();
+        IsoIngressServer started = new IsoIngressServer(config, packager, converter, new StubTransactionService(),
+                loadShedder, new GatewayMetrics(new SimpleMeterRegistry()), macService, pendingReversals);
+        started.start();
+        return started;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private ISOMsg echo(String stan) throws Exception {
+        ISOMsg msg = packager.createMessage("0800");
+        msg.set(7, "0307090501");
+        msg.set(11, stan);
+        msg.set(70, "301");
+        return msg;
+    }
+
+    private ISOMsg purchase(String stan) throws Exception {
+        ISOMsg msg = packager.createMessage("0200");
+        msg.set(2, "4111111111111111");
+        msg.set(3, "000000");
+        msg.set(4, "000000001000");
+        msg.set(11, stan);
+        msg.set(14, "2912");
+        msg.set(22, "051");
+        msg.set(35, "4111111111111111=29122010000000000000");
+        msg.set(41, "TERM0001");
+        msg.set(42, "MERCHANT0000001");
+        msg.set(49, "840");
+        return msg;
+    }
+
+    private static TransactionRequest original(String terminalId, String merchantId) {
+        return TransactionRequest.builder()
+                .cardNumber("4111111111111111")
+                .transactionType("DEBIT")
+                .amount(new BigDecimal("10.00"))
+                .currencyCode("USD")
+                .terminalId(terminalId)
+                .merchantId(merchantId)
+                .build();
+    }
+
+    private byte[] frame(ISOMsg msg) throws Exception {
+        return framed(packager.pack(msg));
+    }
+
+    private byte[] framed(byte[] body) {
+        byte[] framed = new byte[lengthHeader.size() + body.length];
+        lengthHeader.encode(framed, body.length);
+        System.arraycopy(body, 0, framed, lengthHeader.size(), body.length);
+        return framed;
+    }
+
+    private static void send(Socket socket, byte[] bytes) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(bytes);
+        out.flush();
+    }
+
+    private ISOMsg receive(Socket socket) throws Exception {
+        return packager.unpack(receiveBody(socket));
+    }
+
+    private byte[] receiveBody(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] header = new byte[lengthHeader.size()];
+        in.readFully(header);
+        byte[] body = new byte[lengthHeader.decode(header, 0)];
+        in.readFully(body);
+        return body;
+    }
+
+    private static byte[] slice(byte[] bytes, int from, int to) {
+        byte[] slice = new byte[to - from];
+        System.arraycopy(bytes, from, slice, 0, slice.length);
+        return slice;
+    }
+
+    private static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        return packager;
+    }
+
+    /**
+     * Approves every transaction and reversal without a host, recording what it was given.
+     */
+    private final class StubTransactionService extends TransactionService {
+
+        private StubTransactionService() {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public CompletableFuture<TransactionResponse> processTransactionAsync(TransactionRequest request,
+                                                                             long deadlineNanos, Executor executor) {
+            transactions.add(request);
+            return CompletableFuture.completedFuture(TransactionResponse.builder()
+                    .responseCode("00")
+                    .approved(true)
+                    .authCode("A12345")
+                    .rrn("604709000042")
+                    .build());
+        }
+
+        @Override
+        public TransactionResponse reverseTransaction(String originalRRN, String originalSTAN) {
+            reversals.add(originalRRN + "/" + originalSTAN);
+            return TransactionResponse.builder().responseCode("00").approved(true).build();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.gateway.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecorderServiceTest {
+
+    @Test
+    void dumpsLeaveOutTheProcessEnvironment(@TempDir Path dir) throws Exception {
+        JfrConfig config = new JfrConfig();
+        config.setDumpDirectory(dir.toString());
+        FlightRecorderService service = new FlightRecorderService(config, new DefaultResourceLoader());
+        service.start();
+        try {
+            assertTrue(service.isRecording());
+            Set<String> recorded = new HashSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(service.dump())) {
+                recorded.add(event.getEventType().getName());
+            }
+            // the default settings are still in force
+            assertTrue(recorded.contains("jdk.CPULoad") || recorded.contains("jdk.ThreadCPULoad")
+                    || recorded.contains("jdk.ActiveSetting"), recorded.toString());
+            assertFalse(recorded.contains("jdk.InitialEnvironmentVariable"));
+            assertFalse(recorded.contains("jdk.InitialSystemProperty"));
+            assertFalse(recorded.contains("jdk.JVMInformation"));
+        } finally {
+            service.stop();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.gateway.lifecycle;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.acquirer.AcquirerConfig;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.hold.HoldConfig;
+import com.gateway.hold.HoldLedger;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.service.PendingReversalStore;
+import com.gateway.stip.StandInAdviceQueue;
+import com.gateway.stip.StandInConfig;
+import com.gateway.util.Iso8583Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GatewayStateStoreTest {
+
+    private static final String STATE_KEY = "000102030405060708090A0B0C0D0E0F";
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CustomPackager packager;
+    private AcquirerRegistry acquirers;
+    private DrainConfig drainConfig;
+
+    @BeforeEach
+    void setUp() {
+        packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        FieldMapper fieldMapper = new FieldMapper(new DefaultResourceLoader(), "classpath:iso8583/field-mapping.txt");
+        fieldMapper.init();
+        // default profile only: routing never reaches the client, BIN table or metrics
+        acquirers = new AcquirerRegistry(new AcquirerConfig(), null, packager, fieldMapper, null, null, null, null, null);
+        acquirers.init();
+        drainConfig = new DrainConfig();
+        drainConfig.setStateFile(tempDir.resolve("state.jsonl").toString());
+    }
+
+    private static HoldLedger holds() {
+        return new HoldLedger(new HoldConfig(), new GatewayMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void testSaveThenRestore_RoundTripsReversalsQueuedMessagesAndHolds() throws Exception {
+        drainConfig.setStateKey(STATE_KEY);
+        PendingReversalStore reversals = new PendingReversalStore();
+        reversals.put("000000123456", TransactionRequest.builder()
+            .cardNumber("4111111111111111")
+            .transactionType("DEBIT")
+            .amount(new BigDecimal("42.10"))
+            .cardExpiryDate("2912")
+            .cvv("123")
+            .build());
+        HoldLedger holds = holds();
+        holds.open(TransactionRequest.builder()
+            .cardNumber("5500000000000004")
+            .transactionType("PRE_AUTHORIZATION")
+            .amount(new BigDecimal("150.00"))
+            .terminalId("TERM0001")
+            .build(), "000000654321", "000888", "AB1234");
+        StandInAdviceQueue queue = new StandInAdviceQueue(acquirers, new StandInConfig());
+        ISOMsg reversal = packager.createMessage("0400");
+        reversal.set(2, "4111111111111111");
+        reversal.set(4, "000000004210");
+        reversal.set(11, "000777");
+        reversal.set(35, "4111111111111111=29122010000000000000");
+        queue.enqueue(reversal);
+
+        new GatewayStateStore(drainConfig, reversals, queue, acquirers, holds, objectMapper).save();
+        Path stateFile = tempDir.resolve("state.jsonl");
+        String saved = new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8);
+        assertFalse(saved.contains("4111111111111111") || saved.contains("5500000000000004"));
+        assertFalse(saved.contains(ISOUtil.hexString("4111111111111111".getBytes(StandardCharsets.US_ASCII))));
+        assertFalse(saved.contains("\"cvv\":\"") || saved.contains("\"cardExpiryDate\":\""));
+        if (stateFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(stateFile)));
+        }
+
+        PendingReversalStore restoredReversals = new PendingReversalStore();
+        StandInAdviceQueue restoredQueue = new StandInAdviceQueue(acquirers, new StandInConfig());
+        HoldLedger restoredHolds = holds();
+        new GatewayStateStore(drainConfig, restoredReversals, restoredQueue, acquirers, restoredHolds, objectMapper)
+            .restore();
+
+        assertEquals(new BigDecimal("42.10"), restoredReversals.get("000000123456").getAmount());
+        assertEquals("4111111111111111", restoredReversals.get("000000123456").getCardNumber());
+        assertEquals(1, restoredQueue.size());
+        ISOMsg restored = restoredQueue.snapshot().get(0);
+        assertEquals("0400", restored.getMTI());
+        assertEquals("000777", restored.getString(11));
+        assertEquals("4111111111111111", restored.getString(2));
+        assertFalse(restored.hasField(35));
+        assertEquals(15000, restoredHolds.get("000000654321").getAuthorised());
+        assertEquals("AB1234", restoredHolds.get("000000654321").getAuthCode());
+        assertEquals("5500000000000004", restoredHolds.get("000000654321").getCardNumber());
+        assertFalse(Files.exists(stateFile));
+    }
+
+    @Test
+    void testSaveWithoutStateKey_RefusesToWriteState() {
+        PendingReversalStore reversals = new PendingReversalStore();
+        reversals.put("000000123456", TransactionRequest.builder()
+            .cardNumber("4111111111111111")
+            .transactionType("DEBIT")
+            .amount(new BigDecimal("42.10"))
+            .build());
+
+        GatewayStateStore store = new GatewayStateStore(drainConfig, reversals,
+            new StandInAdviceQueue(acquirers, new StandInConfig()), acquirers, holds(), objectMapper);
+        IOException refused = assertThrows(IOException.class, store::save);
+        assertTrue(refused.getMessage().contains("1 pending reversals"), refused.getMessage());
+        assertFalse(Files.exists(tempDir.resolve("state.jsonl")));
+    }
+
+    @Test
+    void testRestoredMessage_GoesToTheAcquirerItWasSavedFor() throws Exception {
+        drainConfig.setStateKey(STATE_KEY);
+        AcquirerRegistry saving = registryWithSecondAcquirer("MERCHANT0000001");
+        try {
+            StandInAdviceQueue queue = new StandInAdviceQueue(saving, new StandInConfig());
+            ISOMsg advice = packager.createMessage("0220");
+            advice.set(2, "4111111111111111");
+            advice.set(4, "000000001000");
+            advice.set(11, "000321");
+            advice.set(42, "MERCHANT0000001");
+            queue.restore(advice, saving.getProfile("second"));
+            new GatewayStateStore(drainConfig, new PendingReversalStore(), queue, saving, holds(), objectMapper)
+                .save();
+        } finally {
+            saving.shutdown();
+        }
+
+        // the merchant no longer routes to the second acquirer, which must still get the message
+        AcquirerRegistry restoring = registryWithSecondAcquirer("MERCHANT0000009");
+        try {
+            StandInAdviceQueue restoredQueue = new StandInAdviceQueue(restoring, new StandInConfig());
+            new GatewayStateStore(drainConfig, new PendingReversalStore(), restoredQueue, restoring, holds(),
+                objectMapper).restore();
+            ISOMsg restored = restoredQueue.snapshot().get(0);
+            assertEquals("000321", restored.getString(11));
+            assertEquals("4111111111111111", restored.getString(2));
+            assertEquals("second", restoredQueue.acquirerFor(restored).getName());
+        } finally {
+            restoring.shutdown();
+        }
+    }
+
+    private AcquirerRegistry registryWithSecondAcquirer(String merchant) {
+        AcquirerConfig.Profile second = new AcquirerConfig.Profile();
+        second.setName("second");
+        // same layout as the default profile, so it shares its packager
+        second.setPackager(packager.getPackagerConfig());
+        second.getTcp().setMinConnections(0);
+        second.getMerchants().add(merchant);
+        AcquirerConfig config = new AcquirerConfig();
+        config.getProfiles().add(second);
+        FieldMapper fieldMapper = new FieldMapper(new DefaultResourceLoader(), "classpath:iso8583/field-mapping.txt");
+        fieldMapper.init();
+        AcquirerRegistry registry = new AcquirerRegistry(config, null, packager, fieldMapper, null,
+            new DefaultResourceLoader(), new Iso8583Util(), new GatewayMetrics(new SimpleMeterRegistry()), null);
+        registry.init();
+        return registry;
+    }
+
+    @Test
+    void testSaveWithNothingPending_RemovesStaleFile() throws Exception {
+        Path stateFile = tempDir.resolve("state.jsonl");
+        Files.write(stateFile, new byte[0]);
+
+        new GatewayStateStore(drainConfig, new PendingReversalStore(),
+            new StandInAdviceQueue(acquirers, new StandInConfig()), acquirers, holds(), objectMapper).save();
+
+        assertFalse(Files.exists(stateFile));
+    }
+}
@@ -0,0 +1,100 @@
+package com.gateway.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadGeneratorTest {
+
+    private static final String REQUEST = "{\"cardNumber\":\"4111111111111111\",\"transactionType\":\"DEBIT\","
+        + "\"amount\":10.00,\"currencyCode\":\"USD\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testOpenLoop_StallIsChargedToQueuedRequests() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadTarget stallOnce = entry -> {
+            if (calls.incrementAndGet() == 10) {
+                Thread.sleep(200);
+            }
+            return "00";
+        };
+        LoadProfile profile = LoadProfile.builder()
+            .mode(LoadProfile.Mode.OPEN)
+            .rate(1000)
+            .concurrency(1)
+            .maxRequests(300)
+            .build();
+
+        LoadReport report = new LoadGenerator(stallOnce, templates(), profile).run();
+
+        assertEquals(300, report.getRequests());
+        assertEquals(300L, report.getResponseCodes().get("00"));
+        // ~200 requests were due during the stall; each waited for it. Only the stalled call itself
+        // took long to serve, well above anything a GC pause on the test machine would add
+        long queued = report.getResponseTime().getCountBetweenValues(TimeUnit.MILLISECONDS.toNanos(20), Long.MAX_VALUE);
+        long slowService = report.getServiceTime().getCountBetweenValues(TimeUnit.MILLISECONDS.toNanos(150), Long.MAX_VALUE);
+        assertTrue(queued >= 100, "queued=" + queued);
+        assertEquals(1, slowService);
+    }
+
+    @Test
+    void testErrorsCountedSeparately() throws Exception {
+        LoadTarget failing = entry -> {
+            throw new java.io.IOException("connection refused");
+        };
+        LoadProfile profile = LoadProfile.builder()
+            .mode(LoadProfile.Mode.CLOSED)
+            .concurrency(2)
+            .maxRequests(20)
+            .build();
+
+        LoadReport report = new LoadGenerator(failing, templates(), profile).run();
+
+        assertEquals(20, report.getErrors());
+        assertTrue(report.getResponseCodes().isEmpty());
+    }
+
+    @Test
+    void testReplay_PreservesCapturedSpacingAtSpeed() throws Exception {
+        RequestCorpus capture = RequestCorpus.parse(new StringReader(
+            "{\"timestamp\":1000200,\"request\":" + REQUEST + "}\n"
+                + "{\"timestamp\":1000000,\"request\":" + REQUEST + "}\n"
+                + "{\"timestamp\":1000100,\"request\":" + REQUEST + "}\n"), objectMapper);
+        LoadProfile profile = LoadProfile.builder()
+            .mode(LoadProfile.Mode.REPLAY)
+            .speed(2.0)
+            .build();
+        LoadGenerator generator = new LoadGenerator(entry -> "00", capture, profile);
+
+        assertTrue(capture.isTimed());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), capture.getSpanNanos());
+        assertEquals(0L, generator.intendedStart(0L, 0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), generator.intendedStart(0L, 1));
+        // second pass starts one mean gap after the last request
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(150), generator.intendedStart(0L, 3));
+    }
+
+    @Test
+    void testReplay_RejectsUntimedCorpus() throws Exception {
+        RequestCorpus corpus = templates();
+        LoadProfile profile = LoadProfile.builder().mode(LoadProfile.Mode.REPLAY).duration(Duration.ofSeconds(1)).build();
+
+        assertFalse(corpus.isTimed());
+        assertThrows(IllegalArgumentException.class, () -> new LoadGenerator(entry -> "00", corpus, profile));
+    }
+
+    private RequestCorpus templates() throws Exception {
+        return RequestCorpus.parse(new StringReader(REQUEST + "\n"), objectMapper);
+    }
+}
@@ -0,0 +1,135 @@
+package com.gateway.mac;
+
+import com.gateway.iso8583.CustomPackager;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MacServiceTest {
+
+    private static final String DOUBLE_KEY = "0123456789ABCDEFFEDCBA9876543210";
+
+    @Test
+    void matchesPublishedVectors() throws Exception {
+        // ISO/IEC 9797-1 annex example, padding method 1
+        byte[] text = "Now is the time for all ".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("70A30640CC76DD8B", mac(MacAlgorithm.ISO9797_ALG1, "0123456789ABCDEF", text));
+        assertEquals("A1C72E74EA3FA9B6", mac(MacAlgorithm.ISO9797_ALG3, DOUBLE_KEY, text));
+
+        // RFC 4493 examples 1-3, truncated to 64 bits
+        String aesKey = "2B7E151628AED2A6ABF7158809CF4F3C";
+        byte[] message = ISOUtil.hex2byte("6BC1BEE22E409F96E93D7E117393172A"
+                + "AE2D8A571E03AC9C9EB76FAC45AF8E5130C81C46A35CE411");
+        assertEquals("BB1D6929E9593728", mac(MacAlgorithm.AES_CMAC, aesKey, new byte[0]));
+        assertEquals("070A16B46B4D4144", mac(MacAlgorithm.AES_CMAC, aesKey, ISOUtil.trim(message, 16)));
+        assertEquals("DFA66747DE9AE630", mac(MacAlgorithm.AES_CMAC, aesKey, message));
+    }
+
+    @Test
+    void verifiesOwnMacAndRejectsTampering() throws Exception {
+        CustomPackager packager = packager();
+        MacService service = service(packager);
+
+        byte[] packed = service.pack(message(packager, false));
+        assertDoesNotThrow(() -> service.verify(packed, packager.unpack(packed)));
+
+        byte[] secondary = service.pack(message(packager, true));
+        ISOMsg unpacked = packager.unpack(secondary);
+        assertTrue(unpacked.hasField(128));
+        assertDoesNotThrow(() -> service.verify(secondary, unpacked));
+
+        // change the amount from 000000001000 to 000000009000
+        int amount = new String(packed, StandardCharsets.ISO_8859_1).indexOf("000000001000");
+        packed[amount + 8] = '9';
+        assertThrows(MacVerificationException.class, () -> service.verify(packed, packager.unpack(packed)));
+        assertEquals(1, service.getFailureCount());
+    }
+
+    @Test
+    void previousKeyStillVerifiesAfterRotation() throws Exception {
+        CustomPackager packager = packager();
+        MacService service = service(packager);
+        byte[] signedBeforeRotation = service.pack(message(packager, false));
+
+        service.rotate(MacKey.of("k2", MacAlgorithm.ISO9797_ALG3, 1, "00112233445566778899AABBCCDDEEFF"));
+        assertDoesNotThrow(() -> service.verify(signedBeforeRotation, packager.unpack(signedBeforeRotation)));
+
+        service.rotate(MacKey.of("k3", MacAlgorithm.ISO9797_ALG3, 1, DOUBLE_KEY.substring(16) + DOUBLE_KEY.substring(0, 16)));
+        assertThrows(MacVerificationException.class,
+                () -> service.verify(signedBeforeRotation, packager.unpack(signedBeforeRotation)));
+    }
+
+    @Test
+    void rotatesToTheKeyFileWhenItChanges(@TempDir Path dir) throws Exception {
+        CustomPackager packager = packager();
+        Path keyFile = dir.resolve("mac.properties");
+        Files.write(keyFile, ("key-id=k1\nkey=" + DOUBLE_KEY + "\n").getBytes(StandardCharsets.UTF_8));
+        MacConfig config = new MacConfig();
+        config.setEnabled(true);
+        config.setKeyFile(keyFile.toString());
+        MacService service = new MacService(config, packager);
+        service.init();
+        assertEquals("k1", service.getCurrentKey().getId());
+        byte[] signedBeforeRotation = service.pack(message(packager, false));
+
+        // a bad key is logged and ignored
+        Files.write(keyFile, "key-id=k2\nkey=XYZ\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(keyFile, FileTime.fromMillis(1_000_000L));
+        service.reloadKeyFile();
+        assertEquals("k1", service.getCurrentKey().getId());
+
+        Files.write(keyFile, "key-id=k2\nkey=00112233445566778899AABBCCDDEEFF\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(keyFile, FileTime.fromMillis(2_000_000L));
+        service.reloadKeyFile();
+        assertEquals("k2", service.getCurrentKey().getId());
+        assertEquals("k1", service.getPreviousKey().getId());
+        assertDoesNotThrow(() -> service.verify(signedBeforeRotation, packager.unpack(signedBeforeRotation)));
+    }
+
+    private static String mac(MacAlgorithm algorithm, String key, byte[] data) throws Exception {
+        byte[] out = new byte[MacEngine.MAC_LENGTH];
+        new MacEngine(MacKey.of("test", algorithm, 1, key)).compute(data, 0, data.length, out, 0);
+        return ISOUtil.hexString(out);
+    }
+
+    private static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        return packager;
+    }
+
+    private static MacService service(CustomPackager packager) {
+        MacConfig config = new MacConfig();
+        config.setEnabled(true);
+        config.setKeyId("k1");
+        config.setKey(DOUBLE_KEY);
+        MacService service = new MacService(config, packager);
+        service.init();
+        return service;
+    }
+
+    private static ISOMsg message(CustomPackager packager, boolean secondaryBitmap) throws Exception {
+        ISOMsg msg = packager.createMessage("0200");
+        msg.set(2, "4111111111111111");
+        msg.set(3, "000000");
+        msg.set(4, "000000001000");
+        msg.set(11, "000123");
+        msg.set(41, "TERM0001");
+        if (secondaryBitmap) {
+            msg.set(100, "12345678901");
+        }
+        return msg;
+    }
+}
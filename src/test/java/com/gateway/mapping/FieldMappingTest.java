@@ -0,0 +1,158 @@
+package com.gateway.mapping;
+
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FieldMappingTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 7, 9, 5, 1);
+
+    private final FieldMapping mapping = FieldMapper.load(new DefaultResourceLoader(),
+            "classpath:iso8583/field-mapping.txt");
+
+    @Test
+    void defaultRequestMapping() {
+        TransactionRequest request = TransactionRequest.builder()
+                .cardNumber("4111111111111111")
+                .transactionType("DEBIT")
+                .amount(new BigDecimal("125.40"))
+                .currencyCode("840")
+                .terminalId("TERM0001")
+                .merchantId("MERCHANT0000001")
+                .merchantName("Coffee")
+                .posEntryMode("05")
+                .cardExpiryDate("2812")
+                .invoiceNumber("000123")
+                .description("")
+                .build();
+        ISOMsg msg = new ISOMsg();
+
+        mapping.applyRequest(new MappingContext(request, NOW, "000042", "604709000042", "000000"), msg);
+
+        assertEquals("4111111111111111", msg.getString(2));
+        assertEquals("000000", msg.getString(3));
+        assertEquals("000000012540", msg.getString(4));
+        assertEquals("0307090501", msg.getString(7));
+        assertEquals("000042", msg.getString(11));
+        assertEquals("090501", msg.getString(12));
+        assertEquals("0307", msg.getString(13));
+        assertEquals("00", msg.getString(25));
+        assertEquals("4111111111111111=2812", msg.getString(35));
+        assertEquals(String.format("%-40s", "Coffee"), msg.getString(43));
+        assertEquals("INV000123", msg.getString(60));
+        assertFalse(msg.hasField(18));
+        assertFalse(msg.hasField(62));
+        assertFalse(msg.hasField(102));
+
+        TransactionRequest balance = TransactionRequest.builder().cardNumber("4111111111111111").build();
+        ISOMsg unnamed = new ISOMsg();
+        mapping.applyRequest(new MappingContext(balance, NOW, "000043", "604709000043", "310000"), unnamed);
+        assertEquals(String.format("%-40s", ""), unnamed.getString(43));
+
+        ISOMsg reversal = new ISOMsg();
+        mapping.applyReversal(new MappingContext(balance, NOW, "000042", "604709000042", "310000"), reversal);
+        assertEquals("000000000000", reversal.getString(4));
+        assertEquals("0000420307090501", reversal.getString(90));
+        assertFalse(reversal.hasField(35));
+    }
+
+    @Test
+    void defaultResponseMapping() {
+        ISOMsg msg = new ISOMsg();
+        msg.set(2, "4111111111111111");
+        msg.set(4, "000000012540");
+        msg.set(37, "604709000042");
+
+        TransactionResponse response = new TransactionResponse();
+        response.setCurrencyCode("USD");
+        mapping.applyResponse(msg, response);
+
+        assertEquals("411111******1111", response.getMaskedCardNumber());
+        assertNull(response.getCardNumber());
+        assertEquals(new BigDecimal("125.40"), response.getAmount());
+        assertEquals("604709000042", response.getRrn());
+        assertEquals("USD", response.getCurrencyCode());
+    }
+
+    @Test
+    void defaultIngressMapping() {
+        ISOMsg msg = new ISOMsg();
+        msg.set(2, "4111111111111111");
+        msg.set(4, "000000012540");
+        msg.set(22, "051");
+        msg.set(41, "TERM0001");
+        msg.set(43, String.format("%-40s", "Coffee"));
+        msg.set(49, "840");
+
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType("DEBIT");
+        mapping.applyIngress(msg, request);
+
+        assertEquals("4111111111111111", request.getCardNumber());
+        assertEquals(new BigDecimal("125.40"), request.getAmount());
+        assertEquals("TERM0001", request.getTerminalId());
+        assertEquals("05", request.getPosEntryMode());
+        assertEquals("Coffee", request.getMerchantName());
+        assertEquals("USD", request.getCurrencyCode());
+        assertEquals("DEBIT", request.getTransactionType());
+        assertNull(request.getMerchantId());
+    }
+
+    @Test
+    void amountsUseTheExponentOfTheirCurrency() {
+        TransactionRequest yen = TransactionRequest.builder().amount(new BigDecimal("1000")).currencyCode("JPY").build();
+        ISOMsg request = new ISOMsg();
+        mapping.applyRequest(new MappingContext(yen, NOW, "000042", "604709000042", "000000"), request);
+        assertEquals("000000001000", request.getString(4));
+
+        TransactionRequest dinar = TransactionRequest.builder().amount(new BigDecimal("1.005")).currencyCode("048")
+                .build();
+        ISOMsg reversal = new ISOMsg();
+        mapping.applyReversal(new MappingContext(dinar, NOW, "000042", "604709000042", "000000"), reversal);
+        assertEquals("000000001005", reversal.getString(4));
+
+        ISOMsg answer = new ISOMsg();
+        answer.set(4, "000000001000");
+        answer.set(49, "392");
+        TransactionResponse response = new TransactionResponse();
+        mapping.applyResponse(answer, response);
+        assertEquals(new BigDecimal("1000"), response.getAmount());
+
+        TransactionRequest ingress = new TransactionRequest();
+        mapping.applyIngress(answer, ingress);
+        assertEquals(new BigDecimal("1000"), ingress.getAmount());
+        assertEquals("JPY", ingress.getCurrencyCode());
+    }
+
+    @Test
+    void definitionErrorsNameTheLine() {
+        assertError("request 2 cardNumbr", "Line 1", "no property cardNumbr");
+        assertError("request 43 amount pad:40", "Line 1", "pad:40 takes String");
+        assertError("request 2 cardNumber\n\nrequest 2 toAccount", "Line 3", "mapped twice");
+        assertError("response 4 amount", "Line 1", "amount is BigDecimal");
+        assertError("request 64 '00'", "Line 1", "cannot be mapped");
+        assertError("request 7 $clock", "Line 1", "unknown message value");
+        assertError("ingress 2 maskedCardNumber", "Line 1", "TransactionRequest has no settable property");
+    }
+
+    private static void assertError(String definition, String... fragments) {
+        IOException e = assertThrows(IOException.class, () -> FieldMapping.parse(new StringReader(definition)));
+        for (String fragment : fragments) {
+            assertTrue(e.getMessage().contains(fragment), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.gateway.pipeline;
+
+import com.gateway.metrics.GatewayMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedPipelineTest {
+
+    @Test
+    void ringIsFifoAndRefusesWhenFull() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(99));
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        Integer[] batch = new Integer[8];
+        assertEquals(4, ring.drainTo(batch, 8));
+        assertEquals(4, batch[3]);
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void concurrentProducersAndConsumersSeeEachElementOnce() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        RingBuffer<Integer> ring = new RingBuffer<>(64);
+        BitSet seen = new BitSet(producers * perProducer);
+        ExecutorService pool = Executors.newFixedThreadPool(producers + 2);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        ConcurrentLinkedQueue<Integer> duplicates = new ConcurrentLinkedQueue<>();
+        for (int c = 0; c < 2; c++) {
+            pool.submit(() -> {
+                while (done.getCount() > 0) {
+                    Integer value = ring.poll();
+                    if (value == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    synchronized (seen) {
+                        if (seen.get(value)) {
+                            duplicates.add(value);
+                        }
+                        seen.set(value);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdownNow();
+        assertTrue(duplicates.isEmpty());
+        assertEquals(producers * perProducer, seen.cardinality());
+    }
+
+    @Test
+    void finishedItemsSkipTheHostStage() throws Exception {
+        PipelineConfig config = new PipelineConfig();
+        config.setRingSize(16);
+        int items = 1_000;
+        CountDownLatch completed = new CountDownLatch(items);
+        ConcurrentLinkedQueue<Integer> hosted = new ConcurrentLinkedQueue<>();
+        StagedPipeline<int[]> pipeline = new StagedPipeline<int[]>(config, 3,
+                item -> item[1] = item[0] % 2,
+                item -> item[1] == 1,
+                item -> hosted.add(item[0]),
+                item -> completed.countDown(),
+                (item, error) -> { }).start(new GatewayMetrics(new SimpleMeterRegistry()));
+
+        for (int i = 0; i < items; i++) {
+            int[] item = {i, 0};
+            while (!pipeline.submit(item)) {
+                Thread.sleep(1);
+            }
+        }
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        pipeline.stop(1000);
+        assertEquals(items / 2, hosted.size());
+        assertTrue(hosted.stream().allMatch(i -> i % 2 == 0));
+        assertFalse(pipeline.submit(new int[] {0, 0}));
+    }
+}
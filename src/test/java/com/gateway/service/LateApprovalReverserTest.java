@@ -0,0 +1,165 @@
+package com.gateway.service;
+
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.simulator.HostSimulator;
+import com.gateway.simulator.SimulatorScript;
+import com.gateway.stip.StandInAdviceQueue;
+import com.gateway.stip.StandInConfig;
+import com.gateway.stip.StandInProcessor;
+import com.gateway.tcp.IsoTcpClient;
+import com.gateway.util.Iso8583Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LateApprovalReverserTest {
+
+    private final CustomPackager packager = packager();
+    private final StandInConfig standInConfig = new StandInConfig();
+    private final StandInAdviceQueue storeAndForward = new StandInAdviceQueue(null, standInConfig);
+    private final LateApprovalReverser reverser =
+            new LateApprovalReverser(null, new Iso8583Converter(null, null, null, null, null), storeAndForward);
+
+    @Test
+    void standInApprovalKeepsTheLateHostApprovalAndDropsTheAdvice() throws Exception {
+        standInConfig.setEnabled(true);
+        StandInProcessor standInProcessor = new StandInProcessor(standInConfig, storeAndForward);
+        try (HostSimulator host = host()) {
+            CountDownLatch reconciled = new CountDownLatch(1);
+            IsoTcpClient client = client(host, reconciled);
+            TransactionRequest request = TransactionRequest.builder()
+                    .transactionType("DEBIT").amount(new BigDecimal("10.00")).currencyCode("USD").build();
+
+            // the read times out, the stand-in approves and queues an advice, then the host approves too
+            ISOMsg response = client.sendRequest(message("000001"),
+                    isoMsg -> standInProcessor.authorize(request, isoMsg));
+            assertEquals("00", response.getString(39));
+            assertTrue(response.getString(38).startsWith("S"));
+            assertEquals("0220", storeAndForward.snapshot().get(0).getMTI());
+
+            assertTrue(reconciled.await(5, TimeUnit.SECONDS));
+            assertEquals(0, storeAndForward.size());
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void lateApprovalOfAFailedExchangeIsReversed() throws Exception {
+        try (HostSimulator host = host()) {
+            CountDownLatch reconciled = new CountDownLatch(1);
+            IsoTcpClient client = client(host, reconciled);
+
+            assertThrows(SocketTimeoutException.class, () -> client.sendRequest(message("000002")));
+
+            assertTrue(reconciled.await(5, TimeUnit.SECONDS));
+            ISOMsg reversal = storeAndForward.snapshot().get(0);
+            assertEquals("0400", reversal.getMTI());
+            assertEquals("000000000002", reversal.getString(37));
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void standInDeclineIsReversedLikeNoAnswer() throws Exception {
+        ISOMsg original = message("000003");
+        ISOMsg declined = (ISOMsg) original.clone();
+        declined.setResponseMTI();
+        declined.set(39, "91");
+
+        reverser.onLateApproval("default", packager, original, declined, true);
+        assertEquals("0400", storeAndForward.snapshot().get(0).getMTI());
+    }
+
+    @Test
+    void onlyMoneyMovingRequestsNeedReversal() throws Exception {
+        assertTrue(LateApprovalReverser.needsReversal(message("000004")));
+        ISOMsg preAuth = message("000005");
+        preAuth.setMTI("0100");
+        assertTrue(LateApprovalReverser.needsReversal(preAuth));
+
+        ISOMsg inquiry = message("000006");
+        inquiry.set(3, "310000");
+        assertFalse(LateApprovalReverser.needsReversal(inquiry));
+        ISOMsg advice = message("000007");
+        advice.setMTI("0220");
+        assertFalse(LateApprovalReverser.needsReversal(advice));
+    }
+
+    @Test
+    void reversalCarriesTheOriginalKeysAndNoCardholderData() throws Exception {
+        ISOMsg original = message("000008");
+        original.set(12, "143015");
+        original.set(13, "1019");
+        original.set(35, "4111111111111111=29122010000000000000");
+
+        ISOMsg reversal = new Iso8583Converter(null, null, null, null, null).createReversalMessage(original, packager);
+        assertEquals("0400", reversal.getMTI());
+        for (int field : new int[] {2, 3, 4, 11, 12, 13, 37, 41, 49}) {
+            assertEquals(original.getString(field), reversal.getString(field), "field " + field);
+        }
+        assertEquals("0000081019143015", reversal.getString(90));
+        assertFalse(reversal.hasField(35));
+        assertFalse(reversal.hasField(39));
+    }
+
+    private HostSimulator host() throws Exception {
+        return new HostSimulator(packager.getPackager(),
+                SimulatorScript.parse(new StringReader("mti=0200 code=00 latency=fixed:300")), 0).start();
+    }
+
+    private IsoTcpClient client(HostSimulator host, CountDownLatch reconciled) {
+        TcpConfig config = new TcpConfig();
+        config.setHost("localhost");
+        config.setPort(host.getPort());
+        config.setReadTimeout(100);
+        config.setRetryAttempts(1);
+        config.setMinConnections(1);
+        config.setMaxConnections(1);
+        config.setLateResponseWindow(2000);
+        MacService macService = new MacService(new MacConfig(), packager);
+        macService.init();
+        IsoTcpClient client = new IsoTcpClient(config, packager, new Iso8583Util(),
+                new GatewayMetrics(new SimpleMeterRegistry()), macService);
+        client.init();
+        client.setLateApprovalListener((request, response, standIn, trusted) -> {
+            reverser.onLateApproval("default", packager, request, standIn, trusted);
+            reconciled.countDown();
+        });
+        return client;
+    }
+
+    private ISOMsg message(String stan) throws Exception {
+        ISOMsg msg = packager.createMessage("0200");
+        msg.set(2, "4111111111111111");
+        msg.set(3, "000000");
+        msg.set(4, "000000001000");
+        msg.set(11, stan);
+        msg.set(37, "000000" + stan);
+        msg.set(41, "TERM0001");
+        msg.set(49, "840");
+        return msg;
+    }
+
+    private static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        return packager;
+    }
+}
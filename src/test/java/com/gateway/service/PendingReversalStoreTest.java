@@ -0,0 +1,52 @@
+package com.gateway.service;
+
+import com.gateway.model.TransactionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingReversalStoreTest {
+
+    @Test
+    void repeatedRrnDoesNotReplaceTheTransactionHoldingIt() {
+        PendingReversalStore store = new PendingReversalStore();
+        List<String> replicated = new ArrayList<>();
+        store.setReplicationListener(new PendingReversalStore.ReplicationListener() {
+            @Override
+            public void onPut(String rrn, TransactionRequest request) {
+                replicated.add(rrn + "/" + request.getTerminalId());
+            }
+
+            @Override
+            public void onRemove(String rrn) {
+                replicated.add(rrn + "/removed");
+            }
+        });
+
+        assertTrue(store.put("604709000042", request("TERM0001")));
+        // the STANs wrapped within the hour and another transaction was given the same RRN
+        assertFalse(store.put("604709000042", request("TERM0002")));
+
+        assertEquals("TERM0001", store.get("604709000042").getTerminalId());
+        assertEquals(List.of("604709000042/TERM0001"), replicated);
+
+        store.remove("604709000042");
+        assertTrue(store.put("604709000042", request("TERM0002")));
+    }
+
+    private static TransactionRequest request(String terminalId) {
+        return TransactionRequest.builder()
+                .cardNumber("4111111111111111")
+                .transactionType("DEBIT")
+                .amount(new BigDecimal("10.00"))
+                .currencyCode("USD")
+                .terminalId(terminalId)
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.gateway.service;
+
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.enums.ResponseCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RequestValidatorTest {
+
+    private RequestValidator validator;
+    private TransactionRequest request;
+
+    @BeforeEach
+    void setUp() {
+        validator = new RequestValidator(Clock.fixed(Instant.parse("2026-10-19T12:00:00Z"), ZoneOffset.UTC));
+        request = TransactionRequest.builder()
+            .cardNumber("4111111111111111")
+            .transactionType("DEBIT")
+            .amount(new BigDecimal("100.00"))
+            .currencyCode("USD")
+            .terminalId("12345678")
+            .merchantId("876543210123456")
+            .merchantName("Test Merchant")
+            .posEntryMode("05")
+            .merchantCategoryCode("5411")
+            .cardExpiryDate("2812")
+            .build();
+    }
+
+    @Test
+    void testValidRequest_Accepted() {
+        assertNull(validator.validate(request));
+    }
+
+    @Test
+    void testBalanceInquiryWithoutAmount_Accepted() {
+        request.setTransactionType("BALANCE");
+        request.setAmount(null);
+        assertNull(validator.validate(request));
+        
+        request.setTransactionType("DEBIT");
+        assertEquals(ResponseCode.INVALID_AMOUNT, validator.validate(request));
+    }
+
+    @Test
+    void testLuhnFailure_InvalidCard() {
+        request.setCardNumber("4111111111111112");
+        assertEquals(ResponseCode.INVALID_CARD, validator.validate(request));
+    }
+
+    @Test
+    void testNonDigitPan_InvalidCard() {
+        request.setCardNumber("41111111111A1111");
+        assertEquals(ResponseCode.INVALID_CARD, validator.validate(request));
+    }
+
+    @Test
+    void testBrandLengthMismatch_InvalidCard() {
+        // Luhn-valid, but Amex numbers are always 15 digits
+        assertEquals(ResponseCode.INVALID_CARD, validator.checkPan("3400000000000000"));
+        assertNull(validator.checkPan("340000000000009"));
+    }
+
+    @Test
+    void testExpiry() {
+        assertNull(validator.checkExpiry("2610"));
+        assertEquals(ResponseCode.EXPIRED_CARD, validator.checkExpiry("2609"));
+        assertEquals(ResponseCode.FORMAT_ERROR, validator.checkExpiry("2613"));
+        assertEquals(ResponseCode.FORMAT_ERROR, validator.checkExpiry("26A0"));
+    }
+
+    @Test
+    void testMalformedMcc_FormatError() {
+        request.setMerchantCategoryCode("541");
+        assertEquals(ResponseCode.FORMAT_ERROR, validator.validate(request));
+    }
+
+    @Test
+    void testAmountWithMoreDecimalsThanTheCurrency_InvalidAmount() {
+        request.setAmount(new BigDecimal("10.005"));
+        assertEquals(ResponseCode.INVALID_AMOUNT, validator.validate(request));
+        request.setAmount(new BigDecimal("10.050"));
+        assertNull(validator.validate(request));
+
+        request.setCurrencyCode("JPY");
+        request.setAmount(new BigDecimal("1500"));
+        assertNull(validator.validate(request));
+        assertEquals(ResponseCode.INVALID_AMOUNT, validator.checkAmount(new BigDecimal("10.5"), "JPY"));
+        assertNull(validator.checkAmount(new BigDecimal("10.005"), "BHD"));
+    }
+
+    @Test
+    void testUnknownTransactionType_InvalidTransaction() {
+        // refunds go to the host as CREDIT
+        request.setTransactionType("REFUND");
+        assertEquals(ResponseCode.INVALID_TRANSACTION, validator.validate(request));
+        request.setTransactionType("debit");
+        assertEquals(ResponseCode.INVALID_TRANSACTION, validator.validate(request));
+    }
+}
@@ -0,0 +1,168 @@
+package com.gateway.settlement;
+
+import com.gateway.history.HistoryConfig;
+import com.gateway.history.TransactionHistory;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.model.TransactionRequest;
+import com.gateway.model.TransactionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SettlementEngineTest {
+
+    private final SettlementEngine engine = new SettlementEngine(new SettlementConfig());
+
+    @Test
+    void totalsPerKeyWithReversalsNetted() {
+        engine.record(request("DEBIT", "T0000001", "USD", "42.10"), false);
+        engine.record(request("DEBIT", "T0000001", "USD", "10.00"), false);
+        engine.record(request("DEBIT", "T0000001", "USD", "10.00"), true);
+        engine.record(request("CREDIT", "T0000001", "USD", "5.00"), false);
+        engine.record(request("DEBIT", "T0000001", "EUR", "1.00"), false);
+        engine.record(request("BALANCE", "T0000001", "USD", "1.00"), false);
+
+        SettlementReport report = engine.cutover();
+
+        assertEquals(1, report.getBatchNumber());
+        assertEquals(5, report.getEntryCount());
+        SettlementTotals.Snapshot usd = report.getTotals().get(new SettlementKey("T0000001", "M00000000000001", "USD"));
+        assertEquals(2, usd.getCount(SettlementEntry.Kind.DEBIT));
+        assertEquals(5210, usd.getAmount(SettlementEntry.Kind.DEBIT));
+        assertEquals(1, usd.getCount(SettlementEntry.Kind.DEBIT_REVERSAL));
+        assertEquals(500, usd.getAmount(SettlementEntry.Kind.CREDIT));
+        assertEquals(5210 - 1000 - 500, usd.getNetAmount());
+        assertEquals(2, engine.getCurrentBatchNumber());
+        assertTrue(engine.currentTotals().isEmpty());
+    }
+
+    @Test
+    void amountsUseTheMinorUnitOfTheirCurrency() {
+        engine.record(request("DEBIT", "T0000001", "JPY", "1500"), false);
+        engine.record(request("DEBIT", "T0000001", "BHD", "12.345"), false);
+        engine.record(request("DEBIT", "T0000001", "EUR", "12.34"), false);
+
+        SettlementReport report = engine.cutover();
+
+        assertEquals(1500, report.getTotals().get(new SettlementKey("T0000001", "M00000000000001", "JPY"))
+                .getAmount(SettlementEntry.Kind.DEBIT));
+        assertEquals(12345, report.getTotals().get(new SettlementKey("T0000001", "M00000000000001", "BHD"))
+                .getAmount(SettlementEntry.Kind.DEBIT));
+        assertEquals(1234, report.getTotals().get(new SettlementKey("T0000001", "M00000000000001", "EUR"))
+                .getAmount(SettlementEntry.Kind.DEBIT));
+    }
+
+    @Test
+    void closedBatchIsVerifiedAgainstTheTransactionHistory(@TempDir Path tempDir) throws Exception {
+        HistoryConfig historyConfig = new HistoryConfig();
+        historyConfig.setDirectory(tempDir.toString());
+        TransactionHistory history = new TransactionHistory(historyConfig, new GatewayMetrics(new SimpleMeterRegistry()));
+        history.start();
+        try {
+            SettlementEngine verifying = new SettlementEngine(new SettlementConfig(), history);
+            TransactionRequest debit = request("DEBIT", "T0000001", "USD", "42.10");
+            complete(verifying, history, debit, "000000000001", "00");
+            complete(verifying, history, request("CREDIT", "T0000001", "JPY", "1500"), "000000000002", "00");
+            complete(verifying, history, request("DEBIT", "T0000001", "USD", "9.99"), "000000000003", "51");
+            Thread.sleep(5);
+
+            SettlementReport first = verifying.cutover();
+            assertNull(first.getVerified());
+            SettlementReport verified = verifying.getLastVerification().get(10, TimeUnit.SECONDS);
+            assertTrue(verified.getVerified());
+            assertTrue(verified.getMismatches().isEmpty());
+            assertTrue(verifying.getLastReport().getVerified());
+
+            // reversal of a debit settled in the previous batch, plus a debit the history never saw
+            verifying.record(debit, true);
+            history.record(debit, "REVERSAL", response("000000000001", "00"));
+            verifying.record(request("DEBIT", "T0000002", "USD", "1.00"), false);
+            Thread.sleep(5);
+
+            verifying.cutover();
+            SettlementReport second = verifying.getLastVerification().get(10, TimeUnit.SECONDS);
+            assertFalse(second.getVerified());
+            assertEquals(1, second.getMismatches().size());
+            assertEquals(new SettlementKey("T0000002", "M00000000000001", "USD"), second.getMismatches().get(0));
+            assertEquals(1, second.getTotals().get(new SettlementKey("T0000001", "M00000000000001", "USD"))
+                    .getCount(SettlementEntry.Kind.DEBIT_REVERSAL));
+        } finally {
+            history.stop();
+        }
+    }
+
+    @Test
+    void cutoverUnderLoadLosesNothing() throws Exception {
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String terminal = "T000000" + t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    engine.record(request("DEBIT", terminal, "USD", "1.00"), false);
+                }
+            }));
+        }
+
+        List<SettlementReport> reports = new ArrayList<>();
+        while (!writers.stream().allMatch(Future::isDone)) {
+            reports.add(engine.cutover());
+        }
+        reports.add(engine.cutover());
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        long count = 0;
+        long amount = 0;
+        for (SettlementReport report : reports) {
+            for (SettlementTotals.Snapshot snapshot : report.getTotals().values()) {
+                count += snapshot.getCount(SettlementEntry.Kind.DEBIT);
+                amount += snapshot.getAmount(SettlementEntry.Kind.DEBIT);
+            }
+        }
+        assertEquals((long) threads * perThread, count);
+        assertEquals(100L * threads * perThread, amount);
+    }
+
+    /**
+     * What TransactionService does: approvals are settled, then every outcome goes to the history.
+     */
+    private static void complete(SettlementEngine engine, TransactionHistory history, TransactionRequest request,
+                                 String rrn, String code) {
+        TransactionResponse response = response(rrn, code);
+        if (response.isSuccess()) {
+            engine.record(request, false);
+        }
+        history.record(request, request.getTransactionType(), response);
+    }
+
+    private static TransactionResponse response(String rrn, String code) {
+        return TransactionResponse.builder().rrn(rrn).responseCode(code).build();
+    }
+
+    private static TransactionRequest request(String type, String terminal, String currency, String amount) {
+        return TransactionRequest.builder()
+                .transactionType(type)
+                .terminalId(terminal)
+                .merchantId("M00000000000001")
+                .currencyCode(currency)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.gateway.simulator;
+
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SimulatorScriptTest {
+
+    private static final String SCRIPT = String.join("\n",
+        "# declines above 1000.00, slow host for one BIN",
+        "mti=0200 amount=100000-999999999 code=51",
+        "mti=0200 pan=411111 latency=fixed:25 code=00",
+        "mti=0400 timeout=1.0");
+
+    @Test
+    void testFirstMatchingRuleWins() throws Exception {
+        SimulatorScript script = SimulatorScript.parse(new StringReader(SCRIPT));
+
+        assertEquals("51", script.match(message("0200", "4111111111111111", "000000500000")).getResponseCode());
+        SimulatorRule slow = script.match(message("0200", "4111111111111111", "000000001000"));
+        assertEquals("00", slow.getResponseCode());
+        assertEquals(25_000_000L, slow.getLatency().sampleNanos(new Random()));
+    }
+
+    @Test
+    void testActionsAndFallback() throws Exception {
+        SimulatorScript script = SimulatorScript.parse(new StringReader(SCRIPT));
+
+        assertEquals(SimulatorRule.Action.TIMEOUT,
+            script.match(message("0400", "5500000000000004", "000000001000")).chooseAction(new Random()));
+        SimulatorRule fallback = script.match(message("0100", "5500000000000004", "000000001000"));
+        assertEquals("00", fallback.getResponseCode());
+        assertEquals(SimulatorRule.Action.RESPOND, fallback.chooseAction(new Random()));
+    }
+
+    @Test
+    void testMalformedLine_ReportsLineNumber() {
+        IOException e = assertThrows(IOException.class,
+            () -> SimulatorScript.parse(new StringReader("mti=0200\nlatency=gamma:3")));
+        assertEquals(0, e.getMessage().indexOf("Line 2"));
+    }
+
+    private static ISOMsg message(String mti, String pan, String amount) throws ISOException {
+        ISOMsg msg = new ISOMsg(mti);
+        msg.set(2, pan);
+        msg.set(4, amount);
+        return msg;
+    }
+}
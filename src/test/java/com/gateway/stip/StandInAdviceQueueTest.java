@@ -0,0 +1,142 @@
+package com.gateway.stip;
+
+import com.gateway.acquirer.AcquirerConfig;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.simulator.HostSimulator;
+import com.gateway.simulator.SimulatorScript;
+import com.gateway.tcp.IsoTcpClient;
+import com.gateway.util.Iso8583Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.StringReader;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StandInAdviceQueueTest {
+
+    private final CustomPackager packager = packager();
+    private IsoTcpClient client;
+
+    @AfterEach
+    void stop() {
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void reversalWaitsBehindItsAdviceUntilTheAdviceIsWithdrawn() throws Exception {
+        StandInAdviceQueue queue = new StandInAdviceQueue(null, new StandInConfig());
+        queue.enqueue(message("0220", "000001"));
+        queue.enqueue(message("0220", "000002"));
+
+        assertTrue(queue.enqueueBehindAdvice("000000000001", message("0400", "000001")));
+        assertFalse(queue.enqueueBehindAdvice("000000000009", message("0400", "000009")));
+        assertEquals("0220/000001 0220/000002 0400/000001", describe(queue.snapshot()));
+
+        assertTrue(queue.withdrawAdvice("000000000001"));
+        assertFalse(queue.withdrawAdvice("000000000001"));
+        // the reversal behind the withdrawn advice stays queued
+        assertEquals("0220/000002 0400/000001", describe(queue.snapshot()));
+    }
+
+    @Test
+    void refusedAdviceIsRepeatedAndHoldsBackWhatIsBehindIt() throws Exception {
+        try (HostSimulator host = new HostSimulator(packager.getPackager(),
+                SimulatorScript.parse(new StringReader("mti=0220 code=05")), 0).start()) {
+            StandInAdviceQueue queue = new StandInAdviceQueue(registry(host.getPort()), new StandInConfig());
+            queue.enqueue(message("0220", "000001"));
+            queue.enqueue(message("0400", "000001"));
+
+            queue.forward();
+            assertEquals(1, host.getReceivedCount());
+            assertEquals("0221/000001 0400/000001", describe(queue.snapshot()));
+
+            // the repeat is not matched by the 0220 rule, so the host approves it this time
+            queue.forward();
+            assertEquals(3, host.getReceivedCount());
+            assertEquals(0, queue.size());
+        }
+    }
+
+    @Test
+    void everythingStaysQueuedInOrderWhileTheHostIsUnreachable() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        StandInAdviceQueue queue = new StandInAdviceQueue(registry(closedPort), new StandInConfig());
+        queue.enqueue(message("0120", "000001"));
+        queue.enqueue(message("0220", "000002"));
+        queue.enqueue(message("0400", "000002"));
+
+        queue.forward();
+        queue.forward();
+        assertEquals("0121/000001 0220/000002 0400/000002", describe(queue.snapshot()));
+    }
+
+    private AcquirerRegistry registry(int port) {
+        TcpConfig config = new TcpConfig();
+        config.setHost("localhost");
+        config.setPort(port);
+        config.setConnectionTimeout(1000);
+        config.setReadTimeout(2000);
+        config.setRetryAttempts(1);
+        config.setMinConnections(0);
+        config.setMaxConnections(1);
+        MacService macService = new MacService(new MacConfig(), packager);
+        macService.init();
+        client = new IsoTcpClient(config, packager, new Iso8583Util(), new GatewayMetrics(new SimpleMeterRegistry()),
+                macService);
+        client.init();
+        FieldMapper fieldMapper = new FieldMapper(new DefaultResourceLoader(), "classpath:iso8583/field-mapping.txt");
+        fieldMapper.init();
+        // default profile only
+        AcquirerRegistry registry = new AcquirerRegistry(new AcquirerConfig(), client, packager, fieldMapper, null,
+                null, null, null, null);
+        registry.init();
+        return registry;
+    }
+
+    private ISOMsg message(String mti, String stan) throws Exception {
+        ISOMsg msg = packager.createMessage(mti);
+        msg.set(2, "4111111111111111");
+        msg.set(3, "000000");
+        msg.set(4, "000000001000");
+        msg.set(11, stan);
+        msg.set(37, "000000" + stan);
+        msg.set(41, "TERM0001");
+        return msg;
+    }
+
+    private static String describe(List<ISOMsg> messages) {
+        StringBuilder sb = new StringBuilder();
+        for (ISOMsg msg : messages) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(msg.getString(0)).append('/').append(msg.getString(11));
+        }
+        return sb.toString();
+    }
+
+    private static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        return packager;
+    }
+}
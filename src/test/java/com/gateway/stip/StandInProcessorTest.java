@@ -0,0 +1,169 @@
+package com.gateway.stip;
+
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.model.TransactionRequest;
+import com.gateway.util.Iso8583Util;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StandInProcessorTest {
+
+    private static final String PAN = "4111111111111111";
+
+    private final CustomPackager packager = packager();
+    private final StandInAdviceQueue adviceQueue = new StandInAdviceQueue(null, new StandInConfig());
+
+    @Test
+    void merchantFloorLimitBeatsBinLimitBeatsDefault() throws Exception {
+        StandInConfig config = config();
+        config.setDefaultFloorLimit(new BigDecimal("10.00"));
+        config.getBinFloorLimits().put("411111", new BigDecimal("20.00"));
+        config.getMerchantFloorLimits().put("MERCHANT0000001", new BigDecimal("30.00"));
+        StandInProcessor processor = new StandInProcessor(config, adviceQueue);
+
+        assertEquals("00", authorize(processor, "DEBIT", "30.00", "MERCHANT0000001", PAN).getString(39));
+        assertEquals("91", authorize(processor, "DEBIT", "30.01", "MERCHANT0000001", PAN).getString(39));
+        assertEquals("00", authorize(processor, "DEBIT", "20.00", "MERCHANT0000002", PAN).getString(39));
+        assertEquals("91", authorize(processor, "DEBIT", "20.01", "MERCHANT0000002", PAN).getString(39));
+        assertEquals("00", authorize(processor, "DEBIT", "10.00", "MERCHANT0000002", "5500000000000004")
+                .getString(39));
+        assertEquals("91", authorize(processor, "DEBIT", "10.01", "MERCHANT0000002", "5500000000000004")
+                .getString(39));
+        // refunds and the like are never stood in for
+        assertEquals("91", authorize(processor, "CREDIT", "1.00", "MERCHANT0000001", PAN).getString(39));
+    }
+
+    @Test
+    void onlyRequestsInTheLimitsCurrencyAreStoodIn() throws Exception {
+        StandInConfig config = config();
+        config.setDefaultFloorLimit(new BigDecimal("50.00"));
+        StandInProcessor processor = new StandInProcessor(config, adviceQueue);
+        assertEquals("00", authorize(processor, "DEBIT", "10.00", "USD").getString(39));
+        assertEquals("00", authorize(processor, "DEBIT", "10.00", "840").getString(39));
+        // 50 JPY is well under a 50.00 limit in number, but the limit is in dollars
+        assertEquals("91", authorize(processor, "DEBIT", "50", "JPY").getString(39));
+        assertEquals("91", authorize(processor, "DEBIT", "10.00", null).getString(39));
+
+        config.setCurrency("JPY");
+        config.setDefaultFloorLimit(new BigDecimal("5000"));
+        config.setCardCumulativeLimit(new BigDecimal("8000"));
+        StandInProcessor yen = new StandInProcessor(config, adviceQueue);
+        assertEquals("00", authorize(yen, "DEBIT", "5000", "JPY").getString(39));
+        assertEquals("91", authorize(yen, "DEBIT", "5001", "JPY").getString(39));
+        assertEquals("91", authorize(yen, "DEBIT", "3001", "392").getString(39));
+        assertEquals("00", authorize(yen, "DEBIT", "3000", "392").getString(39));
+        assertEquals("91", authorize(yen, "DEBIT", "10.00", "USD").getString(39));
+
+        config.setCurrency("XX1");
+        assertThrows(IllegalStateException.class, () -> new StandInProcessor(config, adviceQueue));
+    }
+
+    @Test
+    void cardExposureCapsCountAndAmountUnderContention() throws Exception {
+        StandInConfig config = config();
+        config.setDefaultFloorLimit(new BigDecimal("50.00"));
+        config.setCardCumulativeLimit(new BigDecimal("200.00"));
+        config.setCardMaxCount(100);
+        StandInProcessor processor = new StandInProcessor(config, adviceQueue);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<ISOMsg>> attempts = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                attempts.add(() -> authorize(processor, "DEBIT", "10.00", "MERCHANT0000001", PAN));
+            }
+            int approved = 0;
+            for (Future<ISOMsg> answer : executor.invokeAll(attempts)) {
+                if ("00".equals(answer.get().getString(39))) {
+                    approved++;
+                }
+            }
+            assertEquals(20, approved);
+            assertEquals(20, adviceQueue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        config.setCardMaxCount(2);
+        StandInProcessor counted = new StandInProcessor(config, new StandInAdviceQueue(null, new StandInConfig()));
+        assertEquals("00", authorize(counted, "DEBIT", "1.00", "MERCHANT0000001", PAN).getString(39));
+        assertEquals("00", authorize(counted, "DEBIT", "1.00", "MERCHANT0000001", PAN).getString(39));
+        assertEquals("91", authorize(counted, "DEBIT", "1.00", "MERCHANT0000001", PAN).getString(39));
+
+        counted.resetExposure();
+        assertEquals("00", authorize(counted, "DEBIT", "1.00", "MERCHANT0000001", PAN).getString(39));
+    }
+
+    @Test
+    void approvalCarriesALocalAuthCodeAndQueuesAnAdvice() throws Exception {
+        StandInProcessor processor = new StandInProcessor(config(), adviceQueue);
+
+        ISOMsg purchase = authorize(processor, "DEBIT", "5.00", "MERCHANT0000001", PAN);
+        assertEquals("0210", purchase.getMTI());
+        assertTrue(purchase.getString(38).matches("S\\d{5}"), purchase.getString(38));
+        ISOMsg preAuth = authorize(processor, "PRE_AUTHORIZATION", "5.00", "MERCHANT0000001", PAN);
+        assertEquals("0110", preAuth.getMTI());
+        assertFalse(purchase.getString(38).equals(preAuth.getString(38)));
+
+        List<ISOMsg> advices = adviceQueue.snapshot();
+        assertEquals(2, advices.size());
+        assertEquals("0220", advices.get(0).getMTI());
+        assertEquals(purchase.getString(38), advices.get(0).getString(38));
+        assertEquals("00", advices.get(0).getString(39));
+        assertEquals("0120", advices.get(1).getMTI());
+    }
+
+    private ISOMsg authorize(StandInProcessor processor, String type, String amount, String currency)
+            throws Exception {
+        return authorize(processor, type, amount, currency, "MERCHANT0000001", PAN);
+    }
+
+    private ISOMsg authorize(StandInProcessor processor, String type, String amount, String merchantId, String pan)
+            throws Exception {
+        return authorize(processor, type, amount, "USD", merchantId, pan);
+    }
+
+    private ISOMsg authorize(StandInProcessor processor, String type, String amount, String currency,
+                             String merchantId, String pan) throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .transactionType(type)
+                .amount(new BigDecimal(amount))
+                .currencyCode(currency)
+                .merchantId(merchantId)
+                .cardNumber(pan)
+                .build();
+        ISOMsg iso = packager.createMessage("PRE_AUTHORIZATION".equals(type) ? "0100" : "0200");
+        iso.set(2, pan);
+        iso.set(4, Long.toString(Iso8583Util.toMinorUnits(new BigDecimal(amount), currency)));
+        iso.set(11, "000001");
+        iso.set(37, "000000000001");
+        iso.set(42, merchantId);
+        return processor.authorize(request, iso);
+    }
+
+    private static StandInConfig config() {
+        StandInConfig config = new StandInConfig();
+        config.setEnabled(true);
+        return config;
+    }
+
+    private static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        return packager;
+    }
+}
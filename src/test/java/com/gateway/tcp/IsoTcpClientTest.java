@@ -0,0 +1,309 @@
+package com.gateway.tcp;
+
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.simulator.HostSimulator;
+import com.gateway.simulator.SimulatorScript;
+import com.gateway.util.Iso8583Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IsoTcpClientTest {
+
+    private static final String KEY_STORE_PASSWORD = "changeit";
+
+    private final CustomPackager packager = packager();
+
+    @Test
+    void lateAnswerReturnsTheSocketToThePool() throws Exception {
+        try (HostSimulator host = host("mti=0200 code=00 latency=fixed:300")) {
+            IsoTcpClient client = client(host, 2000);
+            BlockingQueue<ISOMsg> late = new ArrayBlockingQueue<>(1);
+            client.setLateApprovalListener((request, response, standIn, trusted) -> {
+                if (standIn == null && trusted) {
+                    late.add(response);
+                }
+            });
+
+            assertThrows(SocketTimeoutException.class, () -> client.sendRequest(request("000001")));
+            assertEquals(1, client.getLateResponsesPending());
+            ISOMsg response = late.poll(5, TimeUnit.SECONDS);
+            assertNotNull(response);
+            assertEquals("000001", response.getString(11));
+
+            awaitNoneWaiting(client, 1);
+            assertEquals(1, client.getIdleConnections());
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void socketIsClosedWhenTheWindowExpires() throws Exception {
+        try (HostSimulator host = host("mti=0200 code=00 latency=fixed:2000")) {
+            IsoTcpClient client = client(host, 200);
+            AtomicInteger late = new AtomicInteger();
+            client.setLateApprovalListener((request, response, standIn, trusted) -> late.incrementAndGet());
+
+            assertThrows(SocketTimeoutException.class, () -> client.sendRequest(request("000002")));
+            awaitNoneWaiting(client, 0);
+            assertEquals(0, client.getIdleConnections());
+            assertEquals(0, late.get());
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void lateApprovalIsReportedWithTheStandInAnswer() throws Exception {
+        try (HostSimulator host = host("mti=0200 code=00 latency=fixed:300")) {
+            IsoTcpClient client = client(host, 2000);
+            BlockingQueue<ISOMsg> late = new ArrayBlockingQueue<>(1);
+            ISOMsg[] reported = new ISOMsg[1];
+            client.setLateApprovalListener((request, response, standIn, trusted) -> {
+                reported[0] = standIn;
+                late.add(response);
+            });
+
+            ISOMsg local = client.sendRequest(request("000003"), isoMsg -> {
+                ISOMsg response = (ISOMsg) isoMsg.clone();
+                response.setResponseMTI();
+                response.set(38, "S00001");
+                response.set(39, "00");
+                return response;
+            });
+            assertEquals("S00001", local.getString(38));
+
+            assertNotNull(late.poll(5, TimeUnit.SECONDS));
+            assertSame(local, reported[0]);
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void noStandInOnceTheRequestMayHaveReachedTheHostUnwatched() throws Exception {
+        try (HostSimulator host = host("mti=0200 code=00 latency=fixed:300")) {
+            // late responses off: the timed-out request cannot be reconciled
+            IsoTcpClient client = client(host, 0);
+            AtomicInteger stoodIn = new AtomicInteger();
+            assertThrows(SocketTimeoutException.class, () -> client.sendRequest(request("000004"), isoMsg -> {
+                stoodIn.incrementAndGet();
+                return isoMsg;
+            }));
+            assertEquals(0, stoodIn.get());
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void poolGrowsConcurrentlyOverTlsAndResumesTheFirstSession(@TempDir Path tempDir) throws Exception {
+        Path keyStore = selfSignedKeyStore(tempDir);
+        try (TlsHost host = new TlsHost(keyStore, 300)) {
+            TcpConfig config = new TcpConfig();
+            config.setHost("localhost");
+            config.setPort(host.getPort());
+            config.setReadTimeout(5000);
+            config.setRetryAttempts(1);
+            config.setMinConnections(1);
+            config.setMaxConnections(4);
+            config.setTlsEnabled(true);
+            config.setTlsTrustStore(keyStore.toString());
+            config.setTlsTrustStorePassword(KEY_STORE_PASSWORD);
+            // TLS 1.3 tickets are single use; 1.2 session ids let every new socket resume the same one
+            config.setTlsProtocols("TLSv1.2");
+            MacService macService = new MacService(new MacConfig(), packager);
+            macService.init();
+            IsoTcpClient client = new IsoTcpClient(config, packager, new Iso8583Util(),
+                    new GatewayMetrics(new SimpleMeterRegistry()), macService);
+            client.init();
+            ExecutorService callers = Executors.newFixedThreadPool(4);
+            try {
+                TlsConnector tls = client.getTlsConnector();
+                assertEquals(1, tls.getFullHandshakes());
+
+                // all four are in flight at once, so three sockets are opened while the first is busy
+                List<Future<ISOMsg>> answers = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    String stan = String.format("%06d", i + 10);
+                    answers.add(callers.submit(() -> client.sendRequest(request(stan))));
+                }
+                for (Future<ISOMsg> answer : answers) {
+                    assertEquals("00", answer.get(10, TimeUnit.SECONDS).getString(39));
+                }
+                assertEquals(4, client.getTotalConnections());
+                assertEquals(1, tls.getFullHandshakes());
+                assertEquals(3, tls.getResumedHandshakes());
+            } finally {
+                callers.shutdownNow();
+                client.shutdown();
+            }
+        }
+    }
+
+    private static void awaitNoneWaiting(IsoTcpClient client, int totalConnections) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((client.getLateResponsesPending() > 0 || client.getTotalConnections() != totalConnections)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getLateResponsesPending());
+        assertEquals(totalConnections, client.getTotalConnections());
+    }
+
+    private HostSimulator host(String script) throws Exception {
+        return new HostSimulator(packager.getPackager(), SimulatorScript.parse(new StringReader(script)), 0).start();
+    }
+
+    private IsoTcpClient client(HostSimulator host, int lateResponseWindow) {
+        TcpConfig config = new TcpConfig();
+        config.setHost("localhost");
+        config.setPort(host.getPort());
+        config.setReadTimeout(100);
+        config.setRetryAttempts(1);
+        config.setMinConnections(1);
+        config.setMaxConnections(1);
+        config.setLateResponseWindow(lateResponseWindow);
+        MacService macService = new MacService(new MacConfig(), packager);
+        macService.init();
+        IsoTcpClient client = new IsoTcpClient(config, packager, new Iso8583Util(),
+                new GatewayMetrics(new SimpleMeterRegistry()), macService);
+        client.init();
+        return client;
+    }
+
+    private ISOMsg request(String stan) throws Exception {
+        ISOMsg msg = packager.createMessage("0200");
+        msg.set(2, "4111111111111111");
+        msg.set(3, "000000");
+        msg.set(4, "000000001000");
+        msg.set(11, stan);
+        msg.set(37, "000000" + stan);
+        msg.set(41, "TERM0001");
+        return msg;
+    }
+
+    private static Path selfSignedKeyStore(Path directory) throws Exception {
+        Path store = directory.resolve("localhost.p12");
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "2",
+                "-storetype", "PKCS12", "-keystore", store.toString(),
+                "-storepass", KEY_STORE_PASSWORD, "-keypass", KEY_STORE_PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        assertEquals(0, process.waitFor());
+        return store;
+    }
+
+    private static CustomPackager packager() {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), "iso87", null);
+        packager.init();
+        return packager;
+    }
+
+    /**
+     * TLS host on the loopback interface with 2-byte framing that approves every request after a
+     * fixed delay; one thread per connection.
+     */
+    private final class TlsHost implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final int latencyMillis;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        private TlsHost(Path keyStore, int latencyMillis) throws Exception {
+            char[] password = KEY_STORE_PASSWORD.toCharArray();
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(keyStore)) {
+                store.load(in, password);
+            }
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(store, password);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers.getKeyManagers(), null, null);
+            this.serverSocket = context.getServerSocketFactory().createServerSocket(0, 16,
+                    InetAddress.getLoopbackAddress());
+            this.latencyMillis = latencyMillis;
+            executor.execute(this::acceptLoop);
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    executor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (Socket s = socket;
+                 DataInputStream in = new DataInputStream(s.getInputStream());
+                 DataOutputStream out = new DataOutputStream(s.getOutputStream())) {
+                while (true) {
+                    byte[] request = new byte[in.readUnsignedShort()];
+                    in.readFully(request);
+                    ISOMsg msg = packager.unpack(request);
+                    msg.setResponseMTI();
+                    msg.set(39, "00");
+                    byte[] response = packager.pack(msg);
+                    Thread.sleep(latencyMillis);
+                    out.writeShort(response.length);
+                    out.write(response);
+                    out.flush();
+                }
+            } catch (Exception e) {
+                // connection closed by the client
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+    }
+}
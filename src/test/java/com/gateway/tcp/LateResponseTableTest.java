@@ -0,0 +1,55 @@
+package com.gateway.tcp;
+
+import org.jpos.iso.ISOMsg;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LateResponseTableTest {
+
+    @Test
+    void retriesShareOneEntryUntilTheLastSocketLeaves() throws Exception {
+        LateResponseTable table = new LateResponseTable();
+        ISOMsg request = message("0200", "000123", "000000000123");
+
+        LateResponseTable.Exchange first = table.park(request, 10);
+        LateResponseTable.Exchange retry = table.park(request, 10);
+        assertSame(first, retry);
+        assertEquals(2, table.size());
+
+        ISOMsg response = message("0210", "000123", "000000000123");
+        assertSame(first, table.match(response));
+        assertNull(table.match(message("0210", "000124", "000000000124")));
+
+        // the first late answer settles the exchange; the retry's answer finds it settled
+        assertTrue(table.match(response).settled.compareAndSet(false, true));
+        table.release(first);
+        assertFalse(table.match(response).settled.compareAndSet(false, true));
+        table.release(retry);
+        assertNull(table.match(response));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void boundedByWaitingSocketsAndSettledByARetry() throws Exception {
+        LateResponseTable table = new LateResponseTable();
+        LateResponseTable.Exchange waiting = table.park(message("0200", "000001", "000000000001"), 1);
+        assertNull(table.park(message("0200", "000002", "000000000002"), 1));
+
+        table.settle(message("0200", "000001", "000000000001"));
+        assertTrue(waiting.settled.get());
+        table.release(waiting);
+        assertEquals(0, table.size());
+    }
+
+    private static ISOMsg message(String mti, String stan, String rrn) throws Exception {
+        ISOMsg msg = new ISOMsg(mti);
+        msg.set(11, stan);
+        msg.set(37, rrn);
+        return msg;
+    }
+}
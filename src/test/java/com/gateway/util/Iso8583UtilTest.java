@@ -0,0 +1,61 @@
+package com.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Iso8583UtilTest {
+
+    @Test
+    void nodesDrawDisjointStans() {
+        Set<String> issued = new HashSet<>();
+        for (int node = 0; node < 3; node++) {
+            Iso8583Util util = new Iso8583Util(node, 3);
+            for (int i = 0; i < 10000; i++) {
+                String stan = util.generateStan();
+                assertEquals(6, stan.length());
+                assertEquals(node, util.ownerOf(stan));
+                assertTrue(issued.add(stan), "STAN " + stan + " issued twice");
+            }
+        }
+    }
+
+    @Test
+    void rrnEndsWithStanAndCarriesOwner() {
+        Iso8583Util util = new Iso8583Util(1, 4);
+        String stan = util.generateStan();
+        String rrn = util.generateRRN(stan);
+
+        assertEquals(12, rrn.length());
+        assertTrue(rrn.endsWith(stan));
+        assertEquals(1, util.ownerOf(rrn));
+        assertEquals(-1, util.ownerOf("ABC"));
+    }
+
+    @Test
+    void amountsUseTheMinorUnitOfTheirCurrency() {
+        Iso8583Util util = new Iso8583Util();
+        assertEquals("000000001000", util.formatAmount(new BigDecimal("1000"), "JPY"));
+        assertEquals("000000100000", util.formatAmount(new BigDecimal("1000"), "USD"));
+        assertEquals("000000001005", util.formatAmount(new BigDecimal("1.005"), "048"));
+        assertThrows(ArithmeticException.class, () -> util.formatAmount(new BigDecimal("10.005"), "840"));
+
+        assertEquals(new BigDecimal("1000"), util.parseAmount("000000001000", "392"));
+        assertEquals(new BigDecimal("10.00"), util.parseAmount("000000001000", "USD"));
+        assertEquals(1005, Iso8583Util.toMinorUnits(new BigDecimal("1.005"), "BHD"));
+        // unknown codes fall back to two decimals
+        assertEquals(2, Iso8583Util.minorUnitDigits("999"));
+        assertEquals(2, Iso8583Util.minorUnitDigits("XYZ"));
+    }
+
+    @Test
+    void rejectsNodeOutsideCluster() {
+        assertThrows(IllegalArgumentException.class, () -> new Iso8583Util(2, 2));
+    }
+}
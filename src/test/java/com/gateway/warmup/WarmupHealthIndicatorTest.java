@@ -0,0 +1,149 @@
+package com.gateway.warmup;
+
+import com.gateway.acquirer.AcquirerConfig;
+import com.gateway.acquirer.AcquirerProfile;
+import com.gateway.acquirer.AcquirerRegistry;
+import com.gateway.bin.BinConfig;
+import com.gateway.bin.BinRangeRepository;
+import com.gateway.config.TcpConfig;
+import com.gateway.iso8583.CustomPackager;
+import com.gateway.mac.MacConfig;
+import com.gateway.mac.MacService;
+import com.gateway.mapping.FieldMapper;
+import com.gateway.metrics.GatewayMetrics;
+import com.gateway.service.Iso8583Converter;
+import com.gateway.service.RequestValidator;
+import com.gateway.simulator.HostSimulator;
+import com.gateway.simulator.SimulatorScript;
+import com.gateway.tcp.IsoTcpClient;
+import com.gateway.util.Iso8583Util;
+import com.gateway.util.TransactionIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.StringReader;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarmupHealthIndicatorTest {
+
+    private static final String PACKAGER_CONFIG = "classpath:iso8583/iso-packager.xml";
+
+    private final GatewayMetrics metrics = new GatewayMetrics(new SimpleMeterRegistry());
+    private IsoTcpClient client;
+    private AcquirerRegistry registry;
+    private WarmupService warmupService;
+
+    @AfterEach
+    void stop() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void poolLeftShortByTheTimeoutKeepsReadinessOutOfService() throws Exception {
+        CustomPackager packager = packager("iso87", PACKAGER_CONFIG);
+        WarmupHealthIndicator indicator = indicator(packager, closedPort(), new AcquirerConfig(), 0);
+
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+        assertEquals("READY", indicator.health().getDetails().get("phase").toString());
+        assertEquals(true, indicator.health().getDetails().get("timedOut"));
+
+        // the pool counts as full once it meets the minimum again
+        client.resizePool(0, 1);
+        warmupService.refillPool();
+        assertEquals(Status.UP, indicator.health().getStatus());
+    }
+
+    @Test
+    void packagerFallbackIsDown() throws Exception {
+        CustomPackager packager = packager("custom", "classpath:iso8583/missing-packager.xml");
+        assertTrue(packager.getFallbackReason() != null);
+        WarmupHealthIndicator indicator = indicator(packager, closedPort(), new AcquirerConfig(), 0);
+
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+    }
+
+    @Test
+    void everyAcquirerIsConvertedForAndHasItsPoolFilled() throws Exception {
+        CustomPackager packager = packager("iso87", PACKAGER_CONFIG);
+        try (HostSimulator host = new HostSimulator(packager.getPackager(),
+                SimulatorScript.parse(new StringReader("mti=0200 code=00")), 0).start()) {
+            TcpConfig tcp = new TcpConfig();
+            tcp.setHost("localhost");
+            tcp.setPort(host.getPort());
+            tcp.setMinConnections(2);
+            tcp.setMaxConnections(2);
+            AcquirerConfig.Profile second = new AcquirerConfig.Profile();
+            second.setName("second");
+            second.setPackager(PACKAGER_CONFIG);
+            second.setTcp(tcp);
+            second.setMerchants(List.of("WARMUP000000001"));
+            AcquirerConfig acquirerConfig = new AcquirerConfig();
+            acquirerConfig.setProfiles(List.of(second));
+
+            // the default link is down but needs no connections
+            WarmupHealthIndicator indicator = indicator(packager, closedPort(), acquirerConfig, 64);
+
+            assertEquals(Status.UP, indicator.health().getStatus());
+            assertEquals(64, warmupService.getIterations());
+            assertEquals(0, warmupService.getFailures());
+            assertEquals("2/2", indicator.health().getDetails().get("connections"));
+            for (AcquirerProfile profile : registry.getProfiles()) {
+                assertEquals(0, profile.getRoutedCount(), profile.getName());
+            }
+        }
+    }
+
+    private WarmupHealthIndicator indicator(CustomPackager packager, int port, AcquirerConfig acquirerConfig,
+                                            int iterations) {
+        TcpConfig tcpConfig = new TcpConfig();
+        tcpConfig.setHost("localhost");
+        tcpConfig.setPort(port);
+        tcpConfig.setConnectionTimeout(500);
+        tcpConfig.setMinConnections(iterations > 0 ? 0 : 1);
+        tcpConfig.setMaxConnections(1);
+        MacService macService = new MacService(new MacConfig(), packager);
+        macService.init();
+        client = new IsoTcpClient(tcpConfig, packager, new Iso8583Util(), metrics, macService);
+        client.init();
+        FieldMapper fieldMapper = new FieldMapper(new DefaultResourceLoader(), "classpath:iso8583/field-mapping.txt");
+        fieldMapper.init();
+        BinRangeRepository binRanges = new BinRangeRepository(new BinConfig());
+        registry = new AcquirerRegistry(acquirerConfig, client, packager, fieldMapper, binRanges,
+                new DefaultResourceLoader(), new Iso8583Util(), metrics, macService);
+        registry.init();
+        Iso8583Converter converter = new Iso8583Converter(packager, new Iso8583Util(), new TransactionIdGenerator(),
+                binRanges, fieldMapper);
+
+        WarmupConfig warmupConfig = new WarmupConfig();
+        warmupConfig.setIterations(iterations);
+        warmupConfig.setTimeout(iterations > 0 ? 10000 : 200);
+        warmupConfig.setPoolRetryInterval(50);
+        warmupService = new WarmupService(warmupConfig, new RequestValidator(), converter, registry);
+        warmupService.run();
+        return new WarmupHealthIndicator(warmupService, warmupConfig, packager);
+    }
+
+    private static int closedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static CustomPackager packager(String type, String config) {
+        CustomPackager packager = new CustomPackager(new DefaultResourceLoader(), type, config);
+        packager.init();
+        return packager;
+    }
+}